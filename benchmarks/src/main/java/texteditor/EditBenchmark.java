@@ -0,0 +1,61 @@
+package texteditor;
+
+import org.openjdk.jmh.annotations.*;
+import texteditor.document.LineIndex;
+import texteditor.document.PieceTableDocument;
+import texteditor.document.WordCounter;
+
+import javax.swing.text.BadLocationException;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typing a word at a random offset and deleting it again, so the document stays the same size - Once on the bare
+ * document, and once with the listeners a window adds to it: the line index and word count of the status bar, and
+ * the change tracker and undo history
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EditBenchmark {
+    private static final String WORD = "word ";
+    private static final int OFFSET_COUNT = 1 << 16;
+
+    @Param({"1KB", "1MB", "100MB"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean listeners;
+
+    private PieceTableDocument document;
+    private final int[] offsets = new int[OFFSET_COUNT];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        document = PieceTableDocument.read(new SyntheticText(SyntheticText.parseSize(size)));
+        if(listeners){
+            ChangeTracker changeTracker = new ChangeTracker();
+            EditHistory editHistory = new EditHistory(changeTracker);
+            new WordCounter(document, () -> {});
+            new LineIndex(document);
+            document.addDocumentListener(changeTracker);
+            document.addUndoableEditListener(editHistory);
+            editHistory.setDocument(document);
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        for(int i = 0; i < OFFSET_COUNT; i++) offsets[i] = random.nextInt(document.getLength() + 1);
+    }
+
+    @Benchmark
+    public int insertAndRemove() throws BadLocationException {
+        int offset = offsets[next++ & (OFFSET_COUNT - 1)];
+        document.insertString(offset, WORD, null);
+        document.remove(offset, WORD.length());
+        return document.getLength();
+    }
+}
@@ -0,0 +1,127 @@
+package texteditor;
+
+import texteditor.document.LineIndex;
+import texteditor.document.PieceTableDocument;
+import texteditor.menu.items.MenuItem;
+
+import javax.swing.*;
+import java.awt.datatransfer.Clipboard;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A window with no frame, for running the editor's actions under java.awt.headless - The text area, status bar and
+ * everything kept in step with the document are the ones a TextEditor shows, and the menu items are made from the
+ * same template without being put in menus. Cut, copy and paste use a clipboard of its own
+ */
+class HeadlessEditor implements EditorWindow {
+    private final EditorContext context = EditorContext.get();
+    private final int instanceNum = context.nextWindowId();
+    private final EditorPane editorPane;
+    private final ActionController actionController;
+    private final Map<String, MenuItem> menuItemsMap = new HashMap<>();
+    private final Clipboard clipboard = new Clipboard("Headless editor");
+    private JComponent viewer; //Set while a file is shown in viewer mode
+    private String title = "TextEditor";
+    private boolean disposed;
+
+    HeadlessEditor(){
+        editorPane = new EditorPane(context.getDefaultFont());
+        MenuTemplate menuTemplate = context.getMenuTemplate();
+        for(String menuName : menuTemplate.getMenuNames()){
+            for(String menuItemName : menuTemplate.getMenuItemNames(menuName)){
+                if(menuTemplate.isCheckBox(menuItemName)) menuItemsMap.put(menuItemName, new MenuItem(menuItemName, true, null));
+                else menuItemsMap.put(menuItemName, new MenuItem(menuItemName, (KeyStroke) null));
+            }
+        }
+        menuItemsMap.get("Light Theme").getCheckBoxMenuItem().setSelected(true);
+        actionController = new ActionController(this);
+        editorPane.setSpellCheckFailed(actionController::spellCheckFailed);
+    }
+
+    /**
+     * Returns what the window would show - The text area in its scroll pane, or the viewer while there is one
+     * @return The component to lay out and paint
+     */
+    JComponent getView(){
+        return viewer != null ? viewer : editorPane.getScrollPane();
+    }
+
+    @Override
+    public JFrame getFrame(){return null;}
+
+    @Override
+    public JTextArea getMainTextArea(){return editorPane.getTextArea();}
+
+    @Override
+    public LineIndex getLineIndex(){return editorPane.getLineIndex();}
+
+    @Override
+    public Map<String, MenuItem> getMenuItemsMap(){return menuItemsMap;}
+
+    @Override
+    public EditorContext getContext(){return context;}
+
+    @Override
+    public int getInstanceNum(){return instanceNum;}
+
+    @Override
+    public Clipboard getClipboard(){return clipboard;}
+
+    @Override
+    public void setDocument(PieceTableDocument document){
+        editorPane.setDocument(document);
+    }
+
+    @Override
+    public void setOutlineHighlighting(boolean highlighting){
+        editorPane.setOutlineHighlighting(highlighting);
+    }
+
+    @Override
+    public void setSpellChecking(boolean checking){
+        editorPane.setSpellChecking(checking);
+    }
+
+    @Override
+    public void showViewer(JComponent viewer){
+        this.viewer = viewer;
+    }
+
+    @Override
+    public void showTextArea(){
+        viewer = null;
+    }
+
+    @Override
+    public void setTitle(String title){
+        this.title = title;
+    }
+
+    @Override
+    public void setUndoRedoEnabled(boolean canUndo, boolean canRedo){
+        menuItemsMap.get("Undo").setEnabled(canUndo);
+        menuItemsMap.get("Redo").setEnabled(canRedo);
+    }
+
+    /**
+     * Drops the journal of the document, as closing a window does
+     */
+    @Override
+    public void dispose(){
+        if(disposed) return;
+        disposed = true;
+        actionController.windowClosed();
+    }
+
+    /**
+     * Always false, since there is nothing on screen - The action controller checks this before telling the user
+     * a file was saved
+     */
+    @Override
+    public boolean isDisplayable(){return false;}
+
+    //Getters
+    ActionController getActionController(){return actionController;}
+    String getTitle(){return title;}
+}
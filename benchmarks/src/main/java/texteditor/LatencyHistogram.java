@@ -0,0 +1,93 @@
+package texteditor;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of one kind of operation - Every sample is kept, so the percentiles are exact rather than estimated
+ * from buckets, and the histogram printed groups them into buckets doubling in width from 1 microsecond
+ */
+class LatencyHistogram {
+    private static final int BAR_WIDTH = 40;
+
+    private final String name;
+    private long[] samples = new long[64]; //Nanoseconds
+    private int count;
+    private boolean sorted = true;
+
+    LatencyHistogram(String name){
+        this.name = name;
+    }
+
+    /**
+     * Adds a sample
+     * @param nanos How long the operation took, in nanoseconds
+     */
+    void record(long nanos){
+        if(count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    /**
+     * Returns a percentile of the samples, by the nearest rank
+     * @param percentile From 0 to 100
+     * @return The latency in nanoseconds, or 0 if there are no samples
+     */
+    long percentile(double percentile){
+        if(count == 0) return 0;
+        if(!sorted){
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return samples[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    /**
+     * Returns the line of the summary table for this operation
+     * @return The count and the p50, p90, p99 and maximum latencies in milliseconds
+     */
+    String summary(){
+        return String.format("%-28s %8d %10.3f %10.3f %10.3f %10.3f", name, count, millis(percentile(50)),
+                millis(percentile(90)), millis(percentile(99)), millis(percentile(100)));
+    }
+
+    /**
+     * Returns the histogram of the samples, one line for each bucket from the fastest sample to the slowest
+     * @return The histogram, with a bar for the share of samples in each bucket
+     */
+    String histogram(){
+        int[] buckets = new int[64];
+        int first = 63, last = 0;
+        for(int i = 0; i < count; i++){
+            int bucket = bucketOf(samples[i]);
+            buckets[bucket]++;
+            first = Math.min(first, bucket);
+            last = Math.max(last, bucket);
+        }
+        StringBuilder histogram = new StringBuilder(name).append('\n');
+        for(int bucket = first; bucket <= last; bucket++){
+            int bar = (int) Math.round((double) buckets[bucket] * BAR_WIDTH / count);
+            histogram.append(String.format("  < %10s %8d %s%n", bucketLimit(bucket), buckets[bucket], "#".repeat(bar)));
+        }
+        return histogram.toString();
+    }
+
+    private static int bucketOf(long nanos){
+        long micros = Math.max(1, nanos / 1000);
+        return 64 - Long.numberOfLeadingZeros(micros); //Bucket n holds latencies under 2^n microseconds
+    }
+
+    private static String bucketLimit(int bucket){
+        long micros = 1L << bucket;
+        return micros < 1000 ? micros + " us" : String.format("%.1f ms", micros / 1000.0);
+    }
+
+    static double millis(long nanos){
+        return nanos / 1_000_000.0;
+    }
+
+    //Getters
+    String getName(){return name;}
+    int getCount(){return count;}
+}
@@ -0,0 +1,65 @@
+package texteditor;
+
+import org.openjdk.jmh.annotations.*;
+import texteditor.document.PieceTableDocument;
+import texteditor.document.TextSnapshot;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening and saving a file the way the editor does - Loading runs the FileLoader that File > Open starts, handing
+ * its blocks to the Event Dispatch Thread, and saving encodes a snapshot into a file the way FileSaver writes a
+ * whole file, without the temporary file and fsync around it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LoadSaveBenchmark {
+
+    @Param({"1KB", "1MB", "100MB"})
+    public String size;
+
+    private Path file, savedFile;
+    private TextSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("benchmark", ".txt");
+        savedFile = Files.createTempFile("benchmark-saved", ".txt");
+        SyntheticText.write(file, SyntheticText.parseSize(size));
+        snapshot = PieceTableDocument.read(new SyntheticText(SyntheticText.parseSize(size))).snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(savedFile);
+    }
+
+    @Benchmark
+    public PieceTableDocument load() throws Exception {
+        PieceTableDocument document = new PieceTableDocument();
+        new FileLoader(null, file.toFile(), document, null).doInBackground();
+        SwingUtilities.invokeAndWait(() -> {}); //Waits for the last block to be appended
+        return document;
+    }
+
+    @Benchmark
+    public long save() throws IOException {
+        try(FileChannel channel = FileChannel.open(savedFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            SnapshotEncoder encoder = new SnapshotEncoder(StandardCharsets.UTF_8, "\n", channel);
+            encoder.encode(snapshot, 0, snapshot.length());
+            return encoder.finish();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package texteditor;
+
+import org.openjdk.jmh.annotations.*;
+import texteditor.document.LiteralSearch;
+import texteditor.document.PieceTableDocument;
+import texteditor.document.RegexSearch;
+import texteditor.document.TextSearch;
+import texteditor.document.TextSnapshot;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting every match in a document, as Find and Replace All do - A literal word matching case, the same word
+ * ignoring case, and a regular expression
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SearchBenchmark {
+
+    @Param({"1KB", "1MB", "100MB"})
+    public String size;
+
+    private TextSnapshot snapshot;
+    private final TextSearch literal = new LiteralSearch("selection", true);
+    private final TextSearch literalIgnoringCase = new LiteralSearch("Selection", false);
+    private final TextSearch regex = new RegexSearch("\\b(re|un)do\\b", true);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        snapshot = PieceTableDocument.read(new SyntheticText(SyntheticText.parseSize(size))).snapshot();
+    }
+
+    @Benchmark
+    public long literal(){
+        return countMatches(literal);
+    }
+
+    @Benchmark
+    public long literalIgnoringCase(){
+        return countMatches(literalIgnoringCase);
+    }
+
+    @Benchmark
+    public long regex(){
+        return countMatches(regex);
+    }
+
+    private long countMatches(TextSearch search){
+        long[] count = {0};
+        search.search(snapshot, 0, (start, end) -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,92 @@
+package texteditor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Prose-like text for the benchmarks, the same for every run - Words from a small vocabulary, a few with accented
+ * letters so UTF-8 takes more than one byte for some chars, in lines of 40 to 100 chars. The text is made as it is
+ * read, so a document of a gigabyte never has to be held as a String
+ */
+class SyntheticText extends Reader {
+    static final String[] WORDS = {"the", "editor", "document", "piece", "table", "line", "search", "undo", "redo",
+            "save", "load", "buffer", "window", "caret", "selection", "font", "menu", "point", "date", "café",
+            "naïve", "résumé", "text", "of", "and", "a", "to", "in", "is", "for"};
+    private static final long SEED = 0x5EED;
+
+    private final long length;
+    private final SplittableRandom random = new SplittableRandom(SEED);
+    private long position;
+    private String word = "";
+    private int wordIndex;
+    private int lineLength, lineLimit = 70;
+
+    /**
+     * Text of a given number of chars
+     * @param length Number of chars
+     */
+    SyntheticText(long length){
+        this.length = length;
+    }
+
+    /**
+     * Parses a size such as 1KB, 64MB or 1GB
+     * @param size The size
+     * @return The size in bytes
+     */
+    static long parseSize(String size){
+        String unit = size.replaceAll("[0-9]", "");
+        long count = Long.parseLong(size.substring(0, size.length() - unit.length()));
+        switch(unit){
+            case "KB": return count << 10;
+            case "MB": return count << 20;
+            case "GB": return count << 30;
+            case "": case "B": return count;
+            default: throw new IllegalArgumentException("Unknown size: " + size);
+        }
+    }
+
+    /**
+     * Writes text of a given size to a file, in UTF-8
+     * @param file The file
+     * @param length Number of chars
+     * @throws IOException If the file cannot be written
+     */
+    static void write(Path file, long length) throws IOException {
+        try(Reader text = new SyntheticText(length); Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            text.transferTo(writer);
+        }
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int count){
+        if(position == length) return -1;
+        int read = (int) Math.min(count, length - position);
+        for(int i = offset; i < offset + read; i++) buffer[i] = next();
+        position += read;
+        return read;
+    }
+
+    private char next(){
+        if(lineLength >= lineLimit){
+            lineLength = 0;
+            lineLimit = 40 + random.nextInt(61);
+            return '\n';
+        }
+        lineLength++;
+        if(wordIndex == word.length()){
+            word = WORDS[random.nextInt(WORDS.length)];
+            wordIndex = 0;
+            if(lineLength > 1) return ' ';
+        }
+        return word.charAt(wordIndex++);
+    }
+
+    @Override
+    public void close(){}
+}
@@ -0,0 +1,363 @@
+package texteditor;
+
+import paint.Canvas;
+import paint.ToolSettings;
+import texteditor.document.PieceTableDocument;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays traces of keystrokes, menu actions and mouse drags against a HeadlessEditor and a paint.Canvas, painting
+ * what would be on screen into an image after each step, and prints how long each kind of step took as percentiles
+ * and a histogram. Every step runs on the Event Dispatch Thread, as it would from a real key press, and is timed
+ * from the start of the step to the end of the paint, so a change that makes typing or drawing slower shows up
+ * without a display:
+ *
+ *   java -Djava.awt.headless=true -cp benchmarks/target/benchmarks.jar texteditor.TraceReplay
+ *       [--warmup passes] [--max-p99 step=ms]... trace...
+ *
+ * Run it from the folder with config.properties in, as the editor is, so the editor starts with the same settings.
+ * Each trace is replayed the warmup number of times (1 by default) before the pass that is timed, each time with a
+ * new editor and canvas. With --max-p99, the program exits with 1 if the 99th percentile of a step is over the
+ * given milliseconds, such as --max-p99 type=5 or --max-p99 "action Undo=20".
+ *
+ * A trace has one step per line, indented as wanted, and # starts a comment line:
+ *   load 1MB             Shows a document of synthetic text of the size given, as if it had been opened
+ *   type some text       Types each char through the text area's keymap, timing each char as a step
+ *   key ctrl HOME        Presses a key bound in the text area's input map, in the form KeyStroke.getKeyStroke takes
+ *   action Undo          Performs the action of a menu item through the ActionController
+ *   caret 120            Moves the caret
+ *   select 0 500         Selects from one offset to another
+ *   tool rectangle       Picks the canvas tool - line, rectangle or ellipse
+ *   color 255 0 0        Picks the canvas colour
+ *   fill on              Turns filling of canvas shapes on or off - Picking the tool, colour and fill is not timed
+ *   press 10 20          Presses, drags or releases the mouse at a point on the canvas
+ *   clear                Clears the canvas
+ *   repeat 100 ... end   Repeats the steps between, and can be nested
+ *
+ * Actions that would show a dialog, such as Open, Save As or Find, cannot be replayed, and stop the replay
+ */
+public class TraceReplay {
+    private static final int VIEW_WIDTH = TextEditor.FRAME_WIDTH;
+    private static final int VIEW_HEIGHT = TextEditor.FRAME_HEIGHT;
+
+    private final BufferedImage screen = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private HeadlessEditor editor;
+    private Canvas canvas;
+    private Tools tools;
+    private boolean recording;
+
+    /**
+     * A line of a trace, with the steps of a repeat already copied out
+     */
+    private static class Step {
+        private final String source; //File and line number, for errors
+        private final String verb, argument;
+
+        Step(String source, String verb, String argument){
+            this.source = source;
+            this.verb = verb;
+            this.argument = argument;
+        }
+
+        @Override
+        public String toString(){
+            return source + ": " + verb + (argument.isEmpty() ? "" : " " + argument);
+        }
+    }
+
+    /**
+     * The tool, colour and fill the canvas draws with, set by the trace rather than a PaintWindow
+     */
+    private static class Tools implements ToolSettings {
+        private String selectedTool = "line";
+        private Color selectedColor = Color.black;
+        private boolean filling;
+
+        public String getSelectedTool(){return selectedTool;}
+        public Color getSelectedColor(){return selectedColor;}
+        public boolean isFilling(){return filling;}
+    }
+
+    public static void main(String[] args) throws Exception {
+        int warmup = 1;
+        Map<String, Double> maxP99 = new LinkedHashMap<>();
+        List<Path> traces = new ArrayList<>();
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("--warmup")) warmup = Integer.parseInt(args[++i]);
+            else if(args[i].equals("--max-p99")){
+                String limit = args[++i];
+                maxP99.put(limit.substring(0, limit.lastIndexOf('=')), Double.parseDouble(limit.substring(limit.lastIndexOf('=') + 1)));
+            }else traces.add(Paths.get(args[i]));
+        }
+        if(traces.isEmpty()){
+            System.err.println("Usage: TraceReplay [--warmup passes] [--max-p99 step=ms]... trace...");
+            exit(2);
+        }
+        if(!GraphicsEnvironment.isHeadless()) System.err.println("Warning: not headless - Run with -Djava.awt.headless=true");
+
+        boolean failed = false;
+        for(Path trace : traces){
+            List<Step> steps;
+            try{
+                steps = parse(trace);
+            }catch(IllegalArgumentException e){
+                System.err.println(e.getMessage());
+                exit(2);
+                return;
+            }
+            TraceReplay replay = new TraceReplay();
+            try{
+                for(int pass = 0; pass < warmup; pass++) replay.replay(steps, false);
+                replay.replay(steps, true);
+            }catch(InvocationTargetException e){
+                Throwable cause = e.getCause();
+                if(cause instanceof IllegalArgumentException) System.err.println(cause.getMessage());
+                else cause.printStackTrace();
+                exit(2);
+            }
+            System.out.println("Trace " + trace);
+            failed |= replay.report(maxP99);
+        }
+        exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Exits once the lock of the session has been removed - The editors replayed against drop their journals as they
+     * are disposed, and the journal of one left open by a failed replay is only kept if it has unsaved changes
+     */
+    private static void exit(int status){
+        EditJournal.discardAll();
+        System.exit(status);
+    }
+
+    /**
+     * Reads a trace, copying out the steps of each repeat
+     * @param trace The trace file
+     * @return The steps in the order they are to be replayed
+     * @throws IOException If the trace cannot be read
+     */
+    private static List<Step> parse(Path trace) throws IOException {
+        List<String> lines = Files.readAllLines(trace);
+        List<Step> steps = new ArrayList<>();
+        int end = parse(trace.getFileName().toString(), lines, 0, steps);
+        if(end < lines.size()) throw new IllegalArgumentException(trace.getFileName() + ":" + (end + 1) + ": end without repeat");
+        return steps;
+    }
+
+    /**
+     * Parses lines up to an end or the end of the file
+     * @return Index of the end line, or the number of lines
+     */
+    private static int parse(String file, List<String> lines, int from, List<Step> steps){
+        for(int i = from; i < lines.size(); i++){
+            String line = lines.get(i).stripLeading(); //Trailing spaces are kept, since they may be typed
+            if(line.isBlank() || line.startsWith("#")) continue;
+            int space = line.indexOf(' ');
+            String verb = space < 0 ? line.strip() : line.substring(0, space);
+            String argument = space < 0 ? "" : line.substring(space + 1);
+            String source = file + ":" + (i + 1);
+            if(verb.equals("end")) return i;
+            if(verb.equals("repeat")){
+                List<Step> repeated = new ArrayList<>();
+                int end = parse(file, lines, i + 1, repeated);
+                if(end == lines.size()) throw new IllegalArgumentException(source + ": repeat without end");
+                for(int count = Integer.parseInt(argument.strip()); count > 0; count--) steps.addAll(repeated);
+                i = end;
+                continue;
+            }
+            if(!List.of("load", "type", "key", "action", "caret", "select", "tool", "color", "fill", "press", "drag",
+                    "release", "clear").contains(verb)) throw new IllegalArgumentException(source + ": unknown step " + verb);
+            if(verb.equals("key") && KeyStroke.getKeyStroke(argument.strip()) == null){
+                throw new IllegalArgumentException(source + ": unknown key " + argument);
+            }
+            steps.add(new Step(source, verb, verb.equals("type") ? argument : argument.strip()));
+        }
+        return lines.size();
+    }
+
+    /**
+     * Replays steps against a new editor and canvas
+     * @param steps The steps
+     * @param recording True to record how long each step takes
+     */
+    private void replay(List<Step> steps, boolean recording) throws InterruptedException, InvocationTargetException {
+        this.recording = recording;
+        SwingUtilities.invokeAndWait(() -> {
+            editor = new HeadlessEditor();
+            tools = new Tools();
+            canvas = new Canvas(0, 0, VIEW_WIDTH, VIEW_HEIGHT, tools);
+        });
+        for(Step step : steps){
+            if(step.verb.equals("type")){
+                for(char character : step.argument.toCharArray()) time("type", step, () -> type(character));
+            }else if(isToolStep(step)) SwingUtilities.invokeAndWait(() -> perform(step)); //Nothing to paint
+            else time(name(step), step, () -> perform(step));
+        }
+        SwingUtilities.invokeAndWait(editor::dispose);
+    }
+
+    /**
+     * Name that the latencies of a step are recorded under - Keys and actions are told apart by what they are, so
+     * Undo and Paste get histograms of their own
+     */
+    private static String name(Step step){
+        if(step.verb.equals("key") || step.verb.equals("action") || step.verb.equals("load")) return step.verb + " " + step.argument;
+        return step.verb;
+    }
+
+    /**
+     * Runs part of a step on the Event Dispatch Thread and paints what it changed, timing both together
+     */
+    private void time(String name, Step step, Runnable action) throws InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(() -> {
+            long start = System.nanoTime();
+            try{
+                action.run();
+            }catch(IllegalArgumentException e){
+                throw new IllegalArgumentException(step + ": " + e.getMessage(), e);
+            }catch(HeadlessException e){
+                throw new IllegalArgumentException(step + ": shows a dialog, which cannot be shown headless", e);
+            }
+            paint(isCanvasStep(step) ? canvas : editor.getView());
+            if(recording) histograms.computeIfAbsent(name, LatencyHistogram::new).record(System.nanoTime() - start);
+        });
+    }
+
+    private static boolean isCanvasStep(Step step){
+        return List.of("press", "drag", "release", "clear").contains(step.verb);
+    }
+
+    private static boolean isToolStep(Step step){
+        return List.of("tool", "color", "fill").contains(step.verb);
+    }
+
+    /**
+     * Lays a component out at the size of a window and paints it into the screen image
+     */
+    private void paint(JComponent view){
+        view.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+        layOut(view);
+        Graphics2D graphics = screen.createGraphics();
+        try{
+            view.paint(graphics);
+        }finally{
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Lays out a component and everything in it - Validating does nothing to a component that is not on screen
+     */
+    private static void layOut(Component component){
+        if(!(component instanceof Container)) return;
+        Container container = (Container) component;
+        container.doLayout();
+        for(Component child : container.getComponents()) layOut(child);
+    }
+
+    /**
+     * Types a char the way a key typed event does, through the default action of the text area's keymap
+     */
+    private void type(char character){
+        JTextArea textArea = editor.getMainTextArea();
+        KeyEvent event = new KeyEvent(textArea, KeyEvent.KEY_TYPED, System.currentTimeMillis(), 0, KeyEvent.VK_UNDEFINED, character);
+        SwingUtilities.notifyAction(textArea.getKeymap().getDefaultAction(), KeyStroke.getKeyStroke(character), event, textArea, 0);
+    }
+
+    private void perform(Step step){
+        JTextArea textArea = editor.getMainTextArea();
+        String[] values = step.argument.split("\\s+");
+        switch(step.verb){
+            case "load":
+                try{
+                    editor.getActionController().setDocument(PieceTableDocument.read(new SyntheticText(SyntheticText.parseSize(step.argument))));
+                }catch(IOException e){
+                    throw new IllegalStateException(e); //Cannot happen, the text is made in memory
+                }
+                break;
+            case "key":
+                KeyStroke keyStroke = KeyStroke.getKeyStroke(step.argument);
+                Object actionName = textArea.getInputMap().get(keyStroke);
+                Action action = actionName == null ? null : textArea.getActionMap().get(actionName);
+                if(action == null) throw new IllegalArgumentException("no action is bound to " + step.argument);
+                KeyEvent event = new KeyEvent(textArea, KeyEvent.KEY_PRESSED, System.currentTimeMillis(), keyStroke.getModifiers(),
+                        keyStroke.getKeyCode(), KeyEvent.CHAR_UNDEFINED);
+                SwingUtilities.notifyAction(action, keyStroke, event, textArea, keyStroke.getModifiers());
+                break;
+            case "action":
+                if(!editor.getActionController().perform(step.argument)) throw new IllegalArgumentException("no such action");
+                break;
+            case "caret":
+                textArea.setCaretPosition(Math.min(Integer.parseInt(values[0]), textArea.getDocument().getLength()));
+                break;
+            case "select":
+                textArea.select(Integer.parseInt(values[0]), Integer.parseInt(values[1]));
+                break;
+            case "tool":
+                tools.selectedTool = step.argument;
+                break;
+            case "color":
+                tools.selectedColor = new Color(Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2]));
+                break;
+            case "fill":
+                tools.filling = step.argument.equals("on");
+                break;
+            case "press":
+                canvas.mousePressed(mouseEvent(MouseEvent.MOUSE_PRESSED, values));
+                break;
+            case "drag":
+                canvas.mouseDragged(mouseEvent(MouseEvent.MOUSE_DRAGGED, values));
+                break;
+            case "release":
+                canvas.mouseReleased(mouseEvent(MouseEvent.MOUSE_RELEASED, values));
+                break;
+            case "clear":
+                canvas.clear();
+                break;
+        }
+    }
+
+    private MouseEvent mouseEvent(int id, String[] point){
+        return new MouseEvent(canvas, id, System.currentTimeMillis(), MouseEvent.BUTTON1_DOWN_MASK, Integer.parseInt(point[0]),
+                Integer.parseInt(point[1]), 1, false, MouseEvent.BUTTON1);
+    }
+
+    /**
+     * Prints the latencies of each kind of step, and checks them against the limits given
+     * @param maxP99 Highest 99th percentile allowed for a step, in milliseconds
+     * @return True if a step was over its limit
+     */
+    private boolean report(Map<String, Double> maxP99){
+        System.out.println(String.format("%-28s %8s %10s %10s %10s %10s", "Step", "Count", "p50 ms", "p90 ms", "p99 ms", "Max ms"));
+        for(LatencyHistogram histogram : histograms.values()) System.out.println(histogram.summary());
+        System.out.println();
+        for(LatencyHistogram histogram : histograms.values()) System.out.println(histogram.histogram());
+
+        boolean failed = false;
+        for(Map.Entry<String, Double> limit : maxP99.entrySet()){
+            LatencyHistogram histogram = histograms.get(limit.getKey());
+            if(histogram == null) continue; //Not in this trace
+            double p99 = LatencyHistogram.millis(histogram.percentile(99));
+            if(p99 > limit.getValue()){
+                System.err.println(String.format("%s: p99 of %.3f ms is over the limit of %s ms", limit.getKey(), p99, limit.getValue()));
+                failed = true;
+            }
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,62 @@
+package texteditor;
+
+import org.openjdk.jmh.annotations.*;
+import texteditor.document.PieceTableDocument;
+
+import javax.swing.text.BadLocationException;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Undoing and redoing through the EditHistory that Edit > Undo and Edit > Redo use - The history holds a thousand
+ * groups of edits at random offsets, and each invocation undoes then redoes either the newest group or all of them
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class UndoRedoBenchmark {
+    private static final int GROUP_COUNT = 1000;
+
+    @Param({"1KB", "1MB", "100MB"})
+    public String size;
+
+    private PieceTableDocument document;
+    private EditHistory editHistory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, BadLocationException {
+        document = PieceTableDocument.read(new SyntheticText(SyntheticText.parseSize(size)));
+        ChangeTracker changeTracker = new ChangeTracker();
+        editHistory = new EditHistory(changeTracker);
+        document.addDocumentListener(changeTracker);
+        document.addUndoableEditListener(editHistory);
+        editHistory.setDocument(document);
+
+        //Half of the groups insert a word and half remove one
+        SplittableRandom random = new SplittableRandom(1);
+        for(int i = 0; i < GROUP_COUNT; i++){
+            if(i % 2 == 0) document.insertString(random.nextInt(document.getLength() + 1), "word ", null);
+            else document.remove(random.nextInt(document.getLength() - 5), 5);
+            editHistory.closeGroup();
+        }
+    }
+
+    @Benchmark
+    public int undoRedoNewest(){
+        editHistory.undo();
+        editHistory.redo();
+        return document.getLength();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_COUNT)
+    public int undoRedoAll(){
+        for(int i = 0; i < GROUP_COUNT; i++) editHistory.undo();
+        for(int i = 0; i < GROUP_COUNT; i++) editHistory.redo();
+        return document.getLength();
+    }
+}
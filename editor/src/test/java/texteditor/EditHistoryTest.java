@@ -0,0 +1,183 @@
+package texteditor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import texteditor.document.PieceTableDocument;
+
+import javax.swing.text.BadLocationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks which edits an EditHistory groups together, that undoing and redoing them gets back exactly the text and
+ * generation each group started and ended with, and that a history over its memory limit compresses and then
+ * forgets its oldest groups
+ */
+class EditHistoryTest {
+    private PieceTableDocument document;
+    private ChangeTracker changeTracker;
+    private EditHistory history;
+    private int changes; //Times the history said what can be undone or redone may have changed
+
+    @BeforeEach
+    void createDocument(){
+        document = new PieceTableDocument();
+        changeTracker = new ChangeTracker();
+        history = new EditHistory(changeTracker);
+        history.setHistoryChanged(() -> changes++);
+        document.addDocumentListener(changeTracker);
+        document.addUndoableEditListener(history);
+        history.setDocument(document);
+    }
+
+    @Test
+    void groupsTypingByWord() throws BadLocationException {
+        type("hello world");
+        history.undo();
+        assertEquals("hello ", text());
+        history.undo();
+        assertEquals("", text());
+        assertFalse(history.canUndo());
+        history.redo();
+        history.redo();
+        assertEquals("hello world", text());
+        assertFalse(history.canRedo());
+    }
+
+    @Test
+    void groupsBackspacesByWord() throws BadLocationException {
+        document.insertString(0, "one two", null);
+        history.closeGroup();
+        for(int i = 0; i < 5; i++) document.remove(document.getLength() - 1, 1);
+        assertEquals("on", text());
+        history.undo();
+        assertEquals("one ", text());
+        history.undo();
+        assertEquals("one two", text());
+    }
+
+    @Test
+    void undoesAReplacedSelectionAtOnce() throws BadLocationException {
+        document.insertString(0, "some text", null);
+        history.closeGroup();
+        document.replace(5, 4, "words", null);
+        assertEquals("some words", text());
+        history.undo();
+        assertEquals("some text", text());
+    }
+
+    @Test
+    void keepsPastesAndCompoundEditsApart() throws BadLocationException {
+        type("ab");
+        document.insertString(2, "pasted", null);
+        type("cd");
+        history.beginCompound();
+        document.remove(0, 2);
+        document.insertString(0, "x", null);
+        document.insertString(document.getLength(), "y", null);
+        history.endCompound();
+
+        history.undo();
+        assertEquals("abpastedcd", text());
+        history.undo();
+        assertEquals("abpasted", text());
+        history.undo();
+        assertEquals("ab", text());
+    }
+
+    @Test
+    void undoingToTheSavedTextFindsItUnchanged() throws BadLocationException {
+        type("saved");
+        history.closeGroup();
+        changeTracker.markSaved();
+        type("more");
+        assertTrue(changeTracker.hasChanges());
+        history.undo();
+        assertFalse(changeTracker.hasChanges());
+        history.undo();
+        assertTrue(changeTracker.hasChanges());
+        history.redo();
+        assertFalse(changeTracker.hasChanges());
+    }
+
+    @Test
+    void tellsWhenTheHistoryChanges() throws BadLocationException {
+        int before = changes;
+        type("a");
+        assertTrue(changes > before);
+        before = changes;
+        history.undo();
+        assertTrue(changes > before);
+        before = changes;
+        history.redo();
+        assertTrue(changes > before);
+    }
+
+    @Test
+    void undoesAndRedoesRandomEdits() throws BadLocationException {
+        Random random = new Random(17);
+        List<String> texts = new ArrayList<>();
+        texts.add(text());
+        for(int i = 0; i < 300; i++){
+            randomEdit(random);
+            history.closeGroup();
+            texts.add(text());
+        }
+        for(int i = texts.size() - 2; i >= 0; i--){
+            history.undo();
+            assertEquals(texts.get(i), text());
+        }
+        assertFalse(history.canUndo());
+        for(int i = 1; i < texts.size(); i++){
+            history.redo();
+            assertEquals(texts.get(i), text());
+        }
+    }
+
+    @Test
+    void compressesThenForgetsOldGroups() throws BadLocationException {
+        history.setMemoryLimit(20_000);
+        document.insertString(0, "abcdefgh".repeat(50_000), null);
+        history.setDocument(document); //Starting from the text as if it had been loaded
+        List<String> texts = new ArrayList<>();
+        texts.add(text());
+        Random random = new Random(18);
+        for(int i = 0; i < 200; i++){
+            document.remove(random.nextInt(document.getLength() - 1000), 1000);
+            texts.add(text());
+        }
+
+        int undone = 0;
+        while(history.canUndo()){
+            history.undo();
+            undone++;
+            assertEquals(texts.get(texts.size() - 1 - undone), text());
+        }
+
+        //Each removal holds 2000 bytes of text, so only about 10 fit uncompressed
+        assertTrue(undone > 20, "Compressed groups can be undone too");
+        assertTrue(undone < 200, "The oldest groups are forgotten");
+    }
+
+    private void type(String text) throws BadLocationException {
+        for(char c : text.toCharArray()) document.insertString(document.getLength(), String.valueOf(c), null);
+    }
+
+    private void randomEdit(Random random) throws BadLocationException {
+        int length = document.getLength();
+        if(length == 0 || random.nextBoolean()){
+            String text = random.nextBoolean() ? "x" : "inserted text";
+            document.insertString(random.nextInt(length + 1), text, null);
+        }else{
+            int where = random.nextInt(length);
+            document.remove(where, Math.min(length - where, 1 + random.nextInt(10)));
+        }
+    }
+
+    private String text() throws BadLocationException {
+        return document.getText(0, document.getLength());
+    }
+}
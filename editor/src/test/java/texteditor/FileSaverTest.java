@@ -0,0 +1,124 @@
+package texteditor;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import texteditor.document.EditExtents;
+import texteditor.document.FileEncoding;
+import texteditor.document.LineBreakFilter;
+import texteditor.document.PieceTableDocument;
+
+import javax.swing.text.BadLocationException;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Loads a file, edits it and saves it over and over, checking after every save that the file holds exactly the
+ * bytes writing the whole text would give - Each save after the file is verified writes only the changes, so this
+ * covers patching in place and splicing in every encoding and line separator a file can be loaded with
+ */
+class FileSaverTest {
+    private static final int ROUNDS = 40;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @CsvSource({
+            "UTF-8, '', '\n'",
+            "UTF-8, EFBBBF, '\r\n'",
+            "UTF-16LE, FFFE, '\n'",
+            "UTF-16BE, '', '\r\n'",
+            "ISO-8859-1, '', '\r\n'",
+            "ISO-8859-1, '', '\n'"
+    })
+    void savesChangesByteForByte(String charsetName, String byteOrderMark, String lineSeparator) throws Exception {
+        Charset charset = Charset.forName(charsetName);
+        String alphabet = charset.newEncoder().canEncode('€') ? "ab \né€" : "ab \né";
+        Random random = new Random(charsetName.hashCode() + lineSeparator.hashCode());
+        Path file = directory.resolve("file.txt");
+        StringBuilder initial = new StringBuilder("é");
+        for(int line = 0; line < 500; line++) initial.append(randomText(random, alphabet, random.nextInt(40))).append('\n');
+        Files.write(file, encode(initial.toString(), charset, byteOrderMark, lineSeparator));
+
+        //Loading the file as the FileLoader does
+        FileEncoding encoding = FileEncoding.detect(file);
+        assertEquals(charset, encoding.getCharset());
+        byte[] bytes = Files.readAllBytes(file);
+        int byteOrderMarkLength = encoding.getByteOrderMarkLength();
+        LineBreakFilter filter = new LineBreakFilter();
+        PieceTableDocument document = PieceTableDocument.read(new StringReader(
+                new String(bytes, byteOrderMarkLength, bytes.length - byteOrderMarkLength, charset)), filter);
+        encoding = encoding.withLineSeparator(filter.getLineSeparator());
+        assertEquals(lineSeparator, encoding.getLineSeparator());
+
+        SavedFile savedFile = new SavedFile(file.toFile(), encoding);
+        EditExtents extents = new EditExtents(document.getLength());
+        document.addDocumentListener(extents);
+        FileSaver.verify(savedFile, document.snapshot());
+        FileSaver.awaitPendingSaves();
+        assertTrue(savedFile.canWriteChangesOnly());
+
+        for(int round = 0; round < ROUNDS; round++){
+            int edits = 1 + random.nextInt(5);
+            for(int edit = 0; edit < edits; edit++) edit(document, random, alphabet);
+            FileSaver.save(null, document.snapshot(), extents.copy(), savedFile).get();
+            extents.reset(document.getLength());
+
+            String text = document.getText(0, document.getLength());
+            assertArrayEquals(encode(text, charset, byteOrderMark, lineSeparator), Files.readAllBytes(file), "Round " + round);
+            assertTrue(savedFile.canWriteChangesOnly());
+        }
+    }
+
+    /**
+     * Makes one of the kinds of edit a save handles differently - Replacing text with text of the same length,
+     * adding to the end and removing from the end, which are patched in place, or inserting and removing elsewhere,
+     * which splice a new file
+     */
+    private static void edit(PieceTableDocument document, Random random, String alphabet) throws BadLocationException {
+        int length = document.getLength();
+        switch(random.nextInt(5)){
+            case 0:
+                if(length == 0) break;
+                int where = random.nextInt(length);
+                int count = Math.min(length - where, 1 + random.nextInt(10));
+                document.replace(where, count, randomText(random, "ab ", count), null);
+                break;
+            case 1:
+                document.insertString(length, randomText(random, alphabet, 1 + random.nextInt(20)), null);
+                break;
+            case 2:
+                if(length == 0) break;
+                count = Math.min(length, 1 + random.nextInt(20));
+                document.remove(length - count, count);
+                break;
+            case 3:
+                document.insertString(random.nextInt(length + 1), randomText(random, alphabet, 1 + random.nextInt(50)), null);
+                break;
+            default:
+                if(length == 0) break;
+                where = random.nextInt(length);
+                document.remove(where, Math.min(length - where, 1 + random.nextInt(50)));
+        }
+    }
+
+    private static byte[] encode(String text, Charset charset, String byteOrderMark, String lineSeparator){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for(int i = 0; i < byteOrderMark.length(); i += 2) bytes.write(Integer.parseInt(byteOrderMark.substring(i, i + 2), 16));
+        bytes.writeBytes(text.replace("\n", lineSeparator).getBytes(charset));
+        return bytes.toByteArray();
+    }
+
+    private static String randomText(Random random, String alphabet, int length){
+        char[] text = new char[length];
+        for(int i = 0; i < length; i++) text[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(text);
+    }
+}
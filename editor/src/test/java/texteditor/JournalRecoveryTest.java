@@ -0,0 +1,162 @@
+package texteditor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import texteditor.document.PieceTableDocument;
+
+import javax.swing.text.BadLocationException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Journals random edits, reads the journal back as the next session would after a crash, and checks that
+ * replaying it rebuilds the document - The journals are kept under a temporary home directory
+ */
+class JournalRecoveryTest {
+    private static final String ALPHABET = "ab \né€";
+
+    @TempDir
+    Path home;
+    private String realHome;
+    private EditJournal journal;
+
+    @BeforeEach
+    void useTemporaryHome() throws IOException {
+        realHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.toString());
+        Files.createDirectories(EditJournal.journalDirectory()); //Made once per session otherwise
+    }
+
+    @AfterEach
+    void restoreHome(){
+        if(journal != null){
+            journal.close();
+            journal.flushNow(); //Waiting for the journal files to be deleted
+        }
+        System.setProperty("user.home", realHome);
+    }
+
+    @Test
+    void replaysEditsOntoTheFile() throws Exception {
+        Random random = new Random(14);
+        Path file = home.resolve("file.txt");
+        Files.writeString(file, randomText(random, 20_000), StandardCharsets.UTF_8);
+        PieceTableDocument document = load(file);
+        journal = new EditJournal(() -> true);
+        journal.start(file.toFile());
+        document.addDocumentListener(journal);
+
+        edit(document, random, 300);
+        journal.flushNow();
+        JournalRecovery recovery = JournalRecovery.read(journalFiles());
+        assertNotNull(recovery);
+        assertEquals(file.toFile(), recovery.getFile());
+        assertEquals(textOf(document), textOf(recovery.rebuild()));
+    }
+
+    @Test
+    void ignoresABatchCutOffByACrash() throws Exception {
+        Random random = new Random(15);
+        PieceTableDocument document = new PieceTableDocument();
+        document.insertString(0, randomText(random, 1000), null);
+        journal = new EditJournal(() -> true);
+        journal.startEmpty(null, document);
+        document.addDocumentListener(journal);
+
+        edit(document, random, 100);
+        journal.flushNow();
+        String flushed = textOf(document);
+        edit(document, random, 100);
+        journal.flushNow();
+
+        List<Path> files = journalFiles();
+        Path last = files.get(files.size() - 1);
+        try(FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)){
+            channel.truncate(channel.size() - 3);
+        }
+        assertEquals(flushed, textOf(JournalRecovery.read(files).rebuild()));
+    }
+
+    @Test
+    void replaysFromTheLastSave() throws Exception {
+        Random random = new Random(16);
+        Path file = home.resolve("file.txt");
+        Files.writeString(file, randomText(random, 5000), StandardCharsets.UTF_8);
+        PieceTableDocument document = load(file);
+        journal = new EditJournal(() -> true);
+        journal.start(file.toFile());
+        document.addDocumentListener(journal);
+
+        edit(document, random, 100);
+        int segment = journal.rotate(file.toFile());
+        Files.writeString(file, textOf(document), StandardCharsets.UTF_8);
+        journal.saved(segment);
+        edit(document, random, 100);
+        journal.flushNow();
+
+        List<Path> files = journalFiles();
+        assertEquals(1, files.size(), "Segments before the save are deleted");
+        assertEquals(textOf(document), textOf(JournalRecovery.read(files).rebuild()));
+
+        //Once the file changes under the journal, there is nothing it can be replayed onto
+        Files.writeString(file, "changed", StandardCharsets.UTF_8);
+        assertNull(JournalRecovery.read(files));
+    }
+
+    /**
+     * Makes random edits, including inserts large enough to be journaled as pieces
+     */
+    private static void edit(PieceTableDocument document, Random random, int edits) throws BadLocationException {
+        for(int i = 0; i < edits; i++){
+            int length = document.getLength();
+            if(length == 0 || random.nextInt(3) > 0){
+                int size = random.nextInt(30) == 0 ? 10_000 : 1 + random.nextInt(20);
+                document.insertString(random.nextInt(length + 1), randomText(random, size), null);
+            }else{
+                int where = random.nextInt(length);
+                document.remove(where, Math.min(length - where, 1 + random.nextInt(100)));
+            }
+        }
+    }
+
+    private List<Path> journalFiles() throws IOException {
+        try(Stream<Path> files = Files.list(EditJournal.journalDirectory())){
+            return files.filter(path -> path.toString().endsWith(".journal"))
+                    .sorted(Comparator.comparingInt(JournalRecoveryTest::segmentNumber))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int segmentNumber(Path path){
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.length() - ".journal".length()));
+    }
+
+    private static PieceTableDocument load(Path file) throws IOException {
+        return PieceTableDocument.read(new StringReader(Files.readString(file, StandardCharsets.UTF_8)));
+    }
+
+    private static String textOf(PieceTableDocument document) throws BadLocationException {
+        return document.getText(0, document.getLength());
+    }
+
+    private static String randomText(Random random, int length){
+        char[] text = new char[length];
+        for(int i = 0; i < length; i++) text[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        return new String(text);
+    }
+}
@@ -0,0 +1,90 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Searches a file several windows long and checks the hits against the matches in the whole text - The file mixes
+ * \n, \r\n and lone \r line breaks, and has lines too long to be carried whole into the next window, so matches
+ * and line breaks fall on every side of the cuts between windows
+ */
+class FileSearchTest {
+    private static final String NEEDLE = "needle";
+    private static final int MAX_LINE_TEXT = 200;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsEveryMatchOnItsLine() throws Exception {
+        Random random = new Random(24);
+        StringBuilder builder = new StringBuilder();
+        String[] breaks = {"\n", "\r\n", "\r"};
+        while(builder.length() < 3_500_000){
+            int length = random.nextInt(50) == 0 ? 100_000 + random.nextInt(200_000) : random.nextInt(120);
+            int end = builder.length() + length;
+            while(builder.length() < end) builder.append(random.nextInt(8) == 0 ? NEEDLE : random.nextInt(100) == 0 ? "é" : "x");
+            builder.append(breaks[random.nextInt(breaks.length)]);
+        }
+        String text = builder.toString();
+        Path file = directory.resolve("file.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        List<FileSearch.Hit> hits = Collections.synchronizedList(new ArrayList<>());
+        FileSearch search = new FileSearch(new LiteralSearch(NEEDLE, true), path -> true, hits::add);
+        assertEquals(1, search.searchFiles(List.of(file)));
+
+        List<String> expected = new ArrayList<>(), found = new ArrayList<>();
+        int line = 0, lineStart = 0, lineEnd = -1;
+        for(int i = 0; i < text.length(); ){
+            char c = text.charAt(i);
+            if(c == '\n' || c == '\r'){
+                i += c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n' ? 2 : 1;
+                line++;
+                lineStart = i;
+            }else if(text.regionMatches(i, NEEDLE, 0, NEEDLE.length())){
+                if(lineEnd < lineStart) lineEnd = lineStart;
+                while(lineEnd < text.length() && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') lineEnd++;
+                int textStart = Math.max(lineStart, i - MAX_LINE_TEXT / 2);
+                expected.add(line + ":" + (i - lineStart) + " " + text.substring(textStart, Math.min(lineEnd, textStart + MAX_LINE_TEXT)));
+                i += NEEDLE.length();
+            }else i++;
+        }
+        for(FileSearch.Hit hit : hits){
+            assertEquals(NEEDLE.length(), hit.getLength());
+            found.add(hit.getLine() + ":" + hit.getColumn() + " " + hit.getLineText());
+        }
+        assertEquals(expected.size(), found.size());
+        for(int i = 0; i < expected.size(); i++) assertEquals(expected.get(i), found.get(i), "Hit " + i);
+    }
+
+    @Test
+    void readsTheTextInOverlappingWindows() throws Exception {
+        Random random = new Random(25);
+        StringBuilder text = new StringBuilder();
+        while(text.length() < 3_000_000) text.append(random.nextInt(1000) == 0 ? "\r\n" : "y");
+        Path file = directory.resolve("windows.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        StringBuilder read = new StringBuilder();
+        int[] windows = {0};
+        assertTrue(FileSearch.readText(file, (array, length, offset, carried) -> {
+            assertEquals(read.length(), offset);
+            read.append(array, 0, carried);
+            windows[0]++;
+            return true;
+        }));
+        assertTrue(windows[0] > 2);
+        assertEquals(text.toString(), read.toString());
+    }
+}
@@ -0,0 +1,62 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks LineBreakFilter on text cut into blocks at random, so that \r\n pairs are often split between blocks
+ */
+class LineBreakFilterTest {
+
+    @Test
+    void convertsLineBreaksAcrossBlocks(){
+        Random random = new Random(6);
+        for(int round = 0; round < 500; round++){
+            String text = randomText(random, random.nextInt(200));
+            LineBreakFilter filter = new LineBreakFilter();
+            StringBuilder filtered = new StringBuilder();
+            for(int start = 0; start < text.length(); ){
+                int end = Math.min(text.length(), start + random.nextInt(8));
+                char[] block = text.substring(start, end).toCharArray();
+                filtered.append(block, 0, filter.filter(block, block.length));
+                start = end;
+            }
+            assertEquals(text.replace("\r\n", "\n").replace('\r', '\n'), filtered.toString());
+            assertEquals(expectedSeparator(text), filter.getLineSeparator(), text);
+        }
+    }
+
+    @Test
+    void leavesLineFeedsAlone(){
+        char[] block = "a\nb\n".toCharArray();
+        LineBreakFilter filter = new LineBreakFilter();
+        assertEquals(4, filter.filter(block, block.length));
+        assertEquals("a\nb\n", new String(block));
+        assertEquals("\n", filter.getLineSeparator());
+    }
+
+    private static String expectedSeparator(String text){
+        int crlf = 0, cr = 0, lf = 0;
+        for(int i = 0; i < text.length(); i++){
+            if(text.charAt(i) == '\r'){
+                if(i + 1 < text.length() && text.charAt(i + 1) == '\n'){
+                    crlf++;
+                    i++;
+                }else cr++;
+            }else if(text.charAt(i) == '\n') lf++;
+        }
+        if(crlf > lf && crlf >= cr) return "\r\n";
+        if(cr > lf && cr > crlf) return "\r";
+        return "\n";
+    }
+
+    private static String randomText(Random random, int length){
+        String[] parts = {"a", "b", "\r", "\n", "\r\n"};
+        StringBuilder text = new StringBuilder();
+        while(text.length() < length) text.append(parts[random.nextInt(parts.length)]);
+        return text.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks a LineIndex against the lines of the document's root element after random edits, including ones that
+ * add and remove enough lines to add and remove whole chunks
+ */
+class LineIndexTest {
+
+    @Test
+    void matchesRootElement() throws BadLocationException {
+        Random random = new Random(4);
+        PieceTableDocument document = new PieceTableDocument();
+        LineIndex index = new LineIndex(document);
+        for(int edit = 0; edit < 400; edit++){
+            int length = document.getLength();
+            if(length == 0 || random.nextInt(3) > 0){
+                String text = lines(random, random.nextInt(20) == 0 ? 3000 : random.nextInt(5));
+                document.insertString(random.nextInt(length + 1), text, null);
+            }else{
+                int where = random.nextInt(length);
+                int count = 1 + random.nextInt(Math.min(length - where, random.nextInt(20) == 0 ? 50_000 : 200));
+                document.remove(where, count);
+            }
+            assertMatches(document, index, random);
+        }
+    }
+
+    @Test
+    void indexesLoadedText() throws IOException {
+        Random random = new Random(5);
+        PieceTableDocument document = PieceTableDocument.read(new StringReader(lines(random, 10_000)));
+        LineIndex index = new LineIndex(document);
+        assertMatches(document, index, random);
+    }
+
+    private static void assertMatches(PieceTableDocument document, LineIndex index, Random random){
+        Element root = document.getDefaultRootElement();
+        assertEquals(root.getElementCount(), index.getLineCount());
+        for(int line = 0; line < root.getElementCount(); line++){
+            assertEquals(root.getElement(line).getStartOffset(), index.getLineStartOffset(line), "Start of line " + line);
+        }
+        for(int i = 0; i < 200; i++){
+            int offset = random.nextInt(document.getLength() + 1);
+            assertEquals(root.getElementIndex(offset), index.getLineOfOffset(offset), "Line of offset " + offset);
+        }
+        assertEquals(root.getElementIndex(document.getLength()), index.getLineOfOffset(document.getLength()));
+    }
+
+    private static String lines(Random random, int count){
+        StringBuilder text = new StringBuilder();
+        for(int line = 0; line < count; line++){
+            text.append("x".repeat(random.nextInt(12))).append('\n');
+        }
+        text.append("y".repeat(random.nextInt(3)));
+        return text.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks LiteralSearch against a plain search of the same text as a String, with the snapshot cut into segments
+ * shorter than the pattern so that matches have to be carried across several segments
+ */
+class LiteralSearchTest {
+
+    @Test
+    void findsTheSameMatchesAsAPlainSearch(){
+        Random random = new Random(19);
+        for(int round = 0; round < 2000; round++){
+            String text = randomText(random, random.nextInt(200), "aAb");
+            String pattern = randomText(random, 1 + random.nextInt(6), "aAb");
+            boolean matchCase = random.nextBoolean();
+            long from = random.nextInt(text.length() + 1);
+
+            List<Long> found = new ArrayList<>();
+            new LiteralSearch(pattern, matchCase).search(segmented(text, random), from, (start, end) -> {
+                assertEquals(pattern.length(), end - start);
+                found.add(start);
+                return true;
+            });
+            assertEquals(plainSearch(text, pattern, matchCase, (int) from), found, pattern + " in " + text);
+        }
+    }
+
+    @Test
+    void stopsWhenTheListenerSaysSo(){
+        List<Long> found = new ArrayList<>();
+        new LiteralSearch("ab", true).search(segmented("abababab", new Random(20)), 0, (start, end) -> {
+            found.add(start);
+            return found.size() < 2;
+        });
+        assertEquals(List.of(0L, 2L), found);
+    }
+
+    /**
+     * Finds where a pattern starts in a text, leaving out matches that overlap the one before
+     */
+    private static List<Long> plainSearch(String text, String pattern, boolean matchCase, int from){
+        List<Long> found = new ArrayList<>();
+        for(int i = from; i + pattern.length() <= text.length(); ){
+            if(text.regionMatches(!matchCase, i, pattern, 0, pattern.length())){
+                found.add((long) i);
+                i += pattern.length();
+            }else i++;
+        }
+        return found;
+    }
+
+    /**
+     * Cuts a text into a snapshot of segments of up to 3 chars, each in an array of its own with other chars around it
+     */
+    static TextSnapshot segmented(String text, Random random){
+        List<char[]> buffers = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>(), lengths = new ArrayList<>();
+        for(int i = 0; i < text.length(); ){
+            int length = Math.min(text.length() - i, 1 + random.nextInt(3));
+            int padding = random.nextInt(3);
+            char[] buffer = ("#".repeat(padding) + text.substring(i, i + length) + "#").toCharArray();
+            buffers.add(buffer);
+            starts.add(padding);
+            lengths.add(length);
+            i += length;
+        }
+        return new TextSnapshot(buffers.toArray(new char[0][]), starts.stream().mapToInt(Integer::intValue).toArray(),
+                lengths.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    static String randomText(Random random, int length, String alphabet){
+        char[] text = new char[length];
+        for(int i = 0; i < length; i++) text[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(text);
+    }
+}
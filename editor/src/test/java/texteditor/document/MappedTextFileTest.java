@@ -0,0 +1,70 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the sparse line index of a MappedTextFile against the lines of the same text found by splitting it, with
+ * runs of short lines that are checkpointed by count and lines long enough to be checkpointed inside
+ */
+class MappedTextFileTest {
+    private static final int MAX_LINE_BYTES = 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsEveryLine() throws IOException, InterruptedException {
+        Random random = new Random(13);
+        StringBuilder text = new StringBuilder();
+        for(int block = 0; block < 20; block++){
+            if(random.nextInt(3) == 0) text.append("y".repeat(random.nextInt(300_000))).append('\n');
+            else{
+                for(int line = random.nextInt(3000); line > 0; line--){
+                    text.append("x".repeat(random.nextInt(MAX_LINE_BYTES * 2))).append(random.nextBoolean() ? "\n" : "\r\n");
+                }
+            }
+        }
+        text.append("end");
+        Path file = directory.resolve("file.txt");
+        Files.writeString(file, text, StandardCharsets.ISO_8859_1);
+
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        for(int i = 0; i < text.length(); i++){
+            if(text.charAt(i) == '\n') starts.add(i + 1L);
+        }
+
+        MappedTextFile mappedFile = new MappedTextFile(file.toFile(), StandardCharsets.ISO_8859_1);
+        mappedFile.buildIndex();
+        assertEquals(starts.size(), mappedFile.getLineCount());
+        for(int line = 0; line < starts.size(); line++){
+            assertEquals(starts.get(line), mappedFile.getLineStart(line), "Start of line " + line);
+        }
+        assertEquals(text.length(), mappedFile.getLineStart(starts.size()));
+
+        for(int i = 0; i < 200; i++){
+            int first = random.nextInt(starts.size()), count = 1 + random.nextInt(50);
+            List<String> lines = mappedFile.readLines(first, count, MAX_LINE_BYTES);
+            assertEquals(Math.min(count, starts.size() - first), lines.size());
+            for(int j = 0; j < lines.size(); j++){
+                int line = first + j;
+                int end = line + 1 < starts.size() ? (int) (starts.get(line + 1) - 1) : text.length();
+                String expected = text.substring(starts.get(line).intValue(), end);
+                if(expected.endsWith("\r")) expected = expected.substring(0, expected.length() - 1);
+                if(expected.length() > MAX_LINE_BYTES) expected = expected.substring(0, MAX_LINE_BYTES);
+                assertEquals(expected, lines.get(j), "Line " + line);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the tokens of an OutlineLexer kept up to date through random edits against a lexer made afresh on the
+ * same text, and that every line whose tokens changed without being edited was passed to the relex listener
+ */
+class OutlineLexerTest {
+    private static final String[] FRAGMENTS = {"- ", "        - ", "\t\t-", "    ", "\t", "# ", "text ", "\n", "\n\n",
+            "Monday - 01/02/2023", "12/12/2012", "1/1/1", "\n- point\n    carried on\n", "\n        - sub\n\t\tmore\n"};
+
+    @Test
+    void relexingMatchesLexingAfresh() throws BadLocationException {
+        Random random = new Random(17);
+        PlainDocument document = new PlainDocument();
+        int[] relexed = new int[2];
+        OutlineLexer lexer = new OutlineLexer(document, (first, last) -> {
+            assertEquals(-1, relexed[0], "Told twice about one edit");
+            relexed[0] = first;
+            relexed[1] = last;
+        });
+        for(int edit = 0; edit < 5000; edit++){
+            List<String> before = tokens(lexer, document);
+            relexed[0] = relexed[1] = -1;
+            int length = document.getLength(), offset = random.nextInt(length + 1), first, touched, shift;
+            if(length == 0 || random.nextInt(3) > 0){
+                String text = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+                first = lineOf(document, offset);
+                document.insertString(offset, text, null);
+                shift = (int)text.chars().filter(c -> c == '\n').count();
+                touched = first + shift;
+            }else{
+                int removed = Math.min(length - offset, 1 + random.nextInt(20));
+                first = lineOf(document, offset);
+                shift = -(int)document.getText(offset, removed).chars().filter(c -> c == '\n').count();
+                document.remove(offset, removed);
+                touched = first;
+            }
+
+            List<String> after = tokens(lexer, document);
+            OutlineLexer fresh = new OutlineLexer(document, (firstLine, lastLine) -> {});
+            document.removeDocumentListener(fresh);
+            assertEquals(tokens(fresh, document), after, "Edit " + edit);
+
+            //Lines after the edit that were not repainted must look as they did
+            for(int i = touched + 1; i < after.size(); i++){
+                if(relexed[0] != -1 && i >= relexed[0] && i <= relexed[1]) continue;
+                assertEquals(before.get(i - shift), after.get(i), "Line " + i + " not relexed after edit " + edit);
+            }
+        }
+    }
+
+    private static int lineOf(PlainDocument document, int offset){
+        return document.getDefaultRootElement().getElementIndex(offset);
+    }
+
+    /**
+     * Describes the tokens of each line by their offsets from the start of the line
+     */
+    private static List<String> tokens(OutlineLexer lexer, PlainDocument document) throws BadLocationException {
+        Element root = document.getDefaultRootElement();
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < root.getElementCount(); i++){
+            int start = root.getElement(i).getStartOffset();
+            StringBuilder line = new StringBuilder();
+            lexer.lexLine(i, (tokenStart, tokenEnd, token) ->
+                    line.append(tokenStart - start).append('-').append(tokenEnd - start).append(token).append(' '));
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,162 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GapContent;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks a PieceTableContent against a GapContent given the same random edits - The text, its chars read through a
+ * Segment, and the offsets of positions made along the way must match after every edit, undo and redo
+ */
+class PieceTableContentTest {
+    private static final String ALPHABET = "ab \né€";
+
+    @Test
+    void editsMatchGapContent() throws BadLocationException {
+        Random random = new Random(1);
+        for(int round = 0; round < 10; round++){
+            PieceTableContent pieces = new PieceTableContent();
+            GapContent gap = new GapContent();
+            List<Position> piecePositions = new ArrayList<>(), gapPositions = new ArrayList<>();
+            for(int edit = 0; edit < 300; edit++){
+                int length = gap.length() - 1;
+                if(length == 0 || random.nextInt(3) > 0){
+                    int where = random.nextInt(length + 1);
+                    String text = randomText(random, random.nextInt(50) == 0 ? 70_000 : 1 + random.nextInt(20));
+                    pieces.insertString(where, text);
+                    gap.insertString(where, text);
+                }else{
+                    int where = random.nextInt(length);
+                    int count = 1 + random.nextInt(Math.min(length - where, 100));
+                    pieces.remove(where, count);
+                    gap.remove(where, count);
+                }
+                if(random.nextInt(4) == 0){
+                    int offset = random.nextInt(gap.length());
+                    piecePositions.add(pieces.createPosition(offset));
+                    gapPositions.add(gap.createPosition(offset));
+                }
+                assertSameContent(gap, pieces);
+                assertSamePositions(gapPositions, piecePositions);
+            }
+        }
+    }
+
+    @Test
+    void undoAndRedoMatchGapContent() throws BadLocationException {
+        Random random = new Random(2);
+        PieceTableContent pieces = new PieceTableContent();
+        GapContent gap = new GapContent();
+        List<UndoableEdit> pieceEdits = new ArrayList<>(), gapEdits = new ArrayList<>();
+        for(int edit = 0; edit < 500; edit++){
+            int length = gap.length() - 1;
+            if(length == 0 || random.nextBoolean()){
+                int where = random.nextInt(length + 1);
+                String text = randomText(random, 1 + random.nextInt(30));
+                pieceEdits.add(pieces.insertString(where, text));
+                gapEdits.add(gap.insertString(where, text));
+            }else{
+                int where = random.nextInt(length);
+                int count = 1 + random.nextInt(Math.min(length - where, 30));
+                pieceEdits.add(pieces.remove(where, count));
+                gapEdits.add(gap.remove(where, count));
+            }
+        }
+        for(int i = pieceEdits.size() - 1; i >= 0; i--){
+            pieceEdits.get(i).undo();
+            gapEdits.get(i).undo();
+            assertSameContent(gap, pieces);
+        }
+        assertEquals(1, pieces.length());
+        for(int i = 0; i < pieceEdits.size(); i++){
+            pieceEdits.get(i).redo();
+            gapEdits.get(i).redo();
+            assertSameContent(gap, pieces);
+        }
+    }
+
+    @Test
+    void snapshotsKeepTheirText() throws BadLocationException {
+        Random random = new Random(3);
+        PieceTableContent content = new PieceTableContent();
+        content.insertString(0, randomText(random, 5000));
+        String text = content.getString(0, content.length() - 1);
+        TextSnapshot snapshot = content.snapshot();
+        TextSnapshot part = content.snapshot(100, 1000);
+        for(int edit = 0; edit < 100; edit++){
+            content.insertString(random.nextInt(content.length()), randomText(random, 10));
+            content.remove(random.nextInt(content.length() - 10), 5);
+        }
+        assertEquals(text, textOf(snapshot));
+        assertEquals(text.substring(100, 1100), textOf(part));
+
+        content.insertAdopted(0, part);
+        assertEquals(text.substring(100, 1100), content.getString(0, 1000));
+    }
+
+    @Test
+    void treeStaysBalancedThroughSplits() throws BadLocationException {
+        Random random = new Random(12);
+        PieceTableContent content = new PieceTableContent();
+        content.insertString(0, randomText(random, 1000));
+        for(int edit = 0; edit < 50_000; edit++){
+            if(random.nextInt(4) > 0) content.insertString(random.nextInt(content.length()), "x");
+            else content.remove(random.nextInt(content.length() - 1), 1);
+        }
+        int depth = content.getTreeDepth();
+        assertTrue(depth > 0, "Heap order broken");
+        int levels = 32 - Integer.numberOfLeadingZeros(content.getPieceCount());
+        assertTrue(depth <= 4 * levels, "Depth " + depth + " for " + content.getPieceCount() + " pieces");
+    }
+
+    @Test
+    void badLocationsAreRejected(){
+        PieceTableContent content = new PieceTableContent();
+        assertThrows(BadLocationException.class, () -> content.insertString(2, "a"));
+        assertThrows(BadLocationException.class, () -> content.remove(0, 2));
+        assertThrows(BadLocationException.class, () -> content.getString(-1, 1));
+    }
+
+    private static void assertSameContent(GapContent expected, PieceTableContent actual) throws BadLocationException {
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected.getString(0, expected.length()), actual.getString(0, actual.length()));
+        int where = expected.length() / 3, length = expected.length() - where;
+        Segment segment = new Segment();
+        actual.getChars(where, length, segment);
+        assertEquals(expected.getString(where, length), segment.toString());
+        segment.setPartialReturn(true);
+        actual.getChars(where, length, segment);
+        assertEquals(expected.getString(where, segment.count), segment.toString());
+    }
+
+    private static void assertSamePositions(List<Position> expected, List<Position> actual){
+        for(int i = 0; i < expected.size(); i++){
+            assertEquals(expected.get(i).getOffset(), actual.get(i).getOffset(), "Position " + i);
+        }
+    }
+
+    private static String textOf(TextSnapshot snapshot){
+        StringBuilder text = new StringBuilder();
+        Segment segment = new Segment();
+        for(int i = 0; i < snapshot.getSegmentCount(); i++){
+            snapshot.getSegment(i, segment);
+            text.append(segment);
+        }
+        return text.toString();
+    }
+
+    static String randomText(Random random, int length){
+        char[] text = new char[length];
+        for(int i = 0; i < length; i++) text[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        return new String(text);
+    }
+}
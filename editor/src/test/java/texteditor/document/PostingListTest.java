@@ -0,0 +1,83 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the delta encoded posting lists of a TrigramIndex against sorted sets of the same file ids
+ */
+class PostingListTest {
+
+    @Test
+    void retainKeepsCommonIds(){
+        Random random = new Random(7);
+        for(int round = 0; round < 500; round++){
+            TreeSet<Integer> listed = randomIds(random), candidates = randomIds(random);
+            TrigramIndex.PostingList list = listOf(listed);
+            assertArrayEquals(listed.stream().mapToInt(Integer::intValue).toArray(), list.toArray());
+
+            int[] ids = candidates.stream().mapToInt(Integer::intValue).toArray();
+            int kept = list.retain(ids, ids.length);
+            candidates.retainAll(listed);
+            assertArrayEquals(candidates.stream().mapToInt(Integer::intValue).toArray(), Arrays.copyOf(ids, kept));
+        }
+    }
+
+    @Test
+    void renumberDropsRemovedIds(){
+        Random random = new Random(8);
+        for(int round = 0; round < 500; round++){
+            TreeSet<Integer> listed = randomIds(random);
+            int[] newIds = new int[listed.isEmpty() ? 0 : listed.last() + 1];
+            int next = 0;
+            TreeSet<Integer> expected = new TreeSet<>();
+            for(int id = 0; id < newIds.length; id++){
+                newIds[id] = random.nextInt(4) == 0 ? -1 : next++;
+                if(newIds[id] >= 0 && listed.contains(id)) expected.add(newIds[id]);
+            }
+            TrigramIndex.PostingList list = listOf(listed);
+            assertEquals(expected.size(), list.renumber(newIds));
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), list.toArray());
+
+            //Ids added after renumbering carry on from the last one kept
+            list.add(next);
+            assertEquals(next, list.toArray()[list.toArray().length - 1]);
+        }
+    }
+
+    @Test
+    void survivesWriteAndRead() throws IOException {
+        TreeSet<Integer> listed = randomIds(new Random(9));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        listOf(listed).write(new DataOutputStream(bytes));
+        TrigramIndex.PostingList read = TrigramIndex.PostingList.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertArrayEquals(listed.stream().mapToInt(Integer::intValue).toArray(), read.toArray());
+    }
+
+    private static TrigramIndex.PostingList listOf(TreeSet<Integer> ids){
+        TrigramIndex.PostingList list = new TrigramIndex.PostingList();
+        for(int id : ids) list.add(id);
+        return list;
+    }
+
+    //Gaps are sometimes large so that deltas take several bytes
+    private static TreeSet<Integer> randomIds(Random random){
+        TreeSet<Integer> ids = new TreeSet<>();
+        int id = 0, count = random.nextInt(60);
+        for(int i = 0; i < count; i++){
+            id += 1 + (random.nextInt(10) == 0 ? random.nextInt(1 << 16) : random.nextInt(5));
+            ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,86 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks RegexSearch's single pass Replace All against Matcher.replaceAll, including its copy of the rules Matcher
+ * uses to read group references and escapes in a replacement
+ */
+class RegexSearchTest {
+    private static final String[] REPLACEMENTS = {
+            "", "x", "$0", "<$1>", "$2$1", "$10", "$11", "$12", "${word}", "[${word}]", "\\$1", "\\\\", "a\\bc",
+            "$", "\\", "$13", "$x", "${", "${word", "${}", "${1a}", "${missing}"
+    };
+
+    @Test
+    void replacesLikeMatcher(){
+        Random random = new Random(21);
+        String[] regexes = {"a", "(a)(b)?", "(?<word>[ab]+)", "((((((((((a))))))))))(b)?", "b*", "(?i)A"};
+        for(String regex : regexes){
+            for(String replacement : REPLACEMENTS){
+                for(int round = 0; round < 20; round++){
+                    String text = LiteralSearchTest.randomText(random, random.nextInt(40), "abc ");
+                    assertReplacesLikeMatcher(regex, text, replacement, random);
+                }
+            }
+        }
+    }
+
+    @Test
+    void replacesLiterallyWhenAsked() throws InterruptedException {
+        String text = "a1 a2 a3";
+        RegexSearch.Replacement replacement = new RegexSearch("a(\\d)", true)
+                .replaceAll(LiteralSearchTest.segmented(text, new Random(22)), "$1\\", true);
+        assertEquals(3, replacement.getCount());
+        assertEquals("$1\\ $1\\ $1\\", apply(text, replacement));
+    }
+
+    @Test
+    void searchSkipsEmptyMatches(){
+        Random random = new Random(23);
+        for(int round = 0; round < 200; round++){
+            String text = LiteralSearchTest.randomText(random, random.nextInt(60), "aab ");
+            List<Integer> expected = new ArrayList<>();
+            Matcher matcher = Pattern.compile("a*").matcher(text);
+            while(matcher.find()){
+                if(matcher.end() > matcher.start()) expected.add(matcher.start());
+            }
+            List<Integer> found = new ArrayList<>();
+            new RegexSearch("a*", true).search(LiteralSearchTest.segmented(text, random), 0, (start, end) -> {
+                found.add((int) start);
+                return true;
+            });
+            assertEquals(expected, found, text);
+        }
+    }
+
+    private static void assertReplacesLikeMatcher(String regex, String text, String replacement, Random random){
+        String message = regex + " replaced with " + replacement + " in \"" + text + "\"";
+        String expected;
+        try{
+            expected = Pattern.compile(regex).matcher(text).replaceAll(replacement);
+        }catch(IllegalArgumentException | IndexOutOfBoundsException e){
+            if(!Pattern.compile(regex).matcher(text).find()) return; //Matcher only reads the replacement once something matches
+            assertThrows(e.getClass(), () -> new RegexSearch(regex, true).replaceAll(LiteralSearchTest.segmented(text, random), replacement, false), message);
+            return;
+        }
+        try{
+            RegexSearch.Replacement replaced = new RegexSearch(regex, true).replaceAll(LiteralSearchTest.segmented(text, random), replacement, false);
+            assertEquals(expected, replaced == null ? text : apply(text, replaced), message);
+        }catch(InterruptedException e){
+            fail(e);
+        }
+    }
+
+    private static String apply(String text, RegexSearch.Replacement replacement){
+        return text.substring(0, replacement.getStart()) + replacement.getText() + text.substring(replacement.getEnd());
+    }
+}
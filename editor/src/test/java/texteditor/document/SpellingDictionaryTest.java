@@ -0,0 +1,96 @@
+package texteditor.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks a SpellingDictionary against a HashSet of its words, and its suggestions against the edit distance to
+ * every word worked out the slow way
+ */
+class SpellingDictionaryTest {
+    private static final int MAX_DISTANCE = 2;
+
+    @Test
+    void containsTheSameWordsAsASet(){
+        Random random = new Random(10);
+        Set<String> words = randomWords(random, 3000);
+        SpellingDictionary dictionary = SpellingDictionary.build(new ArrayList<>(words));
+        assertEquals(words.size(), dictionary.getWordCount());
+        for(String word : words){
+            assertTrue(dictionary.contains(word), word);
+            assertTrue(dictionary.contains(word.toUpperCase()), word);
+        }
+        for(int i = 0; i < 3000; i++){
+            String word = randomWord(random);
+            assertEquals(words.contains(word), dictionary.contains(word), word);
+        }
+        assertFalse(dictionary.contains(""));
+    }
+
+    @Test
+    void suggestsEveryWordWithinTheDistance(){
+        Random random = new Random(11);
+        Set<String> words = randomWords(random, 2000);
+        SpellingDictionary dictionary = SpellingDictionary.build(new ArrayList<>(words));
+        for(int i = 0; i < 300; i++){
+            String misspelt = randomWord(random);
+            Set<String> expected = new HashSet<>();
+            for(String word : words){
+                if(distance(misspelt, word) <= MAX_DISTANCE) expected.add(word);
+            }
+            List<String> suggestions = dictionary.suggest(misspelt, MAX_DISTANCE, Integer.MAX_VALUE);
+            assertEquals(expected, new HashSet<>(suggestions), misspelt);
+            assertEquals(expected.size(), suggestions.size(), misspelt);
+            for(int j = 1; j < suggestions.size(); j++){
+                assertTrue(distance(misspelt, suggestions.get(j - 1)) <= distance(misspelt, suggestions.get(j)), misspelt);
+            }
+        }
+    }
+
+    @Test
+    void countsASwapAsOneEdit(){
+        SpellingDictionary dictionary = SpellingDictionary.build(new ArrayList<>(List.of("receive", "the")));
+        assertEquals(List.of("receive"), dictionary.suggest("recieve", 1, 5));
+        assertEquals(List.of("The"), dictionary.suggest("Teh", 1, 5));
+        assertEquals(List.of(), dictionary.suggest("xyz", 1, 5));
+    }
+
+    /**
+     * Edit distance where swapping two neighbouring chars counts as one edit, as long as neither is edited again
+     */
+    private static int distance(String a, String b){
+        int[][] table = new int[a.length() + 1][b.length() + 1];
+        for(int i = 0; i <= a.length(); i++) table[i][0] = i;
+        for(int j = 0; j <= b.length(); j++) table[0][j] = j;
+        for(int i = 1; i <= a.length(); i++){
+            for(int j = 1; j <= b.length(); j++){
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                table[i][j] = Math.min(Math.min(table[i - 1][j] + 1, table[i][j - 1] + 1), table[i - 1][j - 1] + cost);
+                if(i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)){
+                    table[i][j] = Math.min(table[i][j], table[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return table[a.length()][b.length()];
+    }
+
+    private static Set<String> randomWords(Random random, int count){
+        Set<String> words = new HashSet<>();
+        while(words.size() < count) words.add(randomWord(random));
+        return words;
+    }
+
+    //A small alphabet so that many words are near each other
+    private static String randomWord(Random random){
+        char[] word = new char[1 + random.nextInt(7)];
+        for(int i = 0; i < word.length; i++) word[i] = "abcdef".charAt(random.nextInt(6));
+        return new String(word);
+    }
+}
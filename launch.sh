@@ -0,0 +1,16 @@
+#!/bin/sh
+# Starts the text editor from the jar built by the TextEditor:jar artifact, or by Maven if there is none, using a CDS
+# archive of the classes it loads while starting up. The archive is recorded by a training run that opens the first window and exits once its
+# menus are built, and is recorded again whenever the jar is newer than it. Run with -Dtexteditor.startup-timing=true
+# in JAVA_OPTS to print the time from launch to the first paint.
+cd "$(dirname "$0")" || exit 1
+JAR="${TEXT_EDITOR_JAR:-out/artifacts/TextEditor_jar/TextEditor.jar}"
+[ -f "$JAR" ] || JAR=editor/target/TextEditor.jar
+ARCHIVE="${JAR%.jar}.jsa"
+
+if [ ! -f "$ARCHIVE" ] || [ "$JAR" -nt "$ARCHIVE" ]; then
+    rm -f "$ARCHIVE"
+    java -XX:ArchiveClassesAtExit="$ARCHIVE" -jar "$JAR" --exit-after-startup || rm -f "$ARCHIVE"
+fi
+
+exec java -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto $JAVA_OPTS -jar "$JAR" "$@"
@@ -18,9 +18,9 @@ public class Canvas extends JPanel implements MouseListener, MouseMotionListener
     float eraserWidth, eraserHeight;
     private List<ShapeItem> shapeItems, whiteEraserCircleShapeItems, lineShapes; //shapeItems is the master list, lineShapes is used as a checker if a shape is a line
     private Point shapeStart, shapeEnd;
-    private PaintWindow paintWindow;
+    private ToolSettings paintWindow; //The PaintWindow, or whatever else picks the tool when there is no window
 
-    public Canvas(int x, int y, int width, int height, PaintWindow paintWindow){
+    public Canvas(int x, int y, int width, int height, ToolSettings paintWindow){
         this.x = x;
         this.y = y;
         this.width = width;
@@ -233,8 +233,8 @@ public class Canvas extends JPanel implements MouseListener, MouseMotionListener
 
     public void clear(){
         shapeItems.clear();
-        Graphics g = getGraphics();
-        super.paintComponent(g); //Clears the JPanel
+        lineShapes.clear();
+        repaint(); //Clears the JPanel - Painting through getGraphics would fail while the canvas is not on screen
     }
 
     /**
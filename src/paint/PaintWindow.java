@@ -9,7 +9,7 @@ import java.io.File;
 import java.util.*;
 import java.util.List;
 
-public class PaintWindow extends JFrame implements ActionListener {
+public class PaintWindow extends JFrame implements ActionListener, ToolSettings {
 
     /*Collections to manage panels*/
     private Map<String, JPanel> panelMap;
@@ -0,0 +1,13 @@
+package paint;
+
+import java.awt.*;
+
+/**
+ * The drawing tool, colour and fill that a Canvas draws new shapes with - Chosen in the PaintWindow, or set
+ * directly when a canvas is driven without one
+ */
+public interface ToolSettings {
+    String getSelectedTool();
+    Color getSelectedColor();
+    boolean isFilling();
+}
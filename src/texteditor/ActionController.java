@@ -1,46 +1,121 @@
 package texteditor;
+import texteditor.document.EditExtents;
+import texteditor.document.FileEncoding;
+import texteditor.document.LineIndex;
+import texteditor.document.MappedTextFile;
+import texteditor.document.PieceTableDocument;
+import texteditor.document.TrigramIndex;
 import texteditor.menu.items.MenuItem;
 
 import javax.swing.*;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.StringSelection;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 class ActionController {
-    private TextEditor textEditor;
+    private EditorWindow textEditor;
 
     //For file management
-    private boolean changesMade = false;
+    private final ChangeTracker changeTracker = new ChangeTracker(); //Whether the document has unsaved changes
+    private final EditHistory editHistory = new EditHistory(changeTracker);
     private boolean cancelClose = false;
     private boolean cancelOpenFile;
     private boolean cancelNewFile;
     private File openedFile;
+    private FileLoader fileLoader; //Set while a file is being loaded in the background
+    private MappedFileViewer viewer; //Set while a file is shown in viewer mode
+    private FindWindow findWindow; //Created the first time Find or Replace is used
+    private FindInFilesWindow findInFilesWindow; //Created the first time Find in Files is used
+    private Runnable afterLoad; //Run once the file being loaded has loaded
+    private Future<Void> pendingSave; //The most recent save started from this window
+    private SavedFile savedFile; //What is known about the contents of openedFile
+    private FileEncoding encoding = FileEncoding.DEFAULT; //Encoding openedFile was read in, which saves keep to
+    private EditExtents editExtents; //The parts of the document unchanged since the last save or load
+    private final EditJournal journal = new EditJournal(this::hasChangesMade);
+    private final Deque<Integer> savingSegments = new ArrayDeque<>(); //Journal segments waiting for their save to finish
 
     //Format menu booleans
     private boolean isWrapping = false; //Wrapping of text area is set to false by default
+    private boolean isHighlightingOutline = false;
+    private boolean isSpellChecking = false;
     private boolean lightThemeActive = true; //Light theme on by default
     private boolean darkThemeActive = false;
 
     /**
      * Constructs an ActionController object which performs the actions that can be performed
      * in the text editor
-     * @param textEditor TextEditor instance this ActionController is for
+     * @param textEditor Window this ActionController is for - A TextEditor, or a window without a frame
      */
-    ActionController(TextEditor textEditor){this.textEditor = textEditor;}
+    ActionController(EditorWindow textEditor){
+        this.textEditor = textEditor;
+
+        //Tracking and journalling edits to the document the main text area starts with
+        Document document = textEditor.getMainTextArea().getDocument();
+        editExtents = new EditExtents(document.getLength());
+        document.addDocumentListener(editExtents);
+        document.addDocumentListener(journal);
+        document.addDocumentListener(changeTracker);
+        document.addUndoableEditListener(editHistory);
+        editHistory.setHistoryChanged(() -> textEditor.setUndoRedoEnabled(editHistory.canUndo(), editHistory.canRedo()));
+        editHistory.setDocument((PieceTableDocument) document);
+        journal.startEmpty(null, document);
+    }
+
+    /**
+     * Performs the action of a menu item
+     * @param action Name of the menu item
+     * @return False if there is no such action
+     */
+    boolean perform(String action){
+
+        /*File menu actions*/
+        if(action.equals("New")) newDocument();
+        else if(action.equals("Open")) openFile();
+        else if(action.equals("Save")) saveFile();
+        else if(action.equals("Save As...")) saveFileAs();
+        else if(action.equals("Exit")) exit();
+
+        /*Edit menu actions*/
+        else if(action.equals("Cut")) cut();
+        else if(action.equals("Paste")) paste();
+        else if(action.equals("Copy")) copy();
+        else if(action.equals("Undo")) undo();
+        else if(action.equals("Redo")) redo();
+        else if(action.equals("Find")) find();
+        else if(action.equals("Find Next")) findNext();
+        else if(action.equals("Replace")) replace();
+        else if(action.equals("Find in Files")) findInFiles();
+        else if(action.equals("Go To Line")) goToLine();
+        else if(action.equals("Insert Point")) insertPoint();
+        else if(action.equals("Insert Sub Point")) insertSubPoint();
+        else if(action.equals("Insert Date")) insertDate();
+
+        /*Format menu actions*/
+        else if(action.equals("Word Wrap")) setWordWrap();
+        else if(action.equals("Outline Highlighting")) setOutlineHighlighting();
+        else if(action.equals("Spell Check")) setSpellChecking();
+        else if(action.equals("Dark Theme") || action.equals("Light Theme")) changeTheme(action);
+        else return false;
+        return true;
+    }
 
     /**
      * Checks if the supplied file name has .txt extension or has no extension at all
      * @param fileName String file name to check
      */
-    private boolean validFileName(String fileName){
+    static boolean validFileName(String fileName){
+        if(fileName.lastIndexOf(".") < 0) return true;
 	    String fileExtension = fileName.substring(fileName.lastIndexOf("."));
     	return fileExtension.equals(".txt") || fileExtension.equals("");
     }
@@ -52,7 +127,7 @@ class ActionController {
         try{
 
             //Performs save check
-            if(changesMade) saveCheck(SaveCheck.OPEN_FILE);
+            if(hasChangesMade()) saveCheck(SaveCheck.OPEN_FILE);
 
             /*If the saveAs method is called during saveCheck method, and the user cancels the save as dialog, assume
             * that the user wants to cancel the entire operation of opening a new file altogether - This prevents the user
@@ -69,51 +144,372 @@ class ActionController {
             if(status != JFileChooser.APPROVE_OPTION){
                 JOptionPane.showMessageDialog(null, "No file selected!");
             }
-            else{
+            else openFile(openFileChooser.getSelectedFile());
+
+        }catch(Exception e){e.printStackTrace();}
+    }
 
-                //Getting text in file and placing into mainTextArea
-                openedFile = openFileChooser.getSelectedFile();
-                String openedFileName = openFileChooser.getSelectedFile().getName();
+    /**
+     * Opens a file for editing, offering to show it in the viewer instead if it is too large
+     * @param file The file to open
+     */
+    private void openFile(File file){
 
-                //Validates the opened file
-                if(!validFileName(openedFileName)){
-                    JOptionPane.showMessageDialog(null, "Please open a txt file or a file with no extension!");
-                    return;
-                }
+        //Getting text in file and placing into mainTextArea
+        openedFile = file;
+        String openedFileName = file.getName();
 
-                Scanner scan = new Scanner(openedFile);
-                StringBuilder textToDisplay = new StringBuilder();
-                while(scan.hasNext()) textToDisplay.append(scan.nextLine()).append("\n"); //Concatenating the string
-                textEditor.getMainTextArea().setText(textToDisplay.toString());
-                textEditor.setTitle(openedFileName);
-                changesMade = false;
+        //Validates the opened file
+        if(!validFileName(openedFileName)){
+            JOptionPane.showMessageDialog(null, "Please open a txt file or a file with no extension!");
+            return;
+        }
+
+        //Files too large for the heap can be shown in the read only viewer instead
+        if(openedFile.length() > viewerModeThreshold()){
+            int optionInput = JOptionPane.showConfirmDialog(null, openedFileName + " is " + (openedFile.length() >> 20) +
+                    " MB, which is too large to edit.\nOpen it read only in viewer mode?", "Large File", JOptionPane.YES_NO_OPTION);
+            if(optionInput == JOptionPane.YES_OPTION){
+                openInViewer(openedFile);
+                return;
             }
+        }
 
-        }catch(FileNotFoundException e){throw new Error("File not found");}
+        //Showing an empty document straight away and loading the file into it in the background
+        closeViewer();
+        stopLoading();
+        PieceTableDocument document = new PieceTableDocument();
+        journal.discard(); //Started again once the file has loaded
+        setDocument(document);
+        savedFile = null;
+        encoding = FileEncoding.DEFAULT; //Until the loader has worked out the encoding of the file
+        textEditor.setTitle(openedFileName + " (Loading...)");
+        setEditable(false);
+        fileLoader = new FileLoader(this, openedFile, document, textEditor.getMainTextArea());
+        fileLoader.execute();
     }
 
     /**
-     * Saves the current file - Calls saveFile if the file does not exist in a directory
+     * Selects some text of a file, opening the file first if it is not the one already open
+     * @param file The file
+     * @param line Index of the line the text is on
+     * @param column Index of the first char of the text in the line
+     * @param length Length of the text
      */
-     void saveFile(){
-        try{
+     void showInFile(File file, int line, int column, int length){
+        if(!isShowing(file)){
+            if(hasChangesMade()) saveCheck(SaveCheck.OPEN_FILE);
+            if(cancelOpenFile){
+                cancelOpenFile = false;
+                return;
+            }
+            openFile(file);
+            if(fileLoader != null){
+                afterLoad = () -> select(line, column, length); //Once the text is there to select
+                return;
+            }
+        }
+        if(viewer != null) viewer.scrollToLine(line);
+        else if(fileLoader == null) select(line, column, length);
+    }
+
+    /**
+     * Checks if a file is the one open in this window
+     * @param file The file
+     * @return True if the file is open, or being loaded
+     */
+     boolean isShowing(File file){
+        return openedFile != null && openedFile.getAbsoluteFile().toPath().normalize().equals(file.getAbsoluteFile().toPath().normalize());
+    }
 
-            //If the user tries to save to a newly created file with no changes
-            if(!changesMade)return;
+    /**
+     * Selects text in the main text area, as far as the document goes
+     */
+    private void select(int line, int column, int length){
+        LineIndex lineIndex = textEditor.getLineIndex();
+        if(line >= lineIndex.getLineCount()) return;
+        JTextArea mainTextArea = textEditor.getMainTextArea();
+        int documentLength = mainTextArea.getDocument().getLength();
+        int start = Math.min(lineIndex.getLineStartOffset(line) + column, documentLength);
+        mainTextArea.select(start, Math.min(start + length, documentLength));
+        mainTextArea.requestFocusInWindow();
+    }
 
-            //If saving to an existing file
-            if(openedFile != null){
-                FileWriter writeToOpenedFile = new FileWriter(openedFile);
-                textEditor.getMainTextArea().write(writeToOpenedFile);
-                JOptionPane.showMessageDialog(null, "File Saved!");
-                changesMade = false;
+    /**
+     * Shows a document in the main text area and starts tracking the edits made to it
+     * @param document The document to show
+     */
+    void setDocument(PieceTableDocument document){
+        Document oldDocument = textEditor.getMainTextArea().getDocument();
+        if(findWindow != null) findWindow.clearHighlights();
+        oldDocument.removeDocumentListener(editExtents);
+        oldDocument.removeDocumentListener(journal);
+        oldDocument.removeDocumentListener(changeTracker);
+        oldDocument.removeUndoableEditListener(editHistory);
+        textEditor.setDocument(document);
+        editExtents = new EditExtents(document.getLength());
+        document.addDocumentListener(editExtents);
+        document.addDocumentListener(journal);
+        document.addDocumentListener(changeTracker);
+        document.addUndoableEditListener(editHistory);
+        editHistory.setDocument(document);
+        changeTracker.markSaved();
+    }
+
+    /**
+     * Returns the file size above which files are offered in viewer mode - Loaded text takes at least two bytes per
+     * char plus the line structure, so anything past a quarter of the heap is not going to fit
+     * @return The threshold in bytes
+     */
+    private long viewerModeThreshold(){
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Memory maps a file and shows it in the read only viewer
+     * @param file The file to show
+     */
+    private void openInViewer(File file){
+        try{
+            FileEncoding fileEncoding = FileEncoding.detect(file.toPath());
+            if(!fileEncoding.isAsciiCompatible()){
+                openedFile = null;
+                JOptionPane.showMessageDialog(null, file.getName() + " is in " + fileEncoding + ", which viewer mode cannot show");
                 return;
             }
+            MappedTextFile mappedFile = new MappedTextFile(file, fileEncoding.getCharset());
+            stopLoading();
+            closeViewer();
+            journal.discard();
+            setDocument(new PieceTableDocument());
+            savedFile = null;
+            setEditable(true); //Once the viewer is closed
+            viewer = new MappedFileViewer(mappedFile, textEditor.getMainTextArea());
+            textEditor.showViewer(viewer);
+            textEditor.setTitle(file.getName() + " (Read Only)");
+        }catch(IOException e){
+            e.printStackTrace();
+            openedFile = null;
+            JOptionPane.showMessageDialog(null, "Unable to map " + file.getName());
+        }
+    }
+
+    /**
+     * Closes the viewer, if it is showing, and puts the main text area back
+     */
+    private void closeViewer(){
+        if(viewer == null) return;
+        viewer.close();
+        viewer = null;
+        textEditor.showTextArea();
+    }
+
+    /**
+     * Called by the FileLoader once the whole file has been loaded
+     * @param loader The FileLoader reporting back
+     * @param file The file that was loaded
+     */
+    void fileLoaded(FileLoader loader, File file){
+        if(loader != fileLoader) return; //Another file was opened since
+        fileLoader = null;
+        Runnable action = afterLoad;
+        afterLoad = null;
+        setEditable(true);
+        textEditor.setTitle(file.getName());
+
+        //Checking in the background whether later saves can write just the changes
+        PieceTableDocument document = (PieceTableDocument) textEditor.getMainTextArea().getDocument();
+        encoding = loader.getEncoding();
+        savedFile = new SavedFile(file, encoding);
+        editExtents.reset(document.getLength());
+        changeTracker.markSaved();
+        FileSaver.verify(savedFile, document.snapshot());
+        journal.start(file);
+        if(action != null) action.run();
+    }
+
+    /**
+     * Called by the FileLoader if the user cancels loading - The part already loaded is kept as a new untitled
+     * document so that saving it can never truncate the original file
+     * @param loader The FileLoader reporting back
+     */
+    void fileLoadCancelled(FileLoader loader){
+        if(loader != fileLoader) return;
+        fileLoader = null;
+        afterLoad = null;
+        openedFile = null;
+        setEditable(true);
+        textEditor.setTitle("TextEditor");
+        changeTracker.markSaved();
+        journal.startEmpty(null, textEditor.getMainTextArea().getDocument());
+        JOptionPane.showMessageDialog(null, "Open cancelled - the part of the file already loaded is shown as a new document");
+    }
+
+    /**
+     * Called by the FileLoader if the file could not be read
+     * @param loader The FileLoader reporting back
+     * @param file The file that failed to load
+     */
+    void fileLoadFailed(FileLoader loader, File file){
+        if(loader != fileLoader) return;
+        fileLoader = null;
+        afterLoad = null;
+        openedFile = null;
+        setDocument(new PieceTableDocument());
+        setEditable(true);
+        textEditor.setTitle("TextEditor");
+        journal.startEmpty(null, textEditor.getMainTextArea().getDocument());
+        JOptionPane.showMessageDialog(null, "Unable to read " + file.getName());
+    }
+
+    /**
+     * Stops any file that is still being loaded without reporting it as cancelled
+     */
+    private void stopLoading(){
+        FileLoader loader = fileLoader;
+        fileLoader = null;
+        afterLoad = null;
+        if(loader != null) loader.cancel(false);
+    }
+
+    /**
+     * Lets the user change the text area, or stops them while a file loads into it - The editing menu items are
+     * turned off with it, since inserting through the text area ignores whether it is editable
+     * @param editable True to allow editing
+     */
+    private void setEditable(boolean editable){
+        textEditor.getMainTextArea().setEditable(editable);
+        textEditor.setEditingEnabled(editable);
+    }
+
+    /**
+     * Checks if the text area can be changed by an action - Not while a file is loading into it, or while it is
+     * hidden by the viewer
+     * @return True if the action can go ahead
+     */
+    private boolean canEdit(){
+        return viewer == null && !loadInProgress() && textEditor.getMainTextArea().isEditable();
+    }
 
-            //If the user is trying to save a new file, prompt save as
-            saveFileAs();
+    /**
+     * Checks if a file is still being loaded, and tells the user to wait if it is
+     * @return True if a file is being loaded
+     */
+    private boolean loadInProgress(){
+        if(fileLoader == null) return false;
+        JOptionPane.showMessageDialog(null, "Please wait for the file to finish loading!");
+        return true;
+    }
+
+    /**
+     * Saves the current file - Calls saveFile if the file does not exist in a directory
+     */
+     void saveFile(){
+
+        //If the user tries to save to a newly created file with no changes
+        if(!hasChangesMade())return;
+        if(loadInProgress()) return;
+
+        //If saving to an existing file
+        if(openedFile != null){
+            startSave(openedFile);
+            return;
+        }
 
-        }catch(IOException e) {throw new Error("Unable to write to file");}
+        //If the user is trying to save a new file, prompt save as
+        saveFileAs();
+    }
+
+    /**
+     * Takes a snapshot of the document and writes it to a file in the background, so editing can carry on while
+     * the file is written - Only the parts changed since the last save are written when possible
+     * @param file File to save to
+     */
+    private void startSave(File file){
+        if(savedFile == null || !savedFile.getFile().equals(file)) savedFile = new SavedFile(file, encoding);
+        PieceTableDocument document = (PieceTableDocument) textEditor.getMainTextArea().getDocument();
+        pendingSave = FileSaver.save(this, document.snapshot(), editExtents.copy(), savedFile);
+        editExtents.reset(document.getLength());
+        savingSegments.add(journal.rotate(file));
+        editHistory.closeGroup(); //So undoing back to the saved text finds it unchanged
+        changeTracker.markSaved();
+    }
+
+    /**
+     * Called by the FileSaver once a file is safely on disk
+     * @param file The file that was saved
+     */
+    void fileSaved(File file){
+        journal.saved(savingSegments.remove());
+        TrigramIndex.fileChanged(file.toPath());
+        if(textEditor.isDisplayable()) JOptionPane.showMessageDialog(null, file.getName() + " saved!");
+    }
+
+    /**
+     * Called by the FileSaver if a file could not be written - The file on disk is left as it was before the save
+     * @param file The file that failed to save
+     */
+    void fileSaveFailed(File file){
+        savingSegments.remove(); //The older journal segments are kept, since the file on disk did not change
+        changeTracker.markUnsaved();
+        JOptionPane.showMessageDialog(null, "Unable to save " + file.getName() + " - the file on disk was not changed");
+    }
+
+    /**
+     * Waits for the most recent save from this window to finish
+     * @return True if it was written successfully, or if there was nothing to wait for
+     */
+    private boolean finishPendingSave(){
+        if(pendingSave == null) return true;
+        try{
+            pendingSave.get();
+            return true;
+        }catch(InterruptedException | ExecutionException e){
+            return false; //The FileSaver reports the failure itself
+        }
+    }
+
+    /**
+     * Exits the program once every save still being written has finished
+     */
+    void exitProgram(){
+        FileSaver.awaitPendingSaves();
+        EditJournal.discardAll();
+        System.exit(0);
+    }
+
+    /**
+     * Throws away the edit journal of this window - Called once the window is closed, since its edits have been
+     * either saved or deliberately dropped
+     */
+    void windowClosed(){
+        journal.close();
+    }
+
+    /**
+     * Shows a document rebuilt from the journal of an earlier session that did not exit normally
+     * @param recovery The journal to replay
+     */
+    void recover(JournalRecovery recovery){
+        try{
+            PieceTableDocument document = recovery.rebuild();
+            stopLoading();
+            closeViewer();
+            setDocument(document);
+            openedFile = recovery.getFile();
+            savedFile = null;
+            encoding = recovery.getEncoding();
+            changeTracker.markUnsaved();
+            textEditor.setTitle(recovery.getName() + " (Recovered)");
+
+            //Journalling the recovered text before the old journal goes, so a second crash loses nothing
+            journal.startEmpty(openedFile, document);
+            journal.flushNow();
+            recovery.discard();
+        }catch(IOException e){
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(null, "Unable to recover " + recovery.getName());
+        }
     }
 
     /**
@@ -121,6 +517,11 @@ class ActionController {
      */
      void saveFileAs(){
         try {
+            if(loadInProgress()){
+                cancelClose = true;
+                return;
+            }
+
             /*Operations to conduct when saving to a brand new file*/
             JFileChooser saveFileChooser = new JFileChooser();
             int status = saveFileChooser.showSaveDialog(null);
@@ -139,15 +540,11 @@ class ActionController {
                     return;
                 }
 
-		        //Writes to the file
-                JOptionPane.showMessageDialog(null, fileToSave.getName());
-                FileWriter writer = new FileWriter(fileToSave); //FileWriter object to write to the newly created file
-                textEditor.getMainTextArea().write(writer); //Gets the text in the mainTextArea component and writes it to the newly created file
+		        //Writes the text in the mainTextArea component to the newly created file in the background
+                startSave(fileToSave);
                 textEditor.setTitle(fileToSave.getName());
-                JOptionPane.showMessageDialog(null, "File saved as: " + fileToSave.getName());
                 openedFile = fileToSave;
             }
-            changesMade = false;
 
         }catch(Exception e){e.printStackTrace();}
     }
@@ -171,8 +568,11 @@ class ActionController {
             }
 
             if(action == SaveCheck.EXIT_ON_WINDOW || action == SaveCheck.EXIT_ON_MENU) {
+
+                //Not exiting if the save failed, so the changes are not lost
+                if(!finishPendingSave()) return;
                 if(textEditor.getInstanceNum() != 0) textEditor.dispose();
-                System.exit(0);
+                exitProgram();
             }
         }
         else{
@@ -181,8 +581,9 @@ class ActionController {
 
             //If the user clicks exit on the window
             if(action == SaveCheck.EXIT_ON_WINDOW || action == SaveCheck.EXIT_ON_MENU) {
+                journal.discard(); //The changes were deliberately dropped, so are not recovered either
                 if(textEditor.getInstanceNum() != 0) textEditor.dispose();
-                else System.exit(0);
+                else exitProgram();
             }
         }
     }
@@ -193,7 +594,7 @@ class ActionController {
     void newDocument(){
 
         //Checks if the user wants to save unsaved changes
-        if(changesMade) {
+        if(hasChangesMade()) {
             saveCheck(SaveCheck.NEW_FILE);
         }
 
@@ -204,9 +605,14 @@ class ActionController {
         }
 
         //Resetting some states
+        stopLoading();
+        closeViewer();
         openedFile = null;
-        textEditor.getMainTextArea().setText("");
-        changesMade = false;
+        savedFile = null;
+        encoding = FileEncoding.DEFAULT;
+        setEditable(true);
+        setDocument(new PieceTableDocument());
+        journal.startEmpty(null, textEditor.getMainTextArea().getDocument());
         textEditor.setTitle("TextEditor");
     }
 
@@ -214,12 +620,12 @@ class ActionController {
      * Forces a hard exit -Called when the Exit menu item in the File menu is clicked
      */
      void exit(){
-        if(changesMade)saveCheck(SaveCheck.EXIT_ON_MENU);
+        if(hasChangesMade())saveCheck(SaveCheck.EXIT_ON_MENU);
 
         //Exits the program if the last TextEditor instance existing is to be closed
-        if(textEditor.getInstanceList().size() - 1 <= 0) System.exit(0);
+        if(textEditor.getContext().getWindowCount() <= 1) exitProgram();
         else{
-            textEditor.removeInstanceFromList(textEditor.getInstanceNum());
+            textEditor.getContext().removeWindow(textEditor);
             textEditor.dispose();
         }
     }
@@ -282,12 +688,38 @@ class ActionController {
         textEditor.getMainTextArea().setLineWrap(isWrapping);
     }
 
+    /**
+     * Toggles the highlighting of points, sub points, dates and headings
+     */
+     void setOutlineHighlighting(){
+        isHighlightingOutline = !isHighlightingOutline;
+        textEditor.setOutlineHighlighting(isHighlightingOutline);
+    }
+
+    /**
+     * Toggles the underlining of misspelt words
+     */
+     void setSpellChecking(){
+        isSpellChecking = !isSpellChecking;
+        textEditor.setSpellChecking(isSpellChecking);
+    }
+
+    /**
+     * Turns spell checking back off when the dictionary cannot be loaded
+     */
+     void spellCheckFailed(){
+        if(!isSpellChecking) return;
+        setSpellChecking();
+        textEditor.getMenuItemsMap().get("Spell Check").getCheckBoxMenuItem().setSelected(false);
+        if(textEditor.isDisplayable()) JOptionPane.showMessageDialog(null, "The spelling dictionary could not be loaded - Set spell-dictionary in config.properties to a word list");
+    }
+
     /**
      * Method that copies text and removes it from the mainTextArea component
      */
      void cut(){
         String textToCut = textEditor.getMainTextArea().getSelectedText();
-        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard(); //Clipboard to store the selected text
+        Clipboard clipboard = textEditor.getClipboard(); //Clipboard to store the selected text
         StringSelection selectedText = new StringSelection(textToCut); //StringSelection object to store the selected text into the clipboard object
         clipboard.setContents(selectedText, selectedText);
         textEditor.getMainTextArea().replaceSelection(""); //Removing selected text from the text area
@@ -298,9 +730,10 @@ class ActionController {
      * the mainTextArea component
      */
      void paste() {
+        if(!canEdit()) return;
         try {
             JTextArea mainTextArea = textEditor.getMainTextArea();
-            String textToPaste = (String) Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+            String textToPaste = (String) textEditor.getClipboard().getData(DataFlavor.stringFlavor);
             mainTextArea.insert(textToPaste, mainTextArea.getCaretPosition()); //Inserts the text in the clipboard in the current position of the caret
         }catch(Exception e){e.printStackTrace();}
     }
@@ -310,7 +743,7 @@ class ActionController {
      */
      void copy(){
         StringSelection textToCopy = new StringSelection(textEditor.getMainTextArea().getSelectedText());
-        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        Clipboard clipboard = textEditor.getClipboard();
         clipboard.setContents(textToCopy, textToCopy);
     }
 
@@ -318,20 +751,100 @@ class ActionController {
      * Undo's most recent action
      */
      void undo(){
-        if(textEditor.getUndoManager().canUndo()) textEditor.getUndoManager().undo();
+        editHistory.undo();
     }
 
     /**
      * Redo's an undone action
      */
      void redo(){
-        if(textEditor.getUndoManager().canRedo()) textEditor.getUndoManager().redo();
+        editHistory.redo();
+    }
+
+    /**
+     * Shows the find window
+     */
+     void find(){
+        getFindWindow().showFind(false);
+    }
+
+    /**
+     * Selects the next match of what was last searched for, or shows the find window if nothing has been yet
+     */
+     void findNext(){
+        getFindWindow().findNext();
+    }
+
+    /**
+     * Shows the find window ready to replace matches
+     */
+     void replace(){
+        getFindWindow().showFind(true);
+    }
+
+    /**
+     * Shows the window for searching every file under a directory
+     */
+     void findInFiles(){
+        if(findInFilesWindow == null) findInFilesWindow = new FindInFilesWindow(textEditor);
+        findInFilesWindow.showFindInFiles(openedFile != null ? openedFile.getAbsoluteFile().getParentFile() : null);
+    }
+
+    private FindWindow getFindWindow(){
+        if(findWindow == null) findWindow = new FindWindow(textEditor, this);
+        return findWindow;
+    }
+
+    /**
+     * Replaces a range of the document in one edit, which is undone as a whole
+     * @param start Offset of the start of the range
+     * @param end Offset just after the end of the range
+     * @param text What replaces the range
+     */
+     void replaceText(int start, int end, String text){
+        editHistory.beginCompound();
+        try{
+            ((AbstractDocument) textEditor.getMainTextArea().getDocument()).replace(start, end - start, text, null);
+        }catch(BadLocationException e){
+            e.printStackTrace();
+        }finally{
+            editHistory.endCompound();
+        }
+    }
+
+    /**
+     * Asks the user for a line number and moves the caret to the start of that line, or scrolls the viewer to it in
+     * viewer mode
+     */
+     void goToLine(){
+        long lineCount = viewer != null ? viewer.getMappedFile().getLineCount() : textEditor.getLineIndex().getLineCount();
+        String input = JOptionPane.showInputDialog(null, "Line number (1 - " + lineCount + "):", "Go To Line", JOptionPane.PLAIN_MESSAGE);
+        if(input == null) return; //User cancelled
+
+        long line;
+        try{
+            line = Long.parseLong(input.trim());
+        }catch(NumberFormatException e){
+            line = 0;
+        }
+        if(line < 1 || line > lineCount){
+            JOptionPane.showMessageDialog(null, "Please enter a line number between 1 and " + lineCount + "!");
+            return;
+        }
+
+        if(viewer != null) viewer.scrollToLine(line - 1);
+        else{
+            JTextArea mainTextArea = textEditor.getMainTextArea();
+            mainTextArea.setCaretPosition(textEditor.getLineIndex().getLineStartOffset((int) line - 1));
+            mainTextArea.requestFocusInWindow();
+        }
     }
 
     /**
      * Creates a new line and creates 4 spaces and a hyphen - Acts as a bullet point generator - Generated at caret position
      */
      void insertPoint(){
+        if(!canEdit()) return;
         textEditor.getMainTextArea().insert("\n" + "    " + "-", textEditor.getMainTextArea().getCaretPosition());
     }
 
@@ -339,6 +852,7 @@ class ActionController {
      * Serves the purpose of being a sub point for a created point at the caret position
      */
      void insertSubPoint(){
+        if(!canEdit()) return;
         textEditor.getMainTextArea().insert("\n" + "    " + "    " + "-", textEditor.getMainTextArea().getCaretPosition());
     }
 
@@ -346,6 +860,7 @@ class ActionController {
      * Inserts the current date and day of the week into the text area
      */
      void insertDate(){
+        if(!canEdit()) return;
 
         //Getting current date in dd/mm/yyyy format
         Date date = new Date();
@@ -374,11 +889,21 @@ class ActionController {
         textEditor.getMainTextArea().insert(dayOfTheWeek + " - " + formattedDate, textEditor.getMainTextArea().getCaretPosition());
     }
 
-    //Getters
-     boolean hasChangesMade(){return changesMade;}
-     boolean openedFileExists(){return openedFile != null;}
+    /**
+     * Sets how much memory the undo history may use before old edits are compressed
+     * @param bytes The limit in bytes
+     */
+     void setUndoMemoryLimit(long bytes){
+        editHistory.setMemoryLimit(bytes);
+    }
 
-    //Setters
-     void setChangesMadeTrue(){changesMade = true;}
-     void setChangesMadeFalse(){changesMade = false;}
+    /**
+     * Checks if the document has changes that have not been saved - A new document that is still empty, or a file
+     * that is still being loaded, has nothing worth saving
+     * @return True if there are unsaved changes
+     */
+     boolean hasChangesMade(){
+        if(!changeTracker.hasChanges() || fileLoader != null) return false;
+        return openedFile != null || textEditor.getMainTextArea().getDocument().getLength() > 0;
+    }
 }
@@ -0,0 +1,87 @@
+package texteditor;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * Keeps track of whether a document has changed since it was last saved, without looking at its text.
+ *
+ * Every edit moves the document on to a new generation, and saving remembers the generation that was saved. Undoing
+ * an edit puts the document back to the generation it had before the edit rather than on to a new one, which means
+ * undoing back to the saved text is recognised as having no changes. Each edit costs the same however large the
+ * document is
+ */
+class ChangeTracker implements DocumentListener {
+    private static final long NEVER_SAVED = -1;
+
+    private long generation = 0;
+    private long previousGeneration = 0; //Generation before the last edit
+    private long lastGeneration = 0; //Newest generation handed out, so generations are never reused after an undo
+    private long savedGeneration = 0;
+    private boolean restoring = false; //True while an undo or redo is putting back an earlier generation
+
+    /**
+     * Checks if the document has changed since it was last saved
+     * @return True if there are unsaved changes
+     */
+    boolean hasChanges(){
+        return generation != savedGeneration;
+    }
+
+    /**
+     * Makes the current text of the document the saved one
+     */
+    void markSaved(){
+        savedGeneration = generation;
+    }
+
+    /**
+     * Marks the document as changed until it is next saved, even if edits are undone - Used when the text on disk is
+     * not known to match any generation, such as after a failed save
+     */
+    void markUnsaved(){
+        savedGeneration = NEVER_SAVED;
+    }
+
+    /**
+     * Stops or starts counting edits as new generations - Edits are not counted while an undo or redo is changing
+     * the document
+     * @param restoring True while an earlier generation is being put back
+     */
+    void setRestoring(boolean restoring){
+        this.restoring = restoring;
+    }
+
+    /**
+     * Puts back a generation the document had before, once an undo or redo has restored its text
+     * @param generation The generation
+     */
+    void restoreGeneration(long generation){
+        this.generation = generation;
+    }
+
+    //Getters
+    long getGeneration(){return generation;}
+    long getPreviousGeneration(){return previousGeneration;}
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        nextGeneration();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e){
+        nextGeneration();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){
+        //Attribute changes do not change the text
+    }
+
+    private void nextGeneration(){
+        if(restoring) return;
+        previousGeneration = generation;
+        generation = ++lastGeneration;
+    }
+}
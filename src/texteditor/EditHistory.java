@@ -0,0 +1,441 @@
+package texteditor;
+
+import texteditor.document.PieceTableDocument;
+import texteditor.document.TextSnapshot;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.event.UndoableEditListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Segment;
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Undo and redo history of a document.
+ *
+ * Each edit is recorded as where it inserted or removed text rather than as one of Swing's undoable edits, and runs
+ * of edits are merged into groups that are undone together: typing or deleting up to the start of the next word or a
+ * pause, and removing a selection along with whatever replaced it. A word typed one key at a time is then a single
+ * record of the word.
+ *
+ * A record only holds on to its text while the text is out of the document - the removed text of a removal, or the
+ * inserted text of an insert that has been undone - and then as the pieces of the document that held it rather than
+ * a copy, so removing or undoing a large amount of text copies none of it. Only that text counts towards the memory
+ * limit. Once the groups take up more than the limit the oldest are compressed, the newest too once it has been
+ * closed, and once the compressed groups take up more than the limit as well the oldest of those are forgotten, so
+ * the history stays within about twice the limit however long the editing session is. A group bigger than the limit
+ * on its own is forgotten rather than compressed, along with everything older, which could only be undone after it
+ */
+class EditHistory implements UndoableEditListener {
+    static final long DEFAULT_MEMORY_LIMIT = 4 << 20;
+
+    private static final long PAUSE_MILLIS = 1000; //An edit after a pause this long starts a new group
+    private static final int RECORD_OVERHEAD = 48, GROUP_OVERHEAD = 96; //Rough size in bytes of the objects holding the text
+    private static final int PIECE_OVERHEAD = 16; //Rough size in bytes of each piece of text held
+
+    private final ChangeTracker changeTracker;
+    private final Deque<Group> undoGroups = new ArrayDeque<>(); //Oldest first
+    private final Deque<Group> compressedGroups = new ArrayDeque<>(); //Groups older than undoGroups, oldest first
+    private final Deque<Group> redoGroups = new ArrayDeque<>(); //Next to redo first
+    private PieceTableDocument document;
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+    private long groupBytes, compressedBytes;
+    private boolean applying = false; //True while an undo or redo is changing the document
+    private boolean closed = true; //True if the newest group cannot take any more edits
+    private boolean compound = false; //True while every edit goes into the same group
+    private Runnable historyChanged; //Run whenever what can be undone or redone may have changed
+    private final Segment segment = new Segment();
+
+    /**
+     * Creates an empty history
+     * @param changeTracker Tracks the generations undoing and redoing go back to
+     */
+    EditHistory(ChangeTracker changeTracker){
+        this.changeTracker = changeTracker;
+    }
+
+    /**
+     * Forgets everything recorded and starts recording the edits made to a document
+     * @param document The document
+     */
+    void setDocument(PieceTableDocument document){
+        this.document = document;
+        undoGroups.clear();
+        compressedGroups.clear();
+        redoGroups.clear();
+        groupBytes = 0;
+        compressedBytes = 0;
+        closed = true;
+        changed();
+    }
+
+    /**
+     * Sets what is run whenever what can be undone or redone may have changed, such as after every edit
+     * @param historyChanged Run on the thread that changed the history
+     */
+    void setHistoryChanged(Runnable historyChanged){
+        this.historyChanged = historyChanged;
+    }
+
+    /**
+     * Sets how much memory the history may use before old groups are compressed
+     * @param memoryLimit The limit in bytes
+     */
+    void setMemoryLimit(long memoryLimit){
+        this.memoryLimit = memoryLimit;
+        trim();
+    }
+
+    /**
+     * Stops the newest group taking any more edits, so the next edit is undone on its own
+     */
+    void closeGroup(){
+        closed = true;
+        trim();
+    }
+
+    /**
+     * Starts a group that takes every edit made until endCompound is called, so they are undone together
+     */
+    void beginCompound(){
+        closed = true;
+        compound = true;
+    }
+
+    /**
+     * Ends the group started by beginCompound
+     */
+    void endCompound(){
+        compound = false;
+        closed = true;
+        trim();
+    }
+
+    /**
+     * Undoes the newest group of edits, if there is one
+     */
+    void undo(){
+        Group group = undoGroups.pollLast();
+        if(group == null){
+            group = compressedGroups.pollLast();
+            if(group == null) return;
+            compressedBytes -= group.getCompressedSize();
+            group.expand();
+            groupBytes += group.size;
+        }
+
+        if(!apply(group, true)) return;
+        redoGroups.push(group);
+        closed = true;
+        changed();
+    }
+
+    /**
+     * Redoes the group of edits undone last, if there is one
+     */
+    void redo(){
+        Group group = redoGroups.poll();
+        if(group == null) return;
+        if(!apply(group, false)) return;
+        undoGroups.add(group);
+        closed = true;
+        trim();
+    }
+
+    //Getters
+    boolean canUndo(){return !undoGroups.isEmpty() || !compressedGroups.isEmpty();}
+    boolean canRedo(){return !redoGroups.isEmpty();}
+
+    /**
+     * Changes the document back to before a group or forward to after it, without recording the changes as edits
+     * @return False if the group did not fit the document, in which case the history is thrown away
+     */
+    private boolean apply(Group group, boolean undo){
+        applying = true;
+        changeTracker.setRestoring(true);
+        try{
+            if(undo) group.undo(document);
+            else group.redo(document);
+        }catch(BadLocationException e){
+            e.printStackTrace();
+            setDocument(document);
+            return false;
+        }finally{
+            applying = false;
+            changeTracker.setRestoring(false);
+        }
+        groupBytes -= group.size;
+        groupBytes += group.measure(); //Its text has swapped between the document and the records
+        changeTracker.restoreGeneration(undo ? group.before : group.after);
+        return true;
+    }
+
+    /**
+     * Records an edit made to the document - Comes from the UndoableEditListener interface
+     * @param e The undoable edit event
+     */
+    @Override
+    public void undoableEditHappened(UndoableEditEvent e){
+        if(applying || !(e.getEdit() instanceof DocumentEvent)) return;
+        DocumentEvent event = (DocumentEvent) e.getEdit();
+        boolean insert = event.getType() == DocumentEvent.EventType.INSERT;
+        int offset = event.getOffset(), length = event.getLength();
+        TextSnapshot removed = insert ? null : document.getRemovedText(); //Inserted text stays in the document, so is not held
+        if((!insert && removed == null) || event.getType() == DocumentEvent.EventType.CHANGE){
+            setDocument(document); //The history no longer matches the document
+            return;
+        }
+
+        //Anything undone can no longer be redone once something else changes
+        for(Group group : redoGroups) groupBytes -= group.size;
+        redoGroups.clear();
+
+        long time = System.currentTimeMillis();
+        Group group = undoGroups.peekLast();
+        char c = length != 1 ? 0 : insert ? charAt(offset) : removed.charAt(0);
+        if(closed || group == null || (!compound && !group.takes(insert, offset, length, c, charAt(offset - 1), time))){
+            group = new Group(changeTracker.getPreviousGeneration());
+            undoGroups.add(group);
+            groupBytes += group.size;
+        }
+        groupBytes += group.add(insert, offset, length, removed, time);
+        group.after = changeTracker.getGeneration();
+
+        //Pasted text is a group of its own, so typing after it is undone separately, and a group already over the
+        //memory limit takes no more so it can be trimmed
+        closed = !compound && ((insert && length > 1) || group.size > memoryLimit);
+        trim();
+    }
+
+    /**
+     * Returns a char of the document, or a space outside of it
+     */
+    private char charAt(int offset){
+        if(offset < 0 || offset >= document.getLength()) return ' ';
+        try{
+            document.getText(offset, 1, segment);
+            return segment.array[segment.offset];
+        }catch(BadLocationException e){
+            return ' ';
+        }
+    }
+
+    /**
+     * Compresses the oldest groups until the rest fit in the memory limit, then forgets the oldest compressed
+     * groups until they fit too - The newest group is only compressed once it is closed, since until then it may
+     * still take edits
+     */
+    private void trim(){
+        while(groupBytes > memoryLimit && (undoGroups.size() > 1 || (closed && !undoGroups.isEmpty()))){
+            Group group = undoGroups.poll();
+            groupBytes -= group.size;
+            if(group.size > memoryLimit){
+                //Too big to be worth compressing, and nothing older can be undone without it
+                compressedGroups.clear();
+                compressedBytes = 0;
+                continue;
+            }
+            group.compress();
+            compressedGroups.add(group);
+            compressedBytes += group.getCompressedSize();
+        }
+        while(compressedBytes > memoryLimit && !compressedGroups.isEmpty()){
+            compressedBytes -= compressedGroups.poll().getCompressedSize();
+        }
+        changed(); //Run after every edit and redo, as well as after groups are forgotten
+    }
+
+    private void changed(){
+        if(historyChanged != null) historyChanged.run();
+    }
+
+    private static boolean startsWord(char previous, char next){
+        return Character.isWhitespace(previous) && !Character.isWhitespace(next);
+    }
+
+    /**
+     * Edits that are undone and redone together
+     */
+    private static class Group {
+        private List<Record> records = new ArrayList<>(2); //Null while compressed
+        private byte[] compressed;
+        private final long before; //Generation of the document before the group
+        private long after; //Generation of the document after the group
+        private long lastTime;
+        private long size = GROUP_OVERHEAD; //Rough number of bytes the group takes up while not compressed
+
+        Group(long before){
+            this.before = before;
+        }
+
+        /**
+         * Checks if an edit carries on from the last one in this group
+         * @param c The char inserted or removed, if the edit was of a single char
+         * @param previous The char before the edit in the document
+         */
+        boolean takes(boolean insert, int offset, int length, char c, char previous, long time){
+            if(time - lastTime > PAUSE_MILLIS) return false;
+            Record last = records.get(records.size() - 1);
+
+            //Text typed or pasted over a selection, or in place of a single deleted char
+            if(insert && !last.insert) return last.edits == 1 && offset == last.offset;
+
+            //Otherwise only single chars carry on, up to the start of the next word
+            if(length != 1 || last.insert != insert) return false;
+            if(insert) return offset == last.offset + last.length && !startsWord(previous, c);
+            if(offset + 1 == last.offset) return !startsWord(c, last.text.charAt(0)); //Backspace
+            return offset == last.offset && !startsWord(last.text.charAt(last.length - 1), c); //Delete
+        }
+
+        /**
+         * Adds an edit, merging it into the last record where it carries straight on from it
+         * @param removed The removed text, or null for an insert
+         * @return The number of bytes the group grew by
+         */
+        long add(boolean insert, int offset, int length, TextSnapshot removed, long time){
+            lastTime = time;
+            Record last = records.isEmpty() ? null : records.get(records.size() - 1);
+            long grown = insert ? 0 : textSize(removed);
+            if(last != null && last.insert == insert && insert && offset == last.offset + last.length){
+                last.length += length;
+            }else if(last != null && last.insert == insert && !insert && offset + length == last.offset){
+                last.text = removed.append(last.text);
+                last.offset = offset;
+                last.length += length;
+            }else if(last != null && last.insert == insert && !insert && offset == last.offset){
+                last.text = last.text.append(removed);
+                last.length += length;
+            }else{
+                records.add(new Record(insert, offset, length, removed));
+                grown += RECORD_OVERHEAD;
+                last = null;
+            }
+            if(last != null) last.edits++;
+            size += grown;
+            return grown;
+        }
+
+        /**
+         * Takes the inserted text back out and puts the removed text back in, keeping hold of whatever is taken out
+         */
+        void undo(PieceTableDocument document) throws BadLocationException {
+            for(int i = records.size() - 1; i >= 0; i--){
+                Record record = records.get(i);
+                if(record.insert) record.text = remove(document, record);
+                else{
+                    document.insert(record.offset, record.text);
+                    record.text = null;
+                }
+            }
+        }
+
+        void redo(PieceTableDocument document) throws BadLocationException {
+            for(Record record : records){
+                if(!record.insert) record.text = remove(document, record);
+                else{
+                    document.insert(record.offset, record.text);
+                    record.text = null;
+                }
+            }
+        }
+
+        private static TextSnapshot remove(PieceTableDocument document, Record record) throws BadLocationException {
+            TextSnapshot text = document.snapshot(record.offset, record.length);
+            document.remove(record.offset, record.length);
+            return text;
+        }
+
+        /**
+         * Works out the size of the group from the text its records hold
+         * @return The new size
+         */
+        long measure(){
+            size = GROUP_OVERHEAD;
+            for(Record record : records) size += RECORD_OVERHEAD + (record.text == null ? 0 : textSize(record.text));
+            return size;
+        }
+
+        private static long textSize(TextSnapshot text){
+            return 2 * text.length() + (long) PIECE_OVERHEAD * text.getSegmentCount();
+        }
+
+        /**
+         * Replaces the records with a compressed copy of them - Only done to groups that have not been undone, so
+         * inserts hold no text and only the removed text is written
+         */
+        void compress(){
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Segment segment = new Segment();
+            try(DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))){
+                out.writeInt(records.size());
+                for(Record record : records){
+                    out.writeBoolean(record.insert);
+                    out.writeInt(record.offset);
+                    out.writeInt(record.length);
+                    if(record.insert) continue;
+                    for(int i = 0; i < record.text.getSegmentCount(); i++){
+                        record.text.getSegment(i, segment);
+                        for(int j = segment.offset; j < segment.offset + segment.count; j++) out.writeChar(segment.array[j]);
+                    }
+                }
+            }catch(IOException e){
+                throw new UncheckedIOException(e); //Cannot happen when writing to memory
+            }
+            compressed = bytes.toByteArray();
+            records = null;
+        }
+
+        /**
+         * Puts the records back from the compressed copy
+         */
+        void expand(){
+            try(DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))){
+                int count = in.readInt();
+                records = new ArrayList<>(count);
+                for(int i = 0; i < count; i++){
+                    boolean insert = in.readBoolean();
+                    int offset = in.readInt();
+                    int length = in.readInt();
+                    TextSnapshot text = null;
+                    if(!insert){
+                        char[] chars = new char[length];
+                        for(int j = 0; j < length; j++) chars[j] = in.readChar();
+                        text = new TextSnapshot(chars);
+                    }
+                    records.add(new Record(insert, offset, length, text));
+                }
+            }catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+            compressed = null;
+            measure();
+        }
+
+        long getCompressedSize(){
+            return compressed.length + GROUP_OVERHEAD;
+        }
+    }
+
+    /**
+     * Text inserted or removed at one offset
+     */
+    private static class Record {
+        private final boolean insert;
+        private int offset, length;
+        private TextSnapshot text; //Only held while the text is out of the document
+        private int edits = 1; //Number of edits merged into this record
+
+        Record(boolean insert, int offset, int length, TextSnapshot text){
+            this.insert = insert;
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package texteditor;
+
+import texteditor.document.PieceTableDocument;
+import texteditor.document.TextSnapshot;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the edits made in one window, so unsaved work can be recovered after a crash.
+ *
+ * Edits are appended to an in-memory buffer on the Event Dispatch Thread, which costs about as much as the edit
+ * itself. An insert of more than LARGE_INSERT chars is kept as the pieces of the document holding it instead, and only
+ * encoded by the journal thread, a chunk at a time as it is written, so a large paste is never copied on the Event
+ * Dispatch Thread. Once a second the journal thread writes whatever has built up as batches - a length, a CRC32 and
+ * the records - and forces them to disk, so a crash loses at most the last second of typing, and a batch cut off part
+ * way through is recognised by its CRC and ignored.
+ *
+ * The journal is split into segments, each starting from a base: the file as it was on disk, or an empty text.
+ * Starting a save starts a new segment whose base is the text being saved, and the segments before it are deleted
+ * once the save has reached the disk. Until then, the older segments are still there to replay onto the old file
+ */
+class EditJournal implements DocumentListener {
+
+    //Record types
+    static final int MAGIC = 0x54454A31;
+    static final byte HEADER = 0, INSERT = 1, REMOVE = 2, BASE = 3;
+
+    //Base sizes that are not the size of a file
+    static final long EMPTY_BASE = -2, UNKNOWN_BASE = -1;
+
+    private static final int FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int LARGE_INSERT = 4096; //Chars of an insert above which it is kept as pieces
+    private static final int ENCODE_CHUNK = 1 << 16; //Chars of a large insert encoded at a time
+    private static final String SESSION = ProcessHandle.current().pid() + "-" + System.currentTimeMillis();
+    private static final AtomicInteger windowCount = new AtomicInteger();
+    private static final List<EditJournal> openJournals = new CopyOnWriteArrayList<>();
+    private static final ScheduledExecutorService journalExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "Edit journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static FileChannel sessionLockChannel; //Held while this session has journals on disk - Journal thread only
+
+    static {
+        journalExecutor.scheduleWithFixedDelay(() -> {
+            for(EditJournal journal : openJournals) journal.flush();
+        }, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private final int window = windowCount.incrementAndGet();
+    private final BooleanSupplier hasChanges;
+    private final List<Segment> segments = new ArrayList<>();
+    private final javax.swing.text.Segment text = new javax.swing.text.Segment(); //Text of a small insert - Event Dispatch Thread only
+    private Segment current; //Segment edits are recorded into - Null while nothing is being recorded
+    private int nextSegment = 0;
+
+    /**
+     * Creates a journal that records nothing until it is started
+     * @param hasChanges Checks if the window has changes that have not been saved, in which case its journal is
+     *                   kept when the program exits
+     */
+    EditJournal(BooleanSupplier hasChanges){
+        this.hasChanges = hasChanges;
+        text.setPartialReturn(true);
+        openJournals.add(this);
+    }
+
+    /**
+     * Starts a new journal on top of a file as it is on disk now, throwing away what was recorded before
+     * @param file The file the document was loaded from
+     */
+    synchronized void start(File file){
+        try{
+            begin(file, Files.size(file.toPath()), Files.getLastModifiedTime(file.toPath()).toMillis());
+        }catch(IOException e){
+            e.printStackTrace();
+            discard(); //Edits could not be replayed onto the file anyway
+        }
+    }
+
+    /**
+     * Starts a new journal on top of an empty text, recording the current text of the document as the first edit
+     * @param file The file the document will be saved to, or null if it is untitled
+     * @param document The document
+     */
+    synchronized void startEmpty(File file, Document document){
+        begin(file, EMPTY_BASE, 0);
+        recordInsert(document, 0, document.getLength());
+    }
+
+    private void begin(File file, long baseSize, long baseModified){
+        for(Segment segment : new ArrayList<>(segments)) drop(segment);
+        current = new Segment(file, baseSize, baseModified);
+        segments.add(current);
+    }
+
+    /**
+     * Starts a new segment on top of the text that is about to be saved
+     * @param file The file being saved to
+     * @return The number of the new segment, to pass to saved once the save has finished
+     */
+    synchronized int rotate(File file){
+        if(current == null) return -1;
+        current = new Segment(file, UNKNOWN_BASE, 0);
+        segments.add(current);
+        return current.number;
+    }
+
+    /**
+     * Records that the base of a segment is now safely on disk, and deletes the segments before it
+     * @param number The number returned by rotate
+     */
+    synchronized void saved(int number){
+        for(Segment segment : segments){
+            if(segment.number != number) continue;
+            try{
+                Path path = segment.file.toPath();
+                segment.setBase(Files.size(path), Files.getLastModifiedTime(path).toMillis());
+            }catch(IOException e){
+                e.printStackTrace();
+                return; //Keeping the older segments, since this one cannot be replayed
+            }
+        }
+
+        //Writing the new base out before the segments it replaces are deleted
+        journalExecutor.execute(this::flush);
+        for(Segment segment : new ArrayList<>(segments)){
+            if(segment.number < number) drop(segment);
+        }
+    }
+
+    /**
+     * Throws away everything recorded and stops recording - Called when the document is replaced or closed
+     */
+    synchronized void discard(){
+        for(Segment segment : new ArrayList<>(segments)) drop(segment);
+        current = null;
+    }
+
+    /**
+     * Writes everything recorded so far to disk and waits for it to get there
+     */
+    void flushNow(){
+        try{
+            journalExecutor.submit(this::flush).get();
+        }catch(InterruptedException | ExecutionException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Throws away everything recorded and stops keeping the journal - Called once the window is closed
+     */
+    void close(){
+        discard();
+        openJournals.remove(this);
+    }
+
+    /**
+     * Discards the journals of the windows without unsaved changes, since there is nothing in them to recover, writes
+     * out the journals of the windows with changes so they are recovered the next time the editor starts, and
+     * releases this session's lock - Called when the program exits normally
+     */
+    static void discardAll(){
+        for(EditJournal journal : openJournals){
+            if(!journal.hasChanges.getAsBoolean()) journal.discard();
+        }
+        try{
+            journalExecutor.submit(() -> {
+                for(EditJournal journal : openJournals) journal.flush();
+                try{
+                    if(sessionLockChannel == null) return;
+                    sessionLockChannel.close();
+                    sessionLockChannel = null;
+                    Files.deleteIfExists(lockFile(SESSION));
+                }catch(IOException e){
+                    e.printStackTrace();
+                }
+            }).get();
+        }catch(InterruptedException | ExecutionException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        if(current == null) return;
+        recordInsert(e.getDocument(), e.getOffset(), e.getLength());
+    }
+
+    @Override
+    public synchronized void removeUpdate(DocumentEvent e){
+        if(current == null) return;
+        try{
+            current.records.writeByte(REMOVE);
+            current.records.writeInt(e.getOffset());
+            current.records.writeInt(e.getLength());
+        }catch(IOException exception){
+            exception.printStackTrace(); //Cannot happen when writing to memory
+        }
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){
+        //Attribute changes are not journalled
+    }
+
+    /**
+     * Records the text of a document in a range as inserted - A large insert keeps the pieces holding it, and a small
+     * one is encoded straight from the document, so neither copies the text into a String first
+     */
+    private synchronized void recordInsert(Document document, int offset, int length){
+        if(length == 0) return;
+        try{
+            if(length > LARGE_INSERT && document instanceof PieceTableDocument){
+                current.addLargeInsert(offset, ((PieceTableDocument) document).snapshot(offset, length));
+                return;
+            }
+            current.records.writeByte(INSERT);
+            current.records.writeInt(offset);
+            current.records.writeInt(length);
+            for(int from = offset, end = offset + length; from < end; from += text.count){
+                document.getText(from, end - from, text);
+                for(int i = text.offset; i < text.offset + text.count; i++) current.records.writeChar(text.array[i]);
+            }
+        }catch(BadLocationException | IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Removes a segment and queues its file for deletion
+     */
+    private void drop(Segment segment){
+        segments.remove(segment);
+        journalExecutor.execute(() -> {
+            try{
+                if(segment.channel != null) segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Writes the records built up since the last flush to disk - Runs on the journal thread
+     */
+    private void flush(){
+        List<Segment> toFlush;
+        synchronized(this){
+            toFlush = new ArrayList<>(segments);
+        }
+        for(Segment segment : toFlush){
+            byte[] header = null;
+            List<Object> batches;
+            synchronized(this){
+                if(!segment.hasPending()) continue;
+                if(!segment.headerWritten){
+                    header = segment.header();
+                    segment.headerWritten = true;
+                }
+                batches = segment.takePending();
+            }
+            try{
+                if(segment.channel == null){
+                    lockSession();
+                    segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                if(header != null) writeBatch(segment.channel, header);
+                for(Object batch : batches){
+                    if(batch instanceof byte[]) writeBatch(segment.channel, (byte[]) batch);
+                    else writeLargeInsert(segment.channel, (LargeInsert) batch);
+                }
+                segment.channel.force(false);
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void writeBatch(FileChannel channel, byte[] batch) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(batch);
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt(batch.length).putInt((int) crc.getValue()).flip();
+        writeFully(channel, frame, ByteBuffer.wrap(batch));
+    }
+
+    /**
+     * Writes a large insert as a batch of its own, encoding its text twice a chunk at a time - once for the CRC that
+     * goes in front of it and once to write it - so it never has to be held encoded in full
+     */
+    private static void writeLargeInsert(FileChannel channel, LargeInsert insert) throws IOException {
+        long length = insert.text.length();
+        ByteBuffer record = ByteBuffer.allocate(9);
+        record.put(INSERT).putInt(insert.offset).putInt((int) length).flip();
+        ByteBuffer chunk = ByteBuffer.allocate(ENCODE_CHUNK * 2);
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        encode(insert.text, chunk, crc, null);
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt((int) (record.remaining() + 2 * length)).putInt((int) crc.getValue()).flip();
+        writeFully(channel, frame, record);
+        encode(insert.text, chunk, null, channel);
+    }
+
+    /**
+     * Encodes text as UTF-16 a chunk at a time, adding each chunk to a CRC or writing it out
+     */
+    private static void encode(TextSnapshot text, ByteBuffer chunk, CRC32 crc, FileChannel channel) throws IOException {
+        javax.swing.text.Segment segment = new javax.swing.text.Segment();
+        for(int i = 0; i < text.getSegmentCount(); i++){
+            text.getSegment(i, segment);
+            for(int from = 0; from < segment.count; from += ENCODE_CHUNK){
+                int count = Math.min(ENCODE_CHUNK, segment.count - from);
+                chunk.clear();
+                chunk.asCharBuffer().put(segment.array, segment.offset + from, count);
+                chunk.limit(2 * count);
+                if(crc != null) crc.update(chunk);
+                else writeFully(channel, chunk);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        for(ByteBuffer buffer : buffers){
+            while(buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     * Locks a file for as long as this session has journals on disk, so that another instance of the editor does
+     * not mistake them for journals left behind by a crash
+     */
+    private static void lockSession() throws IOException {
+        if(sessionLockChannel != null) return;
+        Files.createDirectories(journalDirectory());
+        sessionLockChannel = FileChannel.open(lockFile(SESSION), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        sessionLockChannel.tryLock();
+    }
+
+    /**
+     * Returns the directory journals are kept in
+     * @return The journal directory
+     */
+    static Path journalDirectory(){
+        return Paths.get(System.getProperty("user.home"), ".texteditor", "journal");
+    }
+
+    /**
+     * Returns the lock file of a session
+     * @param session The session
+     * @return Path of the lock file
+     */
+    static Path lockFile(String session){
+        return journalDirectory().resolve(session + ".lock");
+    }
+
+    /**
+     * Checks if a session belongs to this instance of the editor
+     * @param session The session
+     * @return True if it is this session
+     */
+    static boolean isCurrentSession(String session){
+        return SESSION.equals(session);
+    }
+
+    /**
+     * One segment of the journal and the file it is written to
+     */
+    private class Segment {
+        private final int number = nextSegment++;
+        private final Path path = journalDirectory().resolve(SESSION + "-" + window + "-" + number + ".journal");
+        private final File file;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(); //Records since the last batch was ended
+        private DataOutputStream records = new DataOutputStream(buffer);
+        private final List<Object> pending = new ArrayList<>(); //Batches of records and large inserts waiting to be written
+        private long baseSize, baseModified;
+        private boolean headerWritten = false;
+        private FileChannel channel; //Journal thread only
+
+        Segment(File file, long baseSize, long baseModified){
+            this.file = file;
+            this.baseSize = baseSize;
+            this.baseModified = baseModified;
+        }
+
+        /**
+         * Records the size and modification time the base file has once it is saved - Written into the header if
+         * the header has not gone out yet, or as a record of its own otherwise
+         */
+        void setBase(long size, long modified){
+            if(!headerWritten){
+                baseSize = size;
+                baseModified = modified;
+                return;
+            }
+            try{
+                records.writeByte(BASE);
+                records.writeLong(size);
+                records.writeLong(modified);
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+
+        void addLargeInsert(int offset, TextSnapshot text){
+            endBatch();
+            pending.add(new LargeInsert(offset, text));
+        }
+
+        boolean hasPending(){
+            return buffer.size() > 0 || !pending.isEmpty();
+        }
+
+        /**
+         * Hands over the batches waiting to be written, in order
+         */
+        List<Object> takePending(){
+            endBatch();
+            List<Object> batches = new ArrayList<>(pending);
+            pending.clear();
+            return batches;
+        }
+
+        /**
+         * Ends the batch of records being built, starting a new buffer so a large one is not kept
+         */
+        private void endBatch(){
+            if(buffer.size() == 0) return;
+            pending.add(buffer.toByteArray());
+            buffer = new ByteArrayOutputStream();
+            records = new DataOutputStream(buffer);
+        }
+
+        byte[] header(){
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            try(DataOutputStream out = new DataOutputStream(header)){
+                out.writeInt(MAGIC);
+                out.writeByte(HEADER);
+                out.writeUTF(file == null ? "" : file.getAbsolutePath());
+                out.writeLong(baseSize);
+                out.writeLong(baseModified);
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+            return header.toByteArray();
+        }
+    }
+
+    /**
+     * An insert kept as the pieces holding its text until the journal thread writes it
+     */
+    private static class LargeInsert {
+        private final int offset;
+        private final TextSnapshot text;
+
+        LargeInsert(int offset, TextSnapshot text){
+            this.offset = offset;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package texteditor;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What every window of the program shares - The settings in config.properties, the default font, the installed
+ * fonts, the menus and their shortcuts, and the list of open windows. The first window sets all of it up, so opening
+ * another window only builds that window's own components, without reading the config file or setting the look and
+ * feel again
+ */
+class EditorContext {
+    private static final String CONFIG_FILE = "config.properties";
+    private static final String FALLBACK_FONT = Font.MONOSPACED;
+    private static final int FALLBACK_FONT_SIZE = 12;
+    private static EditorContext context;
+
+    private final Properties config = new Properties();
+    private MenuTemplate menuTemplate; //Made when the first window builds its menus, since shortcuts need a display
+    private final FontCatalog fontCatalog = new FontCatalog(); //Starts listing the fonts straight away
+    private final AtomicInteger windowIds = new AtomicInteger();
+    private final List<TextEditor> windows = new CopyOnWriteArrayList<>();
+    private Font defaultFont; //Made from the config when first asked for
+
+    private EditorContext(){
+
+        //Making the UI use the OS aesthetics
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        }catch (IllegalAccessException | InstantiationException | UnsupportedLookAndFeelException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+
+        try(InputStream inputStream = new FileInputStream(CONFIG_FILE)){
+            config.load(inputStream);
+        }catch(IOException e){e.printStackTrace();}
+
+        //Spell checking shares one dictionary between the windows
+        String spellDictionary = config.getProperty("spell-dictionary");
+        if(spellDictionary != null) SpellChecker.setDictionaryPath(spellDictionary.trim());
+        StartupTimer.mark("context ready");
+    }
+
+    /**
+     * Returns the context of the program, setting it up the first time
+     * @return The context
+     */
+    static synchronized EditorContext get(){
+        if(context == null) context = new EditorContext();
+        return context;
+    }
+
+    /**
+     * Returns a setting from config.properties, as it was when the program started or last saved
+     * @param key Name of the setting
+     * @return The value, or null if it is not set
+     */
+    String getSetting(String key){
+        return config.getProperty(key);
+    }
+
+    /**
+     * Changes some settings and writes all of them back to config.properties
+     * @param settings The settings to change
+     * @throws IOException If the config file could not be written
+     */
+    synchronized void saveSettings(Map<String, String> settings) throws IOException {
+        config.putAll(settings);
+        defaultFont = null; //The font settings may have changed
+        try(OutputStream outputStream = new FileOutputStream(CONFIG_FILE)){
+            config.store(outputStream, null);
+        }
+    }
+
+    /**
+     * Returns the font new windows start with, from the font-style and font-size settings
+     * @return The default font
+     */
+    synchronized Font getDefaultFont(){
+        if(defaultFont == null){
+            String fontStyle = config.getProperty("font-style", FALLBACK_FONT);
+            int fontSize = FALLBACK_FONT_SIZE;
+            try{
+                fontSize = Integer.parseInt(config.getProperty("font-size", "").trim());
+            }catch(NumberFormatException e){
+                e.printStackTrace();
+            }
+            defaultFont = new Font(fontStyle, TextEditor.fontStyleType(fontStyle), fontSize);
+        }
+        return defaultFont;
+    }
+
+    /**
+     * Returns the menus every window is built with
+     * @return The menu template
+     */
+    synchronized MenuTemplate getMenuTemplate(){
+        if(menuTemplate == null) menuTemplate = new MenuTemplate();
+        return menuTemplate;
+    }
+
+    /**
+     * Returns an ID for a new window - IDs are never reused, and the first window gets 0
+     * @return The ID
+     */
+    int nextWindowId(){
+        return windowIds.getAndIncrement();
+    }
+
+    /**
+     * Adds a window to the list of open windows
+     * @param window The window
+     */
+    void addWindow(TextEditor window){
+        windows.add(window);
+    }
+
+    /**
+     * Removes a window from the list of open windows - Does nothing if it has already been removed
+     * @param window The window
+     */
+    void removeWindow(EditorWindow window){
+        windows.remove(window);
+    }
+
+    //Getters
+    FontCatalog getFontCatalog(){return fontCatalog;}
+    List<TextEditor> getWindows(){return Collections.unmodifiableList(windows);}
+    int getWindowCount(){return windows.size();}
+}
@@ -0,0 +1,139 @@
+package texteditor;
+
+import texteditor.document.LineIndex;
+import texteditor.document.OutlineLexer;
+import texteditor.document.PieceTableDocument;
+import texteditor.document.WordCounter;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * The main text area of a window and everything kept in step with its document - The line index, the word count,
+ * the status bar showing them, outline highlighting and spell checking. None of it needs a frame, so a TextEditor
+ * adds the scroll pane and status bar to itself, and a window without a screen edits through the same components
+ */
+class EditorPane {
+    private static final int TEXT_AREA_MARGIN = 5;
+
+    private final JTextArea textArea;
+    private final JScrollPane scrollPane;
+    private final StatusBar statusBar;
+    private LineIndex lineIndex; //Line starts of the document in the text area
+    private WordCounter wordCounter; //Words of the document in the text area
+    private OutlineTextAreaUI outlineUI; //Set while outline highlighting is on
+    private OutlineLexer outlineLexer;
+    private SpellChecker spellChecker; //Set while spell checking is on
+    private Runnable spellCheckFailed;
+
+    /**
+     * Creates an EditorPane showing an empty document
+     * @param font Font of the text area
+     */
+    EditorPane(Font font){
+        textArea = new JTextArea(new PieceTableDocument());
+        statusBar = new StatusBar();
+        wordCounter = new WordCounter((PieceTableDocument) textArea.getDocument(), this::updateStatistics);
+        lineIndex = new LineIndex(textArea.getDocument()); //Created after the text area so it hears of edits before the caret
+        scrollPane = new JScrollPane(textArea);
+
+        textArea.setFocusable(true);
+        textArea.addCaretListener(e -> updateCaretStatus());
+        textArea.setWrapStyleWord(true);
+        textArea.setFont(font);
+        textArea.setMargin(new Insets(TEXT_AREA_MARGIN, TEXT_AREA_MARGIN, TEXT_AREA_MARGIN, TEXT_AREA_MARGIN));
+        scrollPane.setBackground(Color.white);
+        scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+    }
+
+    /**
+     * Sets what is run when spell checking is turned on but the dictionary cannot be loaded
+     * @param spellCheckFailed Run on the event dispatch thread
+     */
+    void setSpellCheckFailed(Runnable spellCheckFailed){
+        this.spellCheckFailed = spellCheckFailed;
+    }
+
+    /**
+     * Replaces the document shown in the text area
+     * @param document The new document to display
+     */
+    void setDocument(PieceTableDocument document){
+        textArea.getDocument().removeDocumentListener(lineIndex);
+        textArea.getDocument().removeDocumentListener(wordCounter);
+        textArea.getDocument().removeDocumentListener(outlineLexer);
+        textArea.setDocument(document);
+        wordCounter = new WordCounter(document, this::updateStatistics);
+        lineIndex = new LineIndex(document);
+        if(outlineUI != null) startOutlineLexer();
+        updateCaretStatus();
+        updateStatistics();
+    }
+
+    /**
+     * Turns highlighting of the outline markup on or off - The text area gets its own UI while it is on, and goes
+     * back to the look and feel's UI when it is turned off
+     * @param highlighting True to turn highlighting on
+     */
+    void setOutlineHighlighting(boolean highlighting){
+        if(highlighting == (outlineUI != null)) return;
+        if(highlighting){
+            outlineUI = new OutlineTextAreaUI();
+            textArea.setUI(outlineUI);
+            startOutlineLexer();
+        }else{
+            textArea.getDocument().removeDocumentListener(outlineLexer);
+            outlineLexer = null;
+            outlineUI = null;
+            textArea.updateUI();
+        }
+    }
+
+    /**
+     * Turns underlining of misspelt words on or off
+     * @param checking True to turn spell checking on
+     */
+    void setSpellChecking(boolean checking){
+        if(checking == (spellChecker != null)) return;
+        if(checking) spellChecker = new SpellChecker(textArea, scrollPane.getViewport(), spellCheckFailed);
+        else{
+            spellChecker.stop();
+            spellChecker = null;
+        }
+    }
+
+    /**
+     * Lexes the document in the text area for the outline UI
+     */
+    private void startOutlineLexer(){
+        outlineLexer = new OutlineLexer(textArea.getDocument(), outlineUI::repaintLines);
+        outlineUI.setLexer(outlineLexer);
+    }
+
+    /**
+     * Shows the line and column of the caret, and the size of the selection, in the status bar
+     */
+    private void updateCaretStatus(){
+        int caretPosition = textArea.getCaretPosition();
+        int line = lineIndex.getLineOfOffset(caretPosition);
+        statusBar.setCaretPosition(line + 1, caretPosition - lineIndex.getLineStartOffset(line) + 1);
+        int selectionStart = textArea.getSelectionStart(), selectionEnd = textArea.getSelectionEnd();
+        int selectedLines = lineIndex.getLineOfOffset(selectionEnd) - lineIndex.getLineOfOffset(selectionStart) + 1;
+        statusBar.setSelection(selectionEnd - selectionStart, selectedLines);
+    }
+
+    /**
+     * Shows the word, char and line counts of the document in the status bar - Called by the WordCounter after each
+     * edit, by which time the LineIndex has been updated too
+     */
+    private void updateStatistics(){
+        statusBar.setCounts(wordCounter.getWordCount(), textArea.getDocument().getLength(), lineIndex.getLineCount());
+    }
+
+    //Getters
+    JTextArea getTextArea(){return textArea;}
+    JScrollPane getScrollPane(){return scrollPane;}
+    StatusBar getStatusBar(){return statusBar;}
+    LineIndex getLineIndex(){return lineIndex;}
+    SpellChecker getSpellChecker(){return spellChecker;} //Null while spell checking is off
+}
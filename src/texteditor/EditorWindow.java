@@ -0,0 +1,67 @@
+package texteditor;
+
+import texteditor.document.LineIndex;
+import texteditor.document.PieceTableDocument;
+import texteditor.menu.items.MenuItem;
+
+import javax.swing.*;
+import java.awt.datatransfer.Clipboard;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What an ActionController needs from the window it belongs to - The text area and its document, and the parts of
+ * the window around them. TextEditor is the window on screen, and anything else that implements this can have the
+ * actions run against its text area without a frame, such as under java.awt.headless
+ */
+interface EditorWindow {
+
+    /**
+     * Returns the frame of the window, which dialogs belong to
+     * @return The frame, or null if there is none
+     */
+    JFrame getFrame();
+
+    JTextArea getMainTextArea();
+    LineIndex getLineIndex();
+    Map<String, MenuItem> getMenuItemsMap();
+    EditorContext getContext();
+    int getInstanceNum();
+
+    /**
+     * Returns the clipboard that cut, copy and paste use
+     * @return The system clipboard for a window on screen
+     */
+    Clipboard getClipboard();
+
+    void setDocument(PieceTableDocument document);
+    void setOutlineHighlighting(boolean highlighting);
+    void setSpellChecking(boolean checking);
+    void showViewer(JComponent viewer);
+    void showTextArea();
+    void setTitle(String title);
+    void dispose();
+    boolean isDisplayable();
+
+    /**
+     * Enables the Undo and Redo menu items when there is something to undo or redo
+     * @param canUndo True if there is something to undo
+     * @param canRedo True if there is something to redo
+     */
+    void setUndoRedoEnabled(boolean canUndo, boolean canRedo);
+
+    /**
+     * Enables or disables the menu items that change or save the document - Off while the viewer is shown and
+     * while a file is loading
+     * @param enabled True to enable the menu items
+     */
+    default void setEditingEnabled(boolean enabled){
+        List<String> editingMenuItemNames = new ArrayList<>(getContext().getMenuTemplate().getEditMenuItemNames());
+        editingMenuItemNames.remove("Go To Line"); //The viewer can go to a line too
+        editingMenuItemNames.removeAll(Arrays.asList("Undo", "Redo")); //Set by whether there is anything to undo or redo
+        editingMenuItemNames.addAll(Arrays.asList("Save", "Save As..."));
+        for(String menuItemName : editingMenuItemNames) getMenuItemsMap().get(menuItemName).setEnabled(enabled);
+    }
+}
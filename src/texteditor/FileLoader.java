@@ -0,0 +1,164 @@
+package texteditor;
+
+import texteditor.document.FileEncoding;
+import texteditor.document.LineBreakFilter;
+import texteditor.document.PieceTableDocument;
+
+import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads a file into a document on a background thread. Each decoded block is appended to the document on the Event
+ * Dispatch Thread as soon as it is ready, so the start of the file shows up straight away while the rest loads.
+ * The encoding is worked out from the first bytes read, and decoding starts after the byte order mark, if any.
+ * Line breaks are converted to \n as each block is handed over, and the line separator the file used is added to
+ * the encoding once the whole file has been read, so saves write it back the same way
+ *
+ * Blocks are handed over with invokeLater rather than publish, since publish gives no guarantee that every block
+ * has been processed before done is called
+ */
+class FileLoader extends SwingWorker<Void, Void> {
+
+    //The first block is kept small so that the first screen of text appears quickly
+    private static final int FIRST_BLOCK_SIZE = 1 << 16;
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 1 << 22;
+
+    private final ActionController actionController;
+    private final File file;
+    private final PieceTableDocument document;
+    private final ProgressMonitor progressMonitor; //Null when there is nothing to show the progress on
+    private FileEncoding encoding = FileEncoding.DEFAULT; //Set once the start of the file has been read
+
+    /**
+     * Creates a FileLoader that loads a file into an (empty) document
+     * @param actionController ActionController to report back to when loading ends
+     * @param file File to load
+     * @param document Document to append the text of the file to
+     * @param parent Component the progress dialog belongs to, or null to load without showing progress
+     */
+    FileLoader(ActionController actionController, File file, PieceTableDocument document, JComponent parent){
+        this.actionController = actionController;
+        this.file = file;
+        this.document = document;
+
+        //Progress is tracked as a percentage of the bytes read - The dialog cannot be shown without a display
+        if(parent == null || GraphicsEnvironment.isHeadless()){
+            progressMonitor = null;
+            return;
+        }
+        progressMonitor = new ProgressMonitor(parent, "Opening " + file.getName(), null, 0, 100);
+        progressMonitor.setMillisToDecideToPopup(250);
+        addPropertyChangeListener(event -> {
+            if(!"progress".equals(event.getPropertyName())) return;
+            if(progressMonitor.isCanceled()) cancel(false);
+            else progressMonitor.setProgress((Integer) event.getNewValue());
+        });
+    }
+
+    /**
+     * Reads and decodes the file in large blocks - Runs on the worker thread
+     */
+    @Override
+    protected Void doInBackground() throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            long size = channel.size();
+            long bytesRead = 0;
+            ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            boolean endOfFile = false;
+
+            //Working out the encoding from the start of the file, then decoding from just after the byte order mark
+            while(bytesRead < Math.min(size, FileEncoding.SNIFF_SIZE) && !endOfFile){
+                int read = channel.read(bytes);
+                if(read == -1) endOfFile = true;
+                else bytesRead += read;
+            }
+            bytes.flip();
+            encoding = FileEncoding.detect(bytes);
+            bytes.position(encoding.getByteOrderMarkLength());
+            bytes.compact();
+
+            CharsetDecoder decoder = encoding.getCharset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            LineBreakFilter lineBreakFilter = new LineBreakFilter();
+            CharBuffer chars = CharBuffer.allocate(FIRST_BLOCK_SIZE);
+
+            while(!isCancelled()){
+                if(!endOfFile){
+                    int read = channel.read(bytes);
+                    if(read == -1) endOfFile = true;
+                    else bytesRead += read;
+                }
+
+                //Decoding as much as fits in the current block
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfFile);
+                if(endOfFile && result.isUnderflow()) result = decoder.flush(chars);
+                bytes.compact();
+
+                //Handing over the block once it is full, or once the whole file is decoded
+                boolean finished = endOfFile && result.isUnderflow();
+                if(!chars.hasRemaining() || (finished && chars.position() > 0)){
+                    char[] text = chars.array();
+                    int length = lineBreakFilter.filter(text, chars.position());
+
+                    //A mostly empty last block is copied so a large array is not kept alive for a few chars
+                    if(length < text.length / 2) text = Arrays.copyOf(text, length);
+                    appendLater(text, length);
+                    chars = CharBuffer.allocate(BLOCK_SIZE);
+                }
+                setProgress(size == 0 ? 100 : (int) (bytesRead * 100 / size));
+                if(finished){
+                    encoding = encoding.withLineSeparator(lineBreakFilter.getLineSeparator());
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the encoding the file was read in - Only known once loading has finished
+     * @return The encoding
+     */
+    FileEncoding getEncoding(){return encoding;}
+
+    /**
+     * Queues a decoded block to be appended to the document on the Event Dispatch Thread
+     */
+    private void appendLater(char[] text, int length){
+        SwingUtilities.invokeLater(() -> {
+            if(!isCancelled()) document.append(text, 0, length);
+        });
+    }
+
+    /**
+     * Reports back to the ActionController once loading has finished, failed or been cancelled
+     */
+    @Override
+    protected void done(){
+        if(progressMonitor != null) progressMonitor.close();
+        try{
+            get();
+            actionController.fileLoaded(this, file);
+        }catch(CancellationException e){
+            actionController.fileLoadCancelled(this);
+        }catch(InterruptedException | ExecutionException e){
+            e.printStackTrace();
+            actionController.fileLoadFailed(this, file);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package texteditor;
+
+import texteditor.document.EditExtents;
+import texteditor.document.TextSnapshot;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.*;
+
+/**
+ * Writes a snapshot of a document to a file on a background thread.
+ *
+ * When the SavedFile knows what is in the file and which parts of the text are unchanged since, only the changes
+ * are written: patched in place if the unchanged parts stay where they are, such as after an edit that keeps the
+ * length the same or text added at the end, or otherwise spliced into a new file by copying the unchanged byte ranges
+ * straight across. Either way the time taken depends on the size of the edits rather than the size of the file.
+ *
+ * Every other save writes the whole text to a temporary file in the same directory, forces it to disk and then
+ * renames it over the target, so a crash or a full disk part way through leaves the original file untouched. A
+ * patch in place gives up that guarantee for the few bytes being patched, in exchange for not rewriting the file.
+ *
+ * All saves run one after another on a single thread, so two saves of the same file always land in the order they
+ * were started
+ */
+class FileSaver implements Callable<Void> {
+
+    private static final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "File saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ActionController actionController;
+    private final TextSnapshot snapshot;
+    private final EditExtents extents;
+    private final SavedFile savedFile;
+
+    private FileSaver(ActionController actionController, TextSnapshot snapshot, EditExtents extents, SavedFile savedFile){
+        this.actionController = actionController;
+        this.snapshot = snapshot;
+        this.extents = extents;
+        this.savedFile = savedFile;
+    }
+
+    /**
+     * Queues a snapshot to be written to a file - The ActionController is told on the Event Dispatch Thread once the
+     * save has finished or failed
+     * @param actionController ActionController to report back to, or null if nothing needs telling
+     * @param snapshot Text to write
+     * @param extents The parts of the text unchanged since the file was last saved or loaded
+     * @param savedFile The file to write to
+     * @return A Future that completes once the file is safely on disk
+     */
+    static Future<Void> save(ActionController actionController, TextSnapshot snapshot, EditExtents extents, SavedFile savedFile){
+        return saveExecutor.submit(new FileSaver(actionController, snapshot, extents, savedFile));
+    }
+
+    /**
+     * Queues a check of whether a loaded text matches its file byte for byte, which is needed before later saves
+     * can write only their changes
+     * @param savedFile The file the text was loaded from
+     * @param loadedText The text that was loaded
+     */
+    static void verify(SavedFile savedFile, TextSnapshot loadedText){
+        saveExecutor.submit(() -> {
+            try{
+                savedFile.verify(loadedText);
+            }catch(IOException e){
+                e.printStackTrace(); //Later saves write the whole file
+            }
+        });
+    }
+
+    /**
+     * Blocks until every save queued so far has finished - Called before the program exits so that a save still
+     * in progress is not cut off
+     */
+    static void awaitPendingSaves(){
+        try{
+            saveExecutor.submit(() -> {}).get();
+        }catch(InterruptedException | ExecutionException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the file - Runs on the save thread
+     */
+    @Override
+    public Void call() throws IOException {
+        File file = savedFile.getFile();
+        try{
+            if(!saveChanges()) saveWholeFile();
+            if(actionController != null) SwingUtilities.invokeLater(() -> actionController.fileSaved(file));
+            return null;
+        }catch(IOException | RuntimeException e){
+            e.printStackTrace();
+            savedFile.invalidate();
+            if(actionController != null) SwingUtilities.invokeLater(() -> actionController.fileSaveFailed(file));
+            throw e;
+        }
+    }
+
+    private void saveWholeFile() throws IOException {
+        OffsetIndex index = new OffsetIndex();
+        replaceAtomically(channel -> {
+            int byteOrderMarkLength = writeByteOrderMark(channel);
+            SnapshotEncoder encoder = newEncoder(channel);
+            encoder.recordCheckpoints(index, 0, byteOrderMarkLength);
+            encoder.encode(snapshot, 0, snapshot.length());
+            index.add(snapshot.length(), byteOrderMarkLength + encoder.finish());
+        });
+        savedFile.setSaved(snapshot, index);
+    }
+
+    /**
+     * Writes only what changed since the file was last saved or loaded
+     * @return False if the whole file has to be written instead
+     */
+    private boolean saveChanges() throws IOException {
+        int count = extents.getCount();
+        if(count == 0 || !savedFile.canWriteChangesOnly()) return false;
+        TextSnapshot savedText = savedFile.getText();
+
+        /*Laying out the new file - New text goes in the gaps between the unchanged extents, each of which is copied
+        * from where it was in the old file. gapStarts[i] is where the gap before extent i starts*/
+        long[] gapStarts = new long[count + 1];
+        long[] oldByteStarts = new long[count];
+        long[] byteLengths = new long[count];
+        OffsetIndex index = new OffsetIndex();
+        boolean inPlace = true;
+        long position = savedFile.getByteOrderMark().length, gapFrom = 0; //The byte order mark stays where it is
+        for(int i = 0; i <= count; i++){
+            long gapTo = i < count ? extents.getNewStart(i) : snapshot.length();
+            if(splitsSurrogatePair(snapshot, gapFrom) || splitsSurrogatePair(snapshot, gapTo)) return false;
+            gapStarts[i] = position;
+            position += countGap(gapFrom, gapTo, position, index);
+            if(i == count) break;
+
+            int oldStart = extents.getOldStart(i), length = extents.getLength(i);
+            if(splitsSurrogatePair(savedText, oldStart) || splitsSurrogatePair(savedText, oldStart + length)) return false;
+            oldByteStarts[i] = savedFile.byteOffset(oldStart);
+            byteLengths[i] = savedFile.byteOffset(oldStart + length) - oldByteStarts[i];
+            savedFile.copyCheckpoints(oldStart, length, oldByteStarts[i], gapTo, position, index);
+            inPlace &= oldByteStarts[i] == position;
+            position += byteLengths[i];
+            gapFrom = gapTo + length;
+        }
+        index.add(snapshot.length(), position);
+
+        long newSize = position;
+        if(inPlace){
+
+            //Patching the gaps in place, then trimming the file if it got shorter
+            try(FileChannel channel = FileChannel.open(savedFile.getFile().toPath(), StandardOpenOption.WRITE)){
+                for(int i = 0; i <= count; i++){
+                    channel.position(gapStarts[i]);
+                    writeGap(i, count, channel);
+                }
+                if(newSize < savedFile.getSize()) channel.truncate(newSize);
+                channel.force(true);
+            }
+        }else{
+
+            //Splicing the gaps and the unchanged byte ranges of the old file into a new one
+            replaceAtomically(channel -> {
+                writeByteOrderMark(channel);
+                try(FileChannel source = FileChannel.open(savedFile.getFile().toPath(), StandardOpenOption.READ)){
+                    for(int i = 0; i <= count; i++){
+                        writeGap(i, count, channel);
+                        if(i == count) break;
+                        long copied = 0;
+                        while(copied < byteLengths[i]){
+                            copied += source.transferTo(oldByteStarts[i] + copied, byteLengths[i] - copied, channel);
+                        }
+                    }
+                }
+            });
+        }
+        savedFile.setSaved(snapshot, index);
+        return true;
+    }
+
+    /**
+     * Counts the bytes in a gap of new text, recording checkpoints for it along the way
+     */
+    private long countGap(long from, long to, long byteStart, OffsetIndex index) throws IOException {
+        SnapshotEncoder counter = newEncoder(null);
+        counter.recordCheckpoints(index, from, byteStart);
+        counter.encode(snapshot, from, to);
+        return counter.finish();
+    }
+
+    /**
+     * Writes the new text in the gap before extent i, or after the last extent if i is the extent count
+     */
+    private void writeGap(int i, int count, FileChannel channel) throws IOException {
+        long from = i == 0 ? 0 : extents.getNewStart(i - 1) + extents.getLength(i - 1);
+        long to = i < count ? extents.getNewStart(i) : snapshot.length();
+        if(from == to) return;
+        SnapshotEncoder encoder = newEncoder(channel);
+        encoder.encode(snapshot, from, to);
+        encoder.finish();
+    }
+
+    /**
+     * Creates an encoder that writes text the way the file is encoded
+     * @param channel Channel to write to, or null to only count bytes
+     */
+    private SnapshotEncoder newEncoder(FileChannel channel){
+        return new SnapshotEncoder(savedFile.getCharset(), savedFile.getLineSeparator(), channel);
+    }
+
+    /**
+     * Writes the byte order mark the file started with, if it had one
+     * @return The length of the byte order mark
+     */
+    private int writeByteOrderMark(FileChannel channel) throws IOException {
+        ByteBuffer byteOrderMark = ByteBuffer.wrap(savedFile.getByteOrderMark());
+        while(byteOrderMark.hasRemaining()) channel.write(byteOrderMark);
+        return byteOrderMark.capacity();
+    }
+
+    private static boolean splitsSurrogatePair(TextSnapshot text, long offset){
+        return offset > 0 && offset < text.length()
+                && Character.isHighSurrogate(text.charAt(offset - 1)) && Character.isLowSurrogate(text.charAt(offset));
+    }
+
+    /**
+     * Writes a new version of the file to a temporary file and renames it over the old one
+     */
+    private void replaceAtomically(ContentWriter writer) throws IOException {
+        Path target = savedFile.getFile().toPath().toAbsolutePath();
+        Path directory = target.getParent();
+        Path temp = Files.createTempFile(directory, "." + target.getFileName() + ".", ".tmp");
+        try{
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                writer.write(channel);
+                channel.force(true);
+            }
+            copyPermissions(target, temp);
+            try{
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }catch(AtomicMoveNotSupportedException e){
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }finally{
+            Files.deleteIfExists(temp); //Only still there if the save failed
+        }
+        syncDirectory(directory);
+    }
+
+    private interface ContentWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+    /**
+     * Gives the new file the permissions of the file it replaces - Temporary files are created readable by the
+     * owner only
+     */
+    private static void copyPermissions(Path from, Path to){
+        try{
+            if(Files.exists(from)) Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+            else Files.setPosixFilePermissions(to, PosixFilePermissions.fromString("rw-r--r--"));
+        }catch(UnsupportedOperationException | IOException e){
+            //Not a POSIX file system
+        }
+    }
+
+    /**
+     * Forces the rename itself to disk - Not every platform allows a directory to be opened, in which case the
+     * rename is left to the file system
+     */
+    private static void syncDirectory(Path directory){
+        try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)){
+            channel.force(true);
+        }catch(IOException e){
+            //Directory cannot be synced on this platform
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package texteditor;
+
+import texteditor.document.FileSearch;
+import texteditor.document.LiteralSearch;
+import texteditor.document.RegexSearch;
+import texteditor.document.TextSearch;
+import texteditor.document.TrigramIndex;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Window for searching every text file under a directory.
+ *
+ * The search runs on a FileSearch in the background and the hits stream into the results list as they are found.
+ * Literal searches only read the files the TrigramIndex of the directory narrows them down to, once it has been
+ * built - until then, and for regular expressions, every file is read.
+ * Double clicking a hit, or pressing Enter on it, shows it in the TextEditor window that has its file open, or in a
+ * new window if none does
+ */
+class FindInFilesWindow extends JDialog {
+
+    //Constants for sizes and components
+    private static final int FIND_IN_FILES_WINDOW_WIDTH = 700;
+    private static final int FIND_IN_FILES_WINDOW_HEIGHT = 500;
+    private static final int LABEL_WIDTH = 100;
+    private static final int FIELD_WIDTH = 430;
+    private static final int ROW_HEIGHT = 25;
+    private static final int BUTTON_WIDTH = 110;
+    private static final int MAX_RESULTS = 10000; //The search stops once this many hits are listed
+    private static final Predicate<Path> FILE_FILTER = path -> ActionController.validFileName(path.getFileName().toString());
+
+    private final EditorWindow textEditor;
+    private final JTextField directoryField, findField;
+    private final JCheckBox matchCaseCheckBox, regexCheckBox;
+    private final JButton searchButton;
+    private final DefaultListModel<FileSearch.Hit> resultsModel = new DefaultListModel<>();
+    private final JList<FileSearch.Hit> resultsList = new JList<>(resultsModel);
+    private final JLabel statusLabel;
+
+    private SearchWorker searchWorker;
+    private Path searchedDirectory; //Directory of the hits being listed, which their paths are shown relative to
+
+    /**
+     * Creates a FindInFilesWindow for a TextEditor - The window is not shown until showFindInFiles is called
+     * @param textEditor Window the find in files window belongs to
+     */
+    FindInFilesWindow(EditorWindow textEditor){
+        super(textEditor.getFrame(), "Find in Files", false);
+        this.textEditor = textEditor;
+        directoryField = new JTextField();
+        findField = new JTextField();
+        matchCaseCheckBox = new JCheckBox("Match case");
+        regexCheckBox = new JCheckBox("Regular expression");
+        searchButton = new JButton("Search");
+        statusLabel = new JLabel(" ");
+        setUpFindInFilesWindowUI();
+    }
+
+    /**
+     * Sets up the UI of this FindInFilesWindow
+     */
+    private void setUpFindInFilesWindowUI(){
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setLayout(null);
+        setSize(new Dimension(FIND_IN_FILES_WINDOW_WIDTH, FIND_IN_FILES_WINDOW_HEIGHT));
+        setResizable(false);
+
+        //Absolutely positioning the components in rows, with the results list filling the rest
+        int x = 15, y = 15;
+        int buttonX = x + LABEL_WIDTH + FIELD_WIDTH + 10;
+        JLabel directoryLabel = new JLabel("Directory:");
+        directoryLabel.setBounds(x, y, LABEL_WIDTH, ROW_HEIGHT);
+        directoryField.setBounds(x + LABEL_WIDTH, y, FIELD_WIDTH, ROW_HEIGHT);
+        JButton browseButton = new JButton("Browse...");
+        browseButton.setBounds(buttonX, y, BUTTON_WIDTH, ROW_HEIGHT);
+        y += ROW_HEIGHT + 10;
+        JLabel findLabel = new JLabel("Find what:");
+        findLabel.setBounds(x, y, LABEL_WIDTH, ROW_HEIGHT);
+        findField.setBounds(x + LABEL_WIDTH, y, FIELD_WIDTH, ROW_HEIGHT);
+        searchButton.setBounds(buttonX, y, BUTTON_WIDTH, ROW_HEIGHT);
+        y += ROW_HEIGHT + 10;
+        matchCaseCheckBox.setBounds(x + LABEL_WIDTH, y, 120, ROW_HEIGHT);
+        regexCheckBox.setBounds(x + LABEL_WIDTH + 120, y, 180, ROW_HEIGHT);
+        y += ROW_HEIGHT + 10;
+        JScrollPane resultsScroll = new JScrollPane(resultsList);
+        int resultsHeight = FIND_IN_FILES_WINDOW_HEIGHT - y - 2 * ROW_HEIGHT - 40; //Leaving room for the status and the title bar
+        resultsScroll.setBounds(x, y, FIND_IN_FILES_WINDOW_WIDTH - 2 * x - 10, resultsHeight);
+        y += resultsHeight + 5;
+        statusLabel.setBounds(x, y, FIND_IN_FILES_WINDOW_WIDTH - 2 * x, ROW_HEIGHT);
+
+        add(directoryLabel);
+        add(directoryField);
+        add(browseButton);
+        add(findLabel);
+        add(findField);
+        add(searchButton);
+        add(matchCaseCheckBox);
+        add(regexCheckBox);
+        add(resultsScroll);
+        add(statusLabel);
+
+        //Enter starts a search, and the search button stops one that is running
+        getRootPane().setDefaultButton(searchButton);
+        searchButton.addActionListener(e -> {
+            if(searchWorker != null) stopSearch();
+            else search();
+        });
+        browseButton.addActionListener(e -> browse());
+
+        //Showing a hit when it is double clicked or Enter is pressed on it
+        resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsList.setCellRenderer(new HitCellRenderer());
+        resultsList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e){
+                if(e.getClickCount() == 2) showSelectedHit();
+            }
+        });
+        resultsList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "showHit");
+        resultsList.getActionMap().put("showHit", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e){
+                showSelectedHit();
+            }
+        });
+    }
+
+    /**
+     * Shows the window, starting with the selected text of the main text area if there is a short selection
+     * @param directory Directory to search if none has been chosen yet, or null for the home directory
+     */
+    void showFindInFiles(File directory){
+        if(directoryField.getText().isEmpty()){
+            directoryField.setText((directory != null ? directory : new File(System.getProperty("user.home"))).getPath());
+        }
+        String selectedText = textEditor.getMainTextArea().getSelectedText();
+        if(selectedText != null && !selectedText.isEmpty() && selectedText.indexOf('\n') < 0) findField.setText(selectedText);
+        if(!isVisible()){
+            setLocationRelativeTo(getOwner());
+            setVisible(true);
+        }
+        findField.selectAll();
+        findField.requestFocusInWindow();
+    }
+
+    @Override
+    public void setVisible(boolean visible){
+        if(!visible) stopSearch();
+        super.setVisible(visible);
+    }
+
+    /**
+     * Lets the user choose the directory to search
+     */
+    private void browse(){
+        JFileChooser directoryChooser = new JFileChooser(directoryField.getText());
+        directoryChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if(directoryChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION){
+            directoryField.setText(directoryChooser.getSelectedFile().getPath());
+        }
+    }
+
+    /**
+     * Starts searching the chosen directory, replacing the hits of any earlier search
+     */
+    private void search(){
+        String query = findField.getText();
+        if(query.isEmpty()) return;
+        File directory = new File(directoryField.getText());
+        if(!directory.isDirectory()){
+            statusLabel.setText("No such directory");
+            return;
+        }
+
+        TextSearch search;
+        try{
+            search = regexCheckBox.isSelected() ? new RegexSearch(query, matchCaseCheckBox.isSelected())
+                    : new LiteralSearch(query, matchCaseCheckBox.isSelected());
+        }catch(PatternSyntaxException e){
+            statusLabel.setText("Invalid regular expression");
+            return;
+        }
+
+        stopSearch();
+        resultsModel.clear();
+        searchedDirectory = directory.getAbsoluteFile().toPath();
+        statusLabel.setText("Searching...");
+        searchButton.setText("Stop");
+        searchWorker = new SearchWorker(search, regexCheckBox.isSelected() ? null : query, searchedDirectory);
+        searchWorker.execute();
+    }
+
+    private void stopSearch(){
+        if(searchWorker == null) return;
+        searchWorker.cancel(true);
+        searchWorker = null;
+        searchButton.setText("Search");
+        statusLabel.setText("Stopped - " + resultsModel.size() + (resultsModel.size() == 1 ? " match" : " matches"));
+    }
+
+    /**
+     * Shows the selected hit in the window that has its file open, opening it in a new window if none does
+     */
+    private void showSelectedHit(){
+        FileSearch.Hit hit = resultsList.getSelectedValue();
+        if(hit == null) return;
+        File file = hit.getFile().toFile();
+        TextEditor target = null;
+        for(TextEditor instance : textEditor.getContext().getWindows()){
+            if(instance.isDisplayable() && instance.getActionController().isShowing(file)) target = instance;
+        }
+        if(target == null) target = new TextEditor();
+        target.toFront();
+        target.getActionController().showInFile(file, hit.getLine(), hit.getColumn(), hit.getLength());
+    }
+
+    /**
+     * Runs a FileSearch in the background and lists the hits as they come in
+     */
+    private class SearchWorker extends SwingWorker<Integer, FileSearch.Hit> {
+        private final String literal; //Null for a regular expression
+        private final Path directory;
+        private final FileSearch fileSearch;
+        private final AtomicInteger hitCount = new AtomicInteger();
+        private long startTime;
+        private boolean indexed = false;
+
+        SearchWorker(TextSearch search, String literal, Path directory){
+            this.literal = literal;
+            this.directory = directory;
+            fileSearch = new FileSearch(search, FILE_FILTER,
+                    hit -> {
+                        if(hitCount.incrementAndGet() > MAX_RESULTS) return false;
+                        publish(hit);
+                        return !isCancelled();
+                    });
+        }
+
+        @Override
+        protected Integer doInBackground() throws InterruptedException {
+            startTime = System.nanoTime();
+            TrigramIndex index = TrigramIndex.open(directory, FILE_FILTER);
+            List<Path> candidates = literal != null ? index.candidates(literal) : null;
+            if(candidates == null) return fileSearch.searchTree(directory);
+            indexed = true;
+            return fileSearch.searchFiles(candidates);
+        }
+
+        @Override
+        protected void process(List<FileSearch.Hit> hits){
+            if(searchWorker != this) return;
+            for(FileSearch.Hit hit : hits) resultsModel.addElement(hit);
+            statusLabel.setText("Searching... " + resultsModel.size() + " found so far");
+        }
+
+        @Override
+        protected void done(){
+            if(searchWorker != this) return;
+            searchWorker = null;
+            searchButton.setText("Search");
+            try{
+                int filesSearched = get();
+                long millis = (System.nanoTime() - startTime) / 1_000_000;
+                int count = Math.min(hitCount.get(), MAX_RESULTS);
+                String matches = count + (count == 1 ? " match" : " matches");
+                if(hitCount.get() > MAX_RESULTS) matches = "The first " + matches;
+                statusLabel.setText(matches + " in " + filesSearched + (indexed ? " candidate" : "") + " files, searched in " + millis + " ms");
+            }catch(InterruptedException | ExecutionException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Shows a hit as its path, relative to the directory searched, its line number and the text of its line
+     */
+    private class HitCellRenderer extends DefaultListCellRenderer {
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus){
+            FileSearch.Hit hit = (FileSearch.Hit) value;
+            Path path = searchedDirectory != null && hit.getFile().startsWith(searchedDirectory) ? searchedDirectory.relativize(hit.getFile()) : hit.getFile();
+            String text = path + ":" + (hit.getLine() + 1) + ":  " + hit.getLineText().trim();
+            return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+        }
+    }
+}
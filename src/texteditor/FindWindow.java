@@ -0,0 +1,465 @@
+package texteditor;
+
+import texteditor.document.LiteralSearch;
+import texteditor.document.PieceTableDocument;
+import texteditor.document.RegexSearch;
+import texteditor.document.TextSearch;
+import texteditor.document.TextSnapshot;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Window for finding and replacing text in the main text area of a TextEditor.
+ *
+ * Searches run on a snapshot of the document in the background, so the text area stays responsive while a large
+ * file is searched. Every match is highlighted as soon as it is found, up to MAX_HIGHLIGHTS of them, and any edit to
+ * the document stops a search that is still running since the offsets it would report no longer fit the text.
+ * Replace All runs a single regular expression pass over the snapshot and swaps the result in as one edit
+ */
+class FindWindow extends JDialog implements DocumentListener {
+
+    //Constants for sizes and components
+    private static final int FIND_WINDOW_WIDTH = 460;
+    private static final int FIND_WINDOW_HEIGHT = 215;
+    private static final int LABEL_WIDTH = 100;
+    private static final int FIELD_WIDTH = 200;
+    private static final int ROW_HEIGHT = 25;
+    private static final int BUTTON_WIDTH = 110;
+    private static final int MAX_HIGHLIGHTS = 10000; //More than this would slow down painting the text area
+    private static final int MAX_SELECTION_TO_FIND = 200; //Longer selections are not copied into the find field
+
+    private final EditorWindow textEditor;
+    private final ActionController actionController;
+    private final JTextField findField, replaceField;
+    private final JCheckBox matchCaseCheckBox, regexCheckBox;
+    private final JLabel statusLabel;
+    private final Highlighter.HighlightPainter matchPainter = new DefaultHighlighter.DefaultHighlightPainter(new Color(255, 235, 130));
+    private final Highlighter.HighlightPainter currentMatchPainter = new DefaultHighlighter.DefaultHighlightPainter(new Color(255, 160, 60));
+
+    private Document watchedDocument; //Document the running searches are searching
+    private HighlightWorker highlightWorker;
+    private FindWorker findWorker;
+    private ReplaceAllWorker replaceAllWorker;
+    private Object currentMatchTag;
+
+    /**
+     * Creates a FindWindow for a TextEditor - The window is not shown until showFind is called
+     * @param textEditor Window whose text is searched
+     * @param actionController ActionController of the TextEditor, which makes the edit of Replace All
+     */
+    FindWindow(EditorWindow textEditor, ActionController actionController){
+        super(textEditor.getFrame(), "Find", false);
+        this.textEditor = textEditor;
+        this.actionController = actionController;
+        findField = new JTextField();
+        replaceField = new JTextField();
+        matchCaseCheckBox = new JCheckBox("Match case");
+        regexCheckBox = new JCheckBox("Regular expression");
+        statusLabel = new JLabel(" ");
+        setUpFindWindowUI();
+    }
+
+    /**
+     * Sets up the UI of this FindWindow
+     */
+    private void setUpFindWindowUI(){
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setLayout(null);
+        setSize(new Dimension(FIND_WINDOW_WIDTH, FIND_WINDOW_HEIGHT));
+        setResizable(false);
+
+        //Absolutely positioning the components in rows
+        int x = 15, y = 15;
+        JLabel findLabel = new JLabel("Find what:");
+        findLabel.setBounds(x, y, LABEL_WIDTH, ROW_HEIGHT);
+        findField.setBounds(x + LABEL_WIDTH, y, FIELD_WIDTH, ROW_HEIGHT);
+        JButton findNextButton = new JButton("Find Next");
+        findNextButton.setBounds(x + LABEL_WIDTH + FIELD_WIDTH + 10, y, BUTTON_WIDTH, ROW_HEIGHT);
+        y += ROW_HEIGHT + 10;
+        JLabel replaceLabel = new JLabel("Replace with:");
+        replaceLabel.setBounds(x, y, LABEL_WIDTH, ROW_HEIGHT);
+        replaceField.setBounds(x + LABEL_WIDTH, y, FIELD_WIDTH, ROW_HEIGHT);
+        JButton replaceButton = new JButton("Replace");
+        replaceButton.setBounds(x + LABEL_WIDTH + FIELD_WIDTH + 10, y, BUTTON_WIDTH, ROW_HEIGHT);
+        y += ROW_HEIGHT + 10;
+        matchCaseCheckBox.setBounds(x + LABEL_WIDTH, y, FIELD_WIDTH, ROW_HEIGHT);
+        JButton replaceAllButton = new JButton("Replace All");
+        replaceAllButton.setBounds(x + LABEL_WIDTH + FIELD_WIDTH + 10, y, BUTTON_WIDTH, ROW_HEIGHT);
+        y += ROW_HEIGHT + 10;
+        regexCheckBox.setBounds(x + LABEL_WIDTH, y, FIELD_WIDTH, ROW_HEIGHT);
+        y += ROW_HEIGHT + 5;
+        statusLabel.setBounds(x, y, FIND_WINDOW_WIDTH - 2 * x, ROW_HEIGHT);
+
+        add(findLabel);
+        add(findField);
+        add(findNextButton);
+        add(replaceLabel);
+        add(replaceField);
+        add(replaceButton);
+        add(matchCaseCheckBox);
+        add(replaceAllButton);
+        add(regexCheckBox);
+        add(statusLabel);
+
+        //Enter finds the next match
+        getRootPane().setDefaultButton(findNextButton);
+        findNextButton.addActionListener(e -> findNext());
+        replaceButton.addActionListener(e -> replace());
+        replaceAllButton.addActionListener(e -> replaceAll());
+
+        //Highlighting the matches again whenever what is being searched for changes
+        matchCaseCheckBox.addActionListener(e -> highlightAll());
+        regexCheckBox.addActionListener(e -> highlightAll());
+        findField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e){highlightAll();}
+            public void removeUpdate(DocumentEvent e){highlightAll();}
+            public void changedUpdate(DocumentEvent e){}
+        });
+    }
+
+    /**
+     * Shows the window, starting with the selected text of the main text area if there is a short selection
+     * @param replacing True to put the cursor in the replace field
+     */
+    void showFind(boolean replacing){
+        String selectedText = textEditor.getMainTextArea().getSelectedText();
+        if(selectedText != null && !selectedText.isEmpty() && selectedText.length() <= MAX_SELECTION_TO_FIND && selectedText.indexOf('\n') < 0){
+            findField.setText(selectedText);
+        }
+        setTitle(replacing ? "Replace" : "Find");
+        if(!isVisible()){
+            setLocationRelativeTo(getOwner());
+            setVisible(true);
+        }
+        JTextField field = replacing && !findField.getText().isEmpty() ? replaceField : findField;
+        field.selectAll();
+        field.requestFocusInWindow();
+        highlightAll();
+    }
+
+    /**
+     * Selects the next match after the caret, going back to the start of the document if there are none after it
+     */
+    void findNext(){
+        TextSearch search = createSearch();
+        if(search == null){
+            if(findField.getText().isEmpty()) showFind(false);
+            return;
+        }
+        if(findWorker != null) findWorker.cancel(true);
+        JTextArea mainTextArea = textEditor.getMainTextArea();
+        findWorker = new FindWorker(search, snapshot(), mainTextArea.getSelectionEnd());
+        findWorker.execute();
+    }
+
+    /**
+     * Replaces the selected text if it is a match, then finds the next match
+     */
+    void replace(){
+        TextSearch search = createSearch();
+        if(search == null) return;
+        JTextArea mainTextArea = textEditor.getMainTextArea();
+        String selectedText = mainTextArea.getSelectedText();
+        String replacement = null;
+        try{
+            if(selectedText != null) replacement = search.replace(selectedText, replaceField.getText());
+        }catch(IllegalArgumentException | IndexOutOfBoundsException e){
+            statusLabel.setText("Invalid replacement: " + e.getMessage()); //Such as a reference to a group that does not exist
+            return;
+        }
+        if(replacement != null && mainTextArea.isEditable()) mainTextArea.replaceSelection(replacement);
+        findNext();
+    }
+
+    /**
+     * Replaces every match in the document, in the background, then swaps the replaced text in as one edit
+     */
+    void replaceAll(){
+        String query = findField.getText();
+        if(query.isEmpty() || !textEditor.getMainTextArea().isEditable()) return;
+        RegexSearch search;
+        try{
+            search = regexCheckBox.isSelected() ? new RegexSearch(query, matchCaseCheckBox.isSelected())
+                    : RegexSearch.literal(query, matchCaseCheckBox.isSelected());
+        }catch(PatternSyntaxException e){
+            statusLabel.setText("Invalid regular expression");
+            return;
+        }
+        cancelSearches();
+        statusLabel.setText("Replacing...");
+        replaceAllWorker = new ReplaceAllWorker(search, snapshot(), replaceField.getText(), !regexCheckBox.isSelected());
+        replaceAllWorker.execute();
+    }
+
+    /**
+     * Removes the highlights of this window from the main text area and stops any search still running - Called when
+     * the window is closed or the document is replaced
+     */
+    void clearHighlights(){
+        cancelSearches();
+        Highlighter highlighter = textEditor.getMainTextArea().getHighlighter();
+        for(Highlighter.Highlight highlight : highlighter.getHighlights()){
+            if(highlight.getPainter() == matchPainter || highlight.getPainter() == currentMatchPainter) highlighter.removeHighlight(highlight);
+        }
+        currentMatchTag = null;
+    }
+
+    @Override
+    public void setVisible(boolean visible){
+        if(!visible) clearHighlights();
+        super.setVisible(visible);
+    }
+
+    /**
+     * Starts highlighting every match of what is in the find field
+     */
+    private void highlightAll(){
+        clearHighlights();
+        TextSearch search = createSearch();
+        if(search == null){
+            if(findField.getText().isEmpty()) statusLabel.setText(" ");
+            return;
+        }
+        statusLabel.setText("Searching...");
+        highlightWorker = new HighlightWorker(search, snapshot());
+        highlightWorker.execute();
+    }
+
+    /**
+     * Creates a search for what is in the find field
+     * @return The search, or null if there is nothing to search for or the regular expression is not valid
+     */
+    private TextSearch createSearch(){
+        String query = findField.getText();
+        if(query.isEmpty()) return null;
+        if(!regexCheckBox.isSelected()) return new LiteralSearch(query, matchCaseCheckBox.isSelected());
+        try{
+            return new RegexSearch(query, matchCaseCheckBox.isSelected());
+        }catch(PatternSyntaxException e){
+            statusLabel.setText("Invalid regular expression");
+            return null;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the document to search, and starts listening for edits that would make it out of date
+     */
+    private TextSnapshot snapshot(){
+        PieceTableDocument document = (PieceTableDocument) textEditor.getMainTextArea().getDocument();
+        if(watchedDocument != document){
+            if(watchedDocument != null) watchedDocument.removeDocumentListener(this);
+            document.addDocumentListener(this);
+            watchedDocument = document;
+        }
+        return document.snapshot();
+    }
+
+    private void cancelSearches(){
+        if(highlightWorker != null) highlightWorker.cancel(true);
+        if(findWorker != null) findWorker.cancel(true);
+        if(replaceAllWorker != null) replaceAllWorker.cancel(true);
+        highlightWorker = null;
+        findWorker = null;
+        replaceAllWorker = null;
+    }
+
+    /**
+     * Checks if a search is still the latest one and the document has not changed since it started
+     */
+    private boolean isCurrent(SwingWorker<?, ?> worker){
+        return !worker.isCancelled() && (worker == highlightWorker || worker == findWorker || worker == replaceAllWorker)
+                && textEditor.getMainTextArea().getDocument() == watchedDocument;
+    }
+
+    /* ---- Edits to the document stop the searches, the highlights already added move along with the text ---- */
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        documentChanged();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e){
+        documentChanged();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){
+        //Attribute changes do not move any matches
+    }
+
+    private void documentChanged(){
+        if(highlightWorker == null && findWorker == null && replaceAllWorker == null) return;
+        cancelSearches();
+        statusLabel.setText(" ");
+    }
+
+    /**
+     * Finds every match in the background and highlights them as they come in
+     */
+    private class HighlightWorker extends SwingWorker<Long, long[]> {
+        private final TextSearch search;
+        private final TextSnapshot text;
+        private int highlighted = 0;
+
+        HighlightWorker(TextSearch search, TextSnapshot text){
+            this.search = search;
+            this.text = text;
+        }
+
+        @Override
+        protected Long doInBackground(){
+            long[] count = {0};
+            search.search(text, 0, (start, end) -> {
+                if(count[0]++ < MAX_HIGHLIGHTS) publish(new long[]{start, end});
+                return !isCancelled();
+            });
+            return count[0];
+        }
+
+        @Override
+        protected void process(List<long[]> matches){
+            if(!isCurrent(this)) return;
+            Highlighter highlighter = textEditor.getMainTextArea().getHighlighter();
+            try{
+                for(long[] match : matches) highlighter.addHighlight((int) match[0], (int) match[1], matchPainter);
+            }catch(BadLocationException e){
+                e.printStackTrace();
+            }
+            highlighted += matches.size();
+            statusLabel.setText("Searching... " + highlighted + " found so far");
+        }
+
+        @Override
+        protected void done(){
+            if(!isCurrent(this)) return;
+            try{
+                long count = get();
+                if(count == 0) statusLabel.setText("No matches");
+                else if(count > MAX_HIGHLIGHTS) statusLabel.setText(count + " matches - the first " + MAX_HIGHLIGHTS + " are highlighted");
+                else statusLabel.setText(count + (count == 1 ? " match" : " matches"));
+            }catch(InterruptedException | ExecutionException e){
+                e.printStackTrace();
+            }
+            highlightWorker = null;
+        }
+    }
+
+    /**
+     * Finds the next match in the background and selects it
+     */
+    private class FindWorker extends SwingWorker<long[], Void> {
+        private final TextSearch search;
+        private final TextSnapshot text;
+        private final long from;
+
+        FindWorker(TextSearch search, TextSnapshot text, long from){
+            this.search = search;
+            this.text = text;
+            this.from = from;
+        }
+
+        @Override
+        protected long[] doInBackground(){
+            long[] match = search.find(text, from);
+            if(match == null && from > 0) match = search.find(text, 0); //Wrapping around to the start
+            return match;
+        }
+
+        @Override
+        protected void done(){
+            if(!isCurrent(this)) return;
+            findWorker = null;
+            try{
+                long[] match = get();
+                if(match == null){
+                    statusLabel.setText("No matches");
+                    return;
+                }
+                showMatch((int) match[0], (int) match[1]);
+            }catch(InterruptedException | ExecutionException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Builds the text with every match replaced in the background, then swaps it into the document
+     */
+    private class ReplaceAllWorker extends SwingWorker<RegexSearch.Replacement, Void> {
+        private final RegexSearch search;
+        private final TextSnapshot text;
+        private final String replacement;
+        private final boolean literalReplacement;
+        private long elapsedNanos;
+
+        ReplaceAllWorker(RegexSearch search, TextSnapshot text, String replacement, boolean literalReplacement){
+            this.search = search;
+            this.text = text;
+            this.replacement = replacement;
+            this.literalReplacement = literalReplacement;
+        }
+
+        @Override
+        protected RegexSearch.Replacement doInBackground() throws InterruptedException {
+            long startTime = System.nanoTime();
+            RegexSearch.Replacement result = search.replaceAll(text, replacement, literalReplacement);
+            elapsedNanos = System.nanoTime() - startTime;
+            return result;
+        }
+
+        @Override
+        protected void done(){
+            if(!isCurrent(this)) return;
+            replaceAllWorker = null;
+            try{
+                RegexSearch.Replacement result = get();
+                if(result == null){
+                    statusLabel.setText("No matches");
+                    return;
+                }
+                if(!textEditor.getMainTextArea().isEditable()) return;
+
+                clearHighlights(); //The matches are gone
+                long startTime = System.nanoTime();
+                actionController.replaceText(result.getStart(), result.getEnd(), result.getText());
+                long millis = (elapsedNanos + System.nanoTime() - startTime) / 1_000_000;
+                int count = result.getCount();
+                statusLabel.setText("Replaced " + count + (count == 1 ? " match" : " matches") + " in " + millis + " ms");
+            }catch(ExecutionException e){
+                //Such as a reference to a group that does not exist in the replacement
+                statusLabel.setText("Invalid replacement: " + e.getCause().getMessage());
+            }catch(InterruptedException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Selects a match and scrolls it into view
+     */
+    private void showMatch(int start, int end){
+        JTextArea mainTextArea = textEditor.getMainTextArea();
+        Highlighter highlighter = mainTextArea.getHighlighter();
+        try{
+            if(currentMatchTag != null) highlighter.removeHighlight(currentMatchTag);
+            currentMatchTag = highlighter.addHighlight(start, end, currentMatchPainter); //The selection is hidden while this window has focus
+            mainTextArea.select(start, end);
+            Rectangle2D matchBounds = mainTextArea.modelToView2D(start);
+            if(matchBounds != null) mainTextArea.scrollRectToVisible(matchBounds.getBounds());
+        }catch(BadLocationException e){
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package texteditor;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The font families installed and the styles (font names) in each - Asking the graphics environment for every font
+ * can take hundreds of milliseconds with many fonts installed, so it is done once, in the background, as soon as the
+ * program starts. The Font dialog of every window then reads the finished lists, and finding the styles of a family
+ * is a map lookup rather than a scan of every font
+ */
+class FontCatalog {
+    private static final ExecutorService catalogExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Font catalog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Future<Map<String, List<String>>> stylesByFamily; //In the order of the family names
+
+    /**
+     * Starts listing the installed fonts in the background
+     */
+    FontCatalog(){
+        stylesByFamily = catalogExecutor.submit(FontCatalog::listFonts);
+    }
+
+    private static Map<String, List<String>> listFonts(){
+        GraphicsEnvironment environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        Map<String, Set<String>> styles = new LinkedHashMap<>();
+        for(String family : environment.getAvailableFontFamilyNames()) styles.put(family, new TreeSet<>());
+        for(Font font : environment.getAllFonts()){
+            Set<String> familyStyles = styles.get(font.getFamily());
+            if(familyStyles != null) familyStyles.add(font.getName()); //Name of the font is the style of the font
+        }
+        Map<String, List<String>> catalog = new LinkedHashMap<>();
+        for(Map.Entry<String, Set<String>> entry : styles.entrySet()) catalog.put(entry.getKey(), List.copyOf(entry.getValue()));
+        return Collections.unmodifiableMap(catalog);
+    }
+
+    /**
+     * Returns the names of the installed font families, waiting for them to be listed if that has not finished yet
+     * @return The family names, in the order the graphics environment gives them
+     */
+    List<String> getFamilyNames(){
+        return List.copyOf(catalog().keySet());
+    }
+
+    /**
+     * Returns the styles of a font family
+     * @param fontFamily Name of the family
+     * @return The font names of the family's styles in alphabetical order, or an empty list if it has none
+     */
+    List<String> getStyles(String fontFamily){
+        return catalog().getOrDefault(fontFamily, List.of());
+    }
+
+    /**
+     * Checks if the fonts have been listed, so asking for them will not wait
+     * @return True once the fonts have been listed
+     */
+    boolean isLoaded(){
+        return stylesByFamily.isDone();
+    }
+
+    private Map<String, List<String>> catalog(){
+        try{
+            return stylesByFamily.get();
+        }catch(InterruptedException | ExecutionException e){
+            e.printStackTrace();
+            return Map.of();
+        }
+    }
+}
@@ -2,8 +2,40 @@ package texteditor;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Shows each font name in the font it names. Looking a font up and loading its glyphs is slow enough to make scrolling
+ * through a long list of fonts stutter, so the fonts are kept in a cache of the most recently used, shared by every
+ * Font dialog, and the fonts of the rows just above and below the visible ones are loaded into it in the background
+ * before they are scrolled to
+ */
 public class FontJListCellRenderer extends JLabel implements ListCellRenderer {
+    private static final int FONT_SIZE = 12;
+    private static final int CACHE_SIZE = 512; //Fonts kept - More than the rows prefetched either side of a few screens
+    private static final int PREFETCH_ROWS = 60; //Rows either side of the visible ones to load ahead
+    private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Font prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicInteger prefetchGeneration = new AtomicInteger(); //Lets a prefetch stop once scrolled past
+
+    //Fonts by name and style, least recently used first
+    private static final Map<String, Font> fontCache = new LinkedHashMap<String, Font>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Font> eldest){
+            return size() > CACHE_SIZE;
+        }
+    };
 
     @Override
     public Component getListCellRendererComponent(JList list, Object value, int index, boolean isSelected, boolean cellHasFocus){
@@ -12,8 +44,7 @@ public class FontJListCellRenderer extends JLabel implements ListCellRenderer {
         setOpaque(true); //Allows for selection highlighting
 
         /*Determining the font the text should be displayed in - The font and style should be the same font and style that the text represents*/
-        if(!valueString.contains("Bold") && !valueString.contains("Italic"))setFont(new Font(valueString, Font.PLAIN, 12));
-        else setFont(new Font(valueString, TextEditor.fontStyleType(valueString), 12));
+        setFont(getFont(valueString));
 
         /*Determining selection colors*/
         if(isSelected){
@@ -26,4 +57,50 @@ public class FontJListCellRenderer extends JLabel implements ListCellRenderer {
 
         return this;
     }
+
+    /**
+     * Loads the fonts of the rows near the visible rows of a list in the background - Called whenever the list is
+     * scrolled, and drops any earlier prefetch that has not finished
+     * @param list The list, which has to be using a FontJListCellRenderer
+     */
+    static void prefetch(JList<?> list){
+        int first = list.getFirstVisibleIndex(), last = list.getLastVisibleIndex();
+        if(first < 0) return;
+        ListModel<?> model = list.getModel();
+        int from = Math.max(0, first - PREFETCH_ROWS), to = Math.min(model.getSize() - 1, last + PREFETCH_ROWS);
+
+        //The visible rows first, then outwards from them
+        List<String> names = new ArrayList<>();
+        for(int i = first; i <= last; i++) names.add(model.getElementAt(i).toString());
+        for(int i = 1; last + i <= to || first - i >= from; i++){
+            if(last + i <= to) names.add(model.getElementAt(last + i).toString());
+            if(first - i >= from) names.add(model.getElementAt(first - i).toString());
+        }
+        int generation = prefetchGeneration.incrementAndGet();
+        prefetchExecutor.execute(() -> {
+            for(String name : names){
+                if(prefetchGeneration.get() != generation) return;
+                getFont(name);
+            }
+        });
+    }
+
+    /**
+     * Returns the font a name is shown in, from the cache if it is there - Otherwise the font is made and its glyphs
+     * for the name loaded, which is what takes the time, before it is added to the cache
+     */
+    private static Font getFont(String name){
+        int style = name.contains("Bold") || name.contains("Italic") ? TextEditor.fontStyleType(name) : Font.PLAIN;
+        String key = style + ":" + name;
+        synchronized(fontCache){
+            Font font = fontCache.get(key);
+            if(font != null) return font;
+        }
+        Font font = new Font(name, style, FONT_SIZE);
+        font.getStringBounds(name, RENDER_CONTEXT);
+        synchronized(fontCache){
+            fontCache.put(key, font);
+        }
+        return font;
+    }
 }
@@ -16,8 +16,7 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
 
     //Some collections
     private List<String> availableFontFamilyNames;
-    private Font[] allAvailableFonts;
-    private  Set<String> availableFontStylesForSelectedFont;
+    private List<String> availableFontStylesForSelectedFont;
     private Map<String, JScrollPane> scrollPaneMap;
 
     //Constants
@@ -27,6 +26,7 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
     private static final int PANEL_HEIGHT = 200;
     private static final int BUTTON_WIDTH = 100;
     private static final int BUTTON_HEIGHT = 40;
+    private static final int FONT_CELL_INSET = 8; //Room around the text of a font family cell
 
     //Components
     private JTextArea sampleTextArea;
@@ -58,7 +58,7 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
         samplePanel = new JPanel();
 
         scrollPaneMap = new HashMap<>();
-        availableFontStylesForSelectedFont = new HashSet<>();
+        availableFontStylesForSelectedFont = List.of();
 
         setUpFontWindowUI();
     }
@@ -94,15 +94,8 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
      */
     private void panelSetup(){
 
-        //Getting available fonts and storing into an array
-        String[] tempAvailableFontFamilyNamesArray = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames(); //Names of fonts
-        allAvailableFonts = GraphicsEnvironment.getLocalGraphicsEnvironment().getAllFonts(); //Actual font objects
-        availableFontFamilyNames = new ArrayList<>();
-
-        //Adding all available font family names into a list
-        for(int i = 0; i < tempAvailableFontFamilyNamesArray.length; i++){
-            availableFontFamilyNames.add(tempAvailableFontFamilyNamesArray[i]);
-        }
+        //Getting the available font family names from the catalog listed at startup
+        availableFontFamilyNames = textEditor.getContext().getFontCatalog().getFamilyNames();
 
         //Coordinates of the top left of the panel bounding box
         int x = 20;
@@ -176,6 +169,10 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
         }
         fontFamilyList = new JList(listModelFontFamily);
         fontFamilyList.setCellRenderer(customListCellRenderer); //Uses custom cell renderer to customize each individual cell in this list
+
+        /*Fixing the size of the cells so the list does not render every font to measure it - Only the rows shown are rendered*/
+        fontFamilyList.setFixedCellWidth(PANEL_WIDTH - FONT_CELL_INSET);
+        fontFamilyList.setFixedCellHeight(fontFamilyList.getFontMetrics(fontFamilyList.getFont()).getHeight() + FONT_CELL_INSET);
         String firstFontFamily = fontFamilyList.getModel().getElementAt(0).toString(); //Gets the first font family in the list
         //setAvailableFontStylesForSelectedFont(firstFontFamily); //TODO: Put this in highlightSelectedFontProperties
 
@@ -229,6 +226,7 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
         scrollPane.setPreferredSize(new Dimension(scrollPaneX, scrollPaneY));
         scrollPane.setBorder(BorderFactory.createTitledBorder(nameOfScrollPane));
         if(alwaysScroll) scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+        if(list.getCellRenderer() instanceof FontJListCellRenderer) scrollPane.getViewport().addChangeListener(e -> FontJListCellRenderer.prefetch(list));
         scrollPaneMap.put(nameOfScrollPane, scrollPane);
     }
 
@@ -289,16 +287,10 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
     }
 
     /**
-     * Adding all available font styles for the selected font to the set
+     * Getting all available font styles for the selected font from the catalog
      */
     private void setAvailableFontStylesForSelectedFont(String fontFamily){
-        if(!availableFontStylesForSelectedFont.isEmpty()) availableFontStylesForSelectedFont.clear();
-        for(Font font : allAvailableFonts){
-            String fontStyle = font.getName(); //Name of the font is the style of the font
-            if(font.getFamily().equals(fontFamily)) {
-                availableFontStylesForSelectedFont.add(fontStyle);
-            }
-        }
+        availableFontStylesForSelectedFont = textEditor.getContext().getFontCatalog().getStyles(fontFamily);
     }
 
     /**
@@ -306,6 +298,7 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
      */
     public void actionPerformed(ActionEvent e){
         String action = e.getActionCommand();
+        StallWatchdog.noteAction("Font > " + action);
         if(action.equals("Confirm")) confirm();
         else if(action.equals("Cancel"))dispose();
         else if(action.equals("Set Default Font")) writeDefaultFontToConfig();
@@ -387,18 +380,12 @@ public class FontWindow extends JFrame implements ActionListener, ListSelectionL
             /*Exiting method if cancel or no is clicked in the confirm dialog*/
             if(optionInput != JOptionPane.YES_OPTION) return;
 
-            /*Properties and outputStream objects to set some values in config.properties file*/
-            Properties properties = new Properties();
-            OutputStream outputStream = new FileOutputStream("config.properties");
-
-            /*Setting new values*/
-            properties.setProperty("font-family", newDefFontFamily);
-            properties.setProperty("font-style", newDefFontStyle);
-            properties.setProperty("font-size", Integer.toString(newDefFontSize));
-
-            /*Storing changes and closing outputStream*/
-            properties.store(outputStream, null);
-            outputStream.close();
+            /*Setting new values - The other settings in config.properties are kept*/
+            Map<String, String> settings = new HashMap<>();
+            settings.put("font-family", newDefFontFamily);
+            settings.put("font-style", newDefFontStyle);
+            settings.put("font-size", Integer.toString(newDefFontSize));
+            textEditor.getContext().saveSettings(settings);
             JOptionPane.showMessageDialog(null, "Default font set!");
 
         }catch(IOException e){e.printStackTrace();}
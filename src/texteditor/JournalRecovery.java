@@ -0,0 +1,278 @@
+package texteditor;
+
+import texteditor.document.FileEncoding;
+import texteditor.document.LineBreakFilter;
+import texteditor.document.PieceTableDocument;
+
+import javax.swing.text.BadLocationException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * The edits of one window found in the journals left behind by an earlier session that did not exit normally,
+ * ready to be replayed onto the file they were made to
+ */
+class JournalRecovery {
+    private final List<Path> journalFiles;
+    private final File baseFile; //The file the edits start from, or null if they start from an empty text
+    private final File file; //The file the document was last being saved to, or null if it is untitled
+    private final List<Edit> edits;
+    private FileEncoding encoding = FileEncoding.DEFAULT; //Encoding of the base file, found by rebuild
+
+    private JournalRecovery(List<Path> journalFiles, File baseFile, File file, List<Edit> edits){
+        this.journalFiles = journalFiles;
+        this.baseFile = baseFile;
+        this.file = file;
+        this.edits = edits;
+    }
+
+    /**
+     * Finds the windows with edits that can be recovered. Journals of sessions that are still running are left
+     * alone, and journals that cannot be replayed - because the file they were made to has changed since - are
+     * deleted
+     * @return The recoverable windows
+     */
+    static List<JournalRecovery> findRecoverable(){
+        List<JournalRecovery> recoveries = new ArrayList<>();
+        Path directory = EditJournal.journalDirectory();
+        if(!Files.isDirectory(directory)) return recoveries;
+
+        //Grouping the segments by session and window - Names are session-window-segment.journal
+        Map<String, Map<String, TreeMap<Integer, Path>>> sessions = new HashMap<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.journal")){
+            for(Path path : files){
+                String name = path.getFileName().toString();
+                String[] parts = name.substring(0, name.length() - ".journal".length()).split("-");
+                if(parts.length != 4) continue;
+                String session = parts[0] + "-" + parts[1];
+                sessions.computeIfAbsent(session, s -> new HashMap<>())
+                        .computeIfAbsent(parts[2], w -> new TreeMap<>())
+                        .put(Integer.parseInt(parts[3]), path);
+            }
+        }catch(IOException | NumberFormatException e){
+            e.printStackTrace();
+            return recoveries;
+        }
+
+        for(Map.Entry<String, Map<String, TreeMap<Integer, Path>>> session : sessions.entrySet()){
+            if(EditJournal.isCurrentSession(session.getKey()) || isRunning(session.getKey())) continue;
+            for(TreeMap<Integer, Path> segments : session.getValue().values()){
+                JournalRecovery recovery = read(new ArrayList<>(segments.values()));
+                if(recovery == null) continue;
+                if(recovery.edits.isEmpty()) recovery.discard();
+                else recoveries.add(recovery);
+            }
+            try{
+                Files.deleteIfExists(EditJournal.lockFile(session.getKey()));
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+        return recoveries;
+    }
+
+    /**
+     * Checks if another instance of the editor still holds the lock of a session
+     */
+    private static boolean isRunning(String session){
+        Path lockFile = EditJournal.lockFile(session);
+        if(!Files.exists(lockFile)) return false;
+        try(FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock()){
+            return lock == null;
+        }catch(IOException e){
+            return true; //Leaving the journals alone if in doubt
+        }
+    }
+
+    /**
+     * Reads the segments of one window and picks the newest one whose base is still on disk to replay from
+     * @param segmentFiles The segments, oldest first
+     * @return The recovery, or null if none of the segments can be replayed
+     */
+    static JournalRecovery read(List<Path> segmentFiles){
+        List<Segment> segments = new ArrayList<>();
+        for(Path path : segmentFiles){
+            try{
+                Segment segment = Segment.read(path);
+                if(segment != null) segments.add(segment);
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+
+        for(int start = segments.size() - 1; start >= 0; start--){
+            Segment base = segments.get(start);
+            if(!base.hasEmptyBase() && !base.matchesDisk()) continue;
+            List<Edit> edits = new ArrayList<>();
+            for(Segment segment : segments.subList(start, segments.size())) edits.addAll(segment.edits);
+            String lastFile = segments.get(segments.size() - 1).file;
+            return new JournalRecovery(segmentFiles, base.hasEmptyBase() ? null : new File(base.file),
+                    lastFile.isEmpty() ? null : new File(lastFile), edits);
+        }
+        new JournalRecovery(segmentFiles, null, null, Collections.emptyList()).discard();
+        return null;
+    }
+
+    /**
+     * Rebuilds the document by loading the base file and replaying the edits onto it
+     * @return The recovered document
+     * @throws IOException If the base file cannot be read or the edits do not fit it
+     */
+    PieceTableDocument rebuild() throws IOException {
+        PieceTableDocument document;
+        if(baseFile == null) document = new PieceTableDocument();
+        else{
+            encoding = FileEncoding.detect(baseFile.toPath());
+            InputStream in = new FileInputStream(baseFile);
+            try(Reader reader = new InputStreamReader(in, encoding.getCharset())){
+                in.skipNBytes(encoding.getByteOrderMarkLength());
+                LineBreakFilter lineBreakFilter = new LineBreakFilter();
+                document = PieceTableDocument.read(reader, lineBreakFilter);
+                encoding = encoding.withLineSeparator(lineBreakFilter.getLineSeparator());
+            }
+        }
+        try{
+            for(Edit edit : edits){
+                if(edit.text != null) document.insertString(edit.offset, edit.text, null);
+                else document.remove(edit.offset, edit.length);
+            }
+        }catch(BadLocationException e){
+            throw new IOException("The journal does not fit " + baseFile, e);
+        }
+        return document;
+    }
+
+    /**
+     * Deletes the journal files
+     */
+    void discard(){
+        for(Path path : journalFiles){
+            try{
+                Files.deleteIfExists(path);
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns a name for the recovered document to show the user
+     * @return The name of the file, or Untitled
+     */
+    String getName(){
+        return file == null ? "Untitled" : file.getName();
+    }
+
+    //Getters
+    File getFile(){return file;}
+    FileEncoding getEncoding(){return encoding;}
+    int getEditCount(){return edits.size();}
+
+    /**
+     * A single edit read back from a journal - text is null for a removal
+     */
+    private static class Edit {
+        private final int offset, length;
+        private final String text;
+
+        Edit(int offset, int length, String text){
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+    }
+
+    /**
+     * One segment of a journal as read back from disk
+     */
+    private static class Segment {
+        private String file;
+        private long baseSize, baseModified;
+        private final List<Edit> edits = new ArrayList<>();
+
+        /**
+         * Reads the batches of a segment up to the end, or up to the first batch that was cut off by a crash
+         * @return The segment, or null if not even its header made it to disk
+         */
+        static Segment read(Path path) throws IOException {
+            Segment segment = null;
+            long remaining = Files.size(path);
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))){
+                while(remaining >= 8){
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    remaining -= 8;
+                    if(length < 0 || length > remaining) break;
+
+                    byte[] batch = new byte[length];
+                    in.readFully(batch);
+                    remaining -= length;
+                    CRC32 crc = new CRC32();
+                    crc.update(batch);
+                    if((int) crc.getValue() != checksum) break;
+                    segment = readBatch(segment, batch);
+                    if(segment == null) break;
+                }
+            }
+            return segment;
+        }
+
+        private static Segment readBatch(Segment segment, byte[] batch) throws IOException {
+            DataInputStream records = new DataInputStream(new ByteArrayInputStream(batch));
+            while(records.available() > 0){
+                byte type;
+                if(segment == null){
+                    if(records.readInt() != EditJournal.MAGIC || records.readByte() != EditJournal.HEADER) return null;
+                    segment = new Segment();
+                    segment.file = records.readUTF();
+                    segment.baseSize = records.readLong();
+                    segment.baseModified = records.readLong();
+                    continue;
+                }
+                type = records.readByte();
+                if(type == EditJournal.INSERT){
+                    int offset = records.readInt(), length = records.readInt();
+                    byte[] bytes = new byte[length * 2];
+                    records.readFully(bytes);
+                    char[] chars = new char[length];
+                    ByteBuffer.wrap(bytes).asCharBuffer().get(chars);
+                    segment.edits.add(new Edit(offset, length, new String(chars)));
+                }else if(type == EditJournal.REMOVE){
+                    segment.edits.add(new Edit(records.readInt(), records.readInt(), null));
+                }else if(type == EditJournal.BASE){
+                    segment.baseSize = records.readLong();
+                    segment.baseModified = records.readLong();
+                }else{
+                    throw new IOException("Unknown journal record " + type);
+                }
+            }
+            return segment;
+        }
+
+        boolean hasEmptyBase(){
+            return baseSize == EditJournal.EMPTY_BASE;
+        }
+
+        /**
+         * Checks if the base file is still on disk exactly as it was when the segment started
+         */
+        boolean matchesDisk(){
+            if(baseSize < 0 || file.isEmpty()) return false;
+            try{
+                Path path = new File(file).toPath();
+                return Files.size(path) == baseSize && Files.getLastModifiedTime(path).toMillis() == baseModified;
+            }catch(IOException e){
+                return false;
+            }
+        }
+    }
+}
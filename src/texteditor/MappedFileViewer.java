@@ -0,0 +1,169 @@
+package texteditor;
+
+import texteditor.document.MappedTextFile;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Read only viewer for files too large to load into the heap. Only the lines inside the viewport are decoded and
+ * drawn, so memory use and scrolling latency depend on the size of the window rather than the size of the file.
+ *
+ * The vertical scroll bar counts lines rather than pixels, since a file with hundreds of millions of lines would
+ * overflow the pixel height a JScrollPane works with
+ */
+class MappedFileViewer extends JPanel {
+
+    //Only this many bytes of each line are decoded and drawn
+    private static final int MAX_LINE_BYTES = 4096;
+    private static final int INDEX_POLL_MILLIS = 200;
+
+    private final MappedTextFile mappedFile;
+    private final JTextArea styleSource; //The viewer draws with the main text area's font, colors and margin
+    private final JScrollBar verticalScrollBar, horizontalScrollBar;
+    private final LinePanel linePanel;
+    private final Thread indexThread;
+    private final Timer indexPollTimer;
+
+    /**
+     * Creates a viewer for a mapped file and starts indexing its lines in the background
+     * @param mappedFile The file to show
+     * @param styleSource Text area whose font, colors and margin the viewer uses
+     */
+    MappedFileViewer(MappedTextFile mappedFile, JTextArea styleSource){
+        this.mappedFile = mappedFile;
+        this.styleSource = styleSource;
+
+        //Setting up the components
+        setLayout(new BorderLayout());
+        linePanel = new LinePanel();
+        verticalScrollBar = new JScrollBar(JScrollBar.VERTICAL, 0, 1, 0, 1);
+        horizontalScrollBar = new JScrollBar(JScrollBar.HORIZONTAL, 0, 1, 0, 1);
+        verticalScrollBar.addAdjustmentListener(e -> linePanel.repaint());
+        horizontalScrollBar.addAdjustmentListener(e -> linePanel.repaint());
+        add(linePanel, BorderLayout.CENTER);
+        add(verticalScrollBar, BorderLayout.EAST);
+        add(horizontalScrollBar, BorderLayout.SOUTH);
+        setupScrolling();
+
+        //Indexing the lines in the background, growing the scroll range as the index grows
+        indexThread = new Thread(() -> {
+            try{
+                mappedFile.buildIndex();
+            }catch(InterruptedException e){
+                //Viewer was closed
+            }
+        }, "Line index - " + mappedFile.getFile().getName());
+        indexThread.setDaemon(true);
+        indexThread.start();
+        indexPollTimer = new Timer(INDEX_POLL_MILLIS, e -> updateLineCount());
+        indexPollTimer.setInitialDelay(0);
+        indexPollTimer.start();
+    }
+
+    /**
+     * Stops indexing - Called when the viewer is no longer shown
+     */
+    void close(){
+        indexPollTimer.stop();
+        indexThread.interrupt();
+    }
+
+    /**
+     * Scrolls so that a line is at the top of the viewer
+     * @param line Index of the line
+     */
+    void scrollToLine(long line){
+        verticalScrollBar.setValue((int) Math.min(line, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the file shown by this viewer
+     * @return The mapped file
+     */
+    MappedTextFile getMappedFile(){return mappedFile;}
+
+    private void updateLineCount(){
+        if(mappedFile.isIndexComplete()) indexPollTimer.stop();
+        int lineCount = (int) Math.min(mappedFile.getLineCount(), Integer.MAX_VALUE);
+        verticalScrollBar.setMaximum(lineCount);
+    }
+
+    private int visibleRows(){
+        int lineHeight = getFontMetrics(styleSource.getFont()).getHeight();
+        return Math.max(1, linePanel.getHeight() / lineHeight);
+    }
+
+    /**
+     * Sets up scrolling with the mouse wheel and the keyboard
+     */
+    private void setupScrolling(){
+        linePanel.addMouseWheelListener(e -> {
+            JScrollBar scrollBar = e.isShiftDown() ? horizontalScrollBar : verticalScrollBar;
+            int unit = e.isShiftDown() ? 20 : 3;
+            scrollBar.setValue(scrollBar.getValue() + e.getWheelRotation() * unit);
+        });
+
+        InputMap inputMap = linePanel.getInputMap(WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actionMap = linePanel.getActionMap();
+        bindScrollKey(inputMap, actionMap, KeyEvent.VK_UP, 0, () -> -1);
+        bindScrollKey(inputMap, actionMap, KeyEvent.VK_DOWN, 0, () -> 1);
+        bindScrollKey(inputMap, actionMap, KeyEvent.VK_PAGE_UP, 0, () -> -visibleRows());
+        bindScrollKey(inputMap, actionMap, KeyEvent.VK_PAGE_DOWN, 0, () -> visibleRows());
+        bindScrollKey(inputMap, actionMap, KeyEvent.VK_HOME, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx(), () -> -verticalScrollBar.getValue());
+        bindScrollKey(inputMap, actionMap, KeyEvent.VK_END, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx(), () -> verticalScrollBar.getMaximum());
+    }
+
+    private void bindScrollKey(InputMap inputMap, ActionMap actionMap, int keyCode, int modifiers, IntSupplier lines){
+        String name = "scroll-" + keyCode + "-" + modifiers;
+        inputMap.put(KeyStroke.getKeyStroke(keyCode, modifiers), name);
+        actionMap.put(name, new AbstractAction() {
+            public void actionPerformed(ActionEvent e){
+                verticalScrollBar.setValue(verticalScrollBar.getValue() + lines.getAsInt());
+            }
+        });
+    }
+
+    /**
+     * Draws the lines inside the viewport
+     */
+    private class LinePanel extends JComponent {
+        private int widestLine = 0;
+
+        @Override
+        protected void paintComponent(Graphics g){
+            Graphics2D graphics2D = (Graphics2D) g;
+            graphics2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics2D.setColor(styleSource.getBackground());
+            graphics2D.fillRect(0, 0, getWidth(), getHeight());
+            graphics2D.setFont(styleSource.getFont());
+            graphics2D.setColor(styleSource.getForeground());
+
+            FontMetrics fontMetrics = graphics2D.getFontMetrics();
+            Insets margin = styleSource.getMargin();
+            int lineHeight = fontMetrics.getHeight();
+            int rows = getHeight() / lineHeight + 1;
+            int x = margin.left - horizontalScrollBar.getValue();
+            int y = margin.top + fontMetrics.getAscent();
+
+            //Decoding and drawing just the visible lines
+            List<String> lines = mappedFile.readLines(verticalScrollBar.getValue(), rows, MAX_LINE_BYTES);
+            for(String line : lines){
+                String expanded = line.replace("\t", "        ");
+                widestLine = Math.max(widestLine, fontMetrics.stringWidth(expanded));
+                graphics2D.drawString(expanded, x, y);
+                y += lineHeight;
+            }
+
+            //The horizontal range grows to fit the widest line seen so far
+            horizontalScrollBar.setMaximum(widestLine + margin.left + margin.right);
+            horizontalScrollBar.setVisibleAmount(getWidth());
+            verticalScrollBar.setVisibleAmount(Math.max(1, rows - 1));
+            verticalScrollBar.setBlockIncrement(Math.max(1, rows - 1));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package texteditor;
+
+import texteditor.menu.items.MenuItem;
+import texteditor.menu.items.NoCustomShortcutException;
+
+import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.KeyEvent;
+import java.util.*;
+
+/**
+ * The menus of a window, the items in each and their shortcuts - Worked out once and shared by every window, each
+ * of which builds its own menu components from it
+ */
+class MenuTemplate {
+
+    //Menus in the order they are added to the menu bar
+    private static final List<String> MENU_NAMES = List.of("File", "Edit", "Format");
+
+    //List of menu item names within each menu
+    private static final List<String> FILE_MENU_ITEM_NAMES = List.of("New", "Open", "Save", "Save As...", "Exit", "New Window");
+    private static final List<String> EDIT_MENU_ITEM_NAMES = List.of("Cut", "Copy", "Paste", "Undo", "Redo", "Find", "Find Next", "Replace", "Find in Files", "Go To Line", "Insert Point", "Insert Sub Point", "Insert Date");
+    private static final List<String> FORMAT_MENU_ITEM_NAMES = List.of("Font", "Word Wrap", "Outline Highlighting", "Spell Check", "Light Theme", "Dark Theme");
+    private static final Set<String> MENU_ITEMS_WITH_SEPARATORS = Set.of("Save", "Save As...", "Paste", "Redo", "Go To Line", "Font", "Insert Sub Point", "Spell Check");
+    private static final List<String> RIGHT_CLICK_MENU_ITEM_NAMES = List.of("Undo", "Cut", "Copy", "Paste", "Redo");
+    private static final Set<String> CHECK_BOX_MENU_ITEM_NAMES = Set.of("Word Wrap", "Outline Highlighting", "Spell Check", "Light Theme", "Dark Theme");
+
+    /*Explanation of the 3 Collections:
+     * MENU_ITEMS_WITH_BASIC_SHORTCUTS is a collection of menu items whose shortcut is CTRL + [first character of the menu item name]
+     * MENU_ITEMS_WITH_CUSTOM_SHORTCUTS is a collection of menu items whose shortcut does not use the first character of the menu item name
+     * MENU_ITEMS_WITH_SHIFT_SHORTCUTS is a collection of menu items whose shortcut is CTRL + SHIFT + [first character of the menu item name]
+     */
+    private static final Set<String> MENU_ITEMS_WITH_BASIC_SHORTCUTS = Set.of("New", "Open", "Save", "Copy", "Font", "Go To Line", "Insert Point");
+    private static final Set<String> MENU_ITEMS_WITH_CUSTOM_SHORTCUTS = Set.of("Undo", "Cut", "Paste", "Exit", "Redo", "Insert Date", "Find Next", "Find in Files");
+    private static final Set<String> MENU_ITEMS_WITH_SHIFT_SHORTCUTS = Set.of("Save As...", "New Window", "Insert Sub Point", "Find", "Replace");
+
+    private final Map<String, List<String>> menuItemNames = new HashMap<>();
+    private final Map<String, KeyStroke> shortcuts = new HashMap<>(); //Menu items without a shortcut are left out
+
+    MenuTemplate(){
+        menuItemNames.put("File", FILE_MENU_ITEM_NAMES);
+        menuItemNames.put("Edit", EDIT_MENU_ITEM_NAMES);
+        menuItemNames.put("Format", FORMAT_MENU_ITEM_NAMES);
+        if(GraphicsEnvironment.isHeadless()) return; //Shortcuts need a display, and there are no menus to show them in
+        for(String menuItemName : MENU_ITEMS_WITH_BASIC_SHORTCUTS){
+            shortcuts.put(menuItemName, MenuItem.shortcut(MenuItem.getKeyEventForChar(menuItemName.charAt(0)), false));
+        }
+        for(String menuItemName : MENU_ITEMS_WITH_SHIFT_SHORTCUTS){
+            shortcuts.put(menuItemName, MenuItem.shortcut(MenuItem.getKeyEventForChar(menuItemName.charAt(0)), true));
+        }
+        for(String menuItemName : MENU_ITEMS_WITH_CUSTOM_SHORTCUTS){
+            shortcuts.put(menuItemName, MenuItem.shortcut(findCustomShortcut(menuItemName), true));
+        }
+    }
+
+    /**
+     * Determines the custom shortcut for a menu item with the supplied name
+     * @param menuItemName Name of the menu item associated with the shortcut
+     * @return An integer representing the shortcut key
+     */
+    private static int findCustomShortcut(String menuItemName){
+        try {
+            switch (menuItemName) {
+                case "Undo": return KeyEvent.VK_Z;
+                case "Cut": return KeyEvent.VK_X;
+                case "Paste": return KeyEvent.VK_V;
+                case "Exit": return KeyEvent.VK_W;
+                case "Redo": return KeyEvent.VK_Y;
+                case "Insert Date": return KeyEvent.VK_D;
+                case "Find Next": return KeyEvent.VK_K;
+                case "Find in Files": return KeyEvent.VK_H;
+                default: throw new NoCustomShortcutException(menuItemName);
+            }
+        }catch(NoCustomShortcutException e){throw new Error();}
+    }
+
+    /**
+     * Returns the names of the items in a menu, in order
+     * @param menuName Name of the menu
+     * @return The names of its items
+     */
+    List<String> getMenuItemNames(String menuName){
+        return menuItemNames.get(menuName);
+    }
+
+    /**
+     * Returns the shortcut of a menu item
+     * @param menuItemName Name of the menu item
+     * @return The shortcut, or null if it has none
+     */
+    KeyStroke getShortcut(String menuItemName){
+        return shortcuts.get(menuItemName);
+    }
+
+    boolean isCheckBox(String menuItemName){
+        return CHECK_BOX_MENU_ITEM_NAMES.contains(menuItemName);
+    }
+
+    boolean hasSeparatorAfter(String menuItemName){
+        return MENU_ITEMS_WITH_SEPARATORS.contains(menuItemName);
+    }
+
+    //Getters
+    List<String> getMenuNames(){return MENU_NAMES;}
+    List<String> getEditMenuItemNames(){return EDIT_MENU_ITEM_NAMES;}
+    List<String> getRightClickMenuItemNames(){return RIGHT_CLICK_MENU_ITEM_NAMES;}
+}
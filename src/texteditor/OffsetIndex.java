@@ -0,0 +1,44 @@
+package texteditor;
+
+import java.util.Arrays;
+
+/**
+ * Sparse map from char offsets in a text to byte offsets in the file it is saved in. Only every so many chars are
+ * recorded - the byte offset of any other char is found by encoding forward from the nearest entry before it
+ */
+class OffsetIndex {
+    private long[] chars = new long[64];
+    private long[] bytes = new long[64];
+    private int count;
+
+    /**
+     * Records the byte offset of a char - Entries must be added in order, and one at or before an existing entry
+     * is ignored
+     * @param charOffset Offset of the char in the text
+     * @param byteOffset Offset of its first byte in the file
+     */
+    void add(long charOffset, long byteOffset){
+        if(count > 0 && charOffset <= chars[count - 1]) return;
+        if(count == chars.length){
+            chars = Arrays.copyOf(chars, count * 2);
+            bytes = Arrays.copyOf(bytes, count * 2);
+        }
+        chars[count] = charOffset;
+        bytes[count++] = byteOffset;
+    }
+
+    /**
+     * Finds the last entry at or before a char offset
+     * @param charOffset Offset of the char
+     * @return Index of the entry
+     */
+    int floor(long charOffset){
+        int index = Arrays.binarySearch(chars, 0, count, charOffset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    //Getters
+    int size(){return count;}
+    long getChars(int index){return chars[index];}
+    long getBytes(int index){return bytes[index];}
+}
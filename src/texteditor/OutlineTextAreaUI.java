@@ -0,0 +1,124 @@
+package texteditor;
+
+import texteditor.document.OutlineLexer;
+
+import javax.swing.*;
+import javax.swing.plaf.basic.BasicTextAreaUI;
+import javax.swing.text.*;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Text area UI that paints the tokens found by an OutlineLexer in their own colours. The views are the usual
+ * PlainView and WrappedPlainView with only the drawing of unselected text changed, so each line is lexed as it is
+ * painted and nothing is lexed for lines off screen. Only colours change, never the font, so the width of the text
+ * and everything the views work out from it stay the same
+ */
+class OutlineTextAreaUI extends BasicTextAreaUI {
+
+    //Colours of each OutlineLexer.Token, in order - Null is the foreground of the text area
+    private static final Color[] LIGHT_COLORS = {null, new Color(128, 0, 128), new Color(0, 80, 200), new Color(0, 130, 130), new Color(100, 100, 100), new Color(170, 85, 0)};
+    private static final Color[] DARK_COLORS = {null, new Color(220, 140, 255), new Color(110, 170, 255), new Color(90, 210, 210), new Color(165, 165, 165), new Color(255, 180, 90)};
+
+    private OutlineLexer lexer;
+    private final Segment segment = new Segment();
+
+    /**
+     * Sets the lexer of the document being shown
+     * @param lexer The lexer, or null to paint plain text
+     */
+    void setLexer(OutlineLexer lexer){
+        this.lexer = lexer;
+        getComponent().repaint();
+    }
+
+    /**
+     * Repaints lines whose tokens changed because of an edit to a line before them - Done once the edit has been
+     * handled, since the views only hear of it after the lexer
+     * @param firstLine The first line to repaint
+     * @param lastLine The last line to repaint
+     */
+    void repaintLines(int firstLine, int lastLine){
+        SwingUtilities.invokeLater(() -> {
+            JTextComponent textArea = getComponent();
+            Element root = textArea.getDocument().getDefaultRootElement();
+            if(textArea.getUI() != this || firstLine >= root.getElementCount()) return;
+            try{
+                Rectangle2D first = textArea.modelToView2D(root.getElement(firstLine).getStartOffset());
+                Rectangle2D last = textArea.modelToView2D(root.getElement(Math.min(lastLine, root.getElementCount() - 1)).getEndOffset() - 1);
+                if(first == null || last == null) return;
+                int top = (int) first.getY(), bottom = (int) Math.ceil(last.getMaxY());
+                textArea.repaint(0, top, textArea.getWidth(), bottom - top);
+            }catch(BadLocationException e){
+                textArea.repaint(); //Lines removed since
+            }
+        });
+    }
+
+    @Override
+    public View create(Element element){
+        View view = super.create(element);
+        if(view instanceof WrappedPlainView) return new WrappedOutlineView(element, ((JTextArea) getComponent()).getWrapStyleWord());
+        if(view instanceof PlainView) return new OutlineView(element);
+        return view; //Bidirectional text, which is left as it is
+    }
+
+    /**
+     * Draws a range of a line one token at a time
+     * @return The x coordinate after the text
+     */
+    private float drawTokens(Document document, Graphics2D graphics, float x, float y, int p0, int p1, TabExpander tabs) throws BadLocationException {
+        JTextComponent textArea = getComponent();
+        Color[] colors = isDark(textArea.getBackground()) ? DARK_COLORS : LIGHT_COLORS;
+        float[] nextX = {x};
+        lexer.lexLine(document.getDefaultRootElement().getElementIndex(p0), (start, end, token) -> {
+            int from = Math.max(start, p0), to = Math.min(end, p1);
+            if(from >= to) return;
+            Color color = colors[token.ordinal()];
+            graphics.setColor(color != null ? color : textArea.getForeground());
+            document.getText(from, to - from, segment);
+            nextX[0] = Utilities.drawTabbedText(segment, nextX[0], y, graphics, tabs, from);
+        });
+        return nextX[0];
+    }
+
+    private static boolean isDark(Color background){
+        return background.getRed() * 299 + background.getGreen() * 587 + background.getBlue() * 114 < 128000;
+    }
+
+    private boolean paintsTokens(){
+        return lexer != null && getComponent().isEnabled();
+    }
+
+    /**
+     * View for a text area that does not wrap lines
+     */
+    private class OutlineView extends PlainView {
+
+        OutlineView(Element element){
+            super(element);
+        }
+
+        @Override
+        protected float drawUnselectedText(Graphics2D graphics, float x, float y, int p0, int p1) throws BadLocationException {
+            if(!paintsTokens()) return super.drawUnselectedText(graphics, x, y, p0, p1);
+            return drawTokens(getDocument(), graphics, x, y, p0, p1, this);
+        }
+    }
+
+    /**
+     * View for a text area that wraps lines
+     */
+    private class WrappedOutlineView extends WrappedPlainView {
+
+        WrappedOutlineView(Element element, boolean wordWrap){
+            super(element, wordWrap);
+        }
+
+        @Override
+        protected float drawUnselectedText(Graphics2D graphics, float x, float y, int p0, int p1) throws BadLocationException {
+            if(!paintsTokens()) return super.drawUnselectedText(graphics, x, y, p0, p1);
+            return drawTokens(getDocument(), graphics, x, y, p0, p1, this);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package texteditor;
+
+import texteditor.document.FileEncoding;
+import texteditor.document.TextSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * What a window knows about the file it last saved or loaded: the text that is in it, and where in the file each
+ * part of that text is. This lets a save write only the parts of the file that changed.
+ *
+ * Only ever changed on the save thread - The text is known to match the file only while the file on disk still
+ * has the size and modification time it had when it was last written or checked
+ */
+class SavedFile {
+    private final File file;
+    private final Charset charset;
+    private final byte[] byteOrderMark;
+    private final String lineSeparator;
+
+    private TextSnapshot text;
+    private OffsetIndex index;
+    private long size = -1;
+    private long lastModified = -1;
+
+    /**
+     * Creates a SavedFile with nothing known about the contents of the file yet
+     * @param file The file
+     * @param encoding Encoding the file is written in
+     */
+    SavedFile(File file, FileEncoding encoding){
+        this.file = file;
+        this.charset = encoding.getCharset();
+        this.byteOrderMark = encoding.getByteOrderMark();
+        this.lineSeparator = encoding.getLineSeparator();
+    }
+
+    /**
+     * Checks that a text encodes to exactly the bytes in the file and, if so, records where each part of it is -
+     * Called after a file is loaded, since a file that mixes line separators or has bytes that are not valid in the
+     * charset does not come back out the same as it went in
+     * @param loadedText The text that was loaded from the file
+     * @throws IOException If the file cannot be read
+     */
+    void verify(TextSnapshot loadedText) throws IOException {
+        invalidate();
+        if(!SnapshotEncoder.encodesIndependently(charset)) return;
+        Path path = file.toPath();
+        long fileSize = Files.size(path);
+        long fileModified = Files.getLastModifiedTime(path).toMillis();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            ComparingChannel comparer = new ComparingChannel(channel);
+            comparer.write(ByteBuffer.wrap(byteOrderMark));
+            SnapshotEncoder encoder = new SnapshotEncoder(charset, lineSeparator, comparer);
+            OffsetIndex newIndex = new OffsetIndex();
+            encoder.recordCheckpoints(newIndex, 0, byteOrderMark.length);
+            encoder.encode(loadedText, 0, loadedText.length());
+            long encodedSize = byteOrderMark.length + encoder.finish();
+            if(!comparer.matches || encodedSize != fileSize) return;
+            newIndex.add(loadedText.length(), encodedSize);
+            text = loadedText;
+            index = newIndex;
+            size = fileSize;
+            lastModified = fileModified;
+        }
+    }
+
+    /**
+     * Records what was just written to the file
+     * @param savedText The text now in the file
+     * @param savedIndex Where each part of the text is in the file, or null if it is not known
+     * @throws IOException If the size of the file cannot be read
+     */
+    void setSaved(TextSnapshot savedText, OffsetIndex savedIndex) throws IOException {
+        text = savedText;
+        index = SnapshotEncoder.encodesIndependently(charset) ? savedIndex : null;
+        size = Files.size(file.toPath());
+        lastModified = Files.getLastModifiedTime(file.toPath()).toMillis();
+    }
+
+    /**
+     * Forgets what is in the file - Called when a save fails part way through
+     */
+    void invalidate(){
+        text = null;
+        index = null;
+    }
+
+    /**
+     * Checks if the text of the file is known and the file has not been changed by anything else since
+     * @return True if only the changed parts of the file need writing
+     */
+    boolean canWriteChangesOnly(){
+        if(index == null) return false;
+        try{
+            Path path = file.toPath();
+            return Files.size(path) == size && Files.getLastModifiedTime(path).toMillis() == lastModified;
+        }catch(IOException e){
+            return false; //Deleted or unreadable
+        }
+    }
+
+    /**
+     * Finds where a char of the saved text is in the file
+     * @param charOffset Offset of the char in the saved text
+     * @return Offset of its first byte in the file
+     */
+    long byteOffset(long charOffset){
+        int entry = index.floor(charOffset);
+        long from = index.getChars(entry);
+        return index.getBytes(entry) + SnapshotEncoder.countBytes(charset, lineSeparator, text, from, charOffset);
+    }
+
+    /**
+     * Copies the entries of the index that fall inside a run of unchanged text into the index of the new file
+     * @param oldStart Offset of the run in the saved text
+     * @param length Length of the run
+     * @param oldByteStart Offset of the run in the saved file
+     * @param newStart Offset of the run in the new text
+     * @param newByteStart Offset of the run in the new file
+     * @param into Index of the new file
+     */
+    void copyCheckpoints(long oldStart, long length, long oldByteStart, long newStart, long newByteStart, OffsetIndex into){
+        into.add(newStart, newByteStart);
+        for(int i = index.floor(oldStart) + 1; i < index.size() && index.getChars(i) < oldStart + length; i++){
+            into.add(index.getChars(i) - oldStart + newStart, index.getBytes(i) - oldByteStart + newByteStart);
+        }
+    }
+
+    //Getters
+    File getFile(){return file;}
+    Charset getCharset(){return charset;}
+    byte[] getByteOrderMark(){return byteOrderMark;}
+    String getLineSeparator(){return lineSeparator;}
+    TextSnapshot getText(){return text;}
+    long getSize(){return size;}
+
+    /**
+     * Channel that compares the bytes written to it with the bytes already in a file, rather than writing them
+     */
+    private static class ComparingChannel implements WritableByteChannel {
+        private final FileChannel file;
+        private final ByteBuffer fileBytes = ByteBuffer.allocateDirect(1 << 20);
+        private long position = 0;
+        private boolean matches = true;
+
+        ComparingChannel(FileChannel file){
+            this.file = file;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int written = source.remaining();
+            while(matches && source.hasRemaining()){
+                fileBytes.clear();
+                fileBytes.limit(Math.min(fileBytes.capacity(), source.remaining()));
+                int read = file.read(fileBytes, position);
+                if(read <= 0){
+                    matches = false;
+                    break;
+                }
+                fileBytes.flip();
+                ByteBuffer expected = source.duplicate();
+                expected.limit(expected.position() + read);
+                if(!expected.equals(fileBytes)) matches = false;
+                source.position(source.position() + read);
+                position += read;
+            }
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen(){return file.isOpen();}
+
+        @Override
+        public void close(){}
+    }
+}
@@ -0,0 +1,209 @@
+package texteditor;
+
+import texteditor.document.TextSnapshot;
+
+import javax.swing.text.Segment;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encodes ranges of a TextSnapshot through a direct buffer into a channel, or just counts the bytes if there is no
+ * channel. A surrogate pair split across two segments is joined back together before it is encoded.
+ *
+ * Line breaks are \n in the text, and are written as the line separator of the file - Each run of text between
+ * them is encoded straight from the segment holding it, with the separator encoded in between, so a file with \r\n
+ * line breaks is written without copying the text first. Checkpoints count the \n as the one char it is in the text
+ */
+class SnapshotEncoder {
+
+    //Roughly how many chars apart the entries of an OffsetIndex are
+    static final int CHECKPOINT_INTERVAL = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+    private final WritableByteChannel channel;
+    private final char[] lineSeparator; //Null when line breaks are written as \n
+    private final Segment segment = new Segment();
+    private final char[] pair = new char[2];
+    private boolean carrying = false; //Set when the last range ended on the first half of a surrogate pair
+    private long bytesDrained = 0;
+    private long charsEncoded = 0;
+
+    //Set when checkpoints are being recorded
+    private OffsetIndex index;
+    private long charBase, byteBase, lastCheckpoint;
+
+    /**
+     * Creates a SnapshotEncoder
+     * @param charset Charset to encode with
+     * @param lineSeparator What each \n in the text is written as
+     * @param channel Channel to write the bytes to, or null to only count them
+     */
+    SnapshotEncoder(Charset charset, String lineSeparator, WritableByteChannel channel){
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.lineSeparator = lineSeparator.equals("\n") ? null : lineSeparator.toCharArray();
+        bytes = channel == null ? ByteBuffer.allocate(BUFFER_SIZE / 4) : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.channel = channel;
+    }
+
+    /**
+     * Records the byte offset of every CHECKPOINT_INTERVAL-th char encoded from now on
+     * @param index Index to record into
+     * @param charBase Offset in the text of the next char encoded
+     * @param byteBase Offset in the file of the next byte written
+     */
+    void recordCheckpoints(OffsetIndex index, long charBase, long byteBase){
+        this.index = index;
+        this.charBase = charBase - charsEncoded;
+        this.byteBase = byteBase - getByteCount();
+        lastCheckpoint = charsEncoded;
+        index.add(charBase, byteBase);
+    }
+
+    /**
+     * Encodes a range of a snapshot
+     * @param text Snapshot holding the text
+     * @param from Offset of the first char to encode
+     * @param to Offset after the last char to encode
+     * @throws IOException If the bytes cannot be written
+     */
+    void encode(TextSnapshot text, long from, long to) throws IOException {
+        if(from >= to) return;
+        for(int i = text.segmentAt(from); i < text.getSegmentCount() && text.getSegmentStart(i) < to; i++){
+            text.getSegment(i, segment);
+            long segmentStart = text.getSegmentStart(i);
+            int offset = segment.offset + (int) Math.max(0, from - segmentStart);
+            int end = segment.offset + (int) Math.min(segment.count, to - segmentStart);
+
+            //Joining a surrogate pair split across two segments
+            if(carrying && offset < end){
+                carrying = false;
+                if(lineSeparator != null && segment.array[offset] == '\n') encodeLineBreak(pair, 0, 1);
+                else{
+                    pair[1] = segment.array[offset];
+                    encodeChars(CharBuffer.wrap(pair));
+                }
+                offset++;
+            }
+
+            //Encoding in chunks so that checkpoints can be recorded between them, and in runs that stop at each line break
+            while(offset < end){
+                int chunkEnd = offset + Math.min(end - offset, CHECKPOINT_INTERVAL);
+                int runEnd = lineSeparator == null ? chunkEnd : nextLineBreak(segment.array, offset, chunkEnd);
+                CharBuffer chars = CharBuffer.wrap(segment.array, offset, runEnd - offset);
+                encodeChars(chars);
+                offset = chars.position();
+                if(runEnd < chunkEnd){
+                    encodeLineBreak(segment.array, offset, runEnd);
+                    offset = runEnd + 1;
+                }else if(chars.hasRemaining()){
+                    if(offset + 1 == end){
+                        pair[0] = segment.array[offset++];
+                        carrying = true;
+                    }
+                    continue;
+                }
+                if(index != null && charsEncoded - lastCheckpoint >= CHECKPOINT_INTERVAL){
+                    lastCheckpoint = charsEncoded;
+                    index.add(charBase + charsEncoded, byteBase + getByteCount());
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes whatever is left and writes out the buffer
+     * @return The total number of bytes encoded
+     * @throws IOException If the bytes cannot be written
+     */
+    long finish() throws IOException {
+        CharBuffer rest = carrying ? CharBuffer.wrap(pair, 0, 1) : CharBuffer.allocate(0);
+        carrying = false;
+        while(encoder.encode(rest, bytes, true).isOverflow()) drain();
+        while(encoder.flush(bytes).isOverflow()) drain();
+        drain();
+        return bytesDrained;
+    }
+
+    private long getByteCount(){
+        return bytesDrained + bytes.position();
+    }
+
+    private void encodeChars(CharBuffer chars) throws IOException {
+        int start = chars.position();
+        while(encoder.encode(chars, bytes, false).isOverflow()) drain();
+        charsEncoded += chars.position() - start;
+    }
+
+    /**
+     * Encodes the line separator in place of a \n
+     * @param array Array holding any chars the encoder left before the \n, which can only be a high surrogate with
+     *              no pair - It is joined to the separator so the encoder sees it is unpaired and replaces it
+     * @param from Offset of the first char left
+     * @param to Offset after the last char left
+     */
+    private void encodeLineBreak(char[] array, int from, int to) throws IOException {
+        CharBuffer chars;
+        if(from == to) chars = CharBuffer.wrap(lineSeparator);
+        else{
+            char[] joined = new char[to - from + lineSeparator.length];
+            System.arraycopy(array, from, joined, 0, to - from);
+            System.arraycopy(lineSeparator, 0, joined, to - from, lineSeparator.length);
+            chars = CharBuffer.wrap(joined);
+        }
+        while(encoder.encode(chars, bytes, false).isOverflow()) drain();
+        charsEncoded += to - from + 1;
+    }
+
+    private static int nextLineBreak(char[] array, int from, int to){
+        while(from < to && array[from] != '\n') from++;
+        return from;
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        bytesDrained += bytes.remaining();
+        if(channel != null){
+            while(bytes.hasRemaining()) channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Counts the bytes a range of text encodes to
+     * @param charset Charset to encode with
+     * @param lineSeparator What each \n in the text is written as
+     * @param text Snapshot holding the text
+     * @param from Offset of the first char
+     * @param to Offset after the last char
+     * @return The number of bytes
+     */
+    static long countBytes(Charset charset, String lineSeparator, TextSnapshot text, long from, long to){
+        try{
+            SnapshotEncoder counter = new SnapshotEncoder(charset, lineSeparator, null);
+            counter.encode(text, from, to);
+            return counter.finish();
+        }catch(IOException e){
+            throw new IllegalStateException(e); //Nothing is written when counting
+        }
+    }
+
+    /**
+     * Checks if a charset encodes each char on its own, with no byte order mark or shift state - Only then can
+     * part of a file be re-encoded without touching the rest
+     * @param charset Charset to check
+     * @return True if text can be encoded in pieces
+     */
+    static boolean encodesIndependently(Charset charset){
+        if(!charset.canEncode()) return false;
+        return "aa".getBytes(charset).length == 2 * "a".getBytes(charset).length && "".getBytes(charset).length == 0;
+    }
+}
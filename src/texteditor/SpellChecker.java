@@ -0,0 +1,352 @@
+package texteditor;
+
+import texteditor.document.PieceTableDocument;
+import texteditor.document.SpellingDictionary;
+import texteditor.document.TextSnapshot;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.*;
+import java.awt.*;
+import java.beans.PropertyChangeListener;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Underlines the misspelt words of a text area.
+ *
+ * An edit or scroll only records where it happened and restarts a timer, so typing costs nothing more than that.
+ * Once the timer fires, the lines on screen - with a margin either side - and the lines edited since the last check
+ * are handed to a background thread as a snapshot of the document, and the words found missing from the dictionary
+ * come back to the Event Dispatch Thread to be underlined. Results are dropped if the document was edited while
+ * they were being found, since the edit has already started the timer again.
+ *
+ * The dictionary is loaded once, on the same thread as the checks, and shared by every window
+ */
+class SpellChecker implements DocumentListener {
+
+    private static final int CHECK_DELAY = 250; //Milliseconds after the last edit or scroll
+    private static final int MARGIN_LINES = 50; //Checked above and below the screen, so short scrolls show underlines straight away
+    private static final int MAX_EDITED_LINES = 64;
+    private static final int MAX_RANGE_LENGTH = 1 << 20; //Of a very long line, only this much is checked
+    private static final int MAX_UNDERLINES = 5000;
+    private static final int MAX_DISTANCE = 2;
+    private static final int MAX_SUGGESTIONS = 8;
+    private static final Highlighter.HighlightPainter SQUIGGLE_PAINTER = new SquigglePainter(Color.red);
+
+    private static final ExecutorService checkExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Spell checker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static String dictionaryPath = "/usr/share/dict/words";
+    private static Future<SpellingDictionary> dictionary;
+
+    private final JTextArea textArea;
+    private final JViewport viewport;
+    private final Runnable failed;
+    private final Timer timer;
+    private final List<Highlighter.Highlight> underlines = new ArrayList<>();
+    private final ChangeListener scrollListener = e -> restartTimer();
+    private final PropertyChangeListener documentListener = e -> watch((Document) e.getNewValue());
+    private final PropertyChangeListener highlighterListener = e -> {
+        underlines.clear(); //Went with the old highlighter
+        restartTimer();
+    };
+    private final List<Position> edits = new ArrayList<>(); //Where the document was edited since the last check
+    private Document document;
+    private SpellingDictionary loadedDictionary; //Set once a check has run
+    private int editCount = 0;
+    private boolean stopped = false;
+
+    /**
+     * Starts spell checking a text area
+     * @param textArea The text area
+     * @param viewport Viewport the text area is scrolled in
+     * @param failed Run if the dictionary cannot be loaded, after which nothing is checked
+     */
+    SpellChecker(JTextArea textArea, JViewport viewport, Runnable failed){
+        this.textArea = textArea;
+        this.viewport = viewport;
+        this.failed = failed;
+        timer = new Timer(CHECK_DELAY, e -> check());
+        timer.setRepeats(false);
+        viewport.addChangeListener(scrollListener);
+        textArea.addPropertyChangeListener("document", documentListener);
+        textArea.addPropertyChangeListener("highlighter", highlighterListener);
+        watch(textArea.getDocument());
+    }
+
+    /**
+     * Sets the word list loaded the first time spell checking is turned on
+     * @param path Path of a file with one word per line
+     */
+    static synchronized void setDictionaryPath(String path){
+        dictionaryPath = path;
+    }
+
+    private static synchronized Future<SpellingDictionary> getDictionary(){
+        if(dictionary == null) dictionary = checkExecutor.submit(() -> SpellingDictionary.read(Paths.get(dictionaryPath)));
+        return dictionary;
+    }
+
+    private static synchronized void forgetDictionary(){
+        dictionary = null; //So turning spell checking on again tries again
+    }
+
+    /**
+     * Stops checking and removes the underlines
+     */
+    void stop(){
+        stopped = true;
+        timer.stop();
+        viewport.removeChangeListener(scrollListener);
+        textArea.removePropertyChangeListener("document", documentListener);
+        textArea.removePropertyChangeListener("highlighter", highlighterListener);
+        if(document != null) document.removeDocumentListener(this);
+        for(Highlighter.Highlight underline : underlines) textArea.getHighlighter().removeHighlight(underline);
+        underlines.clear();
+    }
+
+    /**
+     * Starts listening to a new document, with none of the old underlines
+     */
+    private void watch(Document newDocument){
+        if(document != null) document.removeDocumentListener(this);
+        document = newDocument;
+        document.addDocumentListener(this);
+        for(Highlighter.Highlight underline : underlines) textArea.getHighlighter().removeHighlight(underline);
+        underlines.clear();
+        edits.clear();
+        editCount++;
+        restartTimer();
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        edited(e.getOffset());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e){
+        edited(e.getOffset());
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){}
+
+    private void edited(int offset){
+        editCount++;
+        if(edits.size() < MAX_EDITED_LINES){
+            try{
+                edits.add(document.createPosition(offset));
+            }catch(BadLocationException e){
+                e.printStackTrace(); //Cannot happen, the offset came from the document
+            }
+        }
+        restartTimer();
+    }
+
+    private void restartTimer(){
+        if(!stopped) timer.restart();
+    }
+
+    /**
+     * Hands the lines to check to the background thread
+     */
+    private void check(){
+        if(stopped || !(document instanceof PieceTableDocument)) return;
+        int[] ranges = rangesToCheck();
+        TextSnapshot text = ((PieceTableDocument) document).snapshot();
+        int checkedEditCount = editCount;
+        Future<SpellingDictionary> checkDictionary = getDictionary();
+        checkExecutor.execute(() -> {
+            SpellingDictionary words;
+            try{
+                words = checkDictionary.get(); //Already loaded, since it was queued on this thread first
+            }catch(InterruptedException | ExecutionException e){
+                e.printStackTrace();
+                forgetDictionary();
+                SwingUtilities.invokeLater(failed);
+                return;
+            }
+            List<Integer> misspelt = findMisspelt(words, text, ranges);
+            SwingUtilities.invokeLater(() -> underline(words, checkedEditCount, ranges, misspelt));
+        });
+    }
+
+    /**
+     * Works out which ranges of the document to check: the lines on screen with a margin either side, and the lines
+     * edited since the last check
+     * @return Start and end offsets of each range, in order and not overlapping
+     */
+    private int[] rangesToCheck(){
+        Element root = document.getDefaultRootElement();
+        Rectangle visible = textArea.getVisibleRect();
+        int top = textArea.viewToModel2D(new Point(visible.x, visible.y));
+        int bottom = textArea.viewToModel2D(new Point(visible.x + visible.width, visible.y + visible.height));
+        int firstLine = Math.max(0, root.getElementIndex(top) - MARGIN_LINES);
+        int lastLine = Math.min(root.getElementCount() - 1, root.getElementIndex(bottom) + MARGIN_LINES);
+        TreeSet<Integer> lines = new TreeSet<>();
+        for(Position edit : edits){
+            int line = root.getElementIndex(edit.getOffset());
+            if(line < firstLine || line > lastLine) lines.add(line);
+        }
+
+        //Joining the edited lines and the lines around the screen into ranges of whole lines
+        List<Integer> ranges = new ArrayList<>();
+        lines.add(firstLine);
+        for(int line : lines){
+            int last = line == firstLine ? lastLine : line;
+            int start = root.getElement(line).getStartOffset(), end = root.getElement(last).getEndOffset() - 1;
+            if(!ranges.isEmpty() && ranges.get(ranges.size() - 1) >= start) ranges.set(ranges.size() - 1, Math.max(end, ranges.get(ranges.size() - 1)));
+            else{
+                ranges.add(start);
+                ranges.add(end);
+            }
+        }
+        int[] offsets = new int[ranges.size()];
+        for(int i = 0; i < offsets.length; i += 2){
+            offsets[i] = ranges.get(i);
+            offsets[i + 1] = Math.min(ranges.get(i + 1), offsets[i] + MAX_RANGE_LENGTH);
+        }
+        return offsets;
+    }
+
+    /**
+     * Finds the words in ranges of a snapshot that are not in the dictionary - Runs on the background thread
+     * @return Start and end offsets of each misspelt word
+     */
+    private static List<Integer> findMisspelt(SpellingDictionary words, TextSnapshot text, int[] ranges){
+        List<Integer> misspelt = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for(int r = 0; r < ranges.length; r += 2){
+            int wordStart = -1, end = ranges[r + 1];
+            boolean joined = false; //Set for words joined to digits or underscores, which are names rather than words
+            for(int i = ranges[r]; i <= end; i++){
+                char c = i < end ? text.charAt(i) : ' ';
+                if(Character.isLetter(c) || (c == '\'' && wordStart >= 0 && i + 1 < end && Character.isLetter(text.charAt(i + 1)))){
+                    if(wordStart < 0) wordStart = i;
+                    word.append(c);
+                }else if(Character.isDigit(c) || c == '_'){
+                    joined = true;
+                }else{
+                    if(wordStart >= 0 && !joined && isMisspelt(words, word)){
+                        misspelt.add(wordStart);
+                        misspelt.add(i);
+                    }
+                    wordStart = -1;
+                    joined = false;
+                    word.setLength(0);
+                }
+            }
+        }
+        return misspelt;
+    }
+
+    /**
+     * Checks a word against the dictionary, leaving out single letters and words in capitals, which are mostly
+     * abbreviations, and allowing a possessive 's on a word that is in the dictionary
+     */
+    private static boolean isMisspelt(SpellingDictionary words, StringBuilder word){
+        if(word.length() < 2 || word.toString().equals(word.toString().toUpperCase())) return false;
+        if(words.contains(word)) return false;
+        int length = word.length();
+        return !(length > 2 && word.charAt(length - 2) == '\'' && Character.toLowerCase(word.charAt(length - 1)) == 's'
+                && words.contains(word.subSequence(0, length - 2)));
+    }
+
+    /**
+     * Replaces the underlines in the ranges checked with those just found - Dropped if the document has been edited
+     * since the check started
+     */
+    private void underline(SpellingDictionary words, int checkedEditCount, int[] ranges, List<Integer> misspelt){
+        loadedDictionary = words;
+        if(stopped || checkedEditCount != editCount) return;
+        edits.clear();
+        Highlighter highlighter = textArea.getHighlighter();
+        boolean tooMany = underlines.size() + misspelt.size() / 2 > MAX_UNDERLINES;
+        underlines.removeIf(underline -> {
+            boolean remove = tooMany || inRanges(underline.getStartOffset(), ranges);
+            if(remove) highlighter.removeHighlight(underline);
+            return remove;
+        });
+        try{
+            for(int i = 0; i < misspelt.size(); i += 2){
+                underlines.add((Highlighter.Highlight) highlighter.addHighlight(misspelt.get(i), misspelt.get(i + 1), SQUIGGLE_PAINTER));
+            }
+        }catch(BadLocationException e){
+            e.printStackTrace(); //Cannot happen, the document has not changed since the check
+        }
+    }
+
+    private static boolean inRanges(int offset, int[] ranges){
+        for(int i = 0; i < ranges.length; i += 2){
+            if(offset >= ranges[i] && offset <= ranges[i + 1]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the underlined word at an offset
+     * @param offset Offset in the document
+     * @return The underline, or null if the offset is not in a misspelt word
+     */
+    Highlighter.Highlight getMisspeltWordAt(int offset){
+        for(Highlighter.Highlight underline : underlines){
+            if(offset >= underline.getStartOffset() && offset < underline.getEndOffset()) return underline;
+        }
+        return null;
+    }
+
+    /**
+     * Suggests spellings for a misspelt word
+     * @param word The word
+     * @return The suggestions, best first, or none if the dictionary has not loaded yet
+     */
+    List<String> suggest(String word){
+        if(loadedDictionary == null) return Collections.emptyList();
+        return loadedDictionary.suggest(word, MAX_DISTANCE, MAX_SUGGESTIONS);
+    }
+
+    /**
+     * Paints a wavy line under the text
+     */
+    private static class SquigglePainter extends LayeredHighlighter.LayerPainter {
+        private static final int WAVE = 2;
+        private final Color color;
+
+        SquigglePainter(Color color){
+            this.color = color;
+        }
+
+        @Override
+        public void paint(Graphics g, int p0, int p1, Shape bounds, JTextComponent component){}
+
+        @Override
+        public Shape paintLayer(Graphics g, int p0, int p1, Shape bounds, JTextComponent component, View view){
+            Rectangle area;
+            try{
+                area = view.modelToView(p0, Position.Bias.Forward, p1, Position.Bias.Backward, bounds).getBounds();
+            }catch(BadLocationException e){
+                return null;
+            }
+            g.setColor(color);
+            int y = area.y + area.height - WAVE - 1;
+            for(int x = area.x; x < area.x + area.width; x += WAVE * 2){
+                g.drawLine(x, y + WAVE, x + WAVE, y);
+                g.drawLine(x + WAVE, y, x + WAVE * 2, y + WAVE);
+            }
+            return area;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package texteditor;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.InvocationEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Finds out what freezes the window - Every event is dispatched through this queue and timed, and while one has been
+ * running longer than the stall threshold, a watchdog thread samples the stack of the Event Dispatch Thread. Each
+ * stall is put down to the menu action it was performing if there was one, or else to the event, and when the
+ * program exits a report ranking them by the total time the window was frozen is written to
+ * ~/.texteditor/stalls, with the code the samples were most often in.
+ *
+ * Time the Event Dispatch Thread spends waiting in the loop of a modal dialog, and running the events that loop
+ * dispatches, is not counted against the event that showed the dialog, so asking the user something is not a stall
+ */
+class StallWatchdog extends EventQueue {
+    static final long DEFAULT_THRESHOLD_MILLIS = 100;
+    private static final int MAX_SAMPLES = 200; //Samples kept of a single stall
+    private static final int REPORTED_FRAMES = 3; //Most sampled frames shown for each cause
+    private static final int STACK_DEPTH = 15; //Frames shown of the longest stall of each cause
+    private static final String SESSION = ProcessHandle.current().pid() + "-" + System.currentTimeMillis();
+    private static StallWatchdog watchdog; //Set once installed
+
+    private final long thresholdNanos, sampleIntervalMillis;
+    private volatile Dispatch current; //Innermost event being dispatched
+    private final Map<String, Cause> causes = new HashMap<>(); //Stalls so far by what caused them
+
+    /**
+     * An event being dispatched
+     */
+    private static class Dispatch {
+        private final AWTEvent event;
+        private final Thread thread;
+        private final Dispatch outer; //Event whose modal dialog this was dispatched by, if any
+        private final long start = System.nanoTime();
+        private volatile long excludedNanos; //Time waiting for and running the events of a modal dialog
+        private volatile boolean waiting; //Waiting for an event of a modal dialog
+        private String action; //Menu action performed, if any
+        private final List<StackTraceElement[]> samples = new ArrayList<>();
+
+        Dispatch(AWTEvent event, Dispatch outer){
+            this.event = event;
+            this.outer = outer;
+            thread = Thread.currentThread();
+        }
+
+        long busyNanos(long now){
+            return now - start - excludedNanos;
+        }
+    }
+
+    /**
+     * The stalls put down to one event or action
+     */
+    private static class Cause {
+        private final String name;
+        private int count;
+        private long totalNanos, longestNanos;
+        private StackTraceElement[] longestStack; //Last sample of the longest stall
+        private final Map<String, Integer> topFrames = new HashMap<>(); //Frame running when sampled
+        private final Map<String, Integer> editorFrames = new HashMap<>(); //Innermost frame of the editor's own code
+
+        Cause(String name){
+            this.name = name;
+        }
+    }
+
+    private StallWatchdog(long thresholdMillis){
+        thresholdNanos = thresholdMillis * 1_000_000;
+        sampleIntervalMillis = Math.max(1, thresholdMillis / 5);
+    }
+
+    /**
+     * Starts watching the Event Dispatch Thread, unless it is already watched
+     * @param thresholdMillis How long an event may run before it is a stall, or 0 not to watch at all
+     */
+    static synchronized void install(long thresholdMillis){
+        if(watchdog != null || thresholdMillis <= 0) return;
+        watchdog = new StallWatchdog(thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog);
+        Thread sampler = new Thread(watchdog::sample, "EDT watchdog");
+        sampler.setDaemon(true);
+        sampler.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(watchdog::writeReport, "EDT stall report"));
+    }
+
+    /**
+     * Notes the menu action the event being dispatched is performing, so a stall is put down to the action rather
+     * than to the click or key press that chose it
+     * @param action Name of the action
+     */
+    static void noteAction(String action){
+        StallWatchdog installed = watchdog;
+        if(installed == null) return;
+        Dispatch dispatch = installed.current;
+        if(dispatch != null && dispatch.thread == Thread.currentThread() && dispatch.action == null) dispatch.action = action;
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event){
+        Dispatch dispatch = new Dispatch(event, current);
+        current = dispatch;
+        try{
+            super.dispatchEvent(event);
+        }finally{
+            long elapsed = System.nanoTime() - dispatch.start;
+            current = dispatch.outer;
+            if(dispatch.outer != null) dispatch.outer.excludedNanos += elapsed; //Run by a modal dialog's loop
+            long busy = elapsed - dispatch.excludedNanos;
+            if(busy >= thresholdNanos) record(dispatch, busy);
+        }
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        Dispatch dispatch = current;
+        if(dispatch == null) return super.getNextEvent();
+
+        //A modal dialog is waiting for an event in the middle of dispatching another
+        long start = System.nanoTime();
+        dispatch.waiting = true;
+        try{
+            return super.getNextEvent();
+        }finally{
+            dispatch.waiting = false;
+            dispatch.excludedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Samples the stack of the Event Dispatch Thread while an event has been running past the threshold - Run by
+     * the watchdog thread, which otherwise checks twice in every threshold
+     */
+    private void sample(){
+        long checkMillis = Math.max(1, thresholdNanos / 2_000_000);
+        try{
+            while(true){
+                Dispatch dispatch = current;
+                boolean stalled = dispatch != null && !dispatch.waiting && dispatch.busyNanos(System.nanoTime()) >= thresholdNanos;
+                if(stalled){
+                    StackTraceElement[] stack = dispatch.thread.getStackTrace();
+                    synchronized(dispatch.samples){
+                        if(current == dispatch && dispatch.samples.size() < MAX_SAMPLES) dispatch.samples.add(stack);
+                    }
+                }
+                Thread.sleep(stalled ? sampleIntervalMillis : checkMillis);
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a stall to the stalls of its cause
+     */
+    private void record(Dispatch dispatch, long busyNanos){
+        String name = dispatch.action != null ? "Action " + dispatch.action : describe(dispatch.event);
+        List<StackTraceElement[]> samples;
+        synchronized(dispatch.samples){
+            samples = new ArrayList<>(dispatch.samples);
+        }
+        synchronized(causes){
+            Cause cause = causes.computeIfAbsent(name, Cause::new);
+            cause.count++;
+            cause.totalNanos += busyNanos;
+            if(busyNanos > cause.longestNanos){
+                cause.longestNanos = busyNanos;
+                if(!samples.isEmpty()) cause.longestStack = samples.get(samples.size() - 1);
+            }
+            for(StackTraceElement[] stack : samples){
+                if(stack.length == 0) continue;
+                cause.topFrames.merge(stack[0].toString(), 1, Integer::sum);
+                for(StackTraceElement frame : stack){
+                    if(!isEditorFrame(frame)) continue;
+                    cause.editorFrames.merge(frame.toString(), 1, Integer::sum);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean isEditorFrame(StackTraceElement frame){
+        String className = frame.getClassName();
+        return (className.startsWith("texteditor.") || className.startsWith("paint.")) && !className.equals(StallWatchdog.class.getName());
+    }
+
+    /**
+     * Describes an event for the report - Key presses by their keys, runnables passed to invokeLater by their class,
+     * and anything else by its type and the class of component it was for
+     */
+    private static String describe(AWTEvent event){
+        String type = event.getClass().getSimpleName();
+        if(event instanceof KeyEvent) return type + " " + KeyStroke.getKeyStrokeForEvent((KeyEvent) event);
+        String parameters = event.paramString();
+        if(event instanceof InvocationEvent){
+            int start = parameters.indexOf("runnable=");
+            if(start < 0) return type;
+            String runnable = parameters.substring(start + "runnable=".length());
+            for(String end : new String[]{",", "$$Lambda", "@"}){
+                if(runnable.contains(end)) runnable = runnable.substring(0, runnable.indexOf(end));
+            }
+            return type + " " + runnable;
+        }
+        int comma = parameters.indexOf(',');
+        return type + " " + (comma < 0 ? parameters : parameters.substring(0, comma)) + " on " + event.getSource().getClass().getSimpleName();
+    }
+
+    /**
+     * Writes the stalls of this session to the stalls directory, most time frozen first - Run as the program exits,
+     * and only if there were any
+     */
+    private void writeReport(){
+        List<Cause> ranked;
+        synchronized(causes){
+            ranked = new ArrayList<>(causes.values());
+        }
+        if(ranked.isEmpty()) return;
+        ranked.sort(Comparator.comparingLong((Cause cause) -> cause.totalNanos).reversed());
+
+        Path report = Paths.get(System.getProperty("user.home"), ".texteditor", "stalls", SESSION + ".txt");
+        try{
+            Files.createDirectories(report.getParent());
+            try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(report))){
+                writer.println("Event Dispatch Thread stalls over " + thresholdNanos / 1_000_000 + " ms, most time frozen first");
+                int rank = 1;
+                for(Cause cause : ranked){
+                    writer.println();
+                    writer.println(String.format("%d. %s - %d %s, %d ms in total, longest %d ms", rank++, cause.name, cause.count,
+                            cause.count == 1 ? "stall" : "stalls", cause.totalNanos / 1_000_000, cause.longestNanos / 1_000_000));
+                    writeFrames(writer, "Editor code sampled", cause.editorFrames);
+                    writeFrames(writer, "Running when sampled", cause.topFrames);
+                    if(cause.longestStack == null) continue;
+                    writer.println("   Stack of the longest stall:");
+                    for(int i = 0; i < Math.min(STACK_DEPTH, cause.longestStack.length); i++){
+                        writer.println("      at " + cause.longestStack[i]);
+                    }
+                }
+            }
+            System.err.println("Event Dispatch Thread stalls written to " + report);
+        }catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeFrames(PrintWriter writer, String heading, Map<String, Integer> frames){
+        if(frames.isEmpty()) return;
+        int samples = frames.values().stream().mapToInt(Integer::intValue).sum();
+        writer.println("   " + heading + ":");
+        frames.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed()).limit(REPORTED_FRAMES)
+                .forEach(frame -> writer.println(String.format("      %3d%% %s", frame.getValue() * 100 / samples, frame.getKey())));
+    }
+}
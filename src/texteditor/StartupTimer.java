@@ -0,0 +1,60 @@
+package texteditor;
+
+/**
+ * Times the start of the program, from the launch of the process to the first paint of the first window and the
+ * menus being built after it. Each step is printed as it happens when the program is run with
+ * -Dtexteditor.startup-timing=true, and the time to the first paint can be read back for other checks.
+ *
+ * Times are from the start of the process as the OS gives it, so they take in starting the JVM and loading classes
+ * as well, which is what a CDS archive cuts down. If the OS does not give it, they are from the start of main
+ */
+class StartupTimer {
+    private static final boolean REPORTING = Boolean.getBoolean("texteditor.startup-timing");
+    private static final long mainNanos = System.nanoTime();
+    private static final long launchToMainMillis = ProcessHandle.current().info().startInstant()
+            .map(start -> Math.max(0, System.currentTimeMillis() - start.toEpochMilli())).orElse(0L);
+    private static volatile long firstPaintMillis = -1;
+    private static volatile boolean menusBuilt;
+
+    /**
+     * Marks a step of starting up - The first call, which loads the class, should be made first thing in main
+     * @param step What has just finished
+     */
+    static void mark(String step){
+        report(step);
+    }
+
+    /**
+     * Marks the first paint of a window - Only the first call counts
+     */
+    static void firstPaint(){
+        if(firstPaintMillis >= 0) return;
+        firstPaintMillis = millisSinceLaunch();
+        report("first paint");
+    }
+
+    /**
+     * Marks the menus of a window being built - Only the first call counts
+     */
+    static void menusBuilt(){
+        if(menusBuilt) return;
+        menusBuilt = true;
+        report("menus built");
+    }
+
+    /**
+     * Returns how long the first window took to paint, from the launch of the process
+     * @return The time in milliseconds, or -1 if no window has been painted yet
+     */
+    static long getFirstPaintMillis(){
+        return firstPaintMillis;
+    }
+
+    private static long millisSinceLaunch(){
+        return launchToMainMillis + (System.nanoTime() - mainNanos) / 1_000_000;
+    }
+
+    private static void report(String step){
+        if(REPORTING) System.err.println("Startup: " + step + " at " + millisSinceLaunch() + " ms");
+    }
+}
@@ -0,0 +1,59 @@
+package texteditor;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Bar along the bottom of a TextEditor window showing where the caret is, what is selected, and how many words,
+ * chars and lines the document has - Every count is handed to it already worked out, so updating it costs nothing
+ * that grows with the document
+ */
+class StatusBar extends JPanel {
+    private static final int PADDING = 3;
+
+    private final JLabel selectionLabel, countsLabel, caretLabel;
+
+    /**
+     * Creates a StatusBar showing the caret at the start of an empty document
+     */
+    StatusBar(){
+        setLayout(new FlowLayout(FlowLayout.RIGHT, PADDING * 3, PADDING));
+        selectionLabel = new JLabel();
+        countsLabel = new JLabel();
+        caretLabel = new JLabel();
+        add(selectionLabel);
+        add(countsLabel);
+        add(caretLabel);
+        setCaretPosition(1, 1);
+        setSelection(0, 0);
+        setCounts(0, 0, 1);
+    }
+
+    /**
+     * Shows the line and column of the caret
+     * @param line Line of the caret, starting from 1
+     * @param column Column of the caret, starting from 1
+     */
+    void setCaretPosition(int line, int column){
+        caretLabel.setText("Ln " + line + ", Col " + column);
+    }
+
+    /**
+     * Shows the size of the selection, or nothing if there is none
+     * @param chars Number of chars selected
+     * @param lines Number of lines the selection touches
+     */
+    void setSelection(int chars, int lines){
+        selectionLabel.setText(chars == 0 ? "" : chars + " chars, " + lines + (lines == 1 ? " line" : " lines") + " selected");
+    }
+
+    /**
+     * Shows the size of the document
+     * @param words Number of words
+     * @param chars Number of chars
+     * @param lines Number of lines
+     */
+    void setCounts(long words, int chars, int lines){
+        countsLabel.setText(words + " words, " + chars + " chars, " + lines + " lines");
+    }
+}
@@ -1,110 +1,71 @@
 package texteditor;
 
+import texteditor.document.LineIndex;
+import texteditor.document.PieceTableDocument;
 import texteditor.menu.items.MenuItem;
-import texteditor.menu.items.NoCustomShortcutException;
 
 import javax.swing.*;
-import javax.swing.event.UndoableEditEvent;
-import javax.swing.event.UndoableEditListener;
-import javax.swing.undo.UndoManager;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Highlighter;
 //import java.awt.*;
 import java.awt.*;
+import java.awt.datatransfer.Clipboard;
 import java.awt.event.*;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
 import java.util.List;
 
-public class TextEditor extends JFrame implements ActionListener, KeyListener , UndoableEditListener{
+public class TextEditor extends JFrame implements ActionListener, EditorWindow {
 
     //UI Fields
-    private JTextArea mainTextArea;
+    private final EditorPane editorPane; //The main text area and what is kept in step with its document
+    private final JTextArea mainTextArea;
     private JMenuBar menuBar;
-    private JScrollPane mainTextAreaScroll;
+    private final JScrollPane mainTextAreaScroll;
     private Font mainTextAreaFont;
     private JPopupMenu rightClickMenu;
+    private JComponent viewerComponent; //Shown in place of mainTextAreaScroll in viewer mode
 
     //Constants for sizes and components
     public static final int FRAME_WIDTH = 1000;
     public static final int FRAME_HEIGHT = 800;
     private static final int MAIN_TEXT_AREA_WIDTH = FRAME_WIDTH;
     private static final int MAIN_TEXT_AREA_HEIGHT = FRAME_HEIGHT;
-    private static final int TEXT_AREA_MARGIN = 5;
 
     //Collections for the UI
-    private List<String> fileMenuItemNames, editMenuItemNames, formatMenuItemNames, paintMenuItemNames, rightClickMenuItemNames, checkBoxMenuItemNames, menuItemsWithSeparators;
     private Map<String, JMenu> menuMap; //Use this map to gain access to menus
     private Map<String, MenuItem> menuItemsMap; //Use this map to gain access to menu items
 
-    //Sets for menu items with shortcuts - Used for categorizing the menu items
-    private Set<String> menuItemsWithBasicShortcuts, menuItemsWithCustomShortCuts, allMenuItemsWithShortcuts, menuItemsWithShiftShortCuts;
-
     //Other fields
-    private UndoManager undoManager;
     private ActionController actionController;
-    private int instanceNum; //Acts as an instance ID - used for checking which window user is trying to close
-    private ArrayList<TextEditor> instanceList;
+    private final EditorContext context; //Shared by every window
+    private final MenuTemplate menuTemplate;
+    private final int instanceNum; //Acts as an instance ID - used for checking which window user is trying to close
+    private boolean menusBuilt; //Menus are built once the window has first been painted
+    private boolean canUndo, canRedo; //Whether the Undo and Redo menu items are enabled, once they are built
+    private static boolean exitAfterStartup; //Set for a training run that records a CDS archive
 
     /**
-     * Creates a TextEditor instance
-     * @param instanceNum ID of this TextEditor instance
-     * @param instanceList A list of currently existing instances
+     * Creates a TextEditor instance and adds it to the list of open windows - Only what is needed to show the text
+     * area is built here, and the menus are built straight after the window is first painted
      */
-    public TextEditor(int instanceNum, ArrayList<TextEditor> instanceList){
-
-        //Making the UI use the OS aesthetics
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        }catch (IllegalAccessException | InstantiationException | UnsupportedLookAndFeelException | ClassNotFoundException e) {
-            e.printStackTrace();
-        }
-
-        this.instanceNum = instanceNum;
-        this.instanceList = instanceList;
+    public TextEditor(){
+        context = EditorContext.get();
+        menuTemplate = context.getMenuTemplate();
+        instanceNum = context.nextWindowId();
 
         //Initializing some fields
-        mainTextArea = new JTextArea();
-        rightClickMenu = new JPopupMenu();
-        mainTextAreaScroll = new JScrollPane(mainTextArea);
+        mainTextAreaFont = context.getDefaultFont();
+        editorPane = new EditorPane(mainTextAreaFont);
+        mainTextArea = editorPane.getTextArea();
+        mainTextAreaScroll = editorPane.getScrollPane();
         menuBar = new JMenuBar();
         menuMap = new HashMap<>();
         menuItemsMap = new HashMap<>();
-        undoManager = new UndoManager();
-        mainTextArea.getDocument().addUndoableEditListener(this); //Adds the undoable edit listener to the mainTextArea
         actionController = new ActionController(this);
+        editorPane.setSpellCheckFailed(actionController::spellCheckFailed);
 
         //Loading set defaults
-        loadDefaults(); //In this method, the setDefaultFont method is called
-
-        /* ---- Setting up the collections ---- */
-
-        //For menu names
-        Set<String> menuNames = new HashSet<>(Arrays.asList("File", "Edit", "Format"));
-
-        //List of menu item names within each menu
-        fileMenuItemNames = Arrays.asList("New", "Open", "Save", "Save As...", "Exit", "New Window");
-        editMenuItemNames = Arrays.asList("Cut", "Copy", "Paste", "Undo", "Redo", "Insert Point", "Insert Sub Point", "Insert Date");
-        formatMenuItemNames = Arrays.asList("Font", "Word Wrap", "Light Theme", "Dark Theme");
-        menuItemsWithSeparators = Arrays.asList("Save", "Save As...", "Paste", "Redo", "Font", "Insert Sub Point");
-        rightClickMenuItemNames  = Arrays.asList("Undo", "Cut", "Copy", "Paste", "Redo");
-        checkBoxMenuItemNames = Arrays.asList("Word Wrap", "Light Theme", "Dark Theme");
-
-        /*Explanation of the 3 Collections:
-        * menuItemsWithBasic is a collection of menu items whose shortcut is CTRL + [first character of the menu item name]
-        * menuItemsWithCustomShortCuts is a collection of menu items whose shortcut does not use the first character of the menu item name
-        * menuItemsWithShiftShortcuts is a collection of menu items whose shortcut is CTRL + SHIFT + [first character of the menu item name]
-        */
-        menuItemsWithBasicShortcuts = new HashSet<>(Arrays.asList("New", "Open", "Save", "Copy", "Font", "Insert Point"));
-        menuItemsWithCustomShortCuts = new HashSet<>(Arrays.asList("Undo", "Cut", "Paste", "Exit", "Redo", "Insert Date"));
-        menuItemsWithShiftShortCuts = new HashSet<>(Arrays.asList("Save As...", "New Window", "Insert Sub Point"));
-
-        //Creating menu items and adding them to the corresponding menu
-        for(String menuName : menuNames) menuMap.put(menuName, new JMenu(menuName));
-        createMenuItems(fileMenuItemNames, "File");
-        createMenuItems(editMenuItemNames, "Edit");
-        createMenuItems(formatMenuItemNames, "Format");
+        loadDefaults();
 
         /*Overrides the exit operation on the frame closing button - This ensures that the user is prompted to save
         * any changes made before exiting*/
@@ -118,13 +79,19 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
 
                     /*Checks the number of instances and sees if the instance should just dispose or close the
                     * program entirely*/
-                    if(instanceList.size() - 1 <= 0) System.exit(0);
+                    if(context.getWindowCount() <= 1) actionController.exitProgram();
                     else {
-                        removeInstanceFromList(instanceNum);
+                        context.removeWindow(TextEditor.this);
                         dispose();
                     }
                 }
             }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                context.removeWindow(TextEditor.this); //Also when closed by a save check
+                actionController.windowClosed();
+            }
         });
 
         //Setting up the gui
@@ -132,52 +99,58 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
 
         //Enabling macOS full screen ability
         macOSFullscreen();
+        context.addWindow(this);
     }
 
     /**
-     * Determines the custom shortcut for a menu item with the supplied name
-     * @param menuItemName Name of the menu item associated with the shortcut
-     * @return An integer representing the shortcut key
+     * Builds the menus, unless they have been built already - Done after the window is first painted, or as soon as
+     * anything needs a menu item before then
      */
-    private int findCustomShortcut(String menuItemName){
-        try {
-            switch (menuItemName) {
-                case "Undo": return KeyEvent.VK_Z;
-                case "Cut": return KeyEvent.VK_X;
-                case "Paste": return KeyEvent.VK_V;
-                case "Exit": return KeyEvent.VK_W;
-                case "Redo": return KeyEvent.VK_Y;
-                case "Insert Date": return KeyEvent.VK_D;
-                default: throw new NoCustomShortcutException(menuItemName);
-            }
-        }catch(NoCustomShortcutException e){throw new Error();}
+    private void buildMenus(){
+        if(menusBuilt) return;
+        menusBuilt = true;
+
+        //Creating menu items and adding them to the corresponding menu
+        for(String menuName : menuTemplate.getMenuNames()){
+            menuMap.put(menuName, new JMenu(menuName));
+            createMenuItems(menuName);
+        }
+
+        //Adding the menus to the menu bars
+        for(String menuName : menuTemplate.getMenuNames()) menuBar.add(menuMap.get(menuName));
+
+        //Setting default light theme menu item to selected
+        menuItemsMap.get("Light Theme").setSelected(true);
+        setUndoRedoEnabled(canUndo, canRedo);
+        menuBar.revalidate();
+        StartupTimer.menusBuilt();
+        if(exitAfterStartup) actionController.exitProgram();
+    }
+
+    @Override
+    public void paint(Graphics graphics){
+        super.paint(graphics);
+        StartupTimer.firstPaint();
+        if(!menusBuilt) SwingUtilities.invokeLater(this::buildMenus);
     }
 
     /**
-     * Creates the menu items and establishes their link to their menus
-     * @param menuItemNames List of menu item names
+     * Creates the menu items of a menu from the menu template and establishes their link to the menu
      * @param associatedMenuName Name of the menu that the menu items are associated with
      */
-    private void createMenuItems(List<String> menuItemNames, String associatedMenuName){
+    private void createMenuItems(String associatedMenuName){
         JMenu associatedMenu = menuMap.get(associatedMenuName);
-        menuItemNames.stream().forEach(menuItemName -> {
+        menuTemplate.getMenuItemNames(associatedMenuName).forEach(menuItemName -> {
             MenuItem menuItem;
 
-            if(!checkBoxMenuItemNames.contains(menuItemName)) {
-
-                //Determines short cut info of the menu item
-                if (menuItemsWithBasicShortcuts.contains(menuItemName)) menuItem = new texteditor.menu.items.MenuItem(menuItemName, true, false);//Menu item with short cut but no shift or no custom
-                else if (menuItemsWithShiftShortCuts.contains(menuItemName)) menuItem = new MenuItem(menuItemName, true, true);
-                else if (menuItemsWithCustomShortCuts.contains(menuItemName)) menuItem = new MenuItem(menuItemName, true, true, findCustomShortcut(menuItemName));
-                else menuItem = new MenuItem(menuItemName); //Menu item with no shortcut
-
-            }else menuItem = new MenuItem(menuItemName, true, this);
+            if(!menuTemplate.isCheckBox(menuItemName)) menuItem = new MenuItem(menuItemName, menuTemplate.getShortcut(menuItemName));
+            else menuItem = new MenuItem(menuItemName, true, this);
 
             //Adding the menu item to its menu and doing extra processing
             associatedMenu.add(menuItem.getCheckBoxMenuItem() != null ? menuItem.getCheckBoxMenuItem() : menuItem);
             menuItemsMap.put(menuItemName, menuItem);
             menuItem.addActionListener(this); //TODO: Explore alternatives to this - eg by making every sub type of MenuItem implementing its own action controller for methods that are associated with the menu?
-            if (menuItemsWithSeparators.contains(menuItemName)) associatedMenu.addSeparator();
+            if (menuTemplate.hasSeparatorAfter(menuItemName)) associatedMenu.addSeparator();
 
         });
 
@@ -195,21 +168,7 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
         setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
         setResizable(true); //Enables Resizability
 
-        //Adding the menus to the menu bars
-        List<String> tempMenuList = Arrays.asList("File", "Edit", "Format"); //Menus will be added to menu bar in this order
-        for(String menuName : tempMenuList) menuBar.add(menuMap.get(menuName));
-
-        //Setting default light theme menu item to selected
-        menuItemsMap.get("Light Theme").setSelected(true);
-
-        //setting up the main text area scroll pane (and in turn the main text area object itself)
-        mainTextArea.setFocusable(true); //For key events
-        mainTextArea.addKeyListener(this); //For key events
-        mainTextArea.setWrapStyleWord(true);
-        mainTextArea.setFont(mainTextAreaFont);
-        mainTextArea.setMargin(new Insets(TEXT_AREA_MARGIN, TEXT_AREA_MARGIN, TEXT_AREA_MARGIN, TEXT_AREA_MARGIN));
-        mainTextAreaScroll.setBackground(Color.white);
-        mainTextAreaScroll.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+        //Setting up the main text area scroll pane - The EditorPane has set up the text area itself
         mainTextAreaScroll.setPreferredSize(new Dimension(MAIN_TEXT_AREA_WIDTH, MAIN_TEXT_AREA_HEIGHT));
 
         //Setting up the mouse listener
@@ -219,6 +178,7 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
         add(menuBar, BorderLayout.NORTH);
         setJMenuBar(menuBar);
         add(mainTextAreaScroll);
+        add(editorPane.getStatusBar(), BorderLayout.SOUTH);
 
         setVisible(true);
     }
@@ -235,12 +195,14 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
                 //Checking for right click
                 if(SwingUtilities.isRightMouseButton(e)){
                     rightClickMenu = new JPopupMenu(); //JPopupMenu to show at the point clicked
+                    addSpellingSuggestions(mainTextArea.viewToModel2D(e.getPoint()));
 
                     //Creating menu items and placing into right click menu
                     for(JMenuItem menuItem: menuItemsMap.values()){
                         String menuItemName = menuItem.getName();
-                        if(rightClickMenuItemNames.contains(menuItemName)){
+                        if(menuTemplate.getRightClickMenuItemNames().contains(menuItemName)){
                             JMenuItem newMenuItem = new MenuItem(menuItemName, false, false);
+                            newMenuItem.setEnabled(menuItem.isEnabled());
                             rightClickMenu.add(newMenuItem);
                         }
                     }
@@ -253,28 +215,37 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
     }
 
     /**
-     * Loading the defaults of the program using config.properties file
+     * Adds the suggested spellings of a misspelt word to the top of the right click menu
+     * @param offset Offset in the document that was clicked
      */
-    private void loadDefaults() {
-
-        try {
-
-            //Setting up InputStream and Properties objects
-            Properties properties = new Properties();
-            InputStream inputStream = new FileInputStream("config.properties");
-
-            //Loading config.properties using InputStream
-            properties.load(inputStream);
-
-            //Getting the default font settings
-            String defFontStyle = properties.getProperty("font-style");
-            String defFontSize = properties.getProperty("font-size");
+    private void addSpellingSuggestions(int offset){
+        SpellChecker spellChecker = editorPane.getSpellChecker();
+        if(spellChecker == null) return;
+        Highlighter.Highlight misspelt = spellChecker.getMisspeltWordAt(offset);
+        if(misspelt == null) return;
+        int start = misspelt.getStartOffset(), end = misspelt.getEndOffset();
+        try{
+            List<String> suggestions = spellChecker.suggest(mainTextArea.getText(start, end - start));
+            for(String suggestion : suggestions){
+                JMenuItem suggestionItem = new JMenuItem(suggestion);
+                suggestionItem.addActionListener(event -> actionController.replaceText(start, end, suggestion));
+                rightClickMenu.add(suggestionItem);
+            }
+            if(suggestions.isEmpty()) rightClickMenu.add(new JMenuItem("No Suggestions")).setEnabled(false);
+            rightClickMenu.addSeparator();
+        }catch(BadLocationException e){
+            e.printStackTrace(); //Cannot happen, the underline is inside the document
+        }
+    }
 
-            //Loading the default font (for startup) and closing inputStream
-            setDefaultFont(defFontStyle, fontStyleType(defFontStyle), Integer.parseInt(defFontSize));
-            inputStream.close();
+    /**
+     * Loading the defaults of the program from the settings in config.properties, which the context has already read
+     */
+    private void loadDefaults() {
 
-        }catch(IOException e){e.printStackTrace();}
+        //Getting how much memory the undo history may use, in kilobytes
+        String undoMemoryLimit = context.getSetting("undo-memory-limit");
+        if(undoMemoryLimit != null) actionController.setUndoMemoryLimit(Long.parseLong(undoMemoryLimit.trim()) << 10);
     }
 
     /**
@@ -283,36 +254,13 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
      */
     public void actionPerformed(ActionEvent event){
         String action = event.getActionCommand();
+        StallWatchdog.noteAction(action);
 
-        /*File menu actions*/
-        if(action.equals("New"))actionController.newDocument();
-        else if(action.equals("Open"))actionController.openFile();
-        else if(action.equals("Save"))actionController.saveFile();
-        else if(action.equals("Save As..."))actionController.saveFileAs();
-        else if(action.equals("Exit"))actionController.exit();
-        else if(action.equals("New Window")) {
-            instanceNum++;
-            ArrayList<TextEditor> newInstanceList = instanceList;
-            TextEditor newTextEditorInstance = new TextEditor(instanceNum, newInstanceList);
-            newTextEditorInstance.getInstanceList().add(newTextEditorInstance);
-        }
-
-        /*Edit menu actions*/
-        else if(action.equals("Cut")) actionController.cut();
-        else if(action.equals("Paste")) actionController.paste();
-        else if(action.equals("Copy")) actionController.copy();
-        else if (action.equals("Undo")) actionController.undo();
-        else if(action.equals("Redo")) actionController.redo();
-        else if(action.equals("Insert Point")) actionController.insertPoint();
-        else if(action.equals("Insert Sub Point")) actionController.insertSubPoint();
-        else if(action.equals("Insert Date")) actionController.insertDate();
-
-        /*Format menu actions*/
-        else if(action.equals("Word Wrap")) actionController.setWordWrap();
-        else if(action.equals("Dark Theme")) actionController.changeTheme(action);
-        else if(action.equals("Light Theme")) actionController.changeTheme(action);
+        /*Actions that open windows of their own - Every other action is performed by the ActionController*/
+        if(action.equals("New Window")) new TextEditor();
         else if(action.equals("Font")) {
             FontWindow fontWindow = new FontWindow(this);}
+        else actionController.perform(action);
 
         /*Paint menu actions
         else if(action.equals("New Paint Window")) {
@@ -322,11 +270,57 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
     }
 
     /**
-     * Comes from the UndoableEditListener interface - Adds undoable actions to the UndoManager object
-     * @param undoableEditEvent The undoable edit event
+     * Replaces the document shown in the main text area - Used when a file is opened or a new document is created
+     * so that the old text (and the undo history referring to it) can be released
+     * @param document The new document to display
+     */
+    public void setDocument(PieceTableDocument document){
+        editorPane.setDocument(document);
+    }
+
+    /**
+     * Turns highlighting of the outline markup on or off
+     * @param highlighting True to turn highlighting on
      */
-    public void undoableEditHappened(UndoableEditEvent undoableEditEvent){
-        undoManager.addEdit(undoableEditEvent.getEdit());
+    public void setOutlineHighlighting(boolean highlighting){
+        editorPane.setOutlineHighlighting(highlighting);
+    }
+
+    /**
+     * Turns underlining of misspelt words on or off
+     * @param checking True to turn spell checking on
+     */
+    public void setSpellChecking(boolean checking){
+        editorPane.setSpellChecking(checking);
+    }
+
+    /**
+     * Shows a read only viewer in place of the main text area - Editing and saving menu items are disabled while
+     * it is shown
+     * @param viewer The viewer to show
+     */
+    public void showViewer(JComponent viewer){
+        if(viewerComponent != null) remove(viewerComponent);
+        else remove(mainTextAreaScroll);
+        viewerComponent = viewer;
+        add(viewer);
+        setEditingEnabled(false);
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Puts the main text area back in place of the viewer
+     */
+    public void showTextArea(){
+        if(viewerComponent == null) return;
+        remove(viewerComponent);
+        viewerComponent = null;
+        add(mainTextAreaScroll);
+        setEditingEnabled(true);
+        revalidate();
+        repaint();
+        mainTextArea.requestFocusInWindow();
     }
 
     /**
@@ -351,33 +345,6 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
         return Font.PLAIN;
     }
 
-    /**
-     * For KeyListener - Sets changesMade to true
-     * @param ke Key event that invoked this method
-     */
-    public void keyPressed(KeyEvent ke){
-        int keyShortCutMask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
-
-        /*Checking if the ctrl key is being pressed with another key, unless that other key is v (ie checking
-        if the user is trying to perform a keyboard shortcut, if that keyboard shortcut is anything other than
-        pasting, do not register a change)*/
-        if(((ke.getModifiers() & keyShortCutMask) == keyShortCutMask) && ke.getKeyCode() != KeyEvent.VK_V) return;
-
-        if(Character.isAlphabetic(ke.getKeyChar()) || ke.getKeyCode() == KeyEvent.VK_SPACE || ke.getKeyCode() == KeyEvent.VK_BACK_SPACE || ke.getKeyCode() == KeyEvent.VK_ENTER){
-            if(!actionController.hasChangesMade()) actionController.setChangesMadeTrue();
-        }
-    }
-
-    /**
-     * For KeyListener - Sets changesMade to false if the mainTextArea component is empty and the user has not opened a file
-     * @param ke Key event that invoked this method
-     */
-    public void keyReleased(KeyEvent ke){
-        if(mainTextArea.getText().equals("") && !actionController.openedFileExists()) actionController.setChangesMadeFalse();
-    }
-
-    public void keyTyped(KeyEvent ke){ }
-
     /**
      * Enables native fullscreen for macOS
      */
@@ -386,52 +353,58 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
     }
 
     /**
-     * Sets up the default font
-     * @param fontStyle is the default font style
-     * @param fontFamily is the default font family eg Italic, Plain
-     * @param fontSize is the default font size
+     * Returns the frame of this window, which is the TextEditor itself
+     * @return This TextEditor
      */
-    private void setDefaultFont(String fontStyle, int fontFamily, int fontSize){
-        mainTextAreaFont = new Font(fontStyle, fontFamily, fontSize);
-    }
+    public JFrame getFrame(){return this;}
 
     /**
-     * Removes an existing instance of this class from the list - This method is called when the user closes a window
-     * @param instanceIDToRemove Instance ID of the instance to remove
+     * Retrieves the JTextArea instance associated with this TextEditor
+     * @return the JTextArea instance associated with this TextEditor
      */
-     void removeInstanceFromList(int instanceIDToRemove){
-        ArrayList<TextEditor> tempList = instanceList;
-        for(int i=0; i<tempList.size(); i++){
-            if(tempList.get(i).getInstanceNum() == instanceIDToRemove) {
-                instanceList.remove(i);
-                break;
-            }
-        }
-    }
+    public JTextArea getMainTextArea(){return mainTextArea;}
 
     /**
-     * Retrieves the JTextArea instance associated with this TextEditor
-     * @return the JTextArea instance associated with this TextEditor
+     * Enables the Undo and Redo menu items when there is something to undo or redo - Kept until the menus are
+     * built if they have not been yet
+     * @param canUndo True if there is something to undo
+     * @param canRedo True if there is something to redo
      */
-    JTextArea getMainTextArea(){return mainTextArea;}
+    @Override
+    public void setUndoRedoEnabled(boolean canUndo, boolean canRedo){
+        this.canUndo = canUndo;
+        this.canRedo = canRedo;
+        if(!menusBuilt) return;
+        menuItemsMap.get("Undo").setEnabled(canUndo);
+        menuItemsMap.get("Redo").setEnabled(canRedo);
+    }
 
     /**
      * Gets the map of menu items for this TextEditor
      * @return A map of MenuItem objects
      */
-    Map<String, MenuItem> getMenuItemsMap(){return menuItemsMap;}
+    public Map<String, MenuItem> getMenuItemsMap(){
+        buildMenus();
+        return menuItemsMap;
+    }
+
+    /**
+     * Returns the index of the lines in the main text area
+     * @return The LineIndex of the current document
+     */
+    public LineIndex getLineIndex(){return editorPane.getLineIndex();}
 
     /**
-     * Returns the UndoManager instance of this TextEditor
-     * @return the UndoManager
+     * Returns the ActionController of this TextEditor
+     * @return The ActionController
      */
-    UndoManager getUndoManager(){return undoManager;}
+    ActionController getActionController(){return actionController;}
 
     /**
      * Returns the instance number of this TextEditor object
      * @return An integer representing the instance number
      */
-    int getInstanceNum() {return instanceNum; }
+    public int getInstanceNum() {return instanceNum; }
 
     /**
      * Returns the font that the main text area is currently using
@@ -440,19 +413,55 @@ public class TextEditor extends JFrame implements ActionListener, KeyListener ,
     Font getMainTextAreaFont(){return mainTextAreaFont;}
 
     /**
-     * Returns the list of instances of the TextEditorClass
-     * @return a List of TextEditor instances
-     * TODO: Make instanceList a static field?
+     * Returns the context shared by every window, which keeps the list of open windows
+     * @return The EditorContext
      */
-    ArrayList<TextEditor> getInstanceList(){return instanceList;}
+    public EditorContext getContext(){return context;}
 
+    /**
+     * Returns the clipboard that cut, copy and paste use, which is the system clipboard
+     * @return The system clipboard
+     */
+    public Clipboard getClipboard(){return Toolkit.getDefaultToolkit().getSystemClipboard();}
+
+    /**
+     * Starts the program - Run with --exit-after-startup to open the first window and exit once its menus are built,
+     * which is the training run that records a CDS archive of the classes starting up loads
+     * @param args Command line arguments
+     */
     public static void main(String[] args){
+        StartupTimer.mark("main started");
+        exitAfterStartup = Arrays.asList(args).contains("--exit-after-startup");
 
         /*Allows the program to use MacOSX menu bar - Note this has to be at the top of the main method
          * to work */
         if(System.getProperty("os.name").contains("Mac")) System.setProperty("apple.laf.useScreenMenuBar", "true");
 
-        TextEditor textEditor = new TextEditor(0, new ArrayList<>());
-        textEditor.getInstanceList().add(textEditor);
+        //Watching for events that freeze the window, for as long as stall-threshold in config.properties (0 to not watch)
+        String stallThreshold = EditorContext.get().getSetting("stall-threshold");
+        StallWatchdog.install(stallThreshold != null ? Long.parseLong(stallThreshold.trim()) : StallWatchdog.DEFAULT_THRESHOLD_MILLIS);
+
+        TextEditor textEditor = new TextEditor();
+        StartupTimer.mark("first window shown");
+        if(!exitAfterStartup) SwingUtilities.invokeLater(textEditor::offerRecovery);
+    }
+
+    /**
+     * Offers to recover the unsaved edits of any windows left behind by a session that did not exit normally - The
+     * first recovered document goes into this window and the rest into new windows
+     */
+    private void offerRecovery(){
+        TextEditor target = this;
+        for(JournalRecovery recovery : JournalRecovery.findRecoverable()){
+            int optionInput = JOptionPane.showConfirmDialog(null, "Found " + recovery.getEditCount() + " unsaved edits to " +
+                    recovery.getName() + " from a session that did not close properly.\nRecover them?", "Recover Unsaved Changes", JOptionPane.YES_NO_OPTION);
+            if(optionInput != JOptionPane.YES_OPTION){
+                recovery.discard();
+                continue;
+            }
+            if(target == null) target = new TextEditor();
+            target.actionController.recover(recovery);
+            target = null;
+        }
     }
 }
@@ -0,0 +1,168 @@
+package texteditor.document;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.util.Arrays;
+
+/**
+ * Keeps track of which parts of a document are still unchanged since a baseline, such as the last save. The
+ * document is described as a sorted list of extents - runs of text that were in the baseline and have not been
+ * touched since - with everything between them being new text. An extent remembers both where it started in the
+ * baseline and where it starts now, so text that has only moved because of edits before it is still recognised
+ *
+ * The number of extents grows with the number of places edited, not the number of edits, since typing at the
+ * same spot keeps inserting between the same two extents
+ */
+public class EditExtents implements DocumentListener {
+    private int[] oldStarts = new int[8];
+    private int[] newStarts = new int[8];
+    private int[] lengths = new int[8];
+    private int count;
+
+    /**
+     * Creates an EditExtents where the whole document is unchanged
+     * @param length Length of the document
+     */
+    public EditExtents(int length){
+        reset(length);
+    }
+
+    private EditExtents(){}
+
+    /**
+     * Makes the current text of the document the new baseline
+     * @param length Length of the document
+     */
+    public void reset(int length){
+        count = 0;
+        if(length > 0) add(0, 0, length);
+    }
+
+    /**
+     * Copies the extents, so they can be handed to another thread
+     * @return The copy
+     */
+    public EditExtents copy(){
+        EditExtents copy = new EditExtents();
+        copy.oldStarts = Arrays.copyOf(oldStarts, count);
+        copy.newStarts = Arrays.copyOf(newStarts, count);
+        copy.lengths = Arrays.copyOf(lengths, count);
+        copy.count = count;
+        return copy;
+    }
+
+    //Getters
+    public int getCount(){return count;}
+    public int getOldStart(int index){return oldStarts[index];}
+    public int getNewStart(int index){return newStarts[index];}
+    public int getLength(int index){return lengths[index];}
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        int offset = e.getOffset(), length = e.getLength();
+        int index = firstEndingAfter(offset);
+
+        //Splitting the extent the text was inserted into
+        if(index < count && newStarts[index] < offset){
+            int before = offset - newStarts[index];
+            insertAt(index + 1, oldStarts[index] + before, offset, lengths[index] - before);
+            lengths[index++] = before;
+        }
+        for(int i = index; i < count; i++) newStarts[i] += length;
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e){
+        int offset = e.getOffset(), end = offset + e.getLength(), length = e.getLength();
+        int first = firstEndingAfter(offset);
+
+        //Cutting the removed range out of the extents it overlaps
+        int write = first;
+        int[] cut = null;
+        for(int i = first; i < count; i++){
+            int start = newStarts[i], stop = start + lengths[i];
+            if(start >= end){
+                newStarts[i] -= length;
+                continue;
+            }
+            if(start < offset){
+                if(stop > end) cut = new int[]{oldStarts[i] + end - start, offset, stop - end};
+                lengths[i] = offset - start;
+                write = i + 1;
+            }else if(stop > end){
+                oldStarts[i] += end - start;
+                newStarts[i] = offset;
+                lengths[i] = stop - end;
+            }else{
+                lengths[i] = 0; //Removed completely
+            }
+        }
+        if(cut != null) insertAt(write, cut[0], cut[1], cut[2]);
+        removeEmpty(first);
+        mergeAround(firstEndingAfter(offset));
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){
+        //Attribute changes do not change the text
+    }
+
+    /**
+     * Returns the index of the first extent that ends after an offset
+     */
+    private int firstEndingAfter(int offset){
+        int low = 0, high = count;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(newStarts[middle] + lengths[middle] <= offset) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private void add(int oldStart, int newStart, int length){
+        insertAt(count, oldStart, newStart, length);
+    }
+
+    private void insertAt(int index, int oldStart, int newStart, int length){
+        if(count == lengths.length){
+            oldStarts = Arrays.copyOf(oldStarts, count * 2);
+            newStarts = Arrays.copyOf(newStarts, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        System.arraycopy(oldStarts, index, oldStarts, index + 1, count - index);
+        System.arraycopy(newStarts, index, newStarts, index + 1, count - index);
+        System.arraycopy(lengths, index, lengths, index + 1, count - index);
+        oldStarts[index] = oldStart;
+        newStarts[index] = newStart;
+        lengths[index] = length;
+        count++;
+    }
+
+    private void removeEmpty(int from){
+        int write = from;
+        for(int i = from; i < count; i++){
+            if(lengths[i] == 0) continue;
+            oldStarts[write] = oldStarts[i];
+            newStarts[write] = newStarts[i];
+            lengths[write++] = lengths[i];
+        }
+        count = write;
+    }
+
+    /**
+     * Joins the extents either side of a removal back together if the removal took out exactly the text that was
+     * inserted between them
+     */
+    private void mergeAround(int index){
+        if(index <= 0 || index >= count) return;
+        int previous = index - 1;
+        if(newStarts[previous] + lengths[previous] == newStarts[index] && oldStarts[previous] + lengths[previous] == oldStarts[index]){
+            lengths[previous] += lengths[index];
+            System.arraycopy(oldStarts, index + 1, oldStarts, index, count - index - 1);
+            System.arraycopy(newStarts, index + 1, newStarts, index, count - index - 1);
+            System.arraycopy(lengths, index + 1, lengths, index, count - index - 1);
+            count--;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package texteditor.document;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The charset a text file is written in, the byte order mark it starts with, if it has one, and the line separator
+ * its line breaks are written as.
+ *
+ * detect looks for a byte order mark first. Without one, text where most of the bytes at even or at odd offsets are
+ * zero is taken to be UTF-16 in the byte order that puts them there, text that decodes as UTF-8 without errors is
+ * UTF-8, and anything else is ISO-8859-1, which maps every byte to a char of its own so the file is written back
+ * exactly as it was. Only the first SNIFF_SIZE bytes are looked at.
+ *
+ * UTF-16 is always read and written in an explicit byte order, with the byte order mark written separately, since
+ * the plain UTF-16 charset would write a byte order mark at the start of every piece of text it encodes.
+ *
+ * Line breaks are \n once loaded, so the line separator is only known once the whole file has gone through a
+ * LineBreakFilter - detect leaves it as \n, and withLineSeparator records the one that was found
+ */
+public class FileEncoding {
+
+    public static final int SNIFF_SIZE = 1 << 16;
+
+    private static final byte[] NO_BOM = {};
+    private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] UTF_16BE_BOM = {(byte) 0xFE, (byte) 0xFF};
+    private static final byte[] UTF_16LE_BOM = {(byte) 0xFF, (byte) 0xFE};
+
+    //Encoding of text that did not come from a file
+    public static final FileEncoding DEFAULT = new FileEncoding(Charset.defaultCharset(), NO_BOM, "\n");
+
+    private final Charset charset;
+    private final byte[] byteOrderMark;
+    private final String lineSeparator;
+
+    private FileEncoding(Charset charset, byte[] byteOrderMark, String lineSeparator){
+        this.charset = charset;
+        this.byteOrderMark = byteOrderMark;
+        this.lineSeparator = lineSeparator;
+    }
+
+    private FileEncoding(Charset charset, byte[] byteOrderMark){
+        this(charset, byteOrderMark, "\n");
+    }
+
+    /**
+     * Works out the encoding of a file from its first bytes
+     * @param head The first bytes of the file, from the position of the buffer to its limit - The position is left
+     *             where it was
+     * @return The encoding
+     */
+    public static FileEncoding detect(ByteBuffer head){
+        if(startsWith(head, UTF_8_BOM)) return new FileEncoding(StandardCharsets.UTF_8, UTF_8_BOM);
+        if(startsWith(head, UTF_16BE_BOM)) return new FileEncoding(StandardCharsets.UTF_16BE, UTF_16BE_BOM);
+        if(startsWith(head, UTF_16LE_BOM)) return new FileEncoding(StandardCharsets.UTF_16LE, UTF_16LE_BOM);
+
+        //Text in UTF-16 is mostly chars below U+0100, which have a zero byte on one side of each pair
+        int pairs = Math.min(head.remaining(), SNIFF_SIZE) / 2, zerosEven = 0, zerosOdd = 0;
+        for(int i = 0; i < pairs; i++){
+            if(head.get(head.position() + 2 * i) == 0) zerosEven++;
+            if(head.get(head.position() + 2 * i + 1) == 0) zerosOdd++;
+        }
+        if(pairs >= 2 && zerosEven > pairs * 2 / 5 && zerosOdd < pairs / 10) return new FileEncoding(StandardCharsets.UTF_16BE, NO_BOM);
+        if(pairs >= 2 && zerosOdd > pairs * 2 / 5 && zerosEven < pairs / 10) return new FileEncoding(StandardCharsets.UTF_16LE, NO_BOM);
+
+        return new FileEncoding(isUtf8(head) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1, NO_BOM);
+    }
+
+    /**
+     * Works out the encoding of a file by reading its first bytes
+     * @param file The file
+     * @return The encoding
+     * @throws IOException If the file cannot be read
+     */
+    public static FileEncoding detect(Path file) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(SNIFF_SIZE);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            while(head.hasRemaining() && channel.read(head) > 0);
+        }
+        head.flip();
+        return detect(head);
+    }
+
+    private static boolean startsWith(ByteBuffer head, byte[] prefix){
+        if(head.remaining() < prefix.length) return false;
+        for(int i = 0; i < prefix.length; i++){
+            if(head.get(head.position() + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if bytes decode as UTF-8 - A sequence cut off at the end is allowed, since the bytes may stop part way
+     * through a char
+     */
+    private static boolean isUtf8(ByteBuffer head){
+        ByteBuffer bytes = head.duplicate();
+        bytes.limit(bytes.position() + Math.min(bytes.remaining(), SNIFF_SIZE));
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate(4096);
+        while(true){
+            CoderResult result = decoder.decode(bytes, chars, false);
+            if(result.isError()) return false;
+            if(result.isUnderflow()) return true;
+            chars.clear();
+        }
+    }
+
+    /**
+     * Checks if every ASCII char is a single byte of the same value, so line breaks can be found by looking for '\n'
+     * @return False for UTF-16
+     */
+    public boolean isAsciiCompatible(){
+        return charset != StandardCharsets.UTF_16BE && charset != StandardCharsets.UTF_16LE;
+    }
+
+    /**
+     * Returns the same encoding with a different line separator
+     * @param lineSeparator "\n", "\r\n" or "\r", as found by LineBreakFilter.getLineSeparator
+     * @return The encoding
+     */
+    public FileEncoding withLineSeparator(String lineSeparator){
+        return new FileEncoding(charset, byteOrderMark, lineSeparator);
+    }
+
+    //Getters
+    public Charset getCharset(){return charset;}
+    public byte[] getByteOrderMark(){return byteOrderMark.clone();}
+    public int getByteOrderMarkLength(){return byteOrderMark.length;}
+    public String getLineSeparator(){return lineSeparator;}
+
+    @Override
+    public String toString(){
+        String lineBreaks = lineSeparator.equals("\r\n") ? ", CRLF" : lineSeparator.equals("\r") ? ", CR" : "";
+        return charset.name() + (byteOrderMark.length > 0 ? " with BOM" : "") + lineBreaks;
+    }
+}
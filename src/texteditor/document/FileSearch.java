@@ -0,0 +1,340 @@
+package texteditor.document;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Searches every text file under a directory for the matches of a TextSearch.
+ *
+ * The tree is walked by a fork-join pool with a thread per core - each directory is a task that forks a task for
+ * each of its subdirectories and searches its files in batches, so idle threads steal whole subtrees or batches from
+ * busy ones. Files are memory mapped and decoded straight from the mapping in the encoding detected for each, and a
+ * file that is not UTF-16 is skipped as binary if a NUL byte turns up in its first BINARY_CHECK_BYTES, which costs a
+ * single read of a page that decoding needs anyway.
+ *
+ * A file is decoded and searched a window of WINDOW_SIZE chars at a time, so a thread never holds more than one
+ * window of text however large the file is. The line the window ends part way through is carried into the start of
+ * the next window, so a match within a line is always found whole - A match that spans a line break, which only a
+ * regular expression can make, is missed if it also crosses the end of a window
+ */
+public class FileSearch {
+
+    private static final int BINARY_CHECK_BYTES = 8000; //The same amount git looks at
+    private static final int FILES_PER_TASK = 16; //Small files are cheap, so one task per file would be mostly overhead
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE; //Mapped in one piece
+    private static final int WINDOW_SIZE = 1 << 20; //Chars decoded at a time
+    private static final int MAX_CARRY = 1 << 16; //Chars of a line too long to carry whole into the next window
+    private static final int MAX_LINE_TEXT = 200; //Chars of the line each hit keeps
+
+    private final TextSearch search;
+    private final Predicate<Path> fileFilter;
+    private final HitListener listener;
+    private volatile boolean stopped = false;
+    private final AtomicInteger filesSearched = new AtomicInteger();
+    private ForkJoinPool pool;
+
+    /**
+     * Told about each window of the text of a file as it is decoded
+     */
+    interface TextWindowListener {
+
+        /**
+         * Called for each window, in order
+         * @param text The chars of the window, from index 0 - Overwritten by the next window
+         * @param length Number of chars in the window
+         * @param offset Offset of the window's first char in the text of the file
+         * @param carried Index of the first char carried into the start of the next window, or the length if this
+         *                is the last window
+         * @return False to stop reading
+         */
+        boolean window(char[] text, int length, long offset, int carried);
+    }
+
+    /**
+     * Listens for the hits of a search - Called from the threads of the search, so must be thread safe
+     */
+    public interface HitListener {
+
+        /**
+         * Called for each match found
+         * @param hit The match
+         * @return False to stop the whole search
+         */
+        boolean found(Hit hit);
+    }
+
+    /**
+     * Prepares a search
+     * @param search What to look for in each file - Must be safe to use from several threads at once
+     * @param fileFilter Which files to search, by their path
+     * @param listener Told about each match
+     */
+    public FileSearch(TextSearch search, Predicate<Path> fileFilter, HitListener listener){
+        this.search = search;
+        this.fileFilter = fileFilter;
+        this.listener = listener;
+    }
+
+    /**
+     * Searches every file under a directory, returning once all of them have been searched or the search is stopped
+     * @param root The directory to search
+     * @return The number of files searched
+     * @throws InterruptedException If the calling thread is interrupted, which stops the search
+     */
+    public int searchTree(Path root) throws InterruptedException {
+        return run(new DirectoryTask(root));
+    }
+
+    /**
+     * Searches a list of files, such as the candidates a TrigramIndex narrowed a search down to
+     * @param files The files to search
+     * @return The number of files searched
+     * @throws InterruptedException If the calling thread is interrupted, which stops the search
+     */
+    public int searchFiles(List<Path> files) throws InterruptedException {
+        return run(new RecursiveAction() {
+            @Override
+            protected void compute(){
+                List<FilesTask> tasks = new ArrayList<>();
+                for(int i = 0; i < files.size(); i += FILES_PER_TASK){
+                    tasks.add(new FilesTask(files.subList(i, Math.min(files.size(), i + FILES_PER_TASK))));
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Runs the task that starts a search on a new pool, and waits for it to finish
+     */
+    private int run(RecursiveAction task) throws InterruptedException {
+        synchronized(this){
+            if(stopped) return 0;
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        try{
+            pool.submit(task).get();
+        }catch(InterruptedException e){
+            stop();
+            throw e;
+        }catch(CancellationException e){
+            //Stopped part way through
+        }catch(ExecutionException e){
+            if(!(e.getCause() instanceof CancellationException)) e.printStackTrace();
+        }finally{
+            pool.shutdownNow();
+        }
+        return filesSearched.get();
+    }
+
+    /**
+     * Stops the search - Files already being searched stop at their next match
+     */
+    public synchronized void stop(){
+        stopped = true;
+        if(pool != null) pool.shutdownNow();
+    }
+
+    /**
+     * Searches one directory, forking a task for each subdirectory and each batch of files
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+
+        DirectoryTask(Path directory){
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute(){
+            if(stopped) return;
+            List<ForkJoinTask<?>> subtasks = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            try(DirectoryStream<Path> entries = Files.newDirectoryStream(directory)){
+                for(Path entry : entries){
+                    if(stopped) return;
+                    if(Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) subtasks.add(new DirectoryTask(entry).fork());
+                    else if(Files.isRegularFile(entry) && fileFilter.test(entry)) files.add(entry);
+                    if(files.size() == FILES_PER_TASK){
+                        subtasks.add(new FilesTask(files).fork());
+                        files = new ArrayList<>();
+                    }
+                }
+            }catch(IOException e){
+                return; //Directories that cannot be read are left out
+            }
+            if(!files.isEmpty()) subtasks.add(new FilesTask(files).fork());
+            for(ForkJoinTask<?> subtask : subtasks) subtask.join();
+        }
+    }
+
+    /**
+     * Searches a batch of files from the same directory
+     */
+    private class FilesTask extends RecursiveAction {
+        private final List<Path> files;
+
+        FilesTask(List<Path> files){
+            this.files = files;
+        }
+
+        @Override
+        protected void compute(){
+            for(Path file : files){
+                if(stopped) return;
+                try{
+                    if(searchFile(file)) filesSearched.incrementAndGet();
+                }catch(IOException e){
+                    //Files that cannot be read are left out
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches a single file, a window at a time
+     * @return False if the file was skipped
+     */
+    private boolean searchFile(Path file) throws IOException {
+        //Lines are counted up to each match as the matches come in, in order - A lone \r is a line break too, as it is once loaded
+        long[] line = {0}, lineStart = {0}, scanned = {0}, nextStart = {0};
+        char[] previous = {0};
+        return readText(file, (array, length, offset, carried) -> {
+            long carriedOffset = offset + carried;
+
+            //Where a long line is cut, matches just after the cut are found here, where the text before them is too
+            boolean lineCut = carried > 0 && length - carried > 2 && array[carried - 1] != '\n' && array[carried - 1] != '\r';
+            long searchedTo = carriedOffset + (lineCut ? MAX_LINE_TEXT / 2 : 0);
+            boolean[] searching = {true};
+            TextSnapshot text = new TextSnapshot(new char[][]{array}, new int[]{0}, new int[]{length});
+            search.search(text, Math.max(0, nextStart[0] - offset), (start, end) -> {
+                if(stopped) return searching[0] = false;
+                if(offset + start >= searchedTo) return false; //Found again whole in the next window
+                previous[0] = countLines(array, offset, scanned[0] - offset, (int) start, previous[0], line, lineStart);
+                scanned[0] = offset + start;
+                nextStart[0] = offset + end;
+
+                //Long lines are cut short around the match
+                int textStart = (int) Math.max(lineStart[0] - offset, Math.max(0, start - MAX_LINE_TEXT / 2)), textEnd = textStart;
+                while(textEnd < length && textEnd - textStart < MAX_LINE_TEXT && array[textEnd] != '\n' && array[textEnd] != '\r') textEnd++;
+                String lineText = new String(array, textStart, textEnd - textStart);
+                Hit hit = new Hit(file, (int) line[0], (int) (offset + start - lineStart[0]), (int) (end - start), lineText);
+                if(listener.found(hit)) return true;
+                stop();
+                return searching[0] = false;
+            });
+            if(!searching[0] || carried == length) return searching[0];
+            nextStart[0] = Math.max(nextStart[0], searchedTo);
+
+            //Counting the lines of the chars that are not carried over before they are overwritten
+            if(scanned[0] < carriedOffset){
+                previous[0] = countLines(array, offset, scanned[0] - offset, carried, previous[0], line, lineStart);
+                scanned[0] = carriedOffset;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Counts the line breaks in part of a window - \r\n is one break, and \r or \n alone is one too
+     * @param previous The char before the part, which may be in an earlier window
+     * @return The last char of the part
+     */
+    private static char countLines(char[] array, long offset, long from, int to, char previous, long[] line, long[] lineStart){
+        for(int i = (int) from; i < to; i++){
+            char c = array[i];
+            if(c == '\r' || (c == '\n' && previous != '\r')) line[0]++;
+            if(c == '\r' || c == '\n') lineStart[0] = offset + i + 1;
+            previous = c;
+        }
+        return previous;
+    }
+
+    /**
+     * Memory maps a file and decodes it a window at a time - The line the end of each window falls in is carried into
+     * the start of the next, unless it is longer than MAX_CARRY, when only its last MAX_CARRY chars are, and at least
+     * the last two chars of a window always are
+     * @param file The file
+     * @param listener Told about each window
+     * @return False if the file was skipped as empty, too large or binary
+     * @throws IOException If the file cannot be read
+     */
+    static boolean readText(Path file, TextWindowListener listener) throws IOException {
+        MappedByteBuffer bytes;
+        long size;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            size = channel.size();
+            if(size == 0 || size > MAX_FILE_SIZE) return false;
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        FileEncoding encoding = FileEncoding.detect(bytes);
+        for(int i = 0, end = Math.min(bytes.limit(), BINARY_CHECK_BYTES); i < end && encoding.isAsciiCompatible(); i++){
+            if(bytes.get(i) == 0) return false;
+        }
+        bytes.position(encoding.getByteOrderMarkLength());
+        CharsetDecoder decoder = encoding.getCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        //No encoding decodes to more chars than there are bytes, so a small file is read in a window of its own size
+        CharBuffer chars = CharBuffer.allocate((int) Math.min(size, WINDOW_SIZE));
+        char[] array = chars.array();
+        long offset = 0;
+        while(true){
+            boolean last = decoder.decode(bytes, chars, true).isUnderflow();
+            if(last) decoder.flush(chars);
+            int length = chars.position(), carried = length;
+            if(!last){
+                int limit = Math.max(length - MAX_CARRY, length / 2); //At least half of each window is new
+                while(carried > limit && array[carried - 1] != '\n' && array[carried - 1] != '\r') carried--;
+                carried = Math.min(carried, length - 2); //So every three chars in a row are together in some window
+            }
+            if(!listener.window(array, length, offset, carried) || last) return true;
+            System.arraycopy(array, carried, array, 0, length - carried);
+            chars.position(length - carried);
+            offset += carried;
+        }
+    }
+
+    /**
+     * A match found in a file
+     */
+    public static class Hit {
+        private final Path file;
+        private final int line, column, length;
+        private final String lineText;
+
+        Hit(Path file, int line, int column, int length, String lineText){
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.length = length;
+            this.lineText = lineText;
+        }
+
+        //Getters
+        public Path getFile(){return file;}
+        public int getLine(){return line;}
+        public int getColumn(){return column;}
+        public int getLength(){return length;}
+        public String getLineText(){return lineText;}
+    }
+}
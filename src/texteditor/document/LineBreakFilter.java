@@ -0,0 +1,71 @@
+package texteditor.document;
+
+/**
+ * Converts \r\n and lone \r line breaks into \n in place, block by block - A \r at the end of one block is
+ * remembered so that a \n starting the next block is dropped. Each kind of line break is counted along the way, so
+ * the line separator of the text is known once it has all been filtered.
+ *
+ * Nothing in a block has to move until its first \r, so the block is first scanned up to there counting \n, and a
+ * block with no \r in it at all - every block of a file with \n line breaks - is left as it is
+ */
+public class LineBreakFilter {
+    private boolean lastWasCR = false;
+    private long lineFeeds = 0, carriageReturnLineFeeds = 0, carriageReturns = 0; //Lone \r only
+
+    /**
+     * Filters a block of text in place
+     * @param block Array holding the block
+     * @param length Number of chars in the block
+     * @return The number of chars left in the block once line breaks have been converted
+     */
+    public int filter(char[] block, int length){
+        int read = 0, filtered = 0;
+
+        //A \r ending the last block was counted as a lone \r, and the \n after it is dropped
+        if(lastWasCR && length > 0){
+            lastWasCR = false;
+            if(block[0] == '\n'){
+                carriageReturns--;
+                carriageReturnLineFeeds++;
+                read = 1;
+            }
+        }
+
+        //Scanning up to the first \r, since nothing before it moves
+        if(read == 0){
+            while(read < length && block[read] != '\r'){
+                if(block[read] == '\n') lineFeeds++;
+                read++;
+            }
+            filtered = read;
+        }
+
+        for(; read < length; read++){
+            char c = block[read];
+            if(c == '\r'){
+                if(read + 1 < length && block[read + 1] == '\n'){
+                    carriageReturnLineFeeds++;
+                    read++;
+                }else{
+                    carriageReturns++;
+                    lastWasCR = read + 1 == length;
+                }
+                block[filtered++] = '\n';
+            }else{
+                if(c == '\n') lineFeeds++;
+                block[filtered++] = c;
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Returns the line separator used by most of the line breaks filtered so far
+     * @return "\r\n", "\r", or "\n" if that is the most common or there were no line breaks
+     */
+    public String getLineSeparator(){
+        if(carriageReturnLineFeeds > lineFeeds && carriageReturnLineFeeds >= carriageReturns) return "\r\n";
+        if(carriageReturns > lineFeeds && carriageReturns > carriageReturnLineFeeds) return "\r";
+        return "\n";
+    }
+}
@@ -0,0 +1,297 @@
+package texteditor.document;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of where each line of a document starts, kept up to date from the document's events.
+ *
+ * The length of every line (counting its line break) is kept in chunks of up to CHUNK_SIZE lines, with two Fenwick
+ * trees over the chunks - one summing their chars and one their lines. Finding a line or the line of an offset is a
+ * search down a Fenwick tree followed by a scan inside one chunk, and editing within a line is a single Fenwick
+ * update, so both stay O(log n) on files with millions of lines. Lines only take four bytes each.
+ *
+ * The Fenwick trees are only rebuilt when chunks are added or removed, which happens once every few hundred new
+ * lines rather than on every edit
+ */
+public class LineIndex implements DocumentListener {
+    private static final int CHUNK_SIZE = 1024;
+
+    private final Document document;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private long[] charTree; //Fenwick tree of the chars in each chunk
+    private int[] lineTree; //Fenwick tree of the lines in each chunk
+    private int lineCount;
+    private final Segment segment = new Segment();
+
+    /**
+     * Creates an index of a document and starts listening to it - The index should be added after any listener
+     * that asks it about the document while handling an edit, such as the caret, so that it is updated first
+     * @param document The document to index
+     */
+    public LineIndex(Document document){
+        this.document = document;
+        chunks.add(new Chunk(new int[CHUNK_SIZE], 1));
+        lineCount = 1;
+        rebuildTrees();
+        try{
+            insert(0, 0, document.getLength());
+        }catch(BadLocationException e){
+            e.printStackTrace(); //Cannot happen, the range is the whole document
+        }
+        document.addDocumentListener(this);
+    }
+
+    /**
+     * Returns the number of lines - One more than the number of line breaks
+     * @return The number of lines
+     */
+    public int getLineCount(){
+        return lineCount;
+    }
+
+    /**
+     * Finds the line an offset is on
+     * @param offset Offset in the document
+     * @return Index of the line, starting from 0
+     */
+    public int getLineOfOffset(int offset){
+        //Descending the Fenwick tree to the chunk holding the offset
+        int chunk = 0, line = 0;
+        long remaining = offset;
+        for(int step = Integer.highestOneBit(chunks.size()); step > 0; step >>= 1){
+            int next = chunk + step;
+            if(next <= chunks.size() && charTree[next] <= remaining){
+                chunk = next;
+                remaining -= charTree[next];
+                line += lineTree[next];
+            }
+        }
+        if(chunk == chunks.size()) return lineCount - 1; //At or past the end of the document
+
+        //Scanning the chunk for the line
+        Chunk found = chunks.get(chunk);
+        for(int i = 0; i < found.count; i++){
+            if(remaining < found.lengths[i]) return line + i;
+            remaining -= found.lengths[i];
+        }
+        return line + found.count - 1;
+    }
+
+    /**
+     * Finds the offset a line starts at
+     * @param line Index of the line, starting from 0
+     * @return Offset of the first char of the line
+     */
+    public int getLineStartOffset(int line){
+        if(line < 0 || line >= lineCount) throw new IndexOutOfBoundsException("No line " + line);
+        int chunk = 0;
+        long offset = 0;
+        for(int step = Integer.highestOneBit(chunks.size()); step > 0; step >>= 1){
+            int next = chunk + step;
+            if(next <= chunks.size() && lineTree[next] <= line){
+                chunk = next;
+                line -= lineTree[next];
+                offset += charTree[next];
+            }
+        }
+        int[] lengths = chunks.get(chunk).lengths;
+        for(int i = 0; i < line; i++) offset += lengths[i];
+        return (int) offset;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        try{
+            insert(e.getOffset(), e.getOffset(), e.getLength());
+        }catch(BadLocationException exception){
+            exception.printStackTrace();
+        }
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e){
+        int offset = e.getOffset(), end = offset + e.getLength();
+        int firstLine = getLineOfOffset(offset), lastLine = getLineOfOffset(end);
+        if(firstLine == lastLine){
+            addToLine(firstLine, -e.getLength());
+            return;
+        }
+
+        //Joining the start of the first line with the end of the last into one line
+        int merged = (offset - getLineStartOffset(firstLine)) + (lineLength(lastLine) - (end - getLineStartOffset(lastLine)));
+        replaceLines(firstLine, lastLine, new int[]{merged}, 1);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){
+        //Attribute changes do not move any lines
+    }
+
+    /**
+     * Indexes text that has been inserted into the document
+     * @param lineOffset Offset the text was inserted at, before the text was there
+     * @param offset Offset of the text in the document
+     * @param length Length of the text
+     */
+    private void insert(int lineOffset, int offset, int length) throws BadLocationException {
+        if(length == 0) return;
+        int line = getLineOfOffset(lineOffset);
+        int column = lineOffset - getLineStartOffset(line);
+        int oldLength = lineLength(line);
+
+        //Finding the line breaks in the inserted text
+        int[] lengths = null;
+        int count = 0, lineStart = 0, scanned = 0;
+        segment.setPartialReturn(true);
+        while(scanned < length){
+            document.getText(offset + scanned, length - scanned, segment);
+            for(int i = 0; i < segment.count; i++){
+                if(segment.array[segment.offset + i] != '\n') continue;
+                if(lengths == null) lengths = new int[16];
+                else if(count + 1 >= lengths.length) lengths = Arrays.copyOf(lengths, lengths.length * 2);
+                int breakAt = scanned + i;
+                int newLength = breakAt + 1 - lineStart;
+                if(count == 0) newLength += column; //The first new line starts with the start of the old one
+                lengths[count++] = newLength;
+                lineStart = breakAt + 1;
+            }
+            scanned += segment.count;
+        }
+        if(lengths == null){
+            addToLine(line, length);
+            return;
+        }
+
+        //The last new line carries on with the rest of the line the text was inserted into
+        lengths[count++] = length - lineStart + oldLength - column;
+        replaceLines(line, line, lengths, count);
+    }
+
+    private int lineLength(int line){
+        Chunk chunk = chunks.get(chunkOf(line));
+        return chunk.lengths[line - chunk.firstLine];
+    }
+
+    /**
+     * Finds the chunk holding a line, and notes the index of its first line in the chunk
+     */
+    private int chunkOf(int line){
+        int chunk = 0, before = 0;
+        for(int step = Integer.highestOneBit(chunks.size()); step > 0; step >>= 1){
+            int next = chunk + step;
+            if(next <= chunks.size() && before + lineTree[next] <= line){
+                chunk = next;
+                before += lineTree[next];
+            }
+        }
+        chunks.get(chunk).firstLine = before;
+        return chunk;
+    }
+
+    private void addToLine(int line, int delta){
+        int chunk = chunkOf(line);
+        Chunk found = chunks.get(chunk);
+        found.lengths[line - found.firstLine] += delta;
+        found.chars += delta;
+        updateTrees(chunk, delta, 0);
+    }
+
+    private void updateTrees(int chunk, long chars, int lines){
+        for(int i = chunk + 1; i <= chunks.size(); i += i & -i){
+            charTree[i] += chars;
+            lineTree[i] += lines;
+        }
+    }
+
+    /**
+     * Replaces a run of lines with new ones, re-chunking only the chunks they are in
+     */
+    private void replaceLines(int firstLine, int lastLine, int[] lengths, int count){
+        int firstChunk = chunkOf(firstLine), lastChunk = chunkOf(lastLine);
+        Chunk first = chunks.get(firstChunk), last = chunks.get(lastChunk);
+        int before = firstLine - first.firstLine, after = last.firstLine + last.count - lastLine - 1;
+
+        //Editing a single chunk in place when the result still fits in it
+        if(firstChunk == lastChunk && before + count + after <= CHUNK_SIZE){
+            long oldChars = first.chars;
+            int oldCount = first.count;
+            System.arraycopy(first.lengths, lastLine - first.firstLine + 1, first.lengths, before + count, after);
+            System.arraycopy(lengths, 0, first.lengths, before, count);
+            first.count = before + count + after;
+            first.sumChars();
+            lineCount += first.count - oldCount;
+            updateTrees(firstChunk, first.chars - oldChars, first.count - oldCount);
+            return;
+        }
+
+        //Otherwise laying the affected lines out again in half full chunks, leaving room to grow
+        int total = before + count + after;
+        int[] all = new int[total];
+        System.arraycopy(first.lengths, 0, all, 0, before);
+        System.arraycopy(lengths, 0, all, before, count);
+        System.arraycopy(last.lengths, last.count - after, all, before + count, after);
+        List<Chunk> replacement = new ArrayList<>();
+        for(int start = 0; start < total; start += CHUNK_SIZE / 2){
+            int size = Math.min(CHUNK_SIZE / 2, total - start);
+            int[] chunkLengths = new int[CHUNK_SIZE];
+            System.arraycopy(all, start, chunkLengths, 0, size);
+            replacement.add(new Chunk(chunkLengths, size));
+        }
+        List<Chunk> affected = chunks.subList(firstChunk, lastChunk + 1);
+        affected.clear();
+        affected.addAll(replacement);
+        lineCount += count - (lastLine - firstLine + 1);
+        rebuildTrees();
+    }
+
+    /**
+     * Rebuilds both Fenwick trees from the chunks in O(number of chunks)
+     */
+    private void rebuildTrees(){
+        int size = chunks.size();
+        if(charTree == null || charTree.length < size + 1){
+            charTree = new long[size * 2 + 1];
+            lineTree = new int[size * 2 + 1];
+        }
+        for(int i = 1; i <= size; i++){
+            Chunk chunk = chunks.get(i - 1);
+            charTree[i] = chunk.chars;
+            lineTree[i] = chunk.count;
+        }
+        for(int i = 1; i <= size; i++){
+            int parent = i + (i & -i);
+            if(parent <= size){
+                charTree[parent] += charTree[i];
+                lineTree[parent] += lineTree[i];
+            }
+        }
+    }
+
+    /**
+     * The lengths of a run of consecutive lines
+     */
+    private static class Chunk {
+        private final int[] lengths;
+        private int count;
+        private long chars;
+        private int firstLine; //Index of the first line, as of the last lookup
+
+        Chunk(int[] lengths, int count){
+            this.lengths = lengths;
+            this.count = count;
+            sumChars();
+        }
+
+        void sumChars(){
+            chars = 0;
+            for(int i = 0; i < count; i++) chars += lengths[i];
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package texteditor.document;
+
+import javax.swing.text.Segment;
+import java.util.Arrays;
+
+/**
+ * Searches a snapshot of a document for a literal string using Boyer-Moore-Horspool.
+ *
+ * The segments of the snapshot are searched where they are, so the text is never copied. A match that crosses from
+ * one segment into the next is found by also searching the last few chars of the text before each segment joined
+ * to the first few of the segment, which is never more than twice the length of the pattern. Matches do not
+ * overlap, and the search is stopped early if the listener asks it to or the searching thread is interrupted
+ */
+public class LiteralSearch implements TextSearch {
+
+    //Size of the bad character table - chars are bucketed by their low byte, keeping the smallest shift of the bucket
+    private static final int TABLE_SIZE = 256;
+
+    private final char[] pattern;
+    private final boolean matchCase;
+    private final int[] shifts = new int[TABLE_SIZE];
+
+    /**
+     * Prepares a search for a string
+     * @param pattern The string to find
+     * @param matchCase False to ignore the case of letters
+     */
+    public LiteralSearch(String pattern, boolean matchCase){
+        if(pattern.isEmpty()) throw new IllegalArgumentException("Nothing to search for");
+        this.matchCase = matchCase;
+        this.pattern = new char[pattern.length()];
+        for(int i = 0; i < pattern.length(); i++) this.pattern[i] = fold(pattern.charAt(i));
+
+        //Shifting past the last char of a window by how far it is from the end of the pattern
+        int last = this.pattern.length - 1;
+        Arrays.fill(shifts, this.pattern.length);
+        for(int i = 0; i < last; i++) shifts[this.pattern[i] % TABLE_SIZE] = last - i;
+    }
+
+    @Override
+    public String replace(String matchedText, String replacement){
+        if(matchedText.length() != pattern.length) return null;
+        for(int i = 0; i < pattern.length; i++){
+            if(fold(matchedText.charAt(i)) != pattern[i]) return null;
+        }
+        return replacement;
+    }
+
+    @Override
+    public void search(TextSnapshot text, long from, MatchListener listener){
+        int m = pattern.length;
+        char[] joint = new char[2 * (m - 1)];
+        int carried = 0; //Chars from before the current segment at the start of joint
+        long next = from; //Matches may not start before here
+        Segment segment = new Segment();
+        for(int s = Math.max(0, text.segmentAt(from)); s < text.getSegmentCount(); s++){
+            if(Thread.currentThread().isInterrupted()) return;
+            text.getSegment(s, segment);
+            long skip = Math.max(0, from - text.getSegmentStart(s));
+            if(skip >= segment.count) continue;
+            int offset = segment.offset + (int) skip, count = segment.count - (int) skip;
+            long start = text.getSegmentStart(s) + skip;
+
+            //Matches that start in the chars carried over and end in this segment
+            if(carried > 0){
+                int head = Math.min(m - 1, count);
+                System.arraycopy(segment.array, offset, joint, carried, head);
+                for(int i = 0; i < carried && i + m <= carried + head; i++){
+                    long at = start - carried + i;
+                    if(at < next || !matchesAt(joint, i)) continue;
+                    if(!listener.found(at, at + m)) return;
+                    next = at + m;
+                }
+            }
+
+            //Matches inside the segment
+            next = scan(segment.array, offset, offset + count, start, next, listener);
+            if(next < 0) return;
+
+            //Carrying the last m - 1 chars of the text so far over to the next segment
+            int take = Math.min(count, m - 1);
+            int keep = Math.min(carried, m - 1 - take);
+            System.arraycopy(joint, carried - keep, joint, 0, keep);
+            System.arraycopy(segment.array, offset + count - take, joint, keep, take);
+            carried = keep + take;
+        }
+    }
+
+    /**
+     * Runs Boyer-Moore-Horspool over part of an array
+     * @param start Offset in the text of the char at index from
+     * @param next Matches may not start before this offset in the text, since they would overlap the last one
+     * @return The offset matches may start from after this part, or -1 if the search was stopped
+     */
+    private long scan(char[] array, int from, int to, long start, long next, MatchListener listener){
+        int last = pattern.length - 1;
+        int i = from + (int) Math.max(0, next - start);
+        while(i + last < to){
+            char c = fold(array[i + last]);
+            if(c == pattern[last]){
+                int j = last - 1;
+                while(j >= 0 && fold(array[i + j]) == pattern[j]) j--;
+                if(j < 0){
+                    if(!listener.found(start + i - from, start + i - from + pattern.length)) return -1;
+                    i += pattern.length;
+                    next = start + i - from;
+                    continue;
+                }
+            }
+            i += shifts[c % TABLE_SIZE];
+        }
+        return next;
+    }
+
+    private boolean matchesAt(char[] array, int index){
+        for(int j = 0; j < pattern.length; j++){
+            if(fold(array[index + j]) != pattern[j]) return false;
+        }
+        return true;
+    }
+
+    private char fold(char c){
+        return matchCase ? c : Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
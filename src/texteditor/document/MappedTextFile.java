@@ -0,0 +1,203 @@
+package texteditor.document;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A read only view of a text file that is memory mapped rather than read into the heap.
+ *
+ * Lines are found through a sparse index of checkpoints, each the byte offset of a point in the file and the line
+ * it is in. There is one at the start of every LINES_PER_CHECKPOINT-th line, and one every BYTES_PER_CHECKPOINT
+ * bytes inside longer stretches, so finding a line never scans further than that even in a file that is one huge
+ * line, and the index of a 10 GB file still fits in a few megabytes. The index is built by buildIndex, which is
+ * meant to run on a background thread - lines can be read while it runs, but only lines already indexed can be
+ * reached.
+ *
+ * Line breaks are found by looking for the byte '\n', so the charset must be one where that byte only ever means a
+ * line break (any ASCII compatible charset, such as UTF-8 or ISO-8859-1)
+ */
+public class MappedTextFile {
+
+    //Each mapping can be at most 2 GB, so the file is mapped in segments
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int LINES_PER_CHECKPOINT = 1024;
+    private static final int BYTES_PER_CHECKPOINT = 1 << 16;
+
+    private final File file;
+    private final Charset charset;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+
+    //Sparse line index - checkpoints[i] is a byte offset in the file and checkpointLines[i] the line it is in
+    private long[] checkpoints = new long[64];
+    private long[] checkpointLines = new long[64];
+    private int checkpointCount;
+    private long indexedLines;
+    private boolean indexComplete;
+
+    /**
+     * Maps a file for reading
+     * @param file File to map
+     * @param charset Charset the file is encoded in - Must be ASCII compatible
+     * @throws IOException If the file cannot be mapped
+     */
+    public MappedTextFile(File file, Charset charset) throws IOException {
+        this.file = file;
+        this.charset = charset;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >> SEGMENT_BITS)];
+            for(int i = 0; i < segments.length; i++){
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+        }
+        checkpointCount = 1; //Line 0 starts at offset 0
+    }
+
+    /**
+     * Scans the whole file for line breaks and fills in the sparse line index
+     * @throws InterruptedException If the thread is interrupted before the index is complete
+     */
+    public void buildIndex() throws InterruptedException {
+        long lines = 0, lastCheckpoint = 0;
+        int linesSinceCheckpoint = 0;
+        for(int s = 0; s < segments.length; s++){
+            MappedByteBuffer segment = segments[s];
+            long segmentStart = (long) s << SEGMENT_BITS;
+            int limit = segment.limit();
+            for(int i = 0; i < limit; i++){
+                long next = segmentStart + i + 1;
+                if(segment.get(i) == '\n'){
+                    lines++;
+                    if(++linesSinceCheckpoint < LINES_PER_CHECKPOINT && next - lastCheckpoint < BYTES_PER_CHECKPOINT) continue;
+                }else if(next - lastCheckpoint < BYTES_PER_CHECKPOINT) continue;
+                addCheckpoint(next, lines);
+                lastCheckpoint = next;
+                linesSinceCheckpoint = 0;
+                if(Thread.interrupted()) throw new InterruptedException();
+            }
+            setIndexedLines(lines);
+        }
+        synchronized(this){
+            indexComplete = true;
+        }
+    }
+
+    private synchronized void addCheckpoint(long offset, long line){
+        if(checkpointCount == checkpoints.length){
+            checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+            checkpointLines = Arrays.copyOf(checkpointLines, checkpointCount * 2);
+        }
+        checkpoints[checkpointCount] = offset;
+        checkpointLines[checkpointCount++] = line;
+        indexedLines = line;
+    }
+
+    private synchronized void setIndexedLines(long lines){
+        indexedLines = lines;
+    }
+
+    /**
+     * Returns the number of lines that can be reached so far - Once the index is complete this is the number of
+     * line breaks plus one, the same way a Document counts its lines
+     * @return The number of reachable lines
+     */
+    public synchronized long getLineCount(){
+        return indexComplete ? indexedLines + 1 : Math.max(indexedLines, 1);
+    }
+
+    /**
+     * Checks if the whole file has been indexed
+     * @return True if buildIndex has finished
+     */
+    public synchronized boolean isIndexComplete(){
+        return indexComplete;
+    }
+
+    /**
+     * Returns the byte offset where a line starts, scanning forward from the last checkpoint before it - Which is
+     * at most BYTES_PER_CHECKPOINT bytes back once the line has been indexed
+     * @param line Index of the line
+     * @return The byte offset of the line, or the size of the file if the line does not exist
+     */
+    public long getLineStart(long line){
+        if(line <= 0) return 0;
+        long offset;
+        synchronized(this){
+
+            //Finding the last checkpoint in an earlier line
+            int low = 0, high = checkpointCount - 1;
+            while(low < high){
+                int middle = (low + high + 1) >>> 1;
+                if(checkpointLines[middle] < line) low = middle;
+                else high = middle - 1;
+            }
+            offset = checkpoints[low];
+            line -= checkpointLines[low];
+        }
+        while(line > 0 && offset < size){
+            if(byteAt(offset++) == '\n') line--;
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes a run of consecutive lines - Only the first maxLineBytes bytes of each line are read, and the rest of a
+     * longer line is skipped by finding the start of the next one through the index, so that the cost stays
+     * proportional to what can be shown
+     * @param firstLine Index of the first line to read
+     * @param count Number of lines to read
+     * @param maxLineBytes Maximum number of bytes to decode from each line
+     * @return The decoded lines, without their line breaks - Fewer than count at the end of the file
+     */
+    public List<String> readLines(long firstLine, int count, int maxLineBytes){
+        List<String> lines = new ArrayList<>(count);
+        long offset = getLineStart(firstLine);
+        byte[] bytes = new byte[maxLineBytes];
+        while(lines.size() < count && offset < size){
+            int length = 0;
+            boolean ended = false;
+            while(offset < size && !ended){
+                byte b = byteAt(offset++);
+                if(b == '\n') ended = true;
+                else if(length < maxLineBytes) bytes[length++] = b;
+                else{
+                    offset = getLineStart(firstLine + lines.size() + 1);
+                    break;
+                }
+            }
+            if(ended && length > 0 && bytes[length - 1] == '\r') length--;
+            lines.add(new String(bytes, 0, length, charset));
+        }
+        return lines;
+    }
+
+    private byte byteAt(long offset){
+        return segments[(int) (offset >> SEGMENT_BITS)].get((int) (offset & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Returns the size of the mapped file
+     * @return The size in bytes
+     */
+    public long getSize(){
+        return size;
+    }
+
+    /**
+     * Returns the mapped file
+     * @return The file
+     */
+    public File getFile(){
+        return file;
+    }
+}
@@ -0,0 +1,237 @@
+package texteditor.document;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import java.util.Arrays;
+
+/**
+ * Splits the lines of a document into the tokens of the outline markup made by Insert Point, Insert Sub Point and
+ * Insert Date: points (a - after less than SUB_POINT_INDENT columns of indent), sub points (a - after more),
+ * headings (a line starting with #) and dates. An indented line after a point or sub point without a - of its own
+ * carries on that point's text, until a blank line, heading or unindented line ends it.
+ *
+ * Carrying a point on is the only thing that crosses from one line to the next, so the lexer keeps the state each
+ * line starts in. After an edit, only the lines touched are lexed again, followed by each line after them whose
+ * start state changed as a result - which stops at the first line that starts in the same state as before. The
+ * tokens themselves are worked out from the start state when a line is painted, so they are only ever found for
+ * lines on screen. Lines are found through the document's own line elements, which are up to date before any
+ * listener is told of an edit
+ */
+public class OutlineLexer implements DocumentListener {
+
+    //States a line can start in
+    private static final byte OUTSIDE = 0, IN_POINT = 1, IN_SUB_POINT = 2;
+
+    //What a line is, from its first chars
+    private static final int BLANK = 0, PLAIN = 1, INDENTED = 2, HEADING = 3, POINT = 4, SUB_POINT = 5;
+
+    private static final int SUB_POINT_INDENT = 8;
+    private static final int TAB_SIZE = 4;
+    private static final int DATE_LENGTH = 10; //dd/MM/yyyy
+    private static final String DATE_SEPARATOR = " - "; //Between the day and the date, as Insert Date writes them
+    private static final String[] DAYS = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
+
+    private final Document document;
+    private final Element root;
+    private final RelexListener listener;
+    private final Segment prefix = new Segment(), line = new Segment();
+    private byte[] states = new byte[16]; //State each line starts in
+    private int lineCount;
+    private int indentEnd; //Offset of the first char that is not indent, set by classify
+
+    /**
+     * Kinds of token
+     */
+    public enum Token {TEXT, HEADING, POINT, SUB_POINT, SUB_POINT_TEXT, DATE}
+
+    /**
+     * Receives the tokens of a line, in order - Together they cover the whole line apart from its line break
+     */
+    public interface TokenListener {
+        void token(int start, int end, Token token) throws BadLocationException;
+    }
+
+    /**
+     * Told which lines had their start state changed by an edit, beyond the lines the edit touched
+     */
+    public interface RelexListener {
+        void linesRelexed(int firstLine, int lastLine);
+    }
+
+    /**
+     * Lexes a document and starts listening to it
+     * @param document The document
+     * @param listener Told about lines whose tokens changed without the lines themselves being edited
+     */
+    public OutlineLexer(Document document, RelexListener listener){
+        this.document = document;
+        this.root = document.getDefaultRootElement();
+        this.listener = listener;
+        prefix.setPartialReturn(true);
+        lineCount = root.getElementCount();
+        ensureCapacity(lineCount);
+        relex(0, lineCount - 1);
+        document.addDocumentListener(this);
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        int first = root.getElementIndex(e.getOffset()), added = root.getElementCount() - lineCount;
+        if(added > 0){
+            ensureCapacity(lineCount + added);
+            System.arraycopy(states, first + 1, states, first + 1 + added, lineCount - first - 1);
+        }
+        lineCount += added;
+        int last = relex(first, first + added);
+        if(last > first + added) listener.linesRelexed(first + added + 1, last);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e){
+        int first = root.getElementIndex(e.getOffset()), removed = lineCount - root.getElementCount();
+        if(removed > 0) System.arraycopy(states, first + 1 + removed, states, first + 1, lineCount - first - 1 - removed);
+        lineCount -= removed;
+        int last = relex(first, first);
+        if(last > first) listener.linesRelexed(first + 1, last);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){}
+
+    /**
+     * Works out the start state of each line after the first, from the first line on, until past the last line
+     * touched and at a line whose start state did not change
+     * @return The last line whose start state was set
+     */
+    private int relex(int first, int lastTouched){
+        int i = first;
+        for(; i < lineCount - 1; i++){
+            byte next = nextState(classify(i), states[i]);
+            if(i >= lastTouched && states[i + 1] == next) break;
+            states[i + 1] = next;
+        }
+        return i;
+    }
+
+    private static byte nextState(int kind, byte state){
+        switch(kind){
+            case POINT: return IN_POINT;
+            case SUB_POINT: return IN_SUB_POINT;
+            case INDENTED: return state;
+            default: return OUTSIDE;
+        }
+    }
+
+    /**
+     * Works out what a line is from its indent and the first char after it, reading no further than that
+     */
+    private int classify(int lineIndex){
+        Element element = root.getElement(lineIndex);
+        int offset = element.getStartOffset(), end = element.getEndOffset() - 1, column = 0;
+        try{
+            while(offset < end){
+                document.getText(offset, end - offset, prefix);
+                for(int i = prefix.offset; i < prefix.offset + prefix.count; i++, offset++){
+                    char c = prefix.array[i];
+                    if(c == ' ') column++;
+                    else if(c == '\t') column += TAB_SIZE - column % TAB_SIZE;
+                    else{
+                        indentEnd = offset;
+                        if(c == '-') return column < SUB_POINT_INDENT ? POINT : SUB_POINT;
+                        if(column == 0) return c == '#' ? HEADING : PLAIN;
+                        return INDENTED;
+                    }
+                }
+            }
+        }catch(BadLocationException e){
+            e.printStackTrace(); //Cannot happen, the line is inside the document
+        }
+        indentEnd = end;
+        return BLANK;
+    }
+
+    /**
+     * Finds the tokens of a line
+     * @param lineIndex Index of the line
+     * @param tokens Told about each token
+     * @throws BadLocationException If the line is not in the document
+     */
+    public void lexLine(int lineIndex, TokenListener tokens) throws BadLocationException {
+        if(lineIndex >= lineCount) return;
+        int kind = classify(lineIndex);
+        Element element = root.getElement(lineIndex);
+        int start = element.getStartOffset(), end = element.getEndOffset() - 1;
+        if(kind == HEADING){
+            tokens.token(start, end, Token.HEADING);
+            return;
+        }
+
+        //The indent and the - of a point, then the text after it
+        int textStart = start;
+        Token text = Token.TEXT;
+        if(kind == POINT || kind == SUB_POINT){
+            if(indentEnd > start) tokens.token(start, indentEnd, Token.TEXT);
+            tokens.token(indentEnd, indentEnd + 1, kind == POINT ? Token.POINT : Token.SUB_POINT);
+            textStart = indentEnd + 1;
+            if(kind == SUB_POINT) text = Token.SUB_POINT_TEXT;
+        }else if(kind == INDENTED && states[lineIndex] == IN_SUB_POINT) text = Token.SUB_POINT_TEXT;
+        if(textStart == end) return;
+
+        //Picking out the dates in the text
+        document.getText(textStart, end - textStart, line);
+        int from = textStart;
+        for(int i = 0; i + DATE_LENGTH <= line.count; i++){
+            if(!isDateAt(i)) continue;
+            int dateStart = textStart + i - dayLengthBefore(i);
+            if(dateStart > from) tokens.token(from, dateStart, text);
+            tokens.token(dateStart, textStart + i + DATE_LENGTH, Token.DATE);
+            from = textStart + i + DATE_LENGTH;
+            i += DATE_LENGTH - 1;
+        }
+        if(from < end) tokens.token(from, end, text);
+    }
+
+    /**
+     * Checks for a dd/MM/yyyy date at an index of the line, with no digit either side of it
+     */
+    private boolean isDateAt(int i){
+        char[] chars = line.array;
+        int at = line.offset + i;
+        if(i > 0 && Character.isDigit(chars[at - 1])) return false;
+        if(i + DATE_LENGTH < line.count && Character.isDigit(chars[at + DATE_LENGTH])) return false;
+        for(int j = 0; j < DATE_LENGTH; j++){
+            boolean slash = j == 2 || j == 5;
+            if(slash ? chars[at + j] != '/' : !Character.isDigit(chars[at + j])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the length of a day and separator just before an index of the line, as Insert Date writes them
+     * @return The length, or 0 if there is no day there
+     */
+    private int dayLengthBefore(int i){
+        int separatorStart = i - DATE_SEPARATOR.length();
+        if(!matchesAt(separatorStart, DATE_SEPARATOR)) return 0;
+        for(String day : DAYS){
+            if(matchesAt(separatorStart - day.length(), day)) return day.length() + DATE_SEPARATOR.length();
+        }
+        return 0;
+    }
+
+    private boolean matchesAt(int i, String text){
+        if(i < 0) return false;
+        for(int j = 0; j < text.length(); j++){
+            if(line.array[line.offset + i + j] != text.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity > states.length) states = Arrays.copyOf(states, Math.max(capacity, states.length * 2));
+    }
+}
@@ -0,0 +1,673 @@
+package texteditor.document;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * A piece table implementation of the Swing document content.
+ *
+ * The text is never stored in one contiguous array. Instead the content is a sequence of pieces, each of which
+ * is a window onto a char array that is never modified once written: either an array adopted from a file load,
+ * or a chunk of the append-only add buffer that typed and pasted text is copied into. The pieces are kept in a
+ * treap ordered by document offset and augmented with subtree lengths, so locating, inserting and removing text
+ * costs O(log pieces) regardless of the size of the document.
+ *
+ * Positions are tracked the way GapContent tracks them, so the line elements of the document cost nothing extra
+ * while typing.
+ */
+public class PieceTableContent implements AbstractDocument.Content {
+
+    //Size of each chunk of the add buffer - inserts larger than this get a chunk of their own
+    private static final int ADD_CHUNK_SIZE = 1 << 16;
+
+    //Every document ends with an implied line break that is not part of the text
+    private static final char[] IMPLIED_BREAK = {'\n'};
+
+    //Piece tree
+    private Piece root;
+
+    //Add buffer - the chunk currently being filled and how much of it is used
+    private char[] addChunk;
+    private int addChunkUsed;
+
+    //Positions - the mark array, its gap, and the offset and shift that split the marks either side of the gap
+    private Mark[] marks = new Mark[16];
+    private int markGapStart, markGapEnd = 16;
+    private int boundary;
+    private long shiftBase = Long.MAX_VALUE / 4;
+    private int unusedMarks;
+    private final ReferenceQueue<MarkPosition> deadMarks = new ReferenceQueue<>();
+
+    //Seed for the treap priorities
+    private int seed = 0x9E3779B9;
+
+    /**
+     * Creates an empty content holding only the implied line break
+     */
+    public PieceTableContent(){
+        root = newPiece(IMPLIED_BREAK, 0, 1);
+    }
+
+    /**
+     * Creates a content that adopts the supplied array as its original text - The array is not copied, so the
+     * caller must not modify it afterwards
+     * @param text Array holding the original text
+     * @param length Number of chars of the array that hold text
+     */
+    public PieceTableContent(char[] text, int length){
+        this();
+        if(length > 0) insertPieces(0, newPiece(text, 0, length));
+    }
+
+    /**
+     * Appends an array to the end of the text without copying it - Used by loaders that decode a file in blocks.
+     * Must only be called before any positions are handed out, or from within the owning document's write lock
+     * @param text Array holding the text to append
+     * @param offset Offset of the first char to append
+     * @param length Number of chars to append
+     */
+    public void appendAdopted(char[] text, int offset, int length){
+        if(length > 0) insertPieces(length() - 1, newPiece(text, offset, length));
+    }
+
+    /**
+     * Takes a snapshot of the text, leaving out the implied line break at the end. Only the list of pieces is
+     * copied, since the buffers they point into never change
+     * @return The snapshot
+     */
+    public TextSnapshot snapshot(){
+        int count = countPieces(root);
+        char[][] buffers = new char[count][];
+        int[] starts = new int[count];
+        int[] lengths = new int[count];
+        collectPieces(root, buffers, starts, lengths, 0);
+
+        //Dropping the implied break, which is always the last char of the last piece
+        if(--lengths[count - 1] == 0) count--;
+        return new TextSnapshot(Arrays.copyOf(buffers, count), Arrays.copyOf(starts, count), Arrays.copyOf(lengths, count));
+    }
+
+    /**
+     * Takes a snapshot of part of the text - Only the pieces covering it are copied, so it is as cheap for a
+     * removal of the whole text as for a single char
+     * @param where Offset of the first char
+     * @param length Number of chars
+     * @return The snapshot
+     * @throws BadLocationException If the range is not inside the content
+     */
+    public TextSnapshot snapshot(int where, int length) throws BadLocationException {
+        checkRange(where, length);
+        int count = collectRange(root, 0, where, where + length, null, null, null, 0);
+        char[][] buffers = new char[count][];
+        int[] starts = new int[count];
+        int[] lengths = new int[count];
+        collectRange(root, 0, where, where + length, buffers, starts, lengths, 0);
+        return new TextSnapshot(buffers, starts, lengths);
+    }
+
+    /**
+     * Inserts the text of a snapshot without copying it - Used to put back text that was taken out of the content.
+     * Must only be called from within the owning document's write lock
+     * @param where Offset to insert the text at
+     * @param text The text to insert
+     * @throws BadLocationException If the offset is not inside the content
+     */
+    public void insertAdopted(int where, TextSnapshot text) throws BadLocationException {
+        if(where < 0 || where > length()) throw new BadLocationException("Invalid insert", where);
+        Piece pieces = null;
+        Segment segment = new Segment();
+        for(int i = 0; i < text.getSegmentCount(); i++){
+            text.getSegment(i, segment);
+            if(segment.count > 0) pieces = merge(pieces, newPiece(segment.array, segment.offset, segment.count));
+        }
+        if(pieces != null) insertPieces(where, pieces);
+    }
+
+    private static int collectPieces(Piece piece, char[][] buffers, int[] starts, int[] lengths, int index){
+        while(piece != null){
+            index = collectPieces(piece.left, buffers, starts, lengths, index);
+            buffers[index] = piece.buffer;
+            starts[index] = piece.start;
+            lengths[index++] = piece.length;
+            piece = piece.right;
+        }
+        return index;
+    }
+
+    /**
+     * Collects the parts of the pieces that lie between two offsets, or only counts them if the arrays are null
+     * @param pieceOffset Offset of the first char of the subtree
+     */
+    private static int collectRange(Piece piece, int pieceOffset, int from, int to, char[][] buffers, int[] starts, int[] lengths, int index){
+        while(piece != null){
+            int start = pieceOffset + lengthOf(piece.left), end = start + piece.length;
+            if(from < start) index = collectRange(piece.left, pieceOffset, from, to, buffers, starts, lengths, index);
+            if(from < end && to > start){
+                if(buffers != null){
+                    buffers[index] = piece.buffer;
+                    starts[index] = piece.start + Math.max(0, from - start);
+                    lengths[index] = Math.min(end, to) - Math.max(start, from);
+                }
+                index++;
+            }
+            if(to <= end) break;
+            pieceOffset = end;
+            piece = piece.right;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of pieces the text is currently split into
+     * @return The number of pieces
+     */
+    public int getPieceCount(){
+        return countPieces(root);
+    }
+
+    /* ---- AbstractDocument.Content ---- */
+
+    public int length(){
+        return lengthOf(root);
+    }
+
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if(where < 0 || where > length()) throw new BadLocationException("Invalid insert", where);
+        int length = str.length();
+        if(length == 0) return null;
+
+        //Copying the string into the add buffer
+        char[] chunk;
+        int start;
+        if(length > ADD_CHUNK_SIZE){
+            chunk = new char[length];
+            start = 0;
+        }else{
+            if(addChunk == null || ADD_CHUNK_SIZE - addChunkUsed < length){
+                addChunk = new char[ADD_CHUNK_SIZE];
+                addChunkUsed = 0;
+            }
+            chunk = addChunk;
+            start = addChunkUsed;
+            addChunkUsed += length;
+        }
+        str.getChars(0, length, chunk, start);
+
+        insertPieces(where, newPiece(chunk, start, length));
+        return new InsertUndo(where, length);
+    }
+
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        if(where < 0 || nitems < 0 || where + nitems >= length()) throw new BadLocationException("Invalid remove", where + nitems);
+        if(nitems == 0) return null;
+        return new RemoveUndo(where, nitems, removeRange(where, nitems));
+    }
+
+    public String getString(int where, int len) throws BadLocationException {
+        checkRange(where, len);
+        char[] chars = new char[len];
+        copyChars(root, where, len, chars, 0);
+        return new String(chars);
+    }
+
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        checkRange(where, len);
+
+        //Finding the piece holding the first char
+        Piece piece = root;
+        int offset = where;
+        while(piece != null){
+            int leftLength = lengthOf(piece.left);
+            if(offset < leftLength) piece = piece.left;
+            else if(offset < leftLength + piece.length){
+                offset -= leftLength;
+                break;
+            }else{
+                offset -= leftLength + piece.length;
+                piece = piece.right;
+            }
+        }
+
+        //Zero copy when the range lies in a single piece or a partial return is allowed
+        if(piece != null){
+            int available = piece.length - offset;
+            if(len <= available || txt.isPartialReturn()){
+                txt.array = piece.buffer;
+                txt.offset = piece.start + offset;
+                txt.count = Math.min(len, available);
+                return;
+            }
+        }
+
+        //The segment may still point into a piece from an earlier call, so it is never written through
+        char[] chars = new char[len];
+        copyChars(root, where, len, chars, 0);
+        txt.array = chars;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    public Position createPosition(int offset) throws BadLocationException {
+        if(offset < 0 || offset > length()) throw new BadLocationException("Invalid position", offset);
+        purgeDeadMarks();
+        if(markGapStart == markGapEnd) growMarks();
+
+        //The new mark goes directly after the gap, ahead of any marks already at the same offset
+        moveBoundary(offset);
+        MarkPosition position = new MarkPosition();
+        position.mark = new Mark(position, offset + shiftBase, deadMarks);
+        marks[--markGapEnd] = position.mark;
+        return position;
+    }
+
+    /* ---- Piece tree ---- */
+
+    /**
+     * A run of chars within a buffer - Also a node in the piece treap
+     */
+    private static final class Piece {
+        final char[] buffer;
+        final int start;
+        int length;
+        final int priority;
+        Piece left, right;
+        long subtreeLength;
+
+        Piece(char[] buffer, int start, int length, int priority){
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.priority = priority;
+            this.subtreeLength = length;
+        }
+    }
+
+    private Piece newPiece(char[] buffer, int start, int length){
+        return new Piece(buffer, start, length, nextPriority());
+    }
+
+    private int nextPriority(){
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static int lengthOf(Piece piece){
+        return piece == null ? 0 : (int) piece.subtreeLength;
+    }
+
+    private static void update(Piece piece){
+        piece.subtreeLength = piece.length + lengthOf(piece.left) + lengthOf(piece.right);
+    }
+
+    private static int countPieces(Piece piece){
+        return piece == null ? 0 : 1 + countPieces(piece.left) + countPieces(piece.right);
+    }
+
+    /**
+     * Returns the depth of the piece tree, or -1 if a piece has a higher priority than its parent - For tests
+     */
+    int getTreeDepth(){
+        return depthOf(root);
+    }
+
+    private static int depthOf(Piece piece){
+        if(piece == null) return 0;
+        if(piece.left != null && piece.left.priority > piece.priority) return -1;
+        if(piece.right != null && piece.right.priority > piece.priority) return -1;
+        int left = depthOf(piece.left), right = depthOf(piece.right);
+        return left < 0 || right < 0 ? -1 : 1 + Math.max(left, right);
+    }
+
+    /**
+     * Splits a piece tree so that the first tree holds exactly the first offset chars - A piece straddling the
+     * offset is cut in two, and the second half, which has a priority of its own, is merged into the second tree
+     * from the top so the heap order of the treap holds
+     */
+    private Piece[] split(Piece piece, int offset){
+        Piece[] parts = cut(piece, offset);
+        if(parts[2] != null) parts[1] = merge(parts[2], parts[1]);
+        return parts;
+    }
+
+    /**
+     * Splits a piece tree around an offset, leaving the second half of a piece straddling it out of both trees
+     * @return The two trees, and the piece cut off if there was one
+     */
+    private Piece[] cut(Piece piece, int offset){
+        if(piece == null) return new Piece[3];
+        int leftLength = lengthOf(piece.left);
+        if(offset <= leftLength){
+            Piece[] parts = cut(piece.left, offset);
+            piece.left = parts[1];
+            update(piece);
+            parts[1] = piece;
+            return parts;
+        }
+        if(offset >= leftLength + piece.length){
+            Piece[] parts = cut(piece.right, offset - leftLength - piece.length);
+            piece.right = parts[0];
+            update(piece);
+            parts[0] = piece;
+            return parts;
+        }
+
+        //The offset falls inside this piece
+        int cut = offset - leftLength;
+        Piece tail = newPiece(piece.buffer, piece.start + cut, piece.length - cut);
+        Piece right = piece.right;
+        piece.length = cut;
+        piece.right = null;
+        update(piece);
+        return new Piece[]{piece, right, tail};
+    }
+
+    private static Piece merge(Piece left, Piece right){
+        if(left == null) return right;
+        if(right == null) return left;
+        if(left.priority > right.priority){
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    /**
+     * Inserts a tree of pieces at an offset, extending the preceding piece instead when the new text directly
+     * follows it in the same buffer (the common case when typing)
+     */
+    private void insertPieces(int where, Piece pieces){
+        int length = lengthOf(pieces);
+        Piece[] parts = split(root, where);
+        if(!extendLast(parts[0], pieces)) parts[0] = merge(parts[0], pieces);
+        root = merge(parts[0], parts[1]);
+        shiftMarksForInsert(where, length);
+    }
+
+    private static boolean extendLast(Piece tree, Piece pieces){
+        if(tree == null || pieces.left != null || pieces.right != null) return false;
+        Piece last = tree;
+        while(last.right != null) last = last.right;
+        if(last.buffer != pieces.buffer || last.start + last.length != pieces.start) return false;
+
+        //Growing the last piece and every subtree length on the right spine
+        last.length += pieces.length;
+        for(Piece piece = tree; piece != null; piece = piece.right) piece.subtreeLength += pieces.length;
+        return true;
+    }
+
+    /**
+     * Detaches the pieces covering a range, remembering where the marks inside the range were so that putting the
+     * pieces back can restore them
+     */
+    private Removal removeRange(int where, int length){
+        Piece[] head = split(root, where);
+        Piece[] tail = split(head[1], length);
+        root = merge(head[0], tail[1]);
+        Removal removal = new Removal(tail[0]);
+        shiftMarksForRemove(where, length, removal);
+        return removal;
+    }
+
+    /**
+     * Puts removed pieces back and returns the marks that were inside them to their old offsets
+     */
+    private void restoreRange(int where, int length, Removal removal){
+        insertPieces(where, removal.pieces);
+        restoreMarks(where, length, removal);
+    }
+
+    private void checkRange(int where, int len) throws BadLocationException {
+        if(where < 0 || len < 0 || where + len > length()) throw new BadLocationException("Invalid range", where + len);
+    }
+
+    private static int copyChars(Piece piece, int where, int len, char[] dst, int dstOffset){
+        if(piece == null || len <= 0) return dstOffset;
+        int leftLength = lengthOf(piece.left);
+        if(where < leftLength){
+            int fromLeft = Math.min(len, leftLength - where);
+            dstOffset = copyChars(piece.left, where, fromLeft, dst, dstOffset);
+            where = leftLength;
+            len -= fromLeft;
+        }
+        if(len > 0 && where < leftLength + piece.length){
+            int inPiece = where - leftLength;
+            int count = Math.min(len, piece.length - inPiece);
+            System.arraycopy(piece.buffer, piece.start + inPiece, dst, dstOffset, count);
+            dstOffset += count;
+            where += count;
+            len -= count;
+        }
+        if(len > 0) dstOffset = copyChars(piece.right, where - leftLength - piece.length, len, dst, dstOffset);
+        return dstOffset;
+    }
+
+    /* ---- Positions ---- */
+
+    /*
+     * Marks are kept the same way GapContent keeps them. They are sorted in an array with a gap at the offset of
+     * the last edit (the boundary). Marks before the gap store their offset as is, marks after it store their
+     * offset plus shiftBase, so shifting every mark after an edit is a single change to shiftBase and only marks
+     * the boundary moves across need rewriting. Typing at the same place is O(1) and getOffset is always O(1).
+     */
+
+    /**
+     * Position handed out to the document - Only holds on to its mark so that unused marks can be reclaimed
+     */
+    private final class MarkPosition implements Position {
+        Mark mark;
+
+        public int getOffset(){
+            long index = mark.index;
+            return (int) Math.max(index < boundary ? index : index - shiftBase, 0);
+        }
+
+        public String toString(){
+            return Integer.toString(getOffset());
+        }
+    }
+
+    /**
+     * Entry in the mark array
+     */
+    private static final class Mark extends WeakReference<MarkPosition> {
+        long index;
+
+        Mark(MarkPosition position, long index, ReferenceQueue<MarkPosition> queue){
+            super(position, queue);
+            this.index = index;
+        }
+    }
+
+    /**
+     * Moves the boundary between the marks stored as is and the shifted marks to an offset
+     */
+    private void moveBoundary(int offset){
+        if(offset < boundary){
+            while(markGapStart > 0 && marks[markGapStart - 1].index >= offset){
+                Mark mark = marks[--markGapStart];
+                marks[markGapStart] = null;
+                mark.index += shiftBase;
+                marks[--markGapEnd] = mark;
+            }
+        }else if(offset > boundary){
+            while(markGapEnd < marks.length && marks[markGapEnd].index - shiftBase < offset){
+                Mark mark = marks[markGapEnd];
+                marks[markGapEnd++] = null;
+                mark.index -= shiftBase;
+                marks[markGapStart++] = mark;
+            }
+        }
+        boundary = offset;
+    }
+
+    /**
+     * Marks at or after the insert offset move with the text, except marks at the start of the document
+     */
+    private void shiftMarksForInsert(int where, int length){
+        moveBoundary(where);
+        if(where == 0){
+            while(markGapEnd < marks.length && marks[markGapEnd].index - shiftBase == 0){
+                Mark mark = marks[markGapEnd];
+                marks[markGapEnd++] = null;
+                mark.index = 0;
+                marks[markGapStart++] = mark;
+            }
+        }
+        shiftBase -= length;
+        boundary = where + length;
+    }
+
+    /**
+     * Marks inside the removed range collapse onto its start, marks after it move back
+     */
+    private void shiftMarksForRemove(int where, int length, Removal removal){
+        moveBoundary(where);
+        shiftBase += length;
+        long collapsedIndex = where + shiftBase;
+        for(int i = markGapEnd; i < marks.length && marks[i].index <= collapsedIndex; i++){
+            Mark mark = marks[i];
+            removal.addMark(mark, (int) (mark.index - shiftBase + length));
+            mark.index = collapsedIndex;
+        }
+    }
+
+    /**
+     * Returns the marks that were inside a removed range to where they were - Called once the removed text has
+     * been put back
+     */
+    private void restoreMarks(int where, int length, Removal removal){
+        if(removal.markCount == 0) return;
+        moveBoundary(where);
+        for(int i = 0; i < removal.markCount; i++) removal.marks[i].index = removal.markOffsets[i] + shiftBase;
+
+        //Re-sorting the run of marks that now lies within the restored range
+        int end = markGapEnd;
+        while(end < marks.length && marks[end].index <= where + length + shiftBase) end++;
+        Arrays.sort(marks, markGapEnd, end, (first, second) -> Long.compare(first.index, second.index));
+    }
+
+    /**
+     * Removes the marks whose positions are no longer referenced once enough of them have built up
+     */
+    private void purgeDeadMarks(){
+        while(deadMarks.poll() != null) unusedMarks++;
+        if(unusedMarks <= Math.max(5, (markGapStart + marks.length - markGapEnd) / 10)) return;
+
+        int kept = 0;
+        for(int i = 0; i < markGapStart; i++){
+            if(marks[i].get() != null) marks[kept++] = marks[i];
+        }
+        int lowerCount = kept;
+        for(int i = markGapEnd; i < marks.length; i++){
+            if(marks[i].get() != null) marks[kept++] = marks[i];
+        }
+        Mark[] compacted = new Mark[Math.max(16, kept * 2)];
+        System.arraycopy(marks, 0, compacted, 0, lowerCount);
+        int upperCount = kept - lowerCount;
+        System.arraycopy(marks, lowerCount, compacted, compacted.length - upperCount, upperCount);
+        marks = compacted;
+        markGapStart = lowerCount;
+        markGapEnd = compacted.length - upperCount;
+        unusedMarks = 0;
+    }
+
+    private void growMarks(){
+        int upperCount = marks.length - markGapEnd;
+        Mark[] grown = new Mark[marks.length * 2];
+        System.arraycopy(marks, 0, grown, 0, markGapStart);
+        System.arraycopy(marks, markGapEnd, grown, grown.length - upperCount, upperCount);
+        marks = grown;
+        markGapEnd = grown.length - upperCount;
+    }
+
+    /* ---- Undo support ---- */
+
+    /**
+     * The pieces taken out by a removal, along with the marks that were inside the removed range
+     */
+    private static final class Removal {
+        final Piece pieces;
+        Mark[] marks;
+        int[] markOffsets;
+        int markCount;
+
+        Removal(Piece pieces){
+            this.pieces = pieces;
+        }
+
+        void addMark(Mark mark, int offset){
+            if(marks == null){
+                marks = new Mark[8];
+                markOffsets = new int[8];
+            }else if(markCount == marks.length){
+                marks = Arrays.copyOf(marks, markCount * 2);
+                markOffsets = Arrays.copyOf(markOffsets, markCount * 2);
+            }
+            marks[markCount] = mark;
+            markOffsets[markCount++] = offset;
+        }
+    }
+
+    /**
+     * Undoes an insert by detaching its pieces, and redoes it by putting the same pieces back
+     */
+    private final class InsertUndo extends AbstractUndoableEdit {
+        private final int where, length;
+        private Removal removed;
+
+        InsertUndo(int where, int length){
+            this.where = where;
+            this.length = length;
+        }
+
+        public void undo() throws CannotUndoException {
+            super.undo();
+            removed = removeRange(where, length);
+        }
+
+        public void redo() throws CannotRedoException {
+            super.redo();
+            restoreRange(where, length, removed);
+            removed = null;
+        }
+    }
+
+    /**
+     * Holds on to the removed pieces rather than a copy of the removed text
+     */
+    private final class RemoveUndo extends AbstractUndoableEdit {
+        private final int where, length;
+        private Removal removed;
+
+        RemoveUndo(int where, int length, Removal removed){
+            this.where = where;
+            this.length = length;
+            this.removed = removed;
+        }
+
+        public void undo() throws CannotUndoException {
+            super.undo();
+            restoreRange(where, length, removed);
+            removed = null;
+        }
+
+        public void redo() throws CannotRedoException {
+            super.redo();
+            removed = removeRange(where, length);
+        }
+    }
+}
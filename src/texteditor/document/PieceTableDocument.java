@@ -0,0 +1,220 @@
+package texteditor.document;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.Segment;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plain text document backed by a PieceTableContent instead of Swing's default gap buffer
+ */
+public class PieceTableDocument extends PlainDocument {
+
+    //Number of chars decoded into each block when reading a document in
+    private static final int READ_BLOCK_SIZE = 1 << 20;
+
+    private TextSnapshot removedText; //Pieces taken out by the removal being reported to listeners
+
+    /**
+     * Creates an empty document
+     */
+    public PieceTableDocument(){
+        super(new PieceTableContent());
+    }
+
+    /**
+     * Creates a document whose text is the supplied content - Used when the content has been filled before the
+     * document exists, so the line elements are built here in one pass
+     * @param content Content holding the text of the document
+     */
+    public PieceTableDocument(PieceTableContent content){
+        super(content);
+        if(content.length() > 1) buildLineElements();
+    }
+
+    /**
+     * Reads all of the text supplied by a reader into a new document. Each block the reader fills becomes a piece
+     * of the document as it is, so the text is never copied after it has been decoded. Line breaks are normalised
+     * to \n the same way DefaultEditorKit.read does
+     * @param reader Reader to read the text from
+     * @return A new document holding the text
+     * @throws IOException If the reader fails
+     */
+    public static PieceTableDocument read(Reader reader) throws IOException {
+        return read(reader, new LineBreakFilter());
+    }
+
+    /**
+     * Reads all of the text supplied by a reader into a new document, normalising line breaks with a given filter
+     * so the line separator of the text can be read from it afterwards
+     * @param reader Reader to read the text from
+     * @param lineBreakFilter Filter that has not been used yet
+     * @return A new document holding the text
+     * @throws IOException If the reader fails
+     */
+    public static PieceTableDocument read(Reader reader, LineBreakFilter lineBreakFilter) throws IOException {
+        PieceTableContent content = new PieceTableContent();
+        char[] block = new char[READ_BLOCK_SIZE];
+        int read;
+        while((read = reader.read(block, 0, block.length)) != -1){
+            int length = lineBreakFilter.filter(block, read);
+
+            //A mostly empty block is copied so a large array is not kept alive for a few chars
+            if(length < block.length / 2){
+                content.appendAdopted(Arrays.copyOf(block, length), 0, length);
+            }else{
+                content.appendAdopted(block, 0, length);
+                block = new char[READ_BLOCK_SIZE];
+            }
+        }
+        return new PieceTableDocument(content);
+    }
+
+    /**
+     * Appends a block of text to the end of the document without copying it. Listeners are told about the insert as
+     * usual, but no undoable edit is recorded since the text was not typed - Used to show a file while it loads
+     * @param block Array holding the text - It must not be modified afterwards
+     * @param offset Offset of the first char to append
+     * @param length Number of chars to append
+     */
+    public void append(char[] block, int offset, int length){
+        if(length == 0) return;
+        writeLock();
+        try{
+            int documentLength = getLength();
+            getPieceTable().appendAdopted(block, offset, length);
+            DefaultDocumentEvent event = new DefaultDocumentEvent(documentLength, length, DocumentEvent.EventType.INSERT);
+            insertUpdate(event, null);
+            event.end();
+            fireInsertUpdate(event);
+        }finally{
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Inserts the text of a snapshot without copying it. Listeners are told about the insert as usual, but no
+     * undoable edit is recorded - Used to put back text the edit history took out
+     * @param offset Offset to insert the text at
+     * @param text The text to insert
+     * @throws BadLocationException If the offset is not inside the document
+     */
+    public void insert(int offset, TextSnapshot text) throws BadLocationException {
+        int length = (int) text.length();
+        if(length == 0) return;
+        writeLock();
+        try{
+            getPieceTable().insertAdopted(offset, text);
+            DefaultDocumentEvent event = new DefaultDocumentEvent(offset, length, DocumentEvent.EventType.INSERT);
+            insertUpdate(event, null);
+            event.end();
+            fireInsertUpdate(event);
+        }finally{
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot of part of the text of this document - Only the pieces covering it are copied
+     * @param offset Offset of the first char
+     * @param length Number of chars
+     * @return The snapshot
+     * @throws BadLocationException If the range is not inside the document
+     */
+    public TextSnapshot snapshot(int offset, int length) throws BadLocationException {
+        readLock();
+        try{
+            return getPieceTable().snapshot(offset, length);
+        }finally{
+            readUnlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the text of this document - Cheap enough to call on the Event Dispatch Thread, after which
+     * the snapshot can be written out on any thread while the document keeps changing
+     * @return The snapshot
+     */
+    public TextSnapshot snapshot(){
+        readLock();
+        try{
+            return getPieceTable().snapshot();
+        }finally{
+            readUnlock();
+        }
+    }
+
+    /**
+     * Returns the text taken out by the removal that listeners are being told about - Only set from when the text is
+     * removed until the undoable edit for the removal has been reported. It holds on to the removed pieces rather
+     * than a copy of their text, so it costs the same however much is removed
+     * @return The removed text, or null outside of a removal
+     */
+    public TextSnapshot getRemovedText(){
+        return removedText;
+    }
+
+    @Override
+    protected void removeUpdate(DefaultDocumentEvent chng){
+        try{
+            removedText = getPieceTable().snapshot(chng.getOffset(), chng.getLength());
+        }catch(BadLocationException e){
+            removedText = null;
+        }
+        super.removeUpdate(chng);
+    }
+
+    @Override
+    protected void fireUndoableEditUpdate(UndoableEditEvent e){
+        super.fireUndoableEditUpdate(e);
+        removedText = null; //Not keeping a large removal alive
+    }
+
+    /**
+     * Returns the piece table holding the text of this document
+     * @return The content of this document
+     */
+    public PieceTableContent getPieceTable(){
+        return (PieceTableContent) getContent();
+    }
+
+    /**
+     * Replaces the single line the default root starts with by one line element per line of the content
+     */
+    private void buildLineElements(){
+        writeLock();
+        try{
+            BranchElement lineMap = (BranchElement) getDefaultRootElement();
+            List<Element> lines = new ArrayList<>();
+            PieceTableContent content = getPieceTable();
+            int length = content.length();
+            Segment segment = new Segment();
+            segment.setPartialReturn(true);
+            int lineStart = 0;
+            int offset = 0;
+            while(offset < length){
+                content.getChars(offset, length - offset, segment);
+                for(int i = 0; i < segment.count; i++){
+                    if(segment.array[segment.offset + i] == '\n'){
+                        int lineEnd = offset + i + 1;
+                        lines.add(createLeafElement(lineMap, null, lineStart, lineEnd));
+                        lineStart = lineEnd;
+                    }
+                }
+                offset += segment.count;
+            }
+            lineMap.replace(0, lineMap.getElementCount(), lines.toArray(new Element[0]));
+        }catch(BadLocationException e){
+            throw new Error("Internal error: " + e.toString());
+        }finally{
+            writeUnlock();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package texteditor.document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches a snapshot of a document for a regular expression, and replaces every match in a single pass over it.
+ * Empty matches are not reported by search, since there is nothing to select
+ */
+public class RegexSearch implements TextSearch {
+    private final Pattern pattern;
+
+    /**
+     * Prepares a search for a regular expression
+     * @param regex The regular expression
+     * @param matchCase False to ignore the case of letters
+     * @throws java.util.regex.PatternSyntaxException If the regular expression is not valid
+     */
+    public RegexSearch(String regex, boolean matchCase){
+        pattern = Pattern.compile(regex, matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Prepares a search that matches a string literally, for replacing it using the same single pass
+     * @param literal The string to find
+     * @param matchCase False to ignore the case of letters
+     * @return The search
+     */
+    public static RegexSearch literal(String literal, boolean matchCase){
+        return new RegexSearch(Pattern.quote(literal), matchCase);
+    }
+
+    @Override
+    public void search(TextSnapshot text, long from, MatchListener listener){
+        Matcher matcher = pattern.matcher(new SnapshotCharSequence(text));
+        if(from > text.length()) return;
+        int position = (int) from;
+        while(matcher.find(position)){
+            if(Thread.currentThread().isInterrupted()) return;
+            if(matcher.end() > matcher.start() && !listener.found(matcher.start(), matcher.end())) return;
+            position = matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1;
+            if(position > text.length()) return;
+        }
+    }
+
+    @Override
+    public String replace(String matchedText, String replacement){
+        Matcher matcher = pattern.matcher(matchedText);
+        if(!matcher.matches()) return null;
+        StringBuilder replaced = new StringBuilder();
+        matcher.appendReplacement(replaced, replacement);
+        return replaced.toString();
+    }
+
+    /**
+     * Replaces every match by running one Matcher over the text and building the replaced text as it goes - Only
+     * the text from the first match to the last is copied, each part once
+     * @param text The text to search
+     * @param replacement What matches are replaced with - $1 and ${name} refer to groups of the match
+     * @param literalReplacement True to use the replacement as it is, without looking for group references
+     * @return The text that changed, or null if nothing matched
+     * @throws InterruptedException If the thread is interrupted part way through
+     * @throws IllegalArgumentException If the replacement refers to a group wrongly, as Matcher would throw
+     */
+    public Replacement replaceAll(TextSnapshot text, String replacement, boolean literalReplacement) throws InterruptedException {
+        CharSequence chars = new SnapshotCharSequence(text);
+        Matcher matcher = pattern.matcher(chars);
+        if(!matcher.find()) return null;
+        List<Object> parts = literalReplacement ? List.of(replacement) : parseReplacement(replacement, matcher.groupCount());
+
+        int start = matcher.start(), end = start, count = 0;
+        StringBuilder replaced = new StringBuilder();
+        do{
+            if(Thread.interrupted()) throw new InterruptedException();
+            replaced.append(chars, end, matcher.start());
+            for(Object part : parts){
+                if(part instanceof String) replaced.append((String) part);
+                else{
+                    int groupStart = part instanceof Integer ? matcher.start((Integer) part) : matcher.start(((GroupName) part).name);
+                    int groupEnd = part instanceof Integer ? matcher.end((Integer) part) : matcher.end(((GroupName) part).name);
+                    if(groupStart >= 0) replaced.append(chars, groupStart, groupEnd); //A group that took no part adds nothing
+                }
+            }
+            end = matcher.end();
+            count++;
+        }while(matcher.find());
+        return new Replacement(start, end, replaced.toString(), count);
+    }
+
+    /**
+     * A reference to a named group in a replacement
+     */
+    private static class GroupName {
+        private final String name;
+
+        GroupName(String name){
+            this.name = name;
+        }
+    }
+
+    /**
+     * Splits a replacement into literal text, group numbers and group names, by the rules Matcher.appendReplacement
+     * uses - A backslash escapes the next char, and a number after $ takes as many digits as still make a group
+     * @param replacement The replacement
+     * @param groupCount Number of groups in the pattern
+     * @return Strings, Integers for group numbers and GroupNames, in order
+     */
+    private static List<Object> parseReplacement(String replacement, int groupCount){
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        for(int i = 0; i < replacement.length(); i++){
+            char character = replacement.charAt(i);
+            if(character == '\\'){
+                if(++i == replacement.length()) throw new IllegalArgumentException("character to be escaped is missing");
+                literal.append(replacement.charAt(i));
+                continue;
+            }
+            if(character != '$'){
+                literal.append(character);
+                continue;
+            }
+            if(++i == replacement.length()) throw new IllegalArgumentException("Illegal group reference: group index is missing");
+            if(literal.length() > 0){
+                parts.add(literal.toString());
+                literal.setLength(0);
+            }
+            if(replacement.charAt(i) == '{'){
+                int close = replacement.indexOf('}', i);
+                if(close < 0) throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+                String name = replacement.substring(i + 1, close);
+                if(name.isEmpty() || !name.matches("[a-zA-Z][a-zA-Z0-9]*")) throw new IllegalArgumentException("Illegal group name " + name);
+                parts.add(new GroupName(name));
+                i = close;
+                continue;
+            }
+            int group = replacement.charAt(i) - '0';
+            if(group < 0 || group > 9) throw new IllegalArgumentException("Illegal group reference");
+            if(group > groupCount) throw new IndexOutOfBoundsException("No group " + group);
+            while(i + 1 < replacement.length()){
+                int digit = replacement.charAt(i + 1) - '0';
+                if(digit < 0 || digit > 9 || group * 10 + digit > groupCount) break;
+                group = group * 10 + digit;
+                i++;
+            }
+            parts.add(group);
+        }
+        if(literal.length() > 0) parts.add(literal.toString());
+        return parts;
+    }
+
+    /**
+     * The result of replacing every match - A single range of the old text and what replaces it
+     */
+    public static class Replacement {
+        private final int start, end;
+        private final String text;
+        private final int count;
+
+        Replacement(int start, int end, String text, int count){
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.count = count;
+        }
+
+        //Getters
+        public int getStart(){return start;}
+        public int getEnd(){return end;}
+        public String getText(){return text;}
+        public int getCount(){return count;}
+    }
+}
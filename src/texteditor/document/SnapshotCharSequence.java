@@ -0,0 +1,54 @@
+package texteditor.document;
+
+import javax.swing.text.Segment;
+
+/**
+ * A TextSnapshot seen as a CharSequence, so it can be matched against a regular expression without copying it into
+ * a String. The segment of the last char read is remembered, so reading the text in order - which is what a Matcher
+ * mostly does - only looks up a segment when it moves into the next one. Not safe to share between threads
+ */
+class SnapshotCharSequence implements CharSequence {
+    private final TextSnapshot text;
+    private final int length;
+    private final Segment segment = new Segment();
+    private int segmentStart = 0, segmentEnd = 0; //Range of the text covered by segment
+
+    /**
+     * Creates a CharSequence over a snapshot - The snapshot must be shorter than Integer.MAX_VALUE chars
+     * @param text The snapshot
+     */
+    SnapshotCharSequence(TextSnapshot text){
+        this.text = text;
+        this.length = (int) text.length();
+    }
+
+    @Override
+    public int length(){
+        return length;
+    }
+
+    @Override
+    public char charAt(int index){
+        if(index < segmentStart || index >= segmentEnd){
+            if(index < 0 || index >= length) throw new IndexOutOfBoundsException("No char " + index);
+            int s = text.segmentAt(index);
+            text.getSegment(s, segment);
+            segmentStart = (int) text.getSegmentStart(s);
+            segmentEnd = segmentStart + segment.count;
+        }
+        return segment.array[segment.offset + index - segmentStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end){
+        if(start < 0 || end > length || start > end) throw new IndexOutOfBoundsException(start + " - " + end);
+        char[] chars = new char[end - start];
+        for(int i = start; i < end; i++) chars[i - start] = charAt(i);
+        return new String(chars);
+    }
+
+    @Override
+    public String toString(){
+        return subSequence(0, length).toString();
+    }
+}
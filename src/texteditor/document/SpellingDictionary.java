@@ -0,0 +1,264 @@
+package texteditor.document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A word list held as a minimal acyclic automaton (a DAWG) - Words that end the same way share the states for
+ * their endings as well as the states for their common starts, so a list of a hundred thousand words takes well
+ * under a megabyte, against several for a HashSet of Strings.
+ *
+ * The automaton is built in one pass over the sorted words, registering each state once nothing more can be added
+ * below it and replacing it with an equal state already registered, if there is one. It is then packed into arrays:
+ * the edges of each state are a sorted run of labels and targets, so following an edge is a binary search. Words
+ * are stored in lower case, and looking one up or suggesting spellings for it is case insensitive
+ */
+public class SpellingDictionary {
+    private final int[] firstEdges; //Index of the first edge of each state, with the edge count at the end
+    private final char[] labels;
+    private final int[] targets;
+    private final BitSet finals; //States that end a word
+    private final int wordCount;
+
+    private SpellingDictionary(int[] firstEdges, char[] labels, int[] targets, BitSet finals, int wordCount){
+        this.firstEdges = firstEdges;
+        this.labels = labels;
+        this.targets = targets;
+        this.finals = finals;
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * Reads a word list with one word per line, in whatever encoding the file is in
+     * @param file The word list
+     * @return The dictionary
+     * @throws IOException If the file cannot be read
+     */
+    public static SpellingDictionary read(Path file) throws IOException {
+        List<String> words = new ArrayList<>();
+        for(String line : Files.readAllLines(file, FileEncoding.detect(file).getCharset())){
+            String word = line.trim().toLowerCase(Locale.ROOT);
+            if(!word.isEmpty() && word.indexOf(' ') == -1) words.add(word);
+        }
+        return build(words);
+    }
+
+    /**
+     * Builds a dictionary from a list of words
+     * @param words The words, in lower case - The list is sorted in place
+     * @return The dictionary
+     */
+    public static SpellingDictionary build(List<String> words){
+        Collections.sort(words);
+        Map<Node, Node> register = new HashMap<>();
+        List<Node> unchecked = new ArrayList<>(); //States along the path of the last word, not yet registered
+        Node root = new Node();
+        String previous = "";
+        int wordCount = 0;
+        for(String word : words){
+            if(word.equals(previous)) continue;
+            int common = 0;
+            while(common < word.length() && common < previous.length() && word.charAt(common) == previous.charAt(common)) common++;
+            minimize(root, unchecked, common, register);
+            Node node = unchecked.isEmpty() ? root : unchecked.get(unchecked.size() - 1);
+            for(int i = common; i < word.length(); i++){
+                Node child = new Node();
+                node.add(word.charAt(i), child);
+                unchecked.add(child);
+                node = child;
+            }
+            node.isFinal = true;
+            previous = word;
+            wordCount++;
+        }
+        minimize(root, unchecked, 0, register);
+        return pack(root, wordCount);
+    }
+
+    /**
+     * Registers the unchecked states below a depth, deepest first, replacing each one with an equal state that is
+     * already registered
+     */
+    private static void minimize(Node root, List<Node> unchecked, int depth, Map<Node, Node> register){
+        while(unchecked.size() > depth){
+            Node node = unchecked.remove(unchecked.size() - 1);
+            Node parent = unchecked.isEmpty() ? root : unchecked.get(unchecked.size() - 1);
+            Node registered = register.putIfAbsent(node, node);
+            if(registered != null) parent.targets[parent.count - 1] = registered;
+        }
+    }
+
+    /**
+     * Numbers the states breadth first and packs their edges into arrays
+     */
+    private static SpellingDictionary pack(Node root, int wordCount){
+        List<Node> states = new ArrayList<>();
+        root.index = 0;
+        states.add(root);
+        int edgeCount = 0;
+        for(int i = 0; i < states.size(); i++){
+            Node node = states.get(i);
+            edgeCount += node.count;
+            for(int e = 0; e < node.count; e++){
+                Node target = node.targets[e];
+                if(target.index == -1){
+                    target.index = states.size();
+                    states.add(target);
+                }
+            }
+        }
+        int[] firstEdges = new int[states.size() + 1];
+        char[] labels = new char[edgeCount];
+        int[] targets = new int[edgeCount];
+        BitSet finals = new BitSet(states.size());
+        int edge = 0;
+        for(int i = 0; i < states.size(); i++){
+            Node node = states.get(i);
+            firstEdges[i] = edge;
+            if(node.isFinal) finals.set(i);
+            for(int e = 0; e < node.count; e++, edge++){
+                labels[edge] = node.labels[e];
+                targets[edge] = node.targets[e].index;
+            }
+        }
+        firstEdges[states.size()] = edge;
+        return new SpellingDictionary(firstEdges, labels, targets, finals, wordCount);
+    }
+
+    /**
+     * Checks if a word is in the dictionary, ignoring case
+     * @param word The word
+     * @return True if the word is in the dictionary
+     */
+    public boolean contains(CharSequence word){
+        int state = 0;
+        for(int i = 0; i < word.length(); i++){
+            int edge = findEdge(state, Character.toLowerCase(word.charAt(i)));
+            if(edge < 0) return false;
+            state = targets[edge];
+        }
+        return finals.get(state);
+    }
+
+    private int findEdge(int state, char c){
+        int index = Arrays.binarySearch(labels, firstEdges[state], firstEdges[state + 1], c);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Finds the words closest to a misspelt word. The automaton is walked depth first, working out one row of the
+     * edit distance table for each char of the path so far, and a branch is left as soon as every entry of its row
+     * is over the limit - So only the few states near the word are visited, whatever the size of the dictionary.
+     * Swapping two neighbouring chars counts as a single edit
+     * @param word The misspelt word
+     * @param maxDistance Most edits a suggestion can be from the word
+     * @param maxSuggestions Most suggestions to return
+     * @return The suggestions, closest first, in the case of the word if it starts with a capital
+     */
+    public List<String> suggest(String word, int maxDistance, int maxSuggestions){
+        String target = word.toLowerCase(Locale.ROOT);
+        int maxDepth = target.length() + maxDistance;
+        int[][] rows = new int[maxDepth + 1][target.length() + 1];
+        for(int j = 0; j <= target.length(); j++) rows[0][j] = j;
+        List<Suggestion> found = new ArrayList<>();
+        walk(0, 0, target, new char[maxDepth], rows, maxDistance, found);
+
+        found.sort(Comparator.comparingInt((Suggestion s) -> s.distance)
+                .thenComparing(s -> target.isEmpty() || s.word.charAt(0) != target.charAt(0)) //Keeping the first letter is likelier
+                .thenComparingInt(s -> Math.abs(s.word.length() - target.length()))
+                .thenComparing(s -> s.word));
+        List<String> suggestions = new ArrayList<>();
+        boolean capitalised = !word.isEmpty() && Character.isUpperCase(word.charAt(0));
+        for(int i = 0; i < found.size() && i < maxSuggestions; i++){
+            String suggestion = found.get(i).word;
+            suggestions.add(capitalised ? Character.toUpperCase(suggestion.charAt(0)) + suggestion.substring(1) : suggestion);
+        }
+        return suggestions;
+    }
+
+    private void walk(int state, int depth, String target, char[] path, int[][] rows, int maxDistance, List<Suggestion> found){
+        int n = target.length();
+        int[] previous = rows[depth], row = rows[depth + 1];
+        for(int edge = firstEdges[state]; edge < firstEdges[state + 1]; edge++){
+            char c = labels[edge];
+            path[depth] = c;
+            row[0] = depth + 1;
+            int min = row[0];
+            for(int j = 1; j <= n; j++){
+                int distance = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1), previous[j - 1] + (target.charAt(j - 1) == c ? 0 : 1));
+                if(depth > 0 && j > 1 && c == target.charAt(j - 2) && path[depth - 1] == target.charAt(j - 1)){
+                    distance = Math.min(distance, rows[depth - 1][j - 2] + 1);
+                }
+                row[j] = distance;
+                min = Math.min(min, distance);
+            }
+            int next = targets[edge];
+            if(finals.get(next) && row[n] <= maxDistance) found.add(new Suggestion(new String(path, 0, depth + 1), row[n]));
+            if(min <= maxDistance && depth + 1 < path.length) walk(next, depth + 1, target, path, rows, maxDistance, found);
+        }
+    }
+
+    //Getters
+    public int getWordCount(){return wordCount;}
+    public int getStateCount(){return firstEdges.length - 1;}
+    public int getEdgeCount(){return labels.length;}
+
+    private static class Suggestion {
+        private final String word;
+        private final int distance;
+
+        Suggestion(String word, int distance){
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * State of the automaton while it is being built - Two states are equal if they are both final or both not,
+     * and have the same edges to the same (already registered) states
+     */
+    private static class Node {
+        private char[] labels = new char[2];
+        private Node[] targets = new Node[2];
+        private int count;
+        private boolean isFinal;
+        private int index = -1; //Set when packed
+
+        void add(char label, Node target){
+            if(count == labels.length){
+                labels = Arrays.copyOf(labels, count * 2);
+                targets = Arrays.copyOf(targets, count * 2);
+            }
+            labels[count] = label;
+            targets[count++] = target;
+        }
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof Node)) return false;
+            Node node = (Node) other;
+            if(node.isFinal != isFinal || node.count != count) return false;
+            for(int i = 0; i < count; i++){
+                if(node.labels[i] != labels[i] || node.targets[i] != targets[i]) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode(){
+            int hash = isFinal ? 1 : 0;
+            for(int i = 0; i < count; i++) hash = hash * 31 + labels[i] * 17 + System.identityHashCode(targets[i]);
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package texteditor.document;
+
+/**
+ * A search for matches in a snapshot of a document
+ */
+public interface TextSearch {
+
+    /**
+     * Listens for the matches of a search
+     */
+    interface MatchListener {
+
+        /**
+         * Called for each match, in order
+         * @param start Offset of the first char of the match
+         * @param end Offset just after the last char of the match
+         * @return False to stop the search
+         */
+        boolean found(long start, long end);
+    }
+
+    /**
+     * Finds every match at or after an offset - Stops early if the searching thread is interrupted
+     * @param text The text to search
+     * @param from Offset to start searching from
+     * @param listener Told about each match as it is found
+     */
+    void search(TextSnapshot text, long from, MatchListener listener);
+
+    /**
+     * Works out what a piece of text should be replaced with, if the whole of it is a match
+     * @param matchedText The text, such as the current selection
+     * @param replacement What matches are replaced with
+     * @return The replacement text, or null if the text is not a match
+     */
+    String replace(String matchedText, String replacement);
+
+    /**
+     * Finds the first match at or after an offset
+     * @param text The text to search
+     * @param from Offset to start searching from
+     * @return The start and end of the match, or null if there is none
+     */
+    default long[] find(TextSnapshot text, long from){
+        long[][] match = {null};
+        search(text, from, (start, end) -> {
+            match[0] = new long[]{start, end};
+            return false;
+        });
+        return match[0];
+    }
+}
@@ -0,0 +1,118 @@
+package texteditor.document;
+
+import javax.swing.text.Segment;
+import java.util.Arrays;
+
+/**
+ * An immutable copy of the text of a document at one point in time. Since the buffers a piece table points into
+ * are never modified, taking a snapshot only copies the list of pieces, not the text itself
+ */
+public class TextSnapshot {
+    private final char[][] buffers;
+    private final int[] starts;
+    private final int[] lengths;
+    private final long[] segmentStarts; //Offset in the text where each segment starts
+    private final long length;
+
+    TextSnapshot(char[][] buffers, int[] starts, int[] lengths){
+        this.buffers = buffers;
+        this.starts = starts;
+        this.lengths = lengths;
+        segmentStarts = new long[lengths.length];
+        long total = 0;
+        for(int i = 0; i < lengths.length; i++){
+            segmentStarts[i] = total;
+            total += lengths[i];
+        }
+        this.length = total;
+    }
+
+    /**
+     * Creates a snapshot of the text in an array - The array must not be modified afterwards
+     * @param text The text
+     */
+    public TextSnapshot(char[] text){
+        this(new char[][]{text}, new int[]{0}, new int[]{text.length});
+    }
+
+    /**
+     * Returns a snapshot of this text followed by another - Only the lists of segments are copied, and a segment
+     * that carries straight on from the one before it in the same array is joined onto it
+     * @param next The text to follow this one
+     * @return The joined snapshot
+     */
+    public TextSnapshot append(TextSnapshot next){
+        int count = buffers.length, nextCount = next.buffers.length;
+        boolean join = count > 0 && nextCount > 0 && buffers[count - 1] == next.buffers[0]
+                && starts[count - 1] + lengths[count - 1] == next.starts[0];
+        int first = join ? 1 : 0;
+        char[][] joinedBuffers = Arrays.copyOf(buffers, count + nextCount - first);
+        int[] joinedStarts = Arrays.copyOf(starts, count + nextCount - first);
+        int[] joinedLengths = Arrays.copyOf(lengths, count + nextCount - first);
+        if(join) joinedLengths[count - 1] += next.lengths[0];
+        System.arraycopy(next.buffers, first, joinedBuffers, count, nextCount - first);
+        System.arraycopy(next.starts, first, joinedStarts, count, nextCount - first);
+        System.arraycopy(next.lengths, first, joinedLengths, count, nextCount - first);
+        return new TextSnapshot(joinedBuffers, joinedStarts, joinedLengths);
+    }
+
+    /**
+     * Returns the number of segments the text is split into
+     * @return The number of segments
+     */
+    public int getSegmentCount(){
+        return buffers.length;
+    }
+
+    /**
+     * Points a Segment at one of the segments of the text - The segment must not be modified
+     * @param index Index of the segment
+     * @param segment Segment to point at the text
+     */
+    public void getSegment(int index, Segment segment){
+        segment.array = buffers[index];
+        segment.offset = starts[index];
+        segment.count = lengths[index];
+    }
+
+    /**
+     * Finds the segment holding a char
+     * @param offset Offset of the char in the text
+     * @return Index of the segment
+     */
+    public int segmentAt(long offset){
+        int index = Arrays.binarySearch(segmentStarts, offset);
+        if(index < 0) return -index - 2;
+
+        //Skipping over empty segments
+        while(index + 1 < segmentStarts.length && segmentStarts[index + 1] == offset) index++;
+        return index;
+    }
+
+    /**
+     * Returns the offset in the text where a segment starts
+     * @param index Index of the segment
+     * @return The offset of the first char of the segment
+     */
+    public long getSegmentStart(int index){
+        return segmentStarts[index];
+    }
+
+    /**
+     * Returns a single char of the text
+     * @param offset Offset of the char
+     * @return The char
+     */
+    public char charAt(long offset){
+        int index = segmentAt(offset);
+        return buffers[index][starts[index] + (int) (offset - segmentStarts[index])];
+    }
+
+    /**
+     * Returns the number of chars in the snapshot
+     * @return The length of the text
+     */
+    public long length(){
+        return length;
+    }
+}
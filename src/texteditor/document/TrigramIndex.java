@@ -0,0 +1,641 @@
+package texteditor.document;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * An index of which files under a directory contain which trigrams - runs of three chars, with their case folded -
+ * so a search for a literal string only has to read the files that contain every trigram of it.
+ *
+ * Each file gets an id, and each trigram a posting list of the ids of the files containing it, stored as the
+ * differences between one id and the next in a variable length encoding. Ids only ever go up, so a file that changes
+ * is given a new id and its old one is left dead in the lists until the next save drops the dead ids and numbers the
+ * files again. That keeps every update an append to the end of the lists it touches.
+ *
+ * The index is built on a background thread, starting from the copy saved in the index directory, if there is one,
+ * and only reading the files whose size or modification time has changed since. After that a WatchService reports
+ * changes under the directory, and saves made in the editor are passed on through fileChanged. Both are gathered up
+ * for UPDATE_DELAY_MILLIS and applied in one go, and the index is saved again SAVE_DELAY_MILLIS after the last update
+ * that changed it, so anything not saved before the program exits is caught up with the next time the index is opened.
+ * The directory the editor keeps its own files in is never indexed, since the index, journals and stall reports
+ * written there would otherwise keep the index updating and saving itself.
+ *
+ * At most MAX_OPEN_INDEXES are kept open, and opening another closes the one used least recently, which stops
+ * watching its directory, saves it if it has changed and lets go of its posting lists
+ */
+public class TrigramIndex {
+
+    private static final int MAGIC = 0x54455449;
+    private static final int VERSION = 1;
+    private static final int BATCH_SIZE = 256; //Files read in parallel before their trigrams are added
+    private static final int CHUNK_SIZE = 1 << 20; //Chars of a file whose trigrams are sorted at a time
+    private static final long UPDATE_DELAY_MILLIS = 500;
+    private static final long SAVE_DELAY_MILLIS = 10000;
+    private static final int MAX_OPEN_INDEXES = 4; //Each has a watch on every directory under its root
+    private static final Path INDEX_DIRECTORY = indexDirectory().toAbsolutePath().normalize();
+    private static final Path EDITOR_DIRECTORY = INDEX_DIRECTORY.getParent();
+
+    private static final Map<Path, TrigramIndex> openIndexes = new LinkedHashMap<>(16, 0.75f, true); //Least recently used first, guarded by its own lock
+    private static final ScheduledExecutorService indexExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "Trigram index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path root, indexFile;
+    private final Predicate<Path> fileFilter;
+
+    //The index itself - Changed only on the index thread, and always while holding the lock of this index
+    private final List<FileEntry> files = new ArrayList<>(); //By id
+    private final Map<String, Integer> fileIds = new HashMap<>(); //Ids of the live files, by their path relative to root
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private int deadFiles = 0;
+    private boolean dirty = false; //Changed since it was last saved
+    private volatile boolean ready = false, closed = false;
+
+    private WatchService watcher;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Set<Path> pendingChanges = new HashSet<>(); //Guarded by its own lock
+    private ScheduledFuture<?> pendingUpdate, pendingSave;
+
+    private TrigramIndex(Path root, Predicate<Path> fileFilter){
+        this.root = root;
+        this.fileFilter = fileFilter;
+        this.indexFile = indexDirectory().resolve(Integer.toHexString(root.toString().hashCode()) + ".idx");
+    }
+
+    /**
+     * Returns the index of a directory, starting to build it in the background if it is not open yet
+     * @param root The directory
+     * @param fileFilter Which files to index, by their path
+     * @return The index, which may not be ready yet
+     */
+    public static TrigramIndex open(Path root, Predicate<Path> fileFilter){
+        Path path = root.toAbsolutePath().normalize();
+        synchronized(openIndexes){
+            TrigramIndex index = openIndexes.get(path);
+            if(index != null) return index;
+            if(openIndexes.size() == MAX_OPEN_INDEXES){
+                Iterator<TrigramIndex> leastRecentlyUsed = openIndexes.values().iterator();
+                TrigramIndex evicted = leastRecentlyUsed.next();
+                leastRecentlyUsed.remove();
+                evicted.closed = true;
+                indexExecutor.execute(evicted::close); //After anything already queued for it
+            }
+            index = new TrigramIndex(path, fileFilter);
+            openIndexes.put(path, index);
+            indexExecutor.execute(index::build);
+            return index;
+        }
+    }
+
+    /**
+     * Tells the open indexes a file has changed, such as after it has been saved
+     * @param file The file
+     */
+    public static void fileChanged(Path file){
+        Path path = file.toAbsolutePath().normalize();
+        List<TrigramIndex> indexes;
+        synchronized(openIndexes){
+            indexes = new ArrayList<>(openIndexes.values());
+        }
+        for(TrigramIndex index : indexes){
+            if(path.startsWith(index.root)) index.changed(path);
+        }
+    }
+
+    /**
+     * Returns the directory indexes are saved in
+     * @return The index directory
+     */
+    static Path indexDirectory(){
+        return Paths.get(System.getProperty("user.home"), ".texteditor", "index");
+    }
+
+    /**
+     * Checks if the index has been built, so candidates can be asked for
+     * @return True once the first build has finished
+     */
+    public boolean isReady(){
+        return ready;
+    }
+
+    /**
+     * Narrows a search for a literal string down to the files that could contain it - Files changed since the last
+     * update may be missed, and the files have to be searched to find out which of them really do contain it
+     * @param literal The string
+     * @return Paths of the files containing every trigram of the string, or null if the index cannot narrow the search
+     * down because it is not ready or the string is shorter than a trigram
+     */
+    public synchronized List<Path> candidates(String literal){
+        if(!ready || literal.length() < 3) return null;
+        long[] keys = trigrams(literal.toCharArray(), 0, literal.length());
+
+        //Intersecting the shortest lists first, so the ids left to check shrink as fast as they can
+        PostingList[] lists = new PostingList[keys.length];
+        for(int i = 0; i < keys.length; i++){
+            lists[i] = postings.get(keys[i]);
+            if(lists[i] == null) return new ArrayList<>();
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.count));
+        int[] ids = lists[0].toArray();
+        int idCount = ids.length;
+        for(int i = 1; i < lists.length && idCount > 0; i++) idCount = lists[i].retain(ids, idCount);
+
+        List<Path> candidates = new ArrayList<>(idCount);
+        for(int i = 0; i < idCount; i++){
+            FileEntry entry = files.get(ids[i]);
+            if(entry.live) candidates.add(root.resolve(entry.path));
+        }
+        return candidates;
+    }
+
+    /* ---- Building and updating, all on the index thread ---- */
+
+    private void build(){
+        if(closed || root.startsWith(INDEX_DIRECTORY)) return; //Never ready, so searching in there reads every file
+        load();
+        try{
+            watcher = root.getFileSystem().newWatchService();
+            Thread watchThread = new Thread(this::watch, "Trigram index watcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        }catch(IOException | UnsupportedOperationException e){
+            watcher = null; //Only saves made in the editor will update the index
+        }
+        reconcile(root);
+        ready = true;
+        if(dirty) save();
+    }
+
+    /**
+     * Stops watching the directory, saves the index if it has changed and lets go of it - Called once it has been
+     * evicted from the open indexes, so a search that already has it falls back to searching every file
+     */
+    private void close(){
+        ready = false;
+        synchronized(pendingChanges){
+            if(pendingUpdate != null) pendingUpdate.cancel(false);
+            pendingChanges.clear();
+        }
+        if(pendingSave != null) pendingSave.cancel(false);
+        if(watcher != null){
+            try{
+                watcher.close(); //Ends the watch thread
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+        watchedDirectories.clear();
+        if(dirty) save();
+        synchronized(this){
+            files.clear();
+            fileIds.clear();
+            postings.clear();
+        }
+    }
+
+    /**
+     * Checks if a path is in the directory the editor keeps its own files in, unless this index is of somewhere in
+     * there, in which case only the index directory itself is left out
+     */
+    private boolean isExcluded(Path path){
+        return path.startsWith(root.startsWith(EDITOR_DIRECTORY) ? INDEX_DIRECTORY : EDITOR_DIRECTORY);
+    }
+
+    /**
+     * Walks a directory, watching it and everything in it for changes, and brings the index of its files up to date
+     */
+    private void reconcile(Path directory){
+        List<Path> stale = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        try{
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes){
+                    if(isExcluded(dir)) return FileVisitResult.SKIP_SUBTREE;
+                    startWatching(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes){
+                    if(!attributes.isRegularFile() || !fileFilter.test(file)) return FileVisitResult.CONTINUE;
+                    String path = relative(file);
+                    seen.add(path);
+                    if(isStale(path, attributes)) stale.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e){
+                    return FileVisitResult.CONTINUE; //Left out of the index
+                }
+            });
+        }catch(IOException e){
+            e.printStackTrace();
+        }
+
+        //Files that are no longer there
+        String prefix = directory.equals(root) ? "" : relative(directory) + root.getFileSystem().getSeparator();
+        synchronized(this){
+            for(String path : new ArrayList<>(fileIds.keySet())){
+                if(path.startsWith(prefix) && !seen.contains(path)) remove(path);
+            }
+        }
+        index(stale);
+    }
+
+    private void startWatching(Path directory){
+        if(watcher == null) return;
+        try{
+            WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.put(key, directory);
+        }catch(IOException e){
+            //Left unwatched, such as when the system runs out of watches - saves made in the editor still get through
+        }
+    }
+
+    /**
+     * Passes the changes reported by the WatchService on until it is closed - Runs on its own thread
+     */
+    private void watch(){
+        while(true){
+            WatchKey key;
+            try{
+                key = watcher.take();
+            }catch(InterruptedException | ClosedWatchServiceException e){
+                return;
+            }
+            Path directory = watchedDirectories.get(key);
+            for(WatchEvent<?> event : key.pollEvents()){
+                if(event.kind() == StandardWatchEventKinds.OVERFLOW) changed(root); //Some changes were lost, so everything is checked
+                else if(directory != null) changed(directory.resolve((Path) event.context()));
+            }
+            if(!key.reset()) watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * Queues a changed path to be brought up to date in the next update
+     */
+    private void changed(Path path){
+        if(closed || isExcluded(path)) return;
+        synchronized(pendingChanges){
+            pendingChanges.add(path);
+            if(pendingUpdate == null) pendingUpdate = indexExecutor.schedule(this::update, UPDATE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void update(){
+        if(closed) return;
+        Set<Path> changes;
+        synchronized(pendingChanges){
+            changes = new HashSet<>(pendingChanges);
+            pendingChanges.clear();
+            pendingUpdate = null;
+        }
+        if(changes.contains(root)){
+            reconcile(root);
+            changes.clear();
+        }
+
+        List<Path> stale = new ArrayList<>();
+        for(Path path : changes){
+            BasicFileAttributes attributes;
+            try{
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            }catch(IOException e){
+                attributes = null; //Deleted
+            }
+            if(attributes != null && attributes.isDirectory()) reconcile(path);
+            else if(attributes != null && attributes.isRegularFile()){
+                if(fileFilter.test(path) && isStale(relative(path), attributes)) stale.add(path);
+            }else removeAll(relative(path));
+        }
+        index(stale);
+        if(dirty && pendingSave == null) pendingSave = indexExecutor.schedule(this::save, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized boolean isStale(String path, BasicFileAttributes attributes){
+        Integer id = fileIds.get(path);
+        if(id == null) return true;
+        FileEntry entry = files.get(id);
+        return entry.size != attributes.size() || entry.modified != attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Reads files and adds them to the index, in batches that are read in parallel
+     */
+    private void index(List<Path> paths){
+        for(int i = 0; i < paths.size(); i += BATCH_SIZE){
+            List<FileEntry> batch = paths.subList(i, Math.min(paths.size(), i + BATCH_SIZE)).parallelStream()
+                    .map(this::read)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            synchronized(this){
+                for(FileEntry entry : batch) add(entry);
+            }
+        }
+    }
+
+    /**
+     * Reads the trigrams of a file
+     * @return The entry of the file, or null if it could not be read
+     */
+    private FileEntry read(Path file){
+        try{
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long[][] keys = {new long[0]}; //Trigrams in the carried chars of a window are found again in the next, and merged away
+            FileSearch.readText(file, (text, length, offset, carried) -> {
+                keys[0] = merge(keys[0], trigrams(text, 0, length));
+                return true;
+            });
+            return new FileEntry(relative(file), attributes.size(), attributes.lastModifiedTime().toMillis(), keys[0]);
+        }catch(IOException e){
+            return null; //Tried again when it next changes
+        }
+    }
+
+    private void add(FileEntry entry){
+        remove(entry.path);
+        int id = files.size();
+        files.add(entry);
+        fileIds.put(entry.path, id);
+        for(long key : entry.trigrams) postings.computeIfAbsent(key, k -> new PostingList()).add(id);
+        entry.trigrams = null;
+        dirty = true;
+    }
+
+    private void remove(String path){
+        Integer id = fileIds.remove(path);
+        if(id == null) return;
+        files.get(id).live = false;
+        deadFiles++;
+        dirty = true;
+    }
+
+    /**
+     * Removes a deleted file, or every file that was in a deleted directory
+     */
+    private synchronized void removeAll(String path){
+        if(fileIds.containsKey(path)){
+            remove(path);
+            return;
+        }
+        String prefix = path + root.getFileSystem().getSeparator();
+        for(String filePath : new ArrayList<>(fileIds.keySet())){
+            if(filePath.startsWith(prefix)) remove(filePath);
+        }
+    }
+
+    /**
+     * Drops the dead ids from the posting lists and numbers the live files again from 0
+     */
+    private synchronized void compact(){
+        if(deadFiles == 0) return;
+        int[] newIds = new int[files.size()];
+        List<FileEntry> liveFiles = new ArrayList<>(files.size() - deadFiles);
+        for(int id = 0; id < files.size(); id++){
+            FileEntry entry = files.get(id);
+            newIds[id] = entry.live ? liveFiles.size() : -1;
+            if(entry.live) liveFiles.add(entry);
+        }
+        files.clear();
+        files.addAll(liveFiles);
+        fileIds.clear();
+        for(int id = 0; id < files.size(); id++) fileIds.put(files.get(id).path, id);
+
+        Iterator<PostingList> lists = postings.values().iterator();
+        while(lists.hasNext()){
+            PostingList list = lists.next();
+            if(list.renumber(newIds) == 0) lists.remove();
+        }
+        deadFiles = 0;
+    }
+
+    private String relative(Path path){
+        return root.relativize(path).toString();
+    }
+
+    /**
+     * Finds the distinct trigrams of some text, with their case folded
+     * @return The trigrams, each packed into a long, in ascending order
+     */
+    private static long[] trigrams(char[] text, int offset, int length){
+        long[] found = new long[0];
+        for(int chunk = 0; chunk < length - 2; chunk += CHUNK_SIZE){
+            int end = Math.min(length - 2, chunk + CHUNK_SIZE);
+            long[] keys = new long[end - chunk];
+            for(int i = chunk; i < end; i++){
+                keys[i - chunk] = (long) fold(text[offset + i]) << 32 | (long) fold(text[offset + i + 1]) << 16 | fold(text[offset + i + 2]);
+            }
+            Arrays.sort(keys);
+            found = merge(found, keys);
+        }
+        return found;
+    }
+
+    /**
+     * Merges two sorted arrays, leaving out duplicates
+     */
+    private static long[] merge(long[] a, long[] b){
+        long[] merged = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while(i < a.length || j < b.length){
+            long next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if(n == 0 || merged[n - 1] != next) merged[n++] = next;
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    private static char fold(char c){
+        return Character.toLowerCase(Character.toUpperCase(c)); //The same folding LiteralSearch uses
+    }
+
+    /* ---- Saving and loading ---- */
+
+    /**
+     * Writes the index to a temporary file and moves it over the old one, so a crash part way through leaves the
+     * old index in place
+     */
+    private void save(){
+        pendingSave = null;
+        compact();
+        try{
+            Files.createDirectories(indexFile.getParent());
+            Path temporaryFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            synchronized(this){
+                dirty = false;
+                try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))){
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(root.toString());
+                    out.writeInt(files.size());
+                    for(FileEntry entry : files){
+                        out.writeUTF(entry.path);
+                        out.writeLong(entry.size);
+                        out.writeLong(entry.modified);
+                    }
+                    out.writeInt(postings.size());
+                    for(Map.Entry<Long, PostingList> posting : postings.entrySet()){
+                        out.writeLong(posting.getKey());
+                        posting.getValue().write(out);
+                    }
+                }
+            }
+            Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the saved index, if there is one for this directory - A missing or damaged index starts empty
+     */
+    private synchronized void load(){
+        if(!Files.exists(indexFile)) return;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))){
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(root.toString())) return;
+            int fileCount = in.readInt();
+            for(int id = 0; id < fileCount; id++){
+                FileEntry entry = new FileEntry(in.readUTF(), in.readLong(), in.readLong(), null);
+                files.add(entry);
+                fileIds.put(entry.path, id);
+            }
+            int postingCount = in.readInt();
+            for(int i = 0; i < postingCount; i++) postings.put(in.readLong(), PostingList.read(in));
+        }catch(IOException | RuntimeException e){
+            e.printStackTrace();
+            files.clear();
+            fileIds.clear();
+            postings.clear();
+        }
+    }
+
+    /**
+     * A file in the index
+     */
+    private static class FileEntry {
+        final String path; //Relative to the root
+        final long size, modified;
+        long[] trigrams; //Only kept until the file is added
+        boolean live = true;
+
+        FileEntry(String path, long size, long modified, long[] trigrams){
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.trigrams = trigrams;
+        }
+    }
+
+    /**
+     * The ids of the files containing a trigram, in ascending order, each stored as its difference from the one
+     * before in 7 bit groups with the top bit set on all but the last group
+     */
+    static class PostingList {
+        byte[] bytes = new byte[4];
+        int length = 0, count = 0, last = 0;
+
+        void add(int id){
+            if(length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(length + 5, bytes.length * 2));
+            int delta = id - last;
+            last = id;
+            while((delta & ~0x7F) != 0){
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            count++;
+        }
+
+        int[] toArray(){
+            int[] ids = new int[count];
+            int position = 0, id = 0;
+            for(int i = 0; i < count; i++){
+                int delta = 0, shift = 0;
+                byte b;
+                do{
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                }while(b < 0);
+                id += delta;
+                ids[i] = id;
+            }
+            return ids;
+        }
+
+        /**
+         * Keeps the ids at the start of an array that are also in this list
+         * @return How many ids were kept, which are moved to the start of the array
+         */
+        int retain(int[] ids, int idCount){
+            int kept = 0, position = 0, read = 0, sum = 0, id = -1;
+            for(int i = 0; i < idCount; i++){
+                while(id < ids[i] && read < count){
+                    int delta = 0, shift = 0;
+                    byte b;
+                    do{
+                        b = bytes[position++];
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    }while(b < 0);
+                    sum += delta;
+                    id = sum;
+                    read++;
+                }
+                if(id == ids[i]) ids[kept++] = ids[i];
+                else if(id < ids[i]) break; //Nothing left in this list
+            }
+            return kept;
+        }
+
+        /**
+         * Encodes the list again with new ids, leaving out the ids mapped to -1
+         * @return The number of ids left
+         */
+        int renumber(int[] newIds){
+            int[] ids = toArray();
+            bytes = new byte[Math.max(4, length)];
+            length = 0;
+            count = 0;
+            last = 0;
+            for(int id : ids){
+                if(newIds[id] >= 0) add(newIds[id]);
+            }
+            return count;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            out.writeInt(last);
+            out.writeInt(length);
+            out.write(bytes, 0, length);
+        }
+
+        static PostingList read(DataInputStream in) throws IOException {
+            PostingList list = new PostingList();
+            list.count = in.readInt();
+            list.last = in.readInt();
+            list.length = in.readInt();
+            list.bytes = new byte[Math.max(4, list.length)];
+            in.readFully(list.bytes, 0, list.length);
+            return list;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package texteditor.document;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Segment;
+
+/**
+ * Keeps count of the words in a document from the document's events. A word is a run of chars that are not
+ * whitespace, the same as wc counts, so the count is the number of places where such a char follows whitespace or
+ * the start of the document.
+ *
+ * An edit can only change whether there is a word start inside the edited text and at the char just after it, so
+ * only those are looked at - Typing costs a few chars of reading whatever the size of the document, and a removal
+ * reads the removed text in place, through the pieces the document keeps hold of until its listeners have been told
+ */
+public class WordCounter implements DocumentListener {
+    private final PieceTableDocument document;
+    private final Runnable listener;
+    private final Segment segment = new Segment();
+    private long wordCount;
+
+    /**
+     * Counts the words of a document and starts listening to it - The counter should be added before the LineIndex
+     * of the document, so that the index is up to date by the time the listener is told about an edit
+     * @param document The document to count
+     * @param listener Run after each edit, once the count has been updated
+     */
+    public WordCounter(PieceTableDocument document, Runnable listener){
+        this.document = document;
+        this.listener = listener;
+        segment.setPartialReturn(true);
+        wordCount = countWordStarts(0, document.getLength());
+        document.addDocumentListener(this);
+    }
+
+    /**
+     * Returns the number of words in the document
+     * @return The number of words
+     */
+    public long getWordCount(){
+        return wordCount;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e){
+        int offset = e.getOffset(), end = offset + e.getLength();
+
+        //The char after the text used to follow the char before it
+        int before = isWordStart(charAt(offset - 1), charAt(end)) ? 1 : 0;
+        wordCount += countWordStarts(offset, Math.min(end + 1, document.getLength())) - before;
+        listener.run();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e){
+        int offset = e.getOffset();
+        TextSnapshot removed = document.getRemovedText();
+        char previous = charAt(offset - 1), next = charAt(offset);
+        if(removed != null){
+            for(int i = 0; i < removed.getSegmentCount(); i++){
+                removed.getSegment(i, segment);
+                for(int j = segment.offset, end = segment.offset + segment.count; j < end; j++){
+                    char c = segment.array[j];
+                    if(isWordStart(previous, c)) wordCount--;
+                    previous = c;
+                }
+            }
+            if(isWordStart(previous, next)) wordCount--;
+            if(isWordStart(charAt(offset - 1), next)) wordCount++;
+        }else{
+            wordCount = countWordStarts(0, document.getLength()); //The removed text could not be read back
+        }
+        listener.run();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e){}
+
+    /**
+     * Counts the word starts at each offset of a range, reading it a segment at a time without copying it
+     */
+    private long countWordStarts(int from, int to){
+        long count = 0;
+        char previous = charAt(from - 1);
+        try{
+            while(from < to){
+                document.getText(from, to - from, segment);
+                for(int i = segment.offset, end = segment.offset + segment.count; i < end; i++){
+                    char c = segment.array[i];
+                    if(isWordStart(previous, c)) count++;
+                    previous = c;
+                }
+                from += segment.count;
+            }
+        }catch(BadLocationException e){
+            e.printStackTrace(); //Cannot happen, the range is inside the document
+        }
+        return count;
+    }
+
+    /**
+     * Returns the char at an offset, or a space outside the document
+     */
+    private char charAt(int offset){
+        if(offset < 0 || offset >= document.getLength()) return ' ';
+        try{
+            document.getText(offset, 1, segment);
+            return segment.array[segment.offset];
+        }catch(BadLocationException e){
+            return ' ';
+        }
+    }
+
+    private static boolean isWordStart(char previous, char c){
+        return Character.isWhitespace(previous) && !Character.isWhitespace(c);
+    }
+}
@@ -10,7 +10,6 @@ import java.awt.event.KeyEvent;
 public class MenuItem extends JMenuItem {
     private String menuItemName;
     private boolean isCheckBoxItem;
-    private final int SHORTCUT_KEY_MASK = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
     private boolean isShiftKeyShortcut;
     private boolean hasShortcut;
     private JCheckBoxMenuItem checkBoxMenuItem;
@@ -64,6 +63,22 @@ public class MenuItem extends JMenuItem {
         setupShortcut(customShortcut);
     }
     
+    /**
+     * Constructor for menu items whose shortcut has already been worked out
+     * @param menuItemName Name corresponding to the menu item
+     * @param shortcut Shortcut of the menu item, or null if it has none
+     */
+    public MenuItem(String menuItemName, KeyStroke shortcut){
+        super(menuItemName);
+        this.menuItemName = menuItemName;
+        this.hasShortcut = shortcut != null;
+        this.isShiftKeyShortcut = shortcut != null && (shortcut.getModifiers() & ActionEvent.SHIFT_MASK) != 0;
+        isCheckBoxItem = false;
+        checkBoxMenuItem = null;
+        setActionCommand(menuItemName); //For click events
+        if(shortcut != null) setAccelerator(shortcut);
+    }
+
     /**
      * Constructor for MenuItem objects that are checkbox menu items
      * @param menuItemName Name of the menu item
@@ -87,8 +102,19 @@ public class MenuItem extends JMenuItem {
      * @param keyCode Integer that corresponds with the short cut key of this menu item
      */
     private void setupShortcut(int keyCode){
-        if(isShiftKeyShortcut) setAccelerator(KeyStroke.getKeyStroke(keyCode,SHORTCUT_KEY_MASK | ActionEvent.SHIFT_MASK));
-        else setAccelerator(KeyStroke.getKeyStroke(keyCode, SHORTCUT_KEY_MASK));
+        setAccelerator(shortcut(keyCode, isShiftKeyShortcut));
+    }
+
+    /**
+     * Returns the KeyStroke for a short cut - The short cut key together with the platform's menu short cut key
+     * @param keyCode Integer that corresponds with the short cut key
+     * @param isShiftKeyShortcut Boolean indicating that the short cut uses the shift key too
+     * @return The KeyStroke of the short cut
+     */
+    public static KeyStroke shortcut(int keyCode, boolean isShiftKeyShortcut){
+        int shortcutKeyMask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask(); //Asked for here, as it needs a display
+        if(isShiftKeyShortcut) return KeyStroke.getKeyStroke(keyCode,shortcutKeyMask | ActionEvent.SHIFT_MASK);
+        return KeyStroke.getKeyStroke(keyCode, shortcutKeyMask);
     }
 
     /**
@@ -97,7 +123,7 @@ public class MenuItem extends JMenuItem {
      * @param character is the character that needs to be processed into a KeyEvent constant
      * @return An integer that corresponds to the key event of the supplied character
      */
-    private int getKeyEventForChar(char character){
+    public static int getKeyEventForChar(char character){
         try {
             switch (character) {
                 case 'A': return KeyEvent.VK_A;